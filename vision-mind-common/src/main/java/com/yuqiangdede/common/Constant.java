@@ -14,13 +14,23 @@ public class Constant {
 
     public static final String MATRIX_PATH;
 
+    /**
+     * http(s) 图片下载缓存，见 ImageFetchCache
+     */
+    public static final long IMAGE_CACHE_MAX_BYTES;
+    public static final long IMAGE_CACHE_TTL_MS;
+    public static final long IMAGE_CACHE_CONNECT_TIMEOUT_MS;
+    public static final long IMAGE_CACHE_READ_TIMEOUT_MS;
+
 
     static {
         Properties properties = new Properties();
         InputStream input = null;
         try {
             input = Constant.class.getClassLoader().getResourceAsStream("application.properties");
-            properties.load(input);
+            if (input != null) {
+                properties.load(input);
+            }
             String envPath = System.getenv("VISION_MIND_PATH");
 
             boolean skipNativeConfig = RuntimeEnvironment.shouldSkipNativeLoad();
@@ -32,6 +42,10 @@ public class Constant {
             }
 
             MATRIX_PATH = envPath + properties.getProperty("matrix.path");
+            IMAGE_CACHE_MAX_BYTES = Long.parseLong(properties.getProperty("image.cache.max-bytes", String.valueOf(64L * 1024 * 1024)));
+            IMAGE_CACHE_TTL_MS = Long.parseLong(properties.getProperty("image.cache.ttl-ms", "30000"));
+            IMAGE_CACHE_CONNECT_TIMEOUT_MS = Long.parseLong(properties.getProperty("image.cache.connect-timeout-ms", "3000"));
+            IMAGE_CACHE_READ_TIMEOUT_MS = Long.parseLong(properties.getProperty("image.cache.read-timeout-ms", "10000"));
 
         } catch (IOException e) {
             throw new RuntimeException("Failed to read configuration file");
@@ -0,0 +1,84 @@
+package com.yuqiangdede.common.bulk;
+
+import java.util.Properties;
+
+/**
+ * Sizing of a {@link NdjsonBulkPipeline}: thread pools of the fetch and extract stages, the number of lines a single
+ * request may have in those stages at once, and the number of lines per store write.
+ */
+public final class BulkConfig {
+
+    private final int fetchThreads;
+    private final int extractThreads;
+    private final int maxInFlight;
+    private final int batchSize;
+
+    public BulkConfig(int fetchThreads, int extractThreads, int maxInFlight, int batchSize) {
+        this.fetchThreads = Math.max(1, fetchThreads);
+        this.extractThreads = Math.max(1, extractThreads);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public static BulkConfig defaults() {
+        return new BulkConfig(16, Runtime.getRuntime().availableProcessors(), 64, 256);
+    }
+
+    /**
+     * Reads {@code bulk.*}; missing keys keep the defaults.
+     */
+    public static BulkConfig fromProperties(Properties properties) {
+        BulkConfig d = defaults();
+        return new BulkConfig(
+                getInt(properties, "bulk.fetch-threads", d.fetchThreads),
+                getInt(properties, "bulk.extract-threads", d.extractThreads),
+                getInt(properties, "bulk.max-in-flight", d.maxInFlight),
+                getInt(properties, "bulk.batch-size", d.batchSize));
+    }
+
+    /**
+     * Threads downloading and decoding images, shared by all bulk requests of the application.
+     */
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+
+    /**
+     * Threads running model inference, shared by all bulk requests of the application.
+     */
+    public int getExtractThreads() {
+        return extractThreads;
+    }
+
+    /**
+     * Lines of one request that may be fetched or extracted at the same time; reading the body pauses beyond it.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Lines whose vectors are written to the store in one call.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    private static int getInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value.trim());
+    }
+
+    @Override
+    public String toString() {
+        return "BulkConfig{" +
+                "fetchThreads=" + fetchThreads +
+                ", extractThreads=" + extractThreads +
+                ", maxInFlight=" + maxInFlight +
+                ", batchSize=" + batchSize +
+                '}';
+    }
+}
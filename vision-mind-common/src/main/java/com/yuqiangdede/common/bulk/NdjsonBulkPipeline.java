@@ -0,0 +1,251 @@
+package com.yuqiangdede.common.bulk;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.yuqiangdede.common.dto.output.BulkItemResult;
+import com.yuqiangdede.common.dto.output.BulkSummary;
+import com.yuqiangdede.common.util.JsonUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams an NDJSON bulk request through fetch, extract and batched store stages and writes one
+ * {@link BulkItemResult} line per input line, in input order, followed by a {@link BulkSummary} line.
+ * <p>
+ * The calling thread reads the body line by line and hands each line to the fetch pool (parse, download, decode) and
+ * then to the extract pool (inference). At most {@link BulkConfig#getMaxInFlight()} lines of a request are in those
+ * stages; beyond that, reading waits for the oldest line, so neither the request nor the response is ever held in
+ * memory as a whole. Finished lines are collected in order, and every {@link BulkConfig#getBatchSize()} of them are
+ * written to the store in one call, after which their results are written and flushed. A partial batch is written as
+ * soon as nothing is in flight and no more input is buffered, so a slowly streamed body still gets timely results.
+ * <p>
+ * A line that cannot be parsed, fetched or extracted fails on its own; a failed store call fails the lines of its
+ * batch. The pools are shared by all requests of the application.
+ */
+@Slf4j
+public final class NdjsonBulkPipeline implements Closeable {
+
+    private static final byte NEWLINE = '\n';
+
+    private final BulkConfig config;
+    private final ExecutorService fetchPool;
+    private final ExecutorService extractPool;
+
+    /**
+     * Per-line stages of a bulk request.
+     *
+     * @param <I> parsed input line
+     * @param <F> fetched input, e.g. a decoded image
+     * @param <P> prepared vectors of the line, ready to store
+     */
+    public interface Handler<I, F, P> {
+
+        /**
+         * Runs on the fetch pool.
+         */
+        F fetch(I item) throws Exception;
+
+        /**
+         * Runs on the extract pool.
+         */
+        P extract(F fetched) throws Exception;
+
+        /**
+         * Runs on the calling thread with the prepared values of the successful lines of a batch, in input order.
+         */
+        void store(List<P> batch) throws Exception;
+
+        /**
+         * Data of the result line of a stored line.
+         */
+        Object result(P stored);
+    }
+
+    /**
+     * @param name thread name prefix of the two pools
+     */
+    public NdjsonBulkPipeline(BulkConfig config, String name) {
+        this.config = config == null ? BulkConfig.defaults() : config;
+        this.fetchPool = newPool(this.config.getFetchThreads(), name + "-fetch-");
+        this.extractPool = newPool(this.config.getExtractThreads(), name + "-extract-");
+    }
+
+    /**
+     * Processes the whole body and writes the results to {@code out}; neither stream is closed.
+     *
+     * @param type class every line is parsed into
+     * @throws IOException if the body cannot be read or the results cannot be written; lines still in flight are
+     *                     abandoned
+     */
+    public <I, F, P> BulkSummary run(InputStream in, OutputStream out, Class<I> type, Handler<I, F, P> handler)
+            throws IOException {
+        long started = System.nanoTime();
+        Batch<P> batch = new Batch<>(out, handler);
+        ArrayDeque<Pending<P>> inFlight = new ArrayDeque<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String text;
+            long line = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                inFlight.add(new Pending<>(line, submit(text, type, handler)));
+                while (!inFlight.isEmpty()
+                        && (inFlight.size() >= config.getMaxInFlight() || inFlight.peek().future().isDone())) {
+                    batch.collect(inFlight.poll());
+                }
+                if (inFlight.isEmpty() && !reader.ready()) {
+                    batch.flush();
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                batch.collect(inFlight.poll());
+            }
+            batch.flush();
+        } finally {
+            for (Pending<P> pending : inFlight) {
+                pending.future().cancel(false);
+            }
+        }
+        BulkSummary summary = new BulkSummary(batch.succeeded + batch.failed, batch.succeeded, batch.failed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        writeLine(out, summary);
+        out.flush();
+        return summary;
+    }
+
+    @Override
+    public void close() {
+        fetchPool.shutdown();
+        extractPool.shutdown();
+    }
+
+    private <I, F, P> CompletableFuture<P> submit(String text, Class<I> type, Handler<I, F, P> handler) {
+        return CompletableFuture
+                .supplyAsync(() -> {
+                    try {
+                        return handler.fetch(JsonUtils.objectNoNullMapper.readValue(text, type));
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, fetchPool)
+                .thenApplyAsync(fetched -> {
+                    try {
+                        return handler.extract(fetched);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, extractPool);
+    }
+
+    private static void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(JsonUtils.objectNoNullMapper.writeValueAsBytes(value));
+        out.write(NEWLINE);
+    }
+
+    private static String message(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    private static ExecutorService newPool(int threads, String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private record Pending<P>(long line, CompletableFuture<P> future) {
+    }
+
+    /**
+     * Finished lines waiting for their store write, in input order; {@code prepared} is {@code null} for a failed
+     * line.
+     */
+    private final class Batch<P> {
+
+        private final OutputStream out;
+        private final Handler<?, ?, P> handler;
+        private final List<Long> lines = new ArrayList<>();
+        private final List<P> prepared = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private long succeeded;
+        private long failed;
+
+        Batch(OutputStream out, Handler<?, ?, P> handler) {
+            this.out = out;
+            this.handler = handler;
+        }
+
+        void collect(Pending<P> pending) throws IOException {
+            P value = null;
+            String error = null;
+            try {
+                value = pending.future().join();
+            } catch (CompletionException e) {
+                error = message(e);
+                log.debug("Bulk line {} failed: {}", pending.line(), error);
+            }
+            lines.add(pending.line());
+            prepared.add(value);
+            errors.add(error);
+            if (lines.size() >= config.getBatchSize()) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (lines.isEmpty()) {
+                return;
+            }
+            List<P> toStore = new ArrayList<>(prepared.size());
+            for (int i = 0; i < prepared.size(); i++) {
+                if (errors.get(i) == null) {
+                    toStore.add(prepared.get(i));
+                }
+            }
+            String storeError = null;
+            if (!toStore.isEmpty()) {
+                try {
+                    handler.store(toStore);
+                } catch (Exception e) {
+                    storeError = message(e);
+                    log.warn("Bulk store of {} lines failed", toStore.size(), e);
+                }
+            }
+            for (int i = 0; i < lines.size(); i++) {
+                String error = errors.get(i) != null ? errors.get(i) : storeError;
+                if (error == null) {
+                    succeeded++;
+                    writeLine(out, new BulkItemResult(lines.get(i), true, "success", handler.result(prepared.get(i))));
+                } else {
+                    failed++;
+                    writeLine(out, new BulkItemResult(lines.get(i), false, error, null));
+                }
+            }
+            out.flush();
+            lines.clear();
+            prepared.clear();
+            errors.clear();
+        }
+    }
+}
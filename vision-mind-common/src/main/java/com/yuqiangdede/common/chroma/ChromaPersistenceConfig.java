@@ -0,0 +1,106 @@
+package com.yuqiangdede.common.chroma;
+
+import com.yuqiangdede.common.vector.WriteAheadLog;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Persistence settings for the in-memory vector store: where {@link DurableChromaStore} keeps its snapshot and
+ * write-ahead log, how often it snapshots and how durable an acknowledged write is.
+ */
+public final class ChromaPersistenceConfig {
+
+    private final Path path;
+    private final long snapshotIntervalMs;
+    private final long snapshotMinOps;
+    private final WriteAheadLog.Durability durability;
+    private final long syncIntervalMs;
+
+    /**
+     * @param path directory of the snapshot and write-ahead log, {@code null} to keep the store purely in memory
+     */
+    public ChromaPersistenceConfig(Path path, long snapshotIntervalMs, long snapshotMinOps,
+                                   WriteAheadLog.Durability durability, long syncIntervalMs) {
+        this.path = path;
+        this.snapshotIntervalMs = Math.max(1, snapshotIntervalMs);
+        this.snapshotMinOps = Math.max(1, snapshotMinOps);
+        this.durability = durability == null ? WriteAheadLog.Durability.REQUEST : durability;
+        this.syncIntervalMs = Math.max(1, syncIntervalMs);
+    }
+
+    public static ChromaPersistenceConfig disabled() {
+        return new ChromaPersistenceConfig(null, 300_000, 10_000, WriteAheadLog.Durability.REQUEST, 200);
+    }
+
+    /**
+     * Reads {@code memory.snapshot.*} and {@code memory.wal.*}; missing keys keep the defaults.
+     *
+     * @param persistPath resolved {@code memory.persist.path}, blank to disable persistence
+     */
+    public static ChromaPersistenceConfig fromProperties(Properties properties, String persistPath) {
+        ChromaPersistenceConfig d = disabled();
+        return new ChromaPersistenceConfig(
+                persistPath == null || persistPath.isBlank() ? null : Paths.get(persistPath.trim()),
+                getLong(properties, "memory.snapshot.interval-ms", d.snapshotIntervalMs),
+                getLong(properties, "memory.snapshot.min-ops", d.snapshotMinOps),
+                getDurability(properties, d.durability),
+                getLong(properties, "memory.wal.sync-interval-ms", d.syncIntervalMs));
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSnapshotIntervalMs() {
+        return snapshotIntervalMs;
+    }
+
+    /**
+     * Number of writes since the last snapshot below which the timer (and close) skip snapshotting.
+     */
+    public long getSnapshotMinOps() {
+        return snapshotMinOps;
+    }
+
+    public WriteAheadLog.Durability getDurability() {
+        return durability;
+    }
+
+    public long getSyncIntervalMs() {
+        return syncIntervalMs;
+    }
+
+    private static long getLong(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Long.parseLong(value.trim());
+    }
+
+    private static WriteAheadLog.Durability getDurability(Properties properties, WriteAheadLog.Durability defaultValue) {
+        String value = properties.getProperty("memory.wal.durability");
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return WriteAheadLog.Durability.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    @Override
+    public String toString() {
+        return "ChromaPersistenceConfig{" +
+                "path=" + path +
+                ", snapshotIntervalMs=" + snapshotIntervalMs +
+                ", snapshotMinOps=" + snapshotMinOps +
+                ", durability=" + durability +
+                ", syncIntervalMs=" + syncIntervalMs +
+                '}';
+    }
+}
@@ -0,0 +1,232 @@
+package com.yuqiangdede.common.chroma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of {@link EmbeddingRecord}s for the write-ahead log and snapshot of {@link DurableChromaStore}.
+ * <p>
+ * Payload values may be {@code null}, strings, boxed primitives, {@code float[]}, lists and string-keyed maps of
+ * those; anything else is rejected when the record is written, not when it is replayed.
+ */
+final class ChromaRecordCodec {
+
+    static final byte OP_UPSERT = 1;
+    static final byte OP_DELETE = 2;
+    static final byte OP_CLEAR = 3;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_LONG = 2;
+    private static final byte VALUE_INT = 3;
+    private static final byte VALUE_DOUBLE = 4;
+    private static final byte VALUE_FLOAT = 5;
+    private static final byte VALUE_BOOLEAN = 6;
+    private static final byte VALUE_MAP = 7;
+    private static final byte VALUE_LIST = 8;
+    private static final byte VALUE_FLOAT_ARRAY = 9;
+
+    private ChromaRecordCodec() {
+    }
+
+    /**
+     * Full record including its embedding, for the write-ahead log.
+     */
+    static byte[] encode(EmbeddingRecord record) {
+        try {
+            ByteArrayOutputStream attributes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(attributes);
+            writeAttributes(out, record);
+            out.flush();
+            float[] embedding = record.getEmbedding();
+            ByteBuffer bytes = ByteBuffer.allocate(attributes.size() + Integer.BYTES + embedding.length * Float.BYTES);
+            bytes.put(attributes.toByteArray()).putInt(embedding.length);
+            // bulk copy, big-endian like the DataOutput part
+            bytes.asFloatBuffer().put(embedding);
+            return bytes.array();
+        } catch (IOException e) {
+            throw new IllegalStateException("in-memory stream cannot fail", e);
+        }
+    }
+
+    static EmbeddingRecord decode(byte[] bytes) throws IOException {
+        ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
+        EmbeddingRecord attributes = readAttributes(new DataInputStream(stream));
+        int remaining = stream.available();
+        ByteBuffer vector = ByteBuffer.wrap(bytes, bytes.length - remaining, remaining);
+        int length = vector.getInt();
+        if (length < 0 || (long) length * Float.BYTES != vector.remaining()) {
+            throw new IOException("corrupt embedding length " + length);
+        }
+        float[] embedding = new float[length];
+        vector.asFloatBuffer().get(embedding);
+        return attributes.withEmbedding(embedding);
+    }
+
+    static byte[] encodeId(String id) {
+        return id.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String decodeId(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Id, metadata, payload and timestamp; the snapshot stores the vector separately.
+     */
+    static void writeAttributes(DataOutput out, EmbeddingRecord record) throws IOException {
+        writeString(out, record.getId());
+        out.writeLong(record.getTimestamp());
+        Map<String, String> metadata = record.getMetadata();
+        out.writeInt(metadata.size());
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            writeString(out, entry.getKey());
+            writeNullableString(out, entry.getValue());
+        }
+        Map<String, Object> payload = record.getPayload();
+        out.writeInt(payload.size());
+        for (Map.Entry<String, Object> entry : payload.entrySet()) {
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    /**
+     * @return record with an empty embedding
+     */
+    static EmbeddingRecord readAttributes(DataInput in) throws IOException {
+        String id = readString(in);
+        long timestamp = in.readLong();
+        int metadataSize = in.readInt();
+        Map<String, String> metadata = new HashMap<>(Math.max(4, metadataSize * 2));
+        for (int i = 0; i < metadataSize; i++) {
+            metadata.put(readString(in), readNullableString(in));
+        }
+        int payloadSize = in.readInt();
+        Map<String, Object> payload = new HashMap<>(Math.max(4, payloadSize * 2));
+        for (int i = 0; i < payloadSize; i++) {
+            payload.put(readString(in), readValue(in));
+        }
+        return new EmbeddingRecord(id, VectorMatrix.NO_EMBEDDING, metadata, payload, timestamp);
+    }
+
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof String s) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, s);
+        } else if (value instanceof Long l) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong(l);
+        } else if (value instanceof Integer i) {
+            out.writeByte(VALUE_INT);
+            out.writeInt(i);
+        } else if (value instanceof Double d) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(d);
+        } else if (value instanceof Float f) {
+            out.writeByte(VALUE_FLOAT);
+            out.writeFloat(f);
+        } else if (value instanceof Boolean b) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean(b);
+        } else if (value instanceof float[] array) {
+            out.writeByte(VALUE_FLOAT_ARRAY);
+            out.writeInt(array.length);
+            for (float v : array) {
+                out.writeFloat(v);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(VALUE_MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String key)) {
+                    throw new IllegalArgumentException("Payload map keys must be strings: " + entry.getKey());
+                }
+                writeString(out, key);
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof List<?> list) {
+            out.writeByte(VALUE_LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported payload value type: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case VALUE_NULL -> null;
+            case VALUE_STRING -> readString(in);
+            case VALUE_LONG -> in.readLong();
+            case VALUE_INT -> in.readInt();
+            case VALUE_DOUBLE -> in.readDouble();
+            case VALUE_FLOAT -> in.readFloat();
+            case VALUE_BOOLEAN -> in.readBoolean();
+            case VALUE_FLOAT_ARRAY -> {
+                float[] array = new float[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readFloat();
+                }
+                yield array;
+            }
+            case VALUE_MAP -> {
+                int size = in.readInt();
+                Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 2));
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(in), readValue(in));
+                }
+                yield map;
+            }
+            case VALUE_LIST -> {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                yield list;
+            }
+            default -> throw new IOException("Unknown payload value type " + type);
+        };
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
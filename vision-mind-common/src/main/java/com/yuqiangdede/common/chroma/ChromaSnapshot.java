@@ -0,0 +1,257 @@
+package com.yuqiangdede.common.chroma;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.util.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Compacted snapshot of a {@link VectorMatrix}, as two files per write-ahead log generation:
+ * <ul>
+ *     <li>{@code snapshot-<gen>.vec}: a 64-byte header ({@code magic, version, dim, count, generation}) followed by
+ *     {@code count x dim} little-endian floats, one normalised row after another, so it can be memory-mapped;</li>
+ *     <li>{@code snapshot-<gen>.meta}: id, timestamp, metadata and payload of each row, in the same order.</li>
+ * </ul>
+ * Both are written to temporary files, fsynced and renamed, the vector file last; a snapshot is complete when both
+ * final files exist.
+ */
+@Slf4j
+final class ChromaSnapshot {
+
+    private static final int MAGIC = 0x564D5653;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final String PREFIX = "snapshot-";
+    private static final String VECTOR_SUFFIX = ".vec";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    /**
+     * Upper bound of a single mapping; a {@link MappedByteBuffer} cannot exceed 2 GB.
+     */
+    private static final long MAX_MAP_BYTES = 1L << 30;
+
+    private ChromaSnapshot() {
+    }
+
+    /**
+     * Writes the live rows of {@code matrix} as the snapshot of {@code generation}.
+     *
+     * @return number of rows written
+     */
+    static int write(Path dir, long generation, VectorMatrix matrix) throws IOException {
+        Path vectorTmp = dir.resolve(PREFIX + generation + VECTOR_SUFFIX + TMP_SUFFIX);
+        Path metaTmp = dir.resolve(PREFIX + generation + META_SUFFIX + TMP_SUFFIX);
+        int[] count = new int[1];
+        int[] dim = {-1};
+        try (FileChannel vectors = FileChannel.open(vectorTmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             OutputStream metaFile = Files.newOutputStream(metaTmp)) {
+            DataOutputStream meta = new DataOutputStream(new BufferedOutputStream(metaFile, WRITE_BUFFER_BYTES));
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            FloatBuffer floats = buffer.asFloatBuffer();
+            vectors.position(HEADER_BYTES);
+            matrix.forEachRow((record, data, offset, rowDim) -> {
+                if (dim[0] < 0) {
+                    dim[0] = rowDim;
+                } else if (dim[0] != rowDim) {
+                    throw new IOException("vector dimension changed while writing the snapshot");
+                }
+                if (floats.remaining() < rowDim) {
+                    flush(vectors, buffer, floats);
+                }
+                if (floats.remaining() < rowDim) {
+                    throw new IOException("vector of " + rowDim + " floats exceeds the write buffer");
+                }
+                floats.put(data, offset, rowDim);
+                ChromaRecordCodec.writeAttributes(meta, record);
+                count[0]++;
+            });
+            flush(vectors, buffer, floats);
+            meta.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(Math.max(dim[0], 0)).putInt(count[0]).putLong(generation);
+            header.position(0);
+            while (header.hasRemaining()) {
+                vectors.write(header, header.position());
+            }
+            vectors.force(true);
+            metaFile.flush();
+        }
+        try (FileChannel metaChannel = FileChannel.open(metaTmp, StandardOpenOption.WRITE)) {
+            metaChannel.force(true);
+        }
+        Files.move(metaTmp, metaFile(dir, generation), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(vectorTmp, vectorFile(dir, generation), StandardCopyOption.ATOMIC_MOVE);
+        fsyncDir(dir);
+        return count[0];
+    }
+
+    /**
+     * Loads the newest complete snapshot into {@code matrix}, mapping the vector file instead of reading it through
+     * a stream.
+     * <p>
+     * An unreadable newest snapshot fails the load: the older snapshots and the log generations it covered were
+     * deleted when it was written, so continuing would silently open an almost empty store, and the next snapshot
+     * would make that loss permanent.
+     *
+     * @return generation of the loaded snapshot, or -1 if there is none
+     * @throws IOException if the newest complete snapshot cannot be read
+     */
+    static long load(Path dir, VectorMatrix matrix) throws IOException {
+        List<Long> generations = generations(dir);
+        if (generations.isEmpty()) {
+            return -1;
+        }
+        long generation = generations.get(generations.size() - 1);
+        try {
+            load(dir, generation, matrix);
+            return generation;
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Snapshot " + generation + " in " + dir + " is unreadable; restore it from a backup"
+                    + " or move the directory away to start empty", e);
+        }
+    }
+
+    private static void load(Path dir, long generation, VectorMatrix matrix) throws IOException {
+        try (FileChannel vectors = FileChannel.open(vectorFile(dir, generation), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && vectors.read(header, header.position()) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("not a snapshot file");
+            }
+            int dim = header.getInt();
+            int count = header.getInt();
+            if (header.getLong() != generation) {
+                throw new IOException("snapshot header does not match its file name");
+            }
+            long vectorBytes = (long) count * dim * Float.BYTES;
+            if (vectors.size() != HEADER_BYTES + vectorBytes) {
+                throw new IOException("snapshot vector file is truncated");
+            }
+            EmbeddingRecord[] stubs = new EmbeddingRecord[count];
+            try (DataInputStream meta = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(metaFile(dir, generation)), WRITE_BUFFER_BYTES))) {
+                for (int row = 0; row < count; row++) {
+                    stubs[row] = ChromaRecordCodec.readAttributes(meta);
+                }
+            }
+            matrix.restore(dim, stubs, (target, offset, length) -> {
+                long rowBytes = (long) dim * Float.BYTES;
+                long rowsPerMap = Math.max(1, MAX_MAP_BYTES / rowBytes);
+                long position = HEADER_BYTES;
+                int written = 0;
+                while (written < length) {
+                    int floats = (int) Math.min(length - written, rowsPerMap * dim);
+                    MappedByteBuffer mapped = vectors.map(FileChannel.MapMode.READ_ONLY, position,
+                            (long) floats * Float.BYTES);
+                    mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(target, offset + written, floats);
+                    written += floats;
+                    position += (long) floats * Float.BYTES;
+                }
+            });
+        }
+    }
+
+    /**
+     * Deletes snapshots older than {@code generation} and leftovers of interrupted writes.
+     */
+    static void deleteOlderThan(Path dir, long generation) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(PREFIX)) {
+                    continue;
+                }
+                if (name.endsWith(TMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                Long fileGeneration = parseGeneration(name);
+                if (fileGeneration != null && fileGeneration < generation) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return generations with both files present, ascending
+     */
+    static List<Long> generations(Path dir) throws IOException {
+        List<Long> result = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return result;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(VECTOR_SUFFIX))
+                    .map(ChromaSnapshot::parseGeneration)
+                    .filter(gen -> gen != null && Files.exists(metaFile(dir, gen)))
+                    .forEach(result::add);
+        }
+        result.sort(Long::compare);
+        return result;
+    }
+
+    static Path vectorFile(Path dir, long generation) {
+        return dir.resolve(PREFIX + generation + VECTOR_SUFFIX);
+    }
+
+    static Path metaFile(Path dir, long generation) {
+        return dir.resolve(PREFIX + generation + META_SUFFIX);
+    }
+
+    private static Long parseGeneration(String name) {
+        int dot = name.indexOf('.', PREFIX.length());
+        if (dot < 0) {
+            return null;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), dot));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, FloatBuffer floats) throws IOException {
+        buffer.limit(floats.position() * Float.BYTES).position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        floats.clear();
+    }
+
+    private static void fsyncDir(Path dir) {
+        try {
+            IOUtils.fsync(dir, true);
+        } catch (IOException e) {
+            // directory fsync is not supported everywhere (e.g. Windows)
+            log.debug("snapshot directory fsync skipped: {}", e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.yuqiangdede.common.chroma;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -8,7 +11,7 @@ import java.util.Map;
  * intentionally mirrors the semantics of the original project so that modules
  * depending on chroma-java can be embedded without an external dependency.
  */
-public interface ChromaStore {
+public interface ChromaStore extends Closeable {
 
     /**
      * Insert or replace the supplied record.
@@ -17,6 +20,18 @@ public interface ChromaStore {
      */
     void upsert(EmbeddingRecord record);
 
+    /**
+     * Insert or replace several records. Implementations may apply them under one lock and make them durable
+     * together; the default upserts them one after another.
+     *
+     * @param records embedding payloads to persist
+     */
+    default void upsertAll(List<EmbeddingRecord> records) {
+        for (EmbeddingRecord record : records) {
+            upsert(record);
+        }
+    }
+
     /**
      * Remove a record by its identifier.
      *
@@ -40,6 +55,22 @@ public interface ChromaStore {
      */
     List<SearchResult> similaritySearch(float[] queryVector, int topK, Map<String, String> filter, double minScore);
 
+    /**
+     * Execute several similarity searches sharing the same filter. Implementations may score all queries in one pass
+     * over the collection; the default runs them one after another.
+     *
+     * @param queryVectors query vectors of the same dimension
+     * @return one ranked result list per query, in query order
+     */
+    default List<List<SearchResult>> similaritySearchBatch(float[][] queryVectors, int topK,
+                                                           Map<String, String> filter, double minScore) {
+        List<List<SearchResult>> results = new ArrayList<>(queryVectors.length);
+        for (float[] queryVector : queryVectors) {
+            results.add(similaritySearch(queryVector, topK, filter, minScore));
+        }
+        return results;
+    }
+
     /**
      * Return records matching the provided metadata filter.
      *
@@ -47,4 +78,11 @@ public interface ChromaStore {
      * @return matching records
      */
     List<EmbeddingRecord> find(Map<String, String> filter);
+
+    /**
+     * Release resources held by the store; purely in-memory stores hold none.
+     */
+    @Override
+    default void close() throws IOException {
+    }
 }
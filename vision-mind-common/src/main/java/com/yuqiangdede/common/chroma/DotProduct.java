@@ -0,0 +1,53 @@
+package com.yuqiangdede.common.chroma;
+
+import com.yuqiangdede.common.util.VectorKernels;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Dot product of a query (or four) against one row of a row-major matrix, plus the two column kernels the product quantizer
+ * needs for its centroid-major codebooks.
+ * <p>
+ * {@link #INSTANCE} uses the {@code jdk.incubator.vector} API when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, and an unrolled scalar loop otherwise (see {@link VectorKernels}).
+ */
+interface DotProduct {
+
+    DotProduct INSTANCE = VectorKernels.select(MethodHandles.lookup(), DotProduct.class,
+            "com.yuqiangdede.common.chroma.PanamaDotProduct", ScalarDotProduct::new, "Vector search");
+
+    /**
+     * @param query  query vector, {@code dim} long
+     * @param matrix row-major matrix
+     * @param offset start of the row in {@code matrix}
+     * @param dim    row length
+     */
+    float dot(float[] query, float[] matrix, int offset, int dim);
+
+    /**
+     * Dot products of four queries against one row, loading the row once.
+     *
+     * @param queries     row-major query matrix
+     * @param queryOffset start of the first of four consecutive queries in {@code queries}
+     * @param out         receives the four scores at {@code outOffset}
+     */
+    void dot4(float[] queries, int queryOffset, float[] matrix, int offset, int dim, float[] out, int outOffset);
+
+    /**
+     * Dot product against a row of signed 8-bit codes; the caller applies the row scale.
+     *
+     * @param codes  row-major code matrix
+     * @param offset start of the row in {@code codes}
+     */
+    float dot(float[] query, byte[] codes, int offset, int dim);
+
+    /**
+     * {@code acc[c] += (x - column[offset + c])^2} for {@code c < length}.
+     */
+    void accumulateSquaredDifference(float x, float[] column, int offset, float[] acc, int length);
+
+    /**
+     * {@code acc[accOffset + c] += x * column[offset + c]} for {@code c < length}.
+     */
+    void accumulateScaled(float x, float[] column, int offset, float[] acc, int accOffset, int length);
+}
@@ -0,0 +1,338 @@
+package com.yuqiangdede.common.chroma;
+
+import com.yuqiangdede.common.vector.WriteAheadLog;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link InMemoryChromaStore} that survives restarts.
+ * <p>
+ * Every upsert, delete and clear is validated, appended to a {@link WriteAheadLog} and only then applied in memory,
+ * so a write that fails to reach the log is never searchable; it is acknowledged once the record is durable (see
+ * {@link WriteAheadLog.Durability}). A timer periodically rolls the log and writes a
+ * compacted snapshot of the live rows (see {@link ChromaSnapshot}), after which older snapshots and log generations
+ * are deleted. On open, the newest snapshot is memory-mapped and copied into the matrix in bulk, and only the log
+ * generations written since that snapshot are replayed.
+ * <p>
+ * The snapshot is taken without blocking writers, so it may already contain some writes of the log tail; replaying
+ * them again is harmless because every operation sets the final state of its id.
+ */
+@Slf4j
+public final class DurableChromaStore implements ChromaStore {
+
+    private static final String WAL_DIR = "wal";
+    private static final Runnable NO_VALIDATION = () -> {
+    };
+
+    private final InMemoryChromaStore delegate;
+    private final VectorMatrix matrix;
+    private final Path dir;
+    private final WriteAheadLog wal;
+    private final ChromaPersistenceConfig config;
+    private final ScheduledExecutorService maintenance;
+
+    /**
+     * Orders log append and in-memory apply, so the log order is the apply order.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Object snapshotLock = new Object();
+    private final AtomicLong opsSinceSnapshot = new AtomicLong();
+    private volatile boolean closed;
+
+    private DurableChromaStore(InMemoryChromaStore delegate, WriteAheadLog wal, ChromaPersistenceConfig config,
+                               long pendingOps) {
+        this.delegate = delegate;
+        this.matrix = delegate.matrix();
+        this.dir = config.getPath();
+        this.wal = wal;
+        this.config = config;
+        this.opsSinceSnapshot.set(pendingOps);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chroma-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        maintenance.scheduleWithFixedDelay(this::snapshotQuietly,
+                config.getSnapshotIntervalMs(), config.getSnapshotIntervalMs(), TimeUnit.MILLISECONDS);
+        if (config.getDurability() == WriteAheadLog.Durability.ASYNC) {
+            maintenance.scheduleWithFixedDelay(this::syncQuietly,
+                    config.getSyncIntervalMs(), config.getSyncIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Opens (or creates) the store under {@code config.getPath()}, loading the newest snapshot and replaying the
+     * write-ahead log written after it.
+     */
+    public static DurableChromaStore open(ChromaPersistenceConfig config) throws IOException {
+        return open(config, new InMemoryChromaStore());
+    }
+
+    /**
+     * As {@link #open(ChromaPersistenceConfig)}, holding the vectors with the given compression; snapshots and the
+     * write-ahead log always keep full-precision vectors, so the codes are rebuilt on every open.
+     */
+    public static DurableChromaStore open(ChromaPersistenceConfig config, QuantizationConfig quantization)
+            throws IOException {
+        return open(config, new InMemoryChromaStore(quantization));
+    }
+
+    static DurableChromaStore open(ChromaPersistenceConfig config, InMemoryChromaStore delegate) throws IOException {
+        if (!config.isEnabled()) {
+            throw new IllegalArgumentException("memory.persist.path is not configured");
+        }
+        Path dir = config.getPath();
+        Path walDir = dir.resolve(WAL_DIR);
+        Files.createDirectories(walDir);
+        long started = System.nanoTime();
+        VectorMatrix matrix = delegate.matrix();
+        long snapshotGeneration = ChromaSnapshot.load(dir, matrix);
+        int loaded = matrix.size();
+        long replayed = WriteAheadLog.replay(walDir, Math.max(snapshotGeneration, 0), entry -> {
+            try {
+                apply(matrix, entry.op(), entry.payload());
+            } catch (IllegalArgumentException e) {
+                // a write validated before logging can still fail to apply (e.g. store full); skip it the same way
+                log.warn("Skipping write-ahead log record {} that cannot be applied: {}",
+                        entry.location().opId(), e.getMessage());
+            }
+        });
+        List<Long> generations = WriteAheadLog.generations(walDir);
+        long nextGeneration = Math.max(Math.max(snapshotGeneration, 1),
+                generations.isEmpty() ? 1 : generations.get(generations.size() - 1) + 1);
+        WriteAheadLog wal = new WriteAheadLog(walDir, nextGeneration);
+        if (snapshotGeneration > 0) {
+            wal.trimBelow(snapshotGeneration);
+        }
+        log.info("In-memory vector store {} opened with {} snapshot rows and {} replayed operations in {} ms",
+                dir, loaded, replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return new DurableChromaStore(delegate, wal, config, replayed);
+    }
+
+    @Override
+    public void upsert(EmbeddingRecord record) {
+        Objects.requireNonNull(record, "record");
+        byte[] payload = ChromaRecordCodec.encode(record);
+        write(ChromaRecordCodec.OP_UPSERT, payload, () -> matrix.validate(List.of(record)), () -> matrix.upsert(record));
+    }
+
+    /**
+     * Applies the records under one lock and, with {@link WriteAheadLog.Durability#REQUEST}, returns after a single
+     * fsync covering all of them.
+     */
+    @Override
+    public void upsertAll(List<EmbeddingRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<byte[]> payloads = new ArrayList<>(records.size());
+        for (EmbeddingRecord record : records) {
+            payloads.add(ChromaRecordCodec.encode(Objects.requireNonNull(record, "record")));
+        }
+        WriteAheadLog.Location location = null;
+        writeLock.lock();
+        try {
+            ensureOpen();
+            // the whole batch is rejected before any of it reaches the log
+            matrix.validate(records);
+            for (byte[] payload : payloads) {
+                location = wal.append(ChromaRecordCodec.OP_UPSERT, payload);
+            }
+            matrix.upsertAll(records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to the write-ahead log", e);
+        } finally {
+            writeLock.unlock();
+        }
+        sync(location);
+        opsSinceSnapshot.addAndGet(records.size());
+    }
+
+    @Override
+    public void delete(String id) {
+        if (id != null) {
+            write(ChromaRecordCodec.OP_DELETE, ChromaRecordCodec.encodeId(id), NO_VALIDATION, () -> matrix.delete(id));
+        }
+    }
+
+    @Override
+    public void clear() {
+        write(ChromaRecordCodec.OP_CLEAR, new byte[0], NO_VALIDATION, matrix::clear);
+    }
+
+    @Override
+    public List<SearchResult> similaritySearch(float[] queryVector, int topK, Map<String, String> filter,
+                                               double minScore) {
+        return delegate.similaritySearch(queryVector, topK, filter, minScore);
+    }
+
+    @Override
+    public List<List<SearchResult>> similaritySearchBatch(float[][] queryVectors, int topK,
+                                                          Map<String, String> filter, double minScore) {
+        return delegate.similaritySearchBatch(queryVectors, topK, filter, minScore);
+    }
+
+    @Override
+    public List<EmbeddingRecord> find(Map<String, String> filter) {
+        return delegate.find(filter);
+    }
+
+    /**
+     * Writes a snapshot of the current content and drops the snapshots and log generations it supersedes.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long generation;
+            long pendingOps;
+            writeLock.lock();
+            try {
+                ensureOpen();
+                // every write logged in an older generation has been applied in memory at this point
+                generation = wal.roll();
+                pendingOps = opsSinceSnapshot.getAndSet(0);
+            } finally {
+                writeLock.unlock();
+            }
+            long started = System.nanoTime();
+            int rows;
+            try {
+                rows = ChromaSnapshot.write(dir, generation, matrix);
+            } catch (IOException | RuntimeException e) {
+                // the log still holds these writes; let the next timer run try again
+                opsSinceSnapshot.addAndGet(pendingOps);
+                throw e;
+            }
+            ChromaSnapshot.deleteOlderThan(dir, generation);
+            wal.trimBelow(generation);
+            log.info("In-memory vector store snapshot {} written with {} rows in {} ms", generation, rows,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    /**
+     * Snapshots if enough writes accumulated since the last snapshot, then closes the write-ahead log.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        stopMaintenance();
+        try {
+            if (opsSinceSnapshot.get() >= config.getSnapshotMinOps()) {
+                snapshot();
+            }
+        } finally {
+            closed = true;
+            try {
+                wal.close();
+            } finally {
+                delegate.close();
+            }
+        }
+    }
+
+    /**
+     * Simulates a crash for tests: stops background work and leaves the files as they are on disk.
+     */
+    void crash() throws IOException {
+        closed = true;
+        maintenance.shutdownNow();
+        try {
+            wal.close();
+        } finally {
+            delegate.close();
+        }
+    }
+
+    /**
+     * @param validate throws for a write that would be rejected (e.g. wrong dimension), so it never reaches the log
+     * @param apply    runs only after the record is in the log
+     */
+    private void write(byte op, byte[] payload, Runnable validate, Runnable apply) {
+        WriteAheadLog.Location location;
+        writeLock.lock();
+        try {
+            ensureOpen();
+            validate.run();
+            location = wal.append(op, payload);
+            apply.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to the write-ahead log", e);
+        } finally {
+            writeLock.unlock();
+        }
+        sync(location);
+        opsSinceSnapshot.incrementAndGet();
+    }
+
+    private void sync(WriteAheadLog.Location location) {
+        try {
+            if (config.getDurability() == WriteAheadLog.Durability.REQUEST) {
+                wal.sync(location);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync the write-ahead log", e);
+        }
+    }
+
+    private static void apply(VectorMatrix matrix, byte op, byte[] payload) throws IOException {
+        switch (op) {
+            case ChromaRecordCodec.OP_UPSERT -> matrix.upsert(ChromaRecordCodec.decode(payload));
+            case ChromaRecordCodec.OP_DELETE -> matrix.delete(ChromaRecordCodec.decodeId(payload));
+            case ChromaRecordCodec.OP_CLEAR -> matrix.clear();
+            default -> throw new IOException("Unknown write-ahead log op " + op);
+        }
+    }
+
+    private void snapshotQuietly() {
+        if (closed || opsSinceSnapshot.get() < config.getSnapshotMinOps()) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("In-memory vector store snapshot failed", e);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            wal.syncAll();
+        } catch (IOException e) {
+            log.warn("In-memory vector store write-ahead log sync failed", e);
+        }
+    }
+
+    /**
+     * Lets a running background snapshot or sync finish: interrupting a thread blocked in file I/O would close the
+     * log channel.
+     */
+    private void stopMaintenance() {
+        maintenance.shutdown();
+        try {
+            maintenance.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("In-memory vector store is closed");
+        }
+    }
+}
@@ -27,6 +27,21 @@ public final class EmbeddingRecord {
         this.timestamp = timestamp;
     }
 
+    private EmbeddingRecord(EmbeddingRecord source, float[] embedding) {
+        this.id = source.id;
+        this.embedding = embedding;
+        this.metadata = source.metadata;
+        this.payload = source.payload;
+        this.timestamp = source.timestamp;
+    }
+
+    /**
+     * Same record with another embedding; the store keeps vectors in its matrix and attaches them on the way out.
+     */
+    EmbeddingRecord withEmbedding(float[] embedding) {
+        return new EmbeddingRecord(this, embedding);
+    }
+
     public String getId() {
         return id;
     }
@@ -0,0 +1,80 @@
+package com.yuqiangdede.common.chroma;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Uncompressed rows in one row-major {@code float[]}; scores are exact dot products.
+ */
+final class HeapVectorRows extends VectorRows {
+
+    private float[] data = new float[0];
+
+    HeapVectorRows(int dim) {
+        super(dim);
+    }
+
+    @Override
+    int maxRows() {
+        return (Integer.MAX_VALUE - 8) / dim;
+    }
+
+    @Override
+    void ensureCapacity(int capacity) {
+        if (capacity * dim > data.length) {
+            data = Arrays.copyOf(data, capacity * dim);
+        }
+    }
+
+    @Override
+    void set(int row, float[] normalized) {
+        System.arraycopy(normalized, 0, data, row * dim, dim);
+    }
+
+    @Override
+    void get(int row, float[] target, int offset) {
+        System.arraycopy(data, row * dim, target, offset, dim);
+    }
+
+    @Override
+    RowScorer scorer(float[] query) {
+        DotProduct dot = DotProduct.INSTANCE;
+        float[] matrix = data;
+        int d = dim;
+        return row -> dot.dot(query, matrix, row * d, d);
+    }
+
+    /**
+     * Scores four queries at a time with {@link DotProduct#dot4}, so each row is loaded once per four queries.
+     */
+    @Override
+    BatchScorer batchScorer(float[][] queries) {
+        DotProduct dot = DotProduct.INSTANCE;
+        float[] matrix = data;
+        int d = dim;
+        float[] packed = new float[queries.length * d];
+        for (int q = 0; q < queries.length; q++) {
+            System.arraycopy(queries[q], 0, packed, q * d, d);
+        }
+        return (row, from, to, out) -> {
+            int offset = row * d;
+            int q = from;
+            for (; q + 4 <= to; q += 4) {
+                dot.dot4(packed, q * d, matrix, offset, d, out, q);
+            }
+            for (; q < to; q++) {
+                out[q] = dot.dot(queries[q], matrix, offset, d);
+            }
+        };
+    }
+
+    @Override
+    float exactScore(float[] query, int row, float[] scratch) {
+        return DotProduct.INSTANCE.dot(query, data, row * dim, dim);
+    }
+
+    @Override
+    void load(int count, VectorMatrix.VectorSource source) throws IOException {
+        source.read(data, 0, count * dim);
+    }
+}
@@ -0,0 +1,190 @@
+package com.yuqiangdede.common.chroma;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate in-memory store backed by an {@link HnswGraph}: a search visits a few hundred vectors instead of the
+ * whole collection, at the price of occasionally missing a true neighbour (see {@link HnswConfig#getEfSearch()}).
+ * <p>
+ * Inserts run concurrently. An upsert of an existing id inserts a new node and soft-deletes the old one; once the
+ * deleted share reaches {@link HnswConfig#getRebuildDeletedRatio()}, the graph is rebuilt from the live nodes in the
+ * background. Searches keep using the old graph during a rebuild, writes wait for it.
+ */
+@Slf4j
+public class HnswChromaStore implements ChromaStore {
+
+    private final HnswConfig config;
+    private final ForkJoinPool pool;
+    private final Map<String, Integer> nodeById = new ConcurrentHashMap<>();
+    /**
+     * Writes hold the read lock, rebuild and clear the write lock.
+     */
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ExecutorService maintenance;
+    private volatile HnswGraph graph;
+
+    public HnswChromaStore() {
+        this(HnswConfig.defaults());
+    }
+
+    public HnswChromaStore(HnswConfig config) {
+        this(config, ForkJoinPool.commonPool());
+    }
+
+    HnswChromaStore(HnswConfig config, ForkJoinPool pool) {
+        this.config = config == null ? HnswConfig.defaults() : config;
+        this.pool = pool;
+        this.graph = newGraph();
+        this.maintenance = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "hnsw-rebuild");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void upsert(EmbeddingRecord record) {
+        Objects.requireNonNull(record, "record");
+        float[] normalized = VectorMatrix.normalize(record.getEmbedding());
+        EmbeddingRecord stub = record.withEmbedding(VectorMatrix.NO_EMBEDDING);
+        rebuildLock.readLock().lock();
+        try {
+            HnswGraph current = graph;
+            int node = current.insert(normalized, stub);
+            Integer previous = nodeById.put(record.getId(), node);
+            if (previous != null) {
+                current.delete(previous);
+            }
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        maybeScheduleRebuild();
+    }
+
+    @Override
+    public void delete(String id) {
+        if (id == null) {
+            return;
+        }
+        rebuildLock.readLock().lock();
+        try {
+            Integer node = nodeById.remove(id);
+            if (node != null) {
+                graph.delete(node);
+            }
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        maybeScheduleRebuild();
+    }
+
+    @Override
+    public void clear() {
+        rebuildLock.writeLock().lock();
+        try {
+            nodeById.clear();
+            graph = newGraph();
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<SearchResult> similaritySearch(float[] queryVector,
+                                               int topK,
+                                               Map<String, String> filter,
+                                               double minScore) {
+        if (topK <= 0 || nodeById.isEmpty()) {
+            return Collections.emptyList();
+        }
+        float[] query = VectorMatrix.normalize(queryVector);
+        return graph.search(query, topK, Math.max(config.getEfSearch(), topK), minScore,
+                InMemoryChromaStore.toPredicate(filter));
+    }
+
+    @Override
+    public List<EmbeddingRecord> find(Map<String, String> filter) {
+        if (nodeById.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return graph.find(InMemoryChromaStore.toPredicate(filter));
+    }
+
+    /**
+     * Rebuilds the graph from the live nodes, dropping the deleted ones.
+     */
+    void rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            HnswGraph old = graph;
+            List<Integer> live = new ArrayList<>(nodeById.size());
+            old.forEachLive(live::add);
+            long started = System.nanoTime();
+            HnswGraph rebuilt = newGraph();
+            Map<String, Integer> rebuiltIds = new ConcurrentHashMap<>();
+            pool.submit(() -> live.parallelStream().forEach(node -> {
+                EmbeddingRecord record = old.record(node);
+                rebuiltIds.put(record.getId(), rebuilt.insert(old.vector(node), record));
+            })).join();
+            nodeById.clear();
+            nodeById.putAll(rebuiltIds);
+            graph = rebuilt;
+            log.info("HNSW graph rebuilt: {} live of {} nodes in {} ms", live.size(), old.nodeCount(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        maintenance.shutdown();
+        try {
+            maintenance.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void maybeScheduleRebuild() {
+        HnswGraph current = graph;
+        int deleted = current.deletedCount();
+        if (deleted < config.getRebuildMinDeleted()
+                || deleted < config.getRebuildDeletedRatio() * current.nodeCount()
+                || !rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            maintenance.execute(() -> {
+                rebuildScheduled.set(false);
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    log.warn("HNSW graph rebuild failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // store is closing
+            rebuildScheduled.set(false);
+        }
+    }
+
+    private HnswGraph newGraph() {
+        return new HnswGraph(config.getM(), config.getEfConstruction());
+    }
+}
@@ -0,0 +1,92 @@
+package com.yuqiangdede.common.chroma;
+
+import java.util.Properties;
+
+/**
+ * Settings of the HNSW vector store: graph degree, build and search beam widths, and when the graph is rebuilt to
+ * drop deleted nodes.
+ */
+public final class HnswConfig {
+
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double rebuildDeletedRatio;
+    private final int rebuildMinDeleted;
+
+    public HnswConfig(int m, int efConstruction, int efSearch, double rebuildDeletedRatio, int rebuildMinDeleted) {
+        this.m = Math.max(2, m);
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.efSearch = Math.max(1, efSearch);
+        this.rebuildDeletedRatio = rebuildDeletedRatio <= 0 ? 0.2 : rebuildDeletedRatio;
+        this.rebuildMinDeleted = Math.max(1, rebuildMinDeleted);
+    }
+
+    public static HnswConfig defaults() {
+        return new HnswConfig(16, 200, 64, 0.2, 1_000);
+    }
+
+    /**
+     * Reads {@code hnsw.*}; missing keys keep the defaults.
+     */
+    public static HnswConfig fromProperties(Properties properties) {
+        HnswConfig d = defaults();
+        return new HnswConfig(
+                (int) getDouble(properties, "hnsw.m", d.m),
+                (int) getDouble(properties, "hnsw.ef-construction", d.efConstruction),
+                (int) getDouble(properties, "hnsw.ef-search", d.efSearch),
+                getDouble(properties, "hnsw.rebuild.deleted-ratio", d.rebuildDeletedRatio),
+                (int) getDouble(properties, "hnsw.rebuild.min-deleted", d.rebuildMinDeleted));
+    }
+
+    /**
+     * Links per node on the upper layers; layer 0 keeps twice as many.
+     */
+    public int getM() {
+        return m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    /**
+     * Candidate list size of a search; a search for more than {@code efSearch} hits uses {@code topK} instead.
+     */
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Share of deleted (or replaced) nodes from which the graph is rebuilt in the background.
+     */
+    public double getRebuildDeletedRatio() {
+        return rebuildDeletedRatio;
+    }
+
+    /**
+     * Deleted nodes required before the ratio is considered, so small collections are not rebuilt constantly.
+     */
+    public int getRebuildMinDeleted() {
+        return rebuildMinDeleted;
+    }
+
+    private static double getDouble(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Double.parseDouble(value.trim());
+    }
+
+    @Override
+    public String toString() {
+        return "HnswConfig{" +
+                "m=" + m +
+                ", efConstruction=" + efConstruction +
+                ", efSearch=" + efSearch +
+                ", rebuildDeletedRatio=" + rebuildDeletedRatio +
+                ", rebuildMinDeleted=" + rebuildMinDeleted +
+                '}';
+    }
+}
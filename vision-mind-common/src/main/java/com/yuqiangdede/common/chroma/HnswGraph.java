@@ -0,0 +1,615 @@
+package com.yuqiangdede.common.chroma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical navigable small world graph over L2-normalised vectors, on primitive arrays.
+ * <p>
+ * Node {@code n} keeps its vector at {@code vectors[n * dim]}, its layer-0 neighbours at
+ * {@code base[n * (2M + 1)]} (count first) and the neighbours of layers {@code 1..level} in {@code upper[n]}.
+ * Inserts run concurrently: each neighbour list is guarded by a striped lock that searches also take while copying
+ * it, and the arrays only grow under the write lock of {@link #growLock}. Deleted nodes stay in the graph so that
+ * searches can still route through them, but are never returned; the owner rebuilds the graph once too many
+ * accumulate.
+ */
+final class HnswGraph {
+
+    private static final int LOCK_STRIPES = 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Object[] stripes = new Object[LOCK_STRIPES];
+    private final ReentrantReadWriteLock growLock = new ReentrantReadWriteLock();
+    private final Object allocationLock = new Object();
+    private final Object entryLock = new Object();
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    // guarded by growLock (arrays replaced under the write lock)
+    private int dim = -1;
+    private float[] vectors = new float[0];
+    private int[] levels = new int[0];
+    private int[] base = new int[0];
+    private int[][] upper = new int[0][];
+    private EmbeddingRecord[] records = new EmbeddingRecord[0];
+
+    // guarded by allocationLock
+    private int nodeCount;
+    private int deletedCount;
+
+    // guarded by entryLock
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswGraph(int m, int efConstruction) {
+        this.m = Math.max(2, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelFactor = 1.0 / Math.log(this.m);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    int dim() {
+        growLock.readLock().lock();
+        try {
+            return dim;
+        } finally {
+            growLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return nodes in the graph, deleted ones included
+     */
+    int nodeCount() {
+        synchronized (allocationLock) {
+            return nodeCount;
+        }
+    }
+
+    int deletedCount() {
+        synchronized (allocationLock) {
+            return deletedCount;
+        }
+    }
+
+    /**
+     * Adds a node; safe to call from several threads at once.
+     *
+     * @param vector L2-normalised vector
+     * @param record record without embedding
+     * @return node id
+     */
+    int insert(float[] vector, EmbeddingRecord record) {
+        int level = randomLevel();
+        int node = allocate(vector.length, level);
+        growLock.readLock().lock();
+        try {
+            System.arraycopy(vector, 0, vectors, node * dim, dim);
+            levels[node] = level;
+            upper[node] = level == 0 ? null : new int[level * (m + 1)];
+            records[node] = record;
+        } finally {
+            growLock.readLock().unlock();
+        }
+
+        int entry;
+        int topLevel;
+        synchronized (entryLock) {
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+            entry = entryPoint;
+            topLevel = maxLevel;
+        }
+
+        growLock.readLock().lock();
+        try {
+            int current = entry;
+            float currentScore = DotProduct.INSTANCE.dot(vector, vectors, current * dim, dim);
+            for (int layer = topLevel; layer > level; layer--) {
+                int[] best = greedy(vector, current, currentScore, layer);
+                current = best[0];
+                currentScore = Float.intBitsToFloat(best[1]);
+            }
+            for (int layer = Math.min(level, topLevel); layer >= 0; layer--) {
+                TopKHeap candidates = searchLayer(vector, current, efConstruction, layer, null);
+                int[] ids = new int[candidates.size()];
+                float[] scores = new float[candidates.size()];
+                int found = candidates.drainDescending(ids, scores);
+                if (found == 0) {
+                    continue;
+                }
+                int maxM = layer == 0 ? maxM0 : m;
+                int selected = selectNeighbours(ids, scores, found, Math.min(m, maxM));
+                synchronized (lock(node)) {
+                    setNeighbours(node, layer, ids, selected);
+                }
+                for (int i = 0; i < selected; i++) {
+                    connect(ids[i], node, scores[i], layer, maxM);
+                }
+                current = ids[0];
+            }
+        } finally {
+            growLock.readLock().unlock();
+        }
+
+        if (level > topLevel) {
+            synchronized (entryLock) {
+                if (level > maxLevel) {
+                    entryPoint = node;
+                    maxLevel = level;
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Marks a node as deleted; it keeps routing searches until the graph is rebuilt.
+     */
+    void delete(int node) {
+        growLock.readLock().lock();
+        try {
+            if (records[node] == null) {
+                return;
+            }
+            records[node] = null;
+        } finally {
+            growLock.readLock().unlock();
+        }
+        synchronized (allocationLock) {
+            deletedCount++;
+        }
+    }
+
+    /**
+     * @param ef     size of the dynamic candidate list, at least {@code k}
+     * @param filter applied to live nodes before they are admitted as hits, {@code null} for none
+     * @return up to {@code k} hits, best first
+     */
+    List<SearchResult> search(float[] query, int k, int ef, double minScore, Predicate<EmbeddingRecord> filter) {
+        int entry;
+        int topLevel;
+        synchronized (entryLock) {
+            entry = entryPoint;
+            topLevel = maxLevel;
+        }
+        if (entry < 0 || k <= 0) {
+            return new ArrayList<>();
+        }
+        growLock.readLock().lock();
+        try {
+            if (query.length != dim) {
+                throw new IllegalArgumentException("Vectors must be of the same length.");
+            }
+            int current = entry;
+            float currentScore = DotProduct.INSTANCE.dot(query, vectors, current * dim, dim);
+            for (int layer = topLevel; layer > 0; layer--) {
+                int[] best = greedy(query, current, currentScore, layer);
+                current = best[0];
+                currentScore = Float.intBitsToFloat(best[1]);
+            }
+            Predicate<EmbeddingRecord> admit = filter == null ? record -> true : filter;
+            TopKHeap hits = searchLayer(query, current, Math.max(ef, k), 0, admit);
+            int[] ids = new int[hits.size()];
+            float[] scores = new float[hits.size()];
+            int found = hits.drainDescending(ids, scores);
+            List<SearchResult> results = new ArrayList<>(Math.min(k, found));
+            for (int i = 0; i < found && results.size() < k; i++) {
+                EmbeddingRecord record = records[ids[i]];
+                if (record != null && scores[i] >= minScore) {
+                    results.add(new SearchResult(materialize(ids[i], record), scores[i]));
+                }
+            }
+            return results;
+        } finally {
+            growLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return live records matching {@code filter}, with their normalised embedding
+     */
+    List<EmbeddingRecord> find(Predicate<EmbeddingRecord> filter) {
+        // read before the read lock: allocation may be waiting for the write lock while holding allocationLock
+        int count = nodeCount();
+        growLock.readLock().lock();
+        try {
+            List<EmbeddingRecord> matches = new ArrayList<>();
+            for (int node = 0; node < count; node++) {
+                EmbeddingRecord record = records[node];
+                if (record != null && (filter == null || filter.test(record))) {
+                    matches.add(materialize(node, record));
+                }
+            }
+            return matches;
+        } finally {
+            growLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits the live nodes, e.g. to copy them into a rebuilt graph.
+     */
+    void forEachLive(IntConsumer consumer) {
+        int count = nodeCount();
+        for (int node = 0; node < count; node++) {
+            if (record(node) != null) {
+                consumer.accept(node);
+            }
+        }
+    }
+
+    EmbeddingRecord record(int node) {
+        growLock.readLock().lock();
+        try {
+            return records[node];
+        } finally {
+            growLock.readLock().unlock();
+        }
+    }
+
+    float[] vector(int node) {
+        growLock.readLock().lock();
+        try {
+            return Arrays.copyOfRange(vectors, node * dim, (node + 1) * dim);
+        } finally {
+            growLock.readLock().unlock();
+        }
+    }
+
+    private EmbeddingRecord materialize(int node, EmbeddingRecord record) {
+        return record.withEmbedding(Arrays.copyOfRange(vectors, node * dim, (node + 1) * dim));
+    }
+
+    /**
+     * Greedy walk on one upper layer.
+     *
+     * @return {@code {node, floatToIntBits(score)}} of the closest node found
+     */
+    private int[] greedy(float[] query, int start, float startScore, int layer) {
+        int current = start;
+        float currentScore = startScore;
+        int[] neighbours = new int[m];
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int count = copyNeighbours(current, layer, neighbours);
+            for (int i = 0; i < count; i++) {
+                int candidate = neighbours[i];
+                float score = DotProduct.INSTANCE.dot(query, vectors, candidate * dim, dim);
+                if (score > currentScore) {
+                    current = candidate;
+                    currentScore = score;
+                    improved = true;
+                }
+            }
+        }
+        return new int[]{current, Float.floatToIntBits(currentScore)};
+    }
+
+    /**
+     * Best-first search of one layer.
+     *
+     * @param admit which nodes may become hits; {@code null} admits deleted nodes too (used while building)
+     */
+    private TopKHeap searchLayer(float[] query, int entry, int ef, int layer, Predicate<EmbeddingRecord> admit) {
+        Visited seen = visited.get();
+        seen.reset(vectors.length / Math.max(1, dim));
+        CandidateQueue candidates = new CandidateQueue(ef * 2);
+        TopKHeap hits = new TopKHeap(ef);
+        int[] neighbours = new int[layer == 0 ? maxM0 : m];
+
+        float entryScore = DotProduct.INSTANCE.dot(query, vectors, entry * dim, dim);
+        seen.mark(entry);
+        candidates.push(entry, entryScore);
+        if (admits(entry, admit)) {
+            hits.offer(entry, entryScore);
+        }
+        while (candidates.size() > 0) {
+            float score = candidates.topScore();
+            if (hits.size() == ef && !hits.accepts(score)) {
+                break;
+            }
+            int current = candidates.pop();
+            int count = copyNeighbours(current, layer, neighbours);
+            for (int i = 0; i < count; i++) {
+                int next = neighbours[i];
+                if (!seen.mark(next)) {
+                    continue;
+                }
+                float nextScore = DotProduct.INSTANCE.dot(query, vectors, next * dim, dim);
+                if (hits.size() < ef || hits.accepts(nextScore)) {
+                    candidates.push(next, nextScore);
+                    if (admits(next, admit)) {
+                        hits.offer(next, nextScore);
+                    }
+                }
+            }
+        }
+        return hits;
+    }
+
+    private boolean admits(int node, Predicate<EmbeddingRecord> admit) {
+        if (admit == null) {
+            return true;
+        }
+        EmbeddingRecord record = records[node];
+        return record != null && admit.test(record);
+    }
+
+    /**
+     * Keeps a candidate only if it is closer to the base node than to every neighbour already kept, which spreads
+     * the links in different directions (the HNSW paper's neighbour-selection heuristic).
+     *
+     * @param ids    candidates, best first; the selection is moved to the front
+     * @param scores similarity of each candidate to the base node
+     * @return number of selected neighbours
+     */
+    private int selectNeighbours(int[] ids, float[] scores, int count, int limit) {
+        if (count <= limit) {
+            return count;
+        }
+        float[] candidate = new float[dim];
+        int selected = 0;
+        for (int i = 0; i < count && selected < limit; i++) {
+            int id = ids[i];
+            System.arraycopy(vectors, id * dim, candidate, 0, dim);
+            boolean keep = true;
+            for (int j = 0; j < selected; j++) {
+                if (DotProduct.INSTANCE.dot(candidate, vectors, ids[j] * dim, dim) > scores[i]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                float score = scores[i];
+                ids[i] = ids[selected];
+                scores[i] = scores[selected];
+                ids[selected] = id;
+                scores[selected] = score;
+                selected++;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Adds {@code node} to the neighbours of {@code target}, pruning the list when it overflows.
+     */
+    private void connect(int target, int node, float score, int layer, int maxM) {
+        synchronized (lock(target)) {
+            int[] links = links(target, layer);
+            int offset = linkOffset(target, layer);
+            int count = links[offset];
+            if (count < maxM) {
+                links[offset + 1 + count] = node;
+                links[offset] = count + 1;
+                return;
+            }
+            float[] targetVector = new float[dim];
+            System.arraycopy(vectors, target * dim, targetVector, 0, dim);
+            int[] ids = new int[count + 1];
+            float[] scores = new float[count + 1];
+            for (int i = 0; i < count; i++) {
+                ids[i] = links[offset + 1 + i];
+                scores[i] = DotProduct.INSTANCE.dot(targetVector, vectors, ids[i] * dim, dim);
+            }
+            ids[count] = node;
+            scores[count] = score;
+            sortDescending(ids, scores);
+            int selected = selectNeighbours(ids, scores, count + 1, maxM);
+            setNeighbours(target, layer, ids, selected);
+        }
+    }
+
+    /**
+     * Caller holds the lock of {@code node}.
+     */
+    private void setNeighbours(int node, int layer, int[] ids, int count) {
+        int[] links = links(node, layer);
+        int offset = linkOffset(node, layer);
+        System.arraycopy(ids, 0, links, offset + 1, count);
+        links[offset] = count;
+    }
+
+    private int copyNeighbours(int node, int layer, int[] target) {
+        synchronized (lock(node)) {
+            int[] links = links(node, layer);
+            if (links == null) {
+                return 0;
+            }
+            int offset = linkOffset(node, layer);
+            int count = links[offset];
+            System.arraycopy(links, offset + 1, target, 0, count);
+            return count;
+        }
+    }
+
+    private int[] links(int node, int layer) {
+        return layer == 0 ? base : upper[node];
+    }
+
+    private int linkOffset(int node, int layer) {
+        return layer == 0 ? node * (maxM0 + 1) : (layer - 1) * (m + 1);
+    }
+
+    private Object lock(int node) {
+        return stripes[node & (LOCK_STRIPES - 1)];
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(r) * levelFactor);
+    }
+
+    private int allocate(int vectorDim, int level) {
+        synchronized (allocationLock) {
+            if (dim < 0) {
+                growLock.writeLock().lock();
+                try {
+                    dim = vectorDim;
+                } finally {
+                    growLock.writeLock().unlock();
+                }
+            } else if (dim != vectorDim) {
+                throw new IllegalArgumentException("Vectors must be of the same length.");
+            }
+            if (nodeCount == levels.length) {
+                grow();
+            }
+            return nodeCount++;
+        }
+    }
+
+    /**
+     * Caller holds {@link #allocationLock} and no read lock.
+     */
+    private void grow() {
+        growLock.writeLock().lock();
+        try {
+            int capacity = Math.max(INITIAL_CAPACITY, levels.length + (levels.length >> 1));
+            if ((long) capacity * dim > Integer.MAX_VALUE - 8 || (long) capacity * (maxM0 + 1) > Integer.MAX_VALUE - 8) {
+                capacity = (int) Math.min((Integer.MAX_VALUE - 8L) / dim, (Integer.MAX_VALUE - 8L) / (maxM0 + 1));
+                if (capacity <= nodeCount) {
+                    throw new IllegalStateException("HNSW graph is full: " + nodeCount + " x " + dim);
+                }
+            }
+            vectors = Arrays.copyOf(vectors, capacity * dim);
+            levels = Arrays.copyOf(levels, capacity);
+            base = Arrays.copyOf(base, capacity * (maxM0 + 1));
+            upper = Arrays.copyOf(upper, capacity);
+            records = Arrays.copyOf(records, capacity);
+        } finally {
+            growLock.writeLock().unlock();
+        }
+    }
+
+    private static void sortDescending(int[] ids, float[] scores) {
+        for (int i = 1; i < ids.length; i++) {
+            int id = ids[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                ids[j + 1] = ids[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * Unbounded max-heap of (node, score) pairs: the candidates still to expand, closest first.
+     */
+    private static final class CandidateQueue {
+
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+
+        CandidateQueue(int capacity) {
+            nodes = new int[Math.max(16, capacity)];
+            scores = new float[nodes.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] >= score) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                int node = nodes[size];
+                float score = scores[size];
+                int i = 0;
+                int half = size >>> 1;
+                while (i < half) {
+                    int child = 2 * i + 1;
+                    if (child + 1 < size && scores[child + 1] > scores[child]) {
+                        child++;
+                    }
+                    if (score >= scores[child]) {
+                        break;
+                    }
+                    nodes[i] = nodes[child];
+                    scores[i] = scores[child];
+                    i = child;
+                }
+                nodes[i] = node;
+                scores[i] = score;
+            }
+            return top;
+        }
+    }
+
+    /**
+     * Per-thread visited set: a stamp per node, so resetting is O(1) instead of clearing a bitmap.
+     */
+    private static final class Visited {
+
+        private int[] stamps = new int[0];
+        private int epoch;
+
+        void reset(int capacity) {
+            if (stamps.length < capacity) {
+                stamps = new int[capacity];
+                epoch = 0;
+            }
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * @return whether the node was not visited yet
+         */
+        boolean mark(int node) {
+            if (stamps[node] == epoch) {
+                return false;
+            }
+            stamps[node] = epoch;
+            return true;
+        }
+    }
+}
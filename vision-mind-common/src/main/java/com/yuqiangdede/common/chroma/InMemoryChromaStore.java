@@ -1,39 +1,80 @@
 package com.yuqiangdede.common.chroma;
 
-import com.yuqiangdede.common.util.VectorUtil;
-
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 
 /**
  * Thread-safe in-memory implementation that mimics chroma-java's collection behaviour.
+ * <p>
+ * Vectors are kept in a contiguous {@link VectorMatrix}; a search is a brute-force dot-product scan with a bounded
+ * top-K heap, split across the common {@link ForkJoinPool} once the collection reaches the parallel threshold.
+ * A {@link QuantizationConfig} keeps the vectors as int8 or PQ codes instead, re-ranking the best candidates exactly.
+ * Metadata filters are resolved against an inverted index before scoring, so only matching rows are scanned.
  */
 public class InMemoryChromaStore implements ChromaStore {
 
-    private final Map<String, EmbeddingRecord> records = new ConcurrentHashMap<>();
+    /**
+     * Collection size from which a search scans row ranges in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 32_768;
+
+    private final VectorMatrix matrix;
+
+    public InMemoryChromaStore() {
+        this(DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param parallelThreshold collection size from which a search is split across cores
+     */
+    public InMemoryChromaStore(int parallelThreshold) {
+        this(parallelThreshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param quantization vector compression, {@link QuantizationConfig#none()} for full-precision rows
+     */
+    public InMemoryChromaStore(QuantizationConfig quantization) {
+        this(DEFAULT_PARALLEL_THRESHOLD, ForkJoinPool.commonPool(), quantization);
+    }
+
+    InMemoryChromaStore(int parallelThreshold, ForkJoinPool pool) {
+        this(parallelThreshold, pool, QuantizationConfig.none());
+    }
+
+    InMemoryChromaStore(int parallelThreshold, ForkJoinPool pool, QuantizationConfig quantization) {
+        this.matrix = new VectorMatrix(parallelThreshold, pool, quantization);
+    }
 
     @Override
     public void upsert(EmbeddingRecord record) {
         Objects.requireNonNull(record, "record");
-        records.put(record.getId(), record);
+        matrix.upsert(record);
+    }
+
+    @Override
+    public void upsertAll(List<EmbeddingRecord> records) {
+        for (EmbeddingRecord record : records) {
+            Objects.requireNonNull(record, "record");
+        }
+        matrix.upsertAll(records);
     }
 
     @Override
     public void delete(String id) {
         if (id != null) {
-            records.remove(id);
+            matrix.delete(id);
         }
     }
 
     @Override
     public void clear() {
-        records.clear();
+        matrix.clear();
     }
 
     @Override
@@ -41,54 +82,49 @@ public class InMemoryChromaStore implements ChromaStore {
                                                int topK,
                                                Map<String, String> filter,
                                                double minScore) {
-        if (records.isEmpty()) {
+        if (matrix.size() == 0) {
             return Collections.emptyList();
         }
-        float[] normalized = VectorUtil.normalizeVector(queryVector);
-        Map<String, String> effectiveFilter = filter == null ? Collections.emptyMap() : filter;
-
-        List<SearchResult> candidates = new ArrayList<>();
-        for (EmbeddingRecord record : records.values()) {
-            if (!matchesFilter(record, effectiveFilter)) {
-                continue;
-            }
-            double similarity = VectorUtil.calculateCosineSimilarity(normalized, record.getEmbedding());
-            if (similarity >= minScore) {
-                candidates.add(new SearchResult(record, similarity));
-            }
-        }
-
-        return candidates.stream()
-                .sorted(Comparator.naturalOrder())
-                .limit(Math.max(topK, 0))
-                .collect(Collectors.toList());
+        return matrix.search(queryVector, topK, minScore, filter);
     }
 
-    private boolean matchesFilter(EmbeddingRecord record, Map<String, String> filter) {
-        if (filter.isEmpty()) {
-            return true;
-        }
-        Map<String, String> metadata = record.getMetadata();
-        for (Map.Entry<String, String> entry : filter.entrySet()) {
-            if (!Objects.equals(metadata.get(entry.getKey()), entry.getValue())) {
-                return false;
-            }
-        }
-        return true;
+    @Override
+    public List<List<SearchResult>> similaritySearchBatch(float[][] queryVectors,
+                                                          int topK,
+                                                          Map<String, String> filter,
+                                                          double minScore) {
+        return matrix.searchBatch(queryVectors, topK, minScore, filter);
     }
 
     @Override
     public List<EmbeddingRecord> find(Map<String, String> filter) {
-        if (records.isEmpty()) {
+        if (matrix.size() == 0) {
             return Collections.emptyList();
         }
-        Map<String, String> effectiveFilter = filter == null ? Collections.emptyMap() : filter;
-        List<EmbeddingRecord> matches = new ArrayList<>();
-        for (EmbeddingRecord record : records.values()) {
-            if (matchesFilter(record, effectiveFilter)) {
-                matches.add(record);
-            }
+        return matrix.find(filter);
+    }
+
+    @Override
+    public void close() throws IOException {
+        matrix.close();
+    }
+
+    VectorMatrix matrix() {
+        return matrix;
+    }
+
+    static Predicate<EmbeddingRecord> toPredicate(Map<String, String> filter) {
+        if (filter == null || filter.isEmpty()) {
+            return null;
         }
-        return matches;
+        return record -> {
+            Map<String, String> metadata = record.getMetadata();
+            for (Map.Entry<String, String> entry : filter.entrySet()) {
+                if (!Objects.equals(metadata.get(entry.getKey()), entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        };
     }
 }
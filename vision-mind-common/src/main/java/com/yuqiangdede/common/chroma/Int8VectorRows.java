@@ -0,0 +1,75 @@
+package com.yuqiangdede.common.chroma;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Scalar-quantized rows: each component becomes a signed byte scaled by the row's largest magnitude, so a row costs
+ * {@code dim + 4} heap bytes instead of {@code 4 x dim}. The query stays in {@code float} (asymmetric distance),
+ * and the exact vectors live in a {@link MappedVectorFile} for re-ranking.
+ */
+final class Int8VectorRows extends VectorRows {
+
+    private final MappedVectorFile raw;
+    private byte[] codes = new byte[0];
+    private float[] scales = new float[0];
+
+    Int8VectorRows(int dim, QuantizationConfig config) {
+        super(dim);
+        this.raw = new MappedVectorFile(config.getRawPath(), dim);
+    }
+
+    @Override
+    int maxRows() {
+        return (Integer.MAX_VALUE - 8) / dim;
+    }
+
+    @Override
+    void ensureCapacity(int capacity) {
+        if (capacity > scales.length) {
+            codes = Arrays.copyOf(codes, capacity * dim);
+            scales = Arrays.copyOf(scales, capacity);
+        }
+        raw.ensureCapacity(capacity);
+    }
+
+    @Override
+    void set(int row, float[] normalized) {
+        raw.write(row, normalized);
+        float max = 0f;
+        for (float v : normalized) {
+            max = Math.max(max, Math.abs(v));
+        }
+        float scale = max / 127f;
+        float inverse = scale == 0f ? 0f : 1f / scale;
+        int offset = row * dim;
+        for (int i = 0; i < dim; i++) {
+            codes[offset + i] = (byte) Math.round(normalized[i] * inverse);
+        }
+        scales[row] = scale;
+    }
+
+    @Override
+    void get(int row, float[] target, int offset) {
+        raw.read(row, target, offset);
+    }
+
+    @Override
+    RowScorer scorer(float[] query) {
+        DotProduct dot = DotProduct.INSTANCE;
+        byte[] rowCodes = codes;
+        float[] rowScales = scales;
+        int d = dim;
+        return row -> rowScales[row] * dot.dot(query, rowCodes, row * d, d);
+    }
+
+    @Override
+    boolean exactScores() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raw.close();
+    }
+}
@@ -0,0 +1,73 @@
+package com.yuqiangdede.common.chroma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Exact vectors of a quantized store, kept off-heap in a memory-mapped scratch file that is deleted on close. The
+ * file is mapped in fixed-size chunks so it can outgrow the 2 GB limit of a single mapping; the page cache keeps the
+ * rows that re-ranking touches and the OS may evict the rest.
+ */
+final class MappedVectorFile implements Closeable {
+
+    private static final long CHUNK_BYTES = 128L << 20;
+
+    private final int dim;
+    private final int rowsPerChunk;
+    private final FileChannel channel;
+    private FloatBuffer[] chunks = new FloatBuffer[0];
+
+    MappedVectorFile(Path dir, int dim) {
+        this.dim = dim;
+        this.rowsPerChunk = (int) Math.max(1, CHUNK_BYTES / (Float.BYTES * (long) dim));
+        try {
+            Files.createDirectories(dir);
+            Path file = Files.createTempFile(dir, "vectors-", ".f32");
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create vector scratch file in " + dir, e);
+        }
+    }
+
+    void ensureCapacity(int rows) {
+        int needed = (int) ((rows + (long) rowsPerChunk - 1) / rowsPerChunk);
+        if (needed <= chunks.length) {
+            return;
+        }
+        FloatBuffer[] grown = Arrays.copyOf(chunks, needed);
+        long chunkBytes = (long) rowsPerChunk * dim * Float.BYTES;
+        try {
+            for (int i = chunks.length; i < needed; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * chunkBytes, chunkBytes)
+                        .order(ByteOrder.nativeOrder())
+                        .asFloatBuffer();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot grow vector scratch file", e);
+        }
+        chunks = grown;
+    }
+
+    void write(int row, float[] vector) {
+        chunks[row / rowsPerChunk].put((row % rowsPerChunk) * dim, vector, 0, dim);
+    }
+
+    void read(int row, float[] target, int offset) {
+        chunks[row / rowsPerChunk].get((row % rowsPerChunk) * dim, target, offset, dim);
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunks = new FloatBuffer[0];
+        channel.close();
+    }
+}
@@ -0,0 +1,86 @@
+package com.yuqiangdede.common.chroma;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted index of the metadata of a {@link VectorMatrix}: {@code key -> value -> rows}. An equality filter becomes
+ * the intersection of a few {@link RowBitmap}s, so a search only scores the rows that can match instead of testing
+ * every high-scoring record's metadata map.
+ * <p>
+ * Only non-null values are indexed. Not thread-safe; {@link VectorMatrix} guards it with its lock.
+ */
+final class MetadataIndex {
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final Map<String, Map<String, RowBitmap>> postings = new HashMap<>();
+
+    void add(int row, Map<String, String> metadata) {
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                postings.computeIfAbsent(entry.getKey(), key -> new HashMap<>())
+                        .computeIfAbsent(entry.getValue(), value -> new RowBitmap())
+                        .add(row);
+            }
+        }
+    }
+
+    void remove(int row, Map<String, String> metadata) {
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                continue;
+            }
+            Map<String, RowBitmap> values = postings.get(entry.getKey());
+            if (values == null) {
+                continue;
+            }
+            RowBitmap rows = values.get(entry.getValue());
+            if (rows == null) {
+                continue;
+            }
+            rows.remove(row);
+            if (rows.isEmpty()) {
+                values.remove(entry.getValue());
+                if (values.isEmpty()) {
+                    postings.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Whether {@link #select} can answer {@code filter}; a {@code null} value (match records without the key) is
+     * left to a metadata predicate.
+     */
+    static boolean supports(Map<String, String> filter) {
+        for (Map.Entry<String, String> entry : filter.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param filter non-empty equality filter accepted by {@link #supports}
+     * @return live rows matching every entry, ascending
+     */
+    int[] select(Map<String, String> filter) {
+        RowBitmap[] bitmaps = new RowBitmap[filter.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : filter.entrySet()) {
+            Map<String, RowBitmap> values = postings.get(entry.getKey());
+            RowBitmap rows = values == null ? null : values.get(entry.getValue());
+            if (rows == null) {
+                return NO_ROWS;
+            }
+            bitmaps[i++] = rows;
+        }
+        return RowBitmap.intersect(bitmaps);
+    }
+}
@@ -0,0 +1,154 @@
+package com.yuqiangdede.common.chroma;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD dot product on the preferred vector width of the CPU. Only instantiated through {@link DotProduct#INSTANCE}
+ * when {@code jdk.incubator.vector} is in the boot layer.
+ */
+final class PanamaDotProduct implements DotProduct {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    /**
+     * Bytes with as many lanes as {@link #SPECIES}, widened to floats in one conversion; {@code null} when that
+     * would be narrower than the smallest vector shape.
+     */
+    private static final VectorSpecies<Byte> CODE_SPECIES = SPECIES.length() * Byte.SIZE < 64 ? null
+            : VectorSpecies.of(byte.class, VectorShape.forBitSize(SPECIES.length() * Byte.SIZE));
+
+    private final DotProduct scalar = new ScalarDotProduct();
+
+    PanamaDotProduct() {
+        if (SPECIES.length() < 4) {
+            throw new UnsupportedOperationException("No SIMD support, preferred species is " + SPECIES);
+        }
+    }
+
+    @Override
+    public float dot(float[] query, float[] matrix, int offset, int dim) {
+        int lanes = SPECIES.length();
+        FloatVector acc0 = FloatVector.zero(SPECIES);
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        int i = 0;
+        int pairBound = dim - 2 * lanes;
+        for (; i <= pairBound; i += 2 * lanes) {
+            acc0 = FloatVector.fromArray(SPECIES, query, i)
+                    .mul(FloatVector.fromArray(SPECIES, matrix, offset + i))
+                    .add(acc0);
+            acc1 = FloatVector.fromArray(SPECIES, query, i + lanes)
+                    .mul(FloatVector.fromArray(SPECIES, matrix, offset + i + lanes))
+                    .add(acc1);
+        }
+        int bound = SPECIES.loopBound(dim);
+        for (; i < bound; i += lanes) {
+            acc0 = FloatVector.fromArray(SPECIES, query, i)
+                    .mul(FloatVector.fromArray(SPECIES, matrix, offset + i))
+                    .add(acc0);
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < dim; i++) {
+            sum += query[i] * matrix[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void dot4(float[] queries, int queryOffset, float[] matrix, int offset, int dim, float[] out,
+                     int outOffset) {
+        int lanes = SPECIES.length();
+        int q0 = queryOffset;
+        int q1 = q0 + dim;
+        int q2 = q1 + dim;
+        int q3 = q2 + dim;
+        FloatVector acc0 = FloatVector.zero(SPECIES);
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        FloatVector acc2 = FloatVector.zero(SPECIES);
+        FloatVector acc3 = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(dim);
+        for (; i < bound; i += lanes) {
+            FloatVector row = FloatVector.fromArray(SPECIES, matrix, offset + i);
+            acc0 = FloatVector.fromArray(SPECIES, queries, q0 + i).fma(row, acc0);
+            acc1 = FloatVector.fromArray(SPECIES, queries, q1 + i).fma(row, acc1);
+            acc2 = FloatVector.fromArray(SPECIES, queries, q2 + i).fma(row, acc2);
+            acc3 = FloatVector.fromArray(SPECIES, queries, q3 + i).fma(row, acc3);
+        }
+        float s0 = acc0.reduceLanes(VectorOperators.ADD);
+        float s1 = acc1.reduceLanes(VectorOperators.ADD);
+        float s2 = acc2.reduceLanes(VectorOperators.ADD);
+        float s3 = acc3.reduceLanes(VectorOperators.ADD);
+        for (; i < dim; i++) {
+            float m = matrix[offset + i];
+            s0 += queries[q0 + i] * m;
+            s1 += queries[q1 + i] * m;
+            s2 += queries[q2 + i] * m;
+            s3 += queries[q3 + i] * m;
+        }
+        out[outOffset] = s0;
+        out[outOffset + 1] = s1;
+        out[outOffset + 2] = s2;
+        out[outOffset + 3] = s3;
+    }
+
+    @Override
+    public float dot(float[] query, byte[] codes, int offset, int dim) {
+        if (CODE_SPECIES == null) {
+            return scalar.dot(query, codes, offset, dim);
+        }
+        int lanes = SPECIES.length();
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(dim);
+        for (; i < bound; i += lanes) {
+            FloatVector row = (FloatVector) ByteVector.fromArray(CODE_SPECIES, codes, offset + i)
+                    .convertShape(VectorOperators.B2F, SPECIES, 0);
+            acc = FloatVector.fromArray(SPECIES, query, i).fma(row, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < dim; i++) {
+            sum += query[i] * codes[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void accumulateSquaredDifference(float x, float[] column, int offset, float[] acc, int length) {
+        int lanes = SPECIES.length();
+        FloatVector xs = FloatVector.broadcast(SPECIES, x);
+        int c = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; c < bound; c += lanes) {
+            FloatVector diff = xs.sub(FloatVector.fromArray(SPECIES, column, offset + c));
+            diff.fma(diff, FloatVector.fromArray(SPECIES, acc, c)).intoArray(acc, c);
+        }
+        for (; c < length; c++) {
+            float diff = x - column[offset + c];
+            acc[c] += diff * diff;
+        }
+    }
+
+    @Override
+    public void accumulateScaled(float x, float[] column, int offset, float[] acc, int accOffset, int length) {
+        int lanes = SPECIES.length();
+        FloatVector xs = FloatVector.broadcast(SPECIES, x);
+        int c = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; c < bound; c += lanes) {
+            FloatVector.fromArray(SPECIES, column, offset + c)
+                    .fma(xs, FloatVector.fromArray(SPECIES, acc, accOffset + c))
+                    .intoArray(acc, accOffset + c);
+        }
+        for (; c < length; c++) {
+            acc[accOffset + c] += x * column[offset + c];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PanamaDotProduct[" + SPECIES + "]";
+    }
+}
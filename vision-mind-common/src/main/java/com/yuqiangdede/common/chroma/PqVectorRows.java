@@ -0,0 +1,122 @@
+package com.yuqiangdede.common.chroma;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product-quantized rows: {@code subspaces} code bytes per row on the heap, exact vectors in a
+ * {@link MappedVectorFile} for re-ranking.
+ * <p>
+ * The codebooks are trained once, on the first {@code pqTrainSize} rows, while the insert that reaches that count
+ * holds the matrix's write lock; until then searches score the exact vectors. They are not retrained as the data
+ * drifts, only when the store is cleared or restored.
+ */
+@Slf4j
+final class PqVectorRows extends VectorRows {
+
+    private final MappedVectorFile raw;
+    private final int subspaces;
+    private final int trainSize;
+    private final ForkJoinPool pool;
+    private ProductQuantizer quantizer;
+    private byte[] codes = new byte[0];
+    private int capacity;
+    /**
+     * One past the highest row written so far.
+     */
+    private int rowLimit;
+
+    PqVectorRows(int dim, QuantizationConfig config, ForkJoinPool pool) {
+        super(dim);
+        this.raw = new MappedVectorFile(config.getRawPath(), dim);
+        this.subspaces = Math.min(config.getPqSubspaces(), dim);
+        this.trainSize = config.getPqTrainSize();
+        this.pool = pool;
+    }
+
+    @Override
+    int maxRows() {
+        return (Integer.MAX_VALUE - 8) / subspaces;
+    }
+
+    @Override
+    void ensureCapacity(int capacity) {
+        if (capacity > this.capacity) {
+            if (quantizer != null) {
+                codes = Arrays.copyOf(codes, capacity * subspaces);
+            }
+            this.capacity = capacity;
+        }
+        raw.ensureCapacity(capacity);
+    }
+
+    @Override
+    void set(int row, float[] normalized) {
+        raw.write(row, normalized);
+        rowLimit = Math.max(rowLimit, row + 1);
+        if (quantizer != null) {
+            quantizer.encode(normalized, codes, row * subspaces);
+        } else if (rowLimit >= trainSize) {
+            train();
+        }
+    }
+
+    @Override
+    void get(int row, float[] target, int offset) {
+        raw.read(row, target, offset);
+    }
+
+    @Override
+    RowScorer scorer(float[] query) {
+        if (quantizer == null) {
+            ThreadLocal<float[]> scratch = ThreadLocal.withInitial(() -> new float[dim]);
+            return row -> exactScore(query, row, scratch.get());
+        }
+        float[] table = quantizer.table(query);
+        byte[] rowCodes = codes;
+        int m = subspaces;
+        return row -> {
+            int offset = row * m;
+            float s = 0f;
+            for (int j = 0; j < m; j++) {
+                s += table[(j << 8) | (rowCodes[offset + j] & 0xff)];
+            }
+            return s;
+        };
+    }
+
+    @Override
+    boolean exactScores() {
+        return quantizer == null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raw.close();
+    }
+
+    private void train() {
+        long started = System.nanoTime();
+        int count = rowLimit;
+        float[] samples = new float[count * dim];
+        for (int row = 0; row < count; row++) {
+            raw.read(row, samples, row * dim);
+        }
+        ProductQuantizer trained = ProductQuantizer.train(samples, count, dim, subspaces, pool);
+        byte[] encoded = new byte[capacity * subspaces];
+        float[] vector = new float[dim];
+        for (int row = 0; row < count; row++) {
+            System.arraycopy(samples, row * dim, vector, 0, dim);
+            trained.encode(vector, encoded, row * subspaces);
+        }
+        codes = encoded;
+        quantizer = trained;
+        log.info("Trained product quantizer ({} x {} centroids, {} dims) on {} rows in {} ms",
+                subspaces, ProductQuantizer.CENTROIDS, dim, count,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+}
@@ -0,0 +1,177 @@
+package com.yuqiangdede.common.chroma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Product quantizer: the vector is cut into {@code subspaces} contiguous slices and each slice is replaced by the
+ * index of its nearest centroid in a per-subspace codebook of up to 256 entries, learned with k-means.
+ * <p>
+ * Scoring is asymmetric: the query is not quantized, instead {@link #table} precomputes its dot product with every
+ * centroid, and the approximate score of a row is the sum of one table entry per subspace.
+ */
+final class ProductQuantizer {
+
+    static final int CENTROIDS = 256;
+
+    private static final int ITERATIONS = 10;
+
+    private final int subspaces;
+    /**
+     * Start of each subspace, plus {@code dim} at the end.
+     */
+    private final int[] bounds;
+    /**
+     * Per subspace, {@code sliceLength x centroids} floats: component {@code i} of every centroid is contiguous, so
+     * the distance and table loops run over centroids and vectorise.
+     */
+    private final float[][] codebooks;
+    private final int centroids;
+
+    private ProductQuantizer(int[] bounds, float[][] codebooks, int centroids) {
+        this.subspaces = bounds.length - 1;
+        this.bounds = bounds;
+        this.codebooks = codebooks;
+        this.centroids = centroids;
+    }
+
+    /**
+     * Learns the codebooks, one subspace per task on {@code pool}.
+     *
+     * @param samples row-major training vectors
+     * @param count   number of rows in {@code samples}
+     */
+    static ProductQuantizer train(float[] samples, int count, int dim, int subspaces, ForkJoinPool pool) {
+        int m = Math.max(1, Math.min(subspaces, dim));
+        int[] bounds = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            bounds[j] = (int) ((long) j * dim / m);
+        }
+        int k = Math.min(CENTROIDS, count);
+        float[][] codebooks = new float[m][];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(m);
+        for (int j = 0; j < m; j++) {
+            int subspace = j;
+            tasks.add(pool.submit(() -> {
+                codebooks[subspace] = kMeans(samples, count, dim, bounds[subspace], bounds[subspace + 1], k,
+                        new Random(31L * subspace + 7));
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        return new ProductQuantizer(bounds, codebooks, k);
+    }
+
+    void encode(float[] vector, byte[] codes, int offset) {
+        float[] distances = new float[centroids];
+        for (int j = 0; j < subspaces; j++) {
+            codes[offset + j] = (byte) nearest(codebooks[j], centroids, vector, bounds[j], bounds[j + 1] - bounds[j],
+                    distances);
+        }
+    }
+
+    /**
+     * @return {@code subspaces x 256} dot products of the query slices with the centroids
+     */
+    float[] table(float[] query) {
+        float[] table = new float[subspaces * CENTROIDS];
+        DotProduct dot = DotProduct.INSTANCE;
+        for (int j = 0; j < subspaces; j++) {
+            int from = bounds[j];
+            int len = bounds[j + 1] - from;
+            float[] codebook = codebooks[j];
+            for (int i = 0; i < len; i++) {
+                dot.accumulateScaled(query[from + i], codebook, i * centroids, table, j * CENTROIDS, centroids);
+            }
+        }
+        return table;
+    }
+
+    private static float[] kMeans(float[] samples, int count, int dim, int from, int to, int k, Random random) {
+        int len = to - from;
+        float[] points = new float[count * len];
+        for (int r = 0; r < count; r++) {
+            System.arraycopy(samples, r * dim + from, points, r * len, len);
+        }
+        float[] centroids = new float[len * k];
+        int[] order = shuffled(count, random);
+        for (int c = 0; c < k; c++) {
+            setCentroid(centroids, k, c, points, order[c] * len, len);
+        }
+        int[] assignment = new int[count];
+        double[] sums = new double[k * len];
+        int[] sizes = new int[k];
+        float[] distances = new float[k];
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            for (int r = 0; r < count; r++) {
+                assignment[r] = nearest(centroids, k, points, r * len, len, distances);
+            }
+            Arrays.fill(sums, 0);
+            Arrays.fill(sizes, 0);
+            for (int r = 0; r < count; r++) {
+                int c = assignment[r];
+                sizes[c]++;
+                for (int i = 0; i < len; i++) {
+                    sums[c * len + i] += points[r * len + i];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (sizes[c] == 0) {
+                    // empty cluster: restart it on a random point
+                    setCentroid(centroids, k, c, points, random.nextInt(count) * len, len);
+                    continue;
+                }
+                for (int i = 0; i < len; i++) {
+                    centroids[i * k + c] = (float) (sums[c * len + i] / sizes[c]);
+                }
+            }
+        }
+        return centroids;
+    }
+
+    private static void setCentroid(float[] centroids, int k, int c, float[] points, int offset, int len) {
+        for (int i = 0; i < len; i++) {
+            centroids[i * k + c] = points[offset + i];
+        }
+    }
+
+    /**
+     * @param distances {@code k} floats of scratch space
+     * @return index of the centroid closest (L2) to {@code len} floats of {@code vector} at {@code offset}
+     */
+    private static int nearest(float[] centroids, int k, float[] vector, int offset, int len, float[] distances) {
+        Arrays.fill(distances, 0, k, 0f);
+        DotProduct dot = DotProduct.INSTANCE;
+        for (int i = 0; i < len; i++) {
+            dot.accumulateSquaredDifference(vector[offset + i], centroids, i * k, distances, k);
+        }
+        int best = 0;
+        float bestDistance = distances[0];
+        for (int c = 1; c < k; c++) {
+            if (distances[c] < bestDistance) {
+                bestDistance = distances[c];
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static int[] shuffled(int count, Random random) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,113 @@
+package com.yuqiangdede.common.chroma;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Vector compression of the in-memory store. With {@link Mode#INT8} or {@link Mode#PQ} only the compact codes stay on
+ * the heap; the exact normalised vectors move to a memory-mapped scratch file, read back only to re-rank the best
+ * {@code topK x rerankFactor} candidates of the compressed scan and to return records.
+ */
+public final class QuantizationConfig {
+
+    public enum Mode {
+        /**
+         * Full {@code float} rows on the heap, exact scores.
+         */
+        NONE,
+        /**
+         * One signed byte per dimension plus a per-row scale, about 4x smaller than {@code float}.
+         */
+        INT8,
+        /**
+         * Product quantization: one byte per subspace, e.g. 64 bytes for a 512-d vector with 64 subspaces.
+         */
+        PQ
+    }
+
+    private final Mode mode;
+    private final int rerankFactor;
+    private final int pqSubspaces;
+    private final int pqTrainSize;
+    private final Path rawPath;
+
+    /**
+     * @param rawPath directory of the memory-mapped exact vectors, {@code null} for {@code java.io.tmpdir}
+     */
+    public QuantizationConfig(Mode mode, int rerankFactor, int pqSubspaces, int pqTrainSize, Path rawPath) {
+        this.mode = mode == null ? Mode.NONE : mode;
+        this.rerankFactor = Math.max(1, rerankFactor);
+        this.pqSubspaces = Math.max(1, pqSubspaces);
+        this.pqTrainSize = Math.max(256, pqTrainSize);
+        this.rawPath = rawPath;
+    }
+
+    public static QuantizationConfig none() {
+        return new QuantizationConfig(Mode.NONE, 8, 64, 10_000, null);
+    }
+
+    /**
+     * Reads {@code memory.quantization*} and {@code memory.pq.*}; missing keys keep the defaults.
+     */
+    public static QuantizationConfig fromProperties(Properties properties) {
+        QuantizationConfig d = none();
+        String mode = properties.getProperty("memory.quantization");
+        String rawPath = properties.getProperty("memory.quantization.raw-path");
+        return new QuantizationConfig(
+                mode == null || mode.isBlank() ? d.mode : Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT)),
+                getInt(properties, "memory.quantization.rerank-factor", d.rerankFactor),
+                getInt(properties, "memory.pq.subspaces", d.pqSubspaces),
+                getInt(properties, "memory.pq.train-size", d.pqTrainSize),
+                rawPath == null || rawPath.isBlank() ? null : Paths.get(rawPath.trim()));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Candidates re-scored exactly per requested hit.
+     */
+    public int getRerankFactor() {
+        return rerankFactor;
+    }
+
+    /**
+     * Subspaces (code bytes per vector) of {@link Mode#PQ}.
+     */
+    public int getPqSubspaces() {
+        return pqSubspaces;
+    }
+
+    /**
+     * Rows collected before the PQ codebooks are trained; until then searches score the exact vectors.
+     */
+    public int getPqTrainSize() {
+        return pqTrainSize;
+    }
+
+    public Path getRawPath() {
+        return rawPath == null ? Paths.get(System.getProperty("java.io.tmpdir")) : rawPath;
+    }
+
+    private static int getInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value.trim());
+    }
+
+    @Override
+    public String toString() {
+        return "QuantizationConfig{" +
+                "mode=" + mode +
+                ", rerankFactor=" + rerankFactor +
+                ", pqSubspaces=" + pqSubspaces +
+                ", pqTrainSize=" + pqTrainSize +
+                ", rawPath=" + rawPath +
+                '}';
+    }
+}
@@ -0,0 +1,252 @@
+package com.yuqiangdede.common.chroma;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of matrix rows in the layout of a Roaring bitmap: rows are bucketed by their high 16 bits, each
+ * bucket holding its low 16 bits either as a sorted {@code char[]} (sparse) or as a 65536-bit {@code long[]}
+ * (dense). A set of one row, the common case for id-like metadata, is stored inline without any bucket.
+ * <p>
+ * Not thread-safe; {@link VectorMatrix} guards it with its lock.
+ */
+final class RowBitmap {
+
+    /**
+     * Entries from which a sparse bucket turns into a bitmap (8 KB either way).
+     */
+    private static final int ARRAY_LIMIT = 4096;
+    /**
+     * Entries below which a bitmap bucket turns back into an array, kept apart from {@link #ARRAY_LIMIT} so a bucket
+     * hovering at the limit does not convert on every write.
+     */
+    private static final int BITMAP_MIN = 2048;
+    private static final int BITMAP_WORDS = 1024;
+
+    private Bucket[] buckets;
+    private int single = -1;
+    private int cardinality;
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    void add(int row) {
+        if (buckets == null) {
+            if (cardinality == 0) {
+                single = row;
+                cardinality = 1;
+                return;
+            }
+            if (single == row) {
+                return;
+            }
+            buckets = new Bucket[0];
+            int previous = single;
+            single = -1;
+            cardinality = 0;
+            add(previous);
+        }
+        int high = row >>> 16;
+        if (high >= buckets.length) {
+            buckets = Arrays.copyOf(buckets, high + 1);
+        }
+        Bucket bucket = buckets[high];
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets[high] = bucket;
+        }
+        if (bucket.add((char) row)) {
+            cardinality++;
+        }
+    }
+
+    void remove(int row) {
+        if (buckets == null) {
+            if (cardinality == 1 && single == row) {
+                single = -1;
+                cardinality = 0;
+            }
+            return;
+        }
+        int high = row >>> 16;
+        if (high >= buckets.length || buckets[high] == null) {
+            return;
+        }
+        Bucket bucket = buckets[high];
+        if (bucket.remove((char) row)) {
+            cardinality--;
+            if (bucket.size == 0) {
+                buckets[high] = null;
+            }
+        }
+    }
+
+    boolean contains(int row) {
+        if (buckets == null) {
+            return cardinality == 1 && single == row;
+        }
+        int high = row >>> 16;
+        return high < buckets.length && buckets[high] != null && buckets[high].contains((char) row);
+    }
+
+    /**
+     * Rows present in every bitmap, ascending. The smallest bitmap is walked and the others are probed, so the cost
+     * follows the most selective posting rather than the collection size.
+     */
+    static int[] intersect(RowBitmap[] bitmaps) {
+        RowBitmap smallest = bitmaps[0];
+        for (RowBitmap bitmap : bitmaps) {
+            if (bitmap.cardinality < smallest.cardinality) {
+                smallest = bitmap;
+            }
+        }
+        int[] rows = smallest.toArray();
+        if (bitmaps.length == 1) {
+            return rows;
+        }
+        int n = 0;
+        for (int row : rows) {
+            boolean all = true;
+            for (RowBitmap bitmap : bitmaps) {
+                if (bitmap != smallest && !bitmap.contains(row)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                rows[n++] = row;
+            }
+        }
+        return n == rows.length ? rows : Arrays.copyOf(rows, n);
+    }
+
+    /**
+     * @return the rows in ascending order
+     */
+    int[] toArray() {
+        int[] rows = new int[cardinality];
+        if (buckets == null) {
+            if (cardinality == 1) {
+                rows[0] = single;
+            }
+            return rows;
+        }
+        int n = 0;
+        for (int high = 0; high < buckets.length; high++) {
+            Bucket bucket = buckets[high];
+            if (bucket != null) {
+                n = bucket.appendTo(rows, n, high << 16);
+            }
+        }
+        return rows;
+    }
+
+    private static final class Bucket {
+
+        /**
+         * Sorted low bits while sparse, {@code null} once the bucket is a bitmap.
+         */
+        private char[] array = new char[4];
+        private long[] bits;
+        private int size;
+
+        boolean add(char low) {
+            if (bits != null) {
+                long mask = 1L << low;
+                int word = low >>> 6;
+                if ((bits[word] & mask) != 0) {
+                    return false;
+                }
+                bits[word] |= mask;
+                size++;
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, size, low);
+            if (index >= 0) {
+                return false;
+            }
+            if (size == ARRAY_LIMIT) {
+                toBitmap();
+                return add(low);
+            }
+            index = -index - 1;
+            if (size == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, size * 2));
+            }
+            System.arraycopy(array, index, array, index + 1, size - index);
+            array[index] = low;
+            size++;
+            return true;
+        }
+
+        boolean remove(char low) {
+            if (bits != null) {
+                long mask = 1L << low;
+                int word = low >>> 6;
+                if ((bits[word] & mask) == 0) {
+                    return false;
+                }
+                bits[word] &= ~mask;
+                size--;
+                if (size < BITMAP_MIN) {
+                    toSparse();
+                }
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, size, low);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(array, index + 1, array, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(char low) {
+            if (bits != null) {
+                return (bits[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, size, low) >= 0;
+        }
+
+        int appendTo(int[] rows, int n, int base) {
+            if (bits == null) {
+                for (int i = 0; i < size; i++) {
+                    rows[n++] = base | array[i];
+                }
+                return n;
+            }
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                long w = bits[word];
+                while (w != 0) {
+                    rows[n++] = base | (word << 6) | Long.numberOfTrailingZeros(w);
+                    w &= w - 1;
+                }
+            }
+            return n;
+        }
+
+        private void toBitmap() {
+            bits = new long[BITMAP_WORDS];
+            for (int i = 0; i < size; i++) {
+                bits[array[i] >>> 6] |= 1L << array[i];
+            }
+            array = null;
+        }
+
+        private void toSparse() {
+            char[] sparse = new char[ARRAY_LIMIT];
+            int[] rows = new int[size];
+            appendTo(rows, 0, 0);
+            for (int i = 0; i < size; i++) {
+                sparse[i] = (char) rows[i];
+            }
+            array = sparse;
+            bits = null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.yuqiangdede.common.chroma;
+
+/**
+ * Scalar dot product with four independent accumulators so the adds do not serialise on one register.
+ */
+final class ScalarDotProduct implements DotProduct {
+
+    @Override
+    public float dot(float[] query, float[] matrix, int offset, int dim) {
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        int bound = dim & ~3;
+        for (; i < bound; i += 4) {
+            s0 += query[i] * matrix[offset + i];
+            s1 += query[i + 1] * matrix[offset + i + 1];
+            s2 += query[i + 2] * matrix[offset + i + 2];
+            s3 += query[i + 3] * matrix[offset + i + 3];
+        }
+        for (; i < dim; i++) {
+            s0 += query[i] * matrix[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public void dot4(float[] queries, int queryOffset, float[] matrix, int offset, int dim, float[] out,
+                     int outOffset) {
+        int q0 = queryOffset;
+        int q1 = q0 + dim;
+        int q2 = q1 + dim;
+        int q3 = q2 + dim;
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        for (int i = 0; i < dim; i++) {
+            float m = matrix[offset + i];
+            s0 += queries[q0 + i] * m;
+            s1 += queries[q1 + i] * m;
+            s2 += queries[q2 + i] * m;
+            s3 += queries[q3 + i] * m;
+        }
+        out[outOffset] = s0;
+        out[outOffset + 1] = s1;
+        out[outOffset + 2] = s2;
+        out[outOffset + 3] = s3;
+    }
+
+    @Override
+    public float dot(float[] query, byte[] codes, int offset, int dim) {
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        int bound = dim & ~3;
+        for (; i < bound; i += 4) {
+            s0 += query[i] * codes[offset + i];
+            s1 += query[i + 1] * codes[offset + i + 1];
+            s2 += query[i + 2] * codes[offset + i + 2];
+            s3 += query[i + 3] * codes[offset + i + 3];
+        }
+        for (; i < dim; i++) {
+            s0 += query[i] * codes[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public void accumulateSquaredDifference(float x, float[] column, int offset, float[] acc, int length) {
+        for (int c = 0; c < length; c++) {
+            float diff = x - column[offset + c];
+            acc[c] += diff * diff;
+        }
+    }
+
+    @Override
+    public void accumulateScaled(float x, float[] column, int offset, float[] acc, int accOffset, int length) {
+        for (int c = 0; c < length; c++) {
+            acc[accOffset + c] += x * column[offset + c];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ScalarDotProduct";
+    }
+}
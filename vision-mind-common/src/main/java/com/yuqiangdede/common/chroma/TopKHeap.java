@@ -0,0 +1,105 @@
+package com.yuqiangdede.common.chroma;
+
+/**
+ * Bounded min-heap of (row, score) pairs on primitive arrays; the root is the weakest hit kept so far.
+ */
+final class TopKHeap {
+
+    private final int capacity;
+    private final int[] rows;
+    private final float[] scores;
+    private int size;
+
+    TopKHeap(int capacity) {
+        this.capacity = capacity;
+        this.rows = new int[capacity];
+        this.scores = new float[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return whether a hit with this score would be kept
+     */
+    boolean accepts(float score) {
+        return size < capacity || score > scores[0];
+    }
+
+    void offer(int row, float score) {
+        if (size < capacity) {
+            int i = size++;
+            rows[i] = row;
+            scores[i] = score;
+            siftUp(i);
+        } else if (score > scores[0]) {
+            rows[0] = row;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    void addAll(TopKHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.rows[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * Empties the heap into the arrays, best hit first.
+     *
+     * @return number of hits written
+     */
+    int drainDescending(int[] rowsOut, float[] scoresOut) {
+        int n = size;
+        for (int i = n - 1; i >= 0; i--) {
+            rowsOut[i] = rows[0];
+            scoresOut[i] = scores[0];
+            size--;
+            if (size > 0) {
+                rows[0] = rows[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return n;
+    }
+
+    private void siftUp(int i) {
+        int row = rows[i];
+        float score = scores[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            rows[i] = rows[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        rows[i] = row;
+        scores[i] = score;
+    }
+
+    private void siftDown(int i) {
+        int row = rows[i];
+        float score = scores[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && scores[right] < scores[child]) {
+                child = right;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            rows[i] = rows[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        rows[i] = row;
+        scores[i] = score;
+    }
+}
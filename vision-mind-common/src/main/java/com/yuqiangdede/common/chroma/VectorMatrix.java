@@ -0,0 +1,691 @@
+package com.yuqiangdede.common.chroma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Brute-force vector storage: every vector of the collection lives L2-normalised in one row-major {@code float[]},
+ * so cosine similarity is a single dot product over contiguous memory.
+ * <p>
+ * With a {@link QuantizationConfig} other than {@link QuantizationConfig.Mode#NONE} the rows are held as compact
+ * codes instead ({@link VectorRows}); the scan then ranks by the approximate score and re-scores the best
+ * {@code topK x rerankFactor} candidates with their exact vectors before {@code minScore} is applied.
+ * <p>
+ * Rows are addressed through an id-to-row map. A deleted row is tombstoned (its record slot is cleared) and reused
+ * by the next insert, so the matrix never has to be compacted. Records are kept without their embedding, the matrix
+ * row is the only copy; returned records carry a copy of the normalised row. Searches keep a bounded top-K min-heap instead of
+ * sorting every candidate, and large collections are scanned in row ranges on a {@link ForkJoinPool}.
+ * <p>
+ * Metadata is indexed in a {@link MetadataIndex}; a filtered search first intersects the postings of the filter and
+ * then scores only those rows, so a selective filter costs in proportion to its matches and still returns a full
+ * top K.
+ */
+final class VectorMatrix implements Closeable {
+
+    static final float[] NO_EMBEDDING = new float[0];
+
+    private static final int INITIAL_ROWS = 16;
+    private static final int SNAPSHOT_CHUNK_ROWS = 4096;
+    /**
+     * Rows scored against every query group of a batch before moving on: 128 KB of 512-d floats, within L2.
+     */
+    private static final int BLOCK_ROWS = 64;
+    /**
+     * Queries scored together against one row: 16 KB of 512-d queries, within L1 next to the row.
+     */
+    private static final int BLOCK_QUERIES = 8;
+
+    /**
+     * Receives the live rows of a snapshot.
+     */
+    @FunctionalInterface
+    interface RowSink {
+        /**
+         * @param record record without embedding
+         * @param matrix row-major matrix holding the normalised vector at {@code offset}
+         */
+        void accept(EmbeddingRecord record, float[] matrix, int offset, int dim) throws IOException;
+    }
+
+    /**
+     * Fills {@code length} floats of {@code target} starting at {@code offset}.
+     */
+    @FunctionalInterface
+    interface VectorSource {
+        void read(float[] target, int offset, int length) throws IOException;
+    }
+
+    private final int parallelThreshold;
+    private final ForkJoinPool pool;
+    private final QuantizationConfig quantization;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> rowById = new HashMap<>();
+    private final MetadataIndex metadata = new MetadataIndex();
+    private int dim = -1;
+    /**
+     * Vector storage, created with the first row once the dimension is known.
+     */
+    private VectorRows rows;
+    /**
+     * Record of each row without its embedding; {@code null} marks a tombstone.
+     */
+    private EmbeddingRecord[] records = new EmbeddingRecord[0];
+    private int rowCount;
+    private int[] freeRows = new int[0];
+    private int freeCount;
+
+    /**
+     * @param parallelThreshold live row count from which a search is split across {@code pool}
+     */
+    VectorMatrix(int parallelThreshold, ForkJoinPool pool) {
+        this(parallelThreshold, pool, QuantizationConfig.none());
+    }
+
+    VectorMatrix(int parallelThreshold, ForkJoinPool pool, QuantizationConfig quantization) {
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+        this.pool = pool;
+        this.quantization = quantization;
+    }
+
+    int dim() {
+        lock.readLock().lock();
+        try {
+            return dim;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return rowById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void upsert(EmbeddingRecord record) {
+        float[] normalized = normalize(record.getEmbedding());
+        lock.writeLock().lock();
+        try {
+            if (dim < 0) {
+                dim = normalized.length;
+                rows = VectorRows.create(quantization, dim, pool);
+            } else if (dim != normalized.length) {
+                throw new IllegalArgumentException("Vectors must be of the same length.");
+            }
+            put(record, normalized);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Upserts {@code batch} under one write lock. The dimensions are checked before anything is applied, so a
+     * rejected batch leaves the matrix unchanged.
+     */
+    void upsertAll(List<EmbeddingRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        float[][] normalized = new float[batch.size()][];
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] = normalize(batch.get(i).getEmbedding());
+            if (normalized[i].length != normalized[0].length) {
+                throw new IllegalArgumentException("Vectors must be of the same length.");
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (dim < 0) {
+                dim = normalized[0].length;
+                rows = VectorRows.create(quantization, dim, pool);
+            } else if (dim != normalized[0].length) {
+                throw new IllegalArgumentException("Vectors must be of the same length.");
+            }
+            for (int i = 0; i < normalized.length; i++) {
+                put(batch.get(i), normalized[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Throws what {@link #upsertAll} would throw for {@code batch} without changing the matrix, so a write can be
+     * logged before it is applied. The caller keeps other writers out until the batch is applied.
+     */
+    void validate(List<EmbeddingRecord> batch) {
+        int expected;
+        lock.readLock().lock();
+        try {
+            expected = dim;
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (EmbeddingRecord record : batch) {
+            float[] embedding = Objects.requireNonNull(record, "record").getEmbedding();
+            if (expected < 0) {
+                expected = embedding.length;
+            } else if (embedding.length != expected) {
+                throw new IllegalArgumentException("Vectors must be of the same length.");
+            }
+            if (squaredNorm(embedding) == 0) {
+                throw new IllegalArgumentException("Vector norm cannot be 0.");
+            }
+        }
+    }
+
+    private void put(EmbeddingRecord record, float[] normalized) {
+        Integer existing = rowById.get(record.getId());
+        int row;
+        if (existing != null) {
+            row = existing;
+            metadata.remove(row, records[row].getMetadata());
+        } else {
+            row = allocateRow();
+        }
+        rows.set(row, normalized);
+        records[row] = record.withEmbedding(NO_EMBEDDING);
+        metadata.add(row, record.getMetadata());
+        rowById.put(record.getId(), row);
+    }
+
+    void delete(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowById.remove(id);
+            if (row != null) {
+                metadata.remove(row, records[row].getMetadata());
+                releaseRow(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            rowById.clear();
+            metadata.clear();
+            dim = -1;
+            closeRows();
+            records = new EmbeddingRecord[0];
+            rowCount = 0;
+            freeRows = new int[0];
+            freeCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param filter metadata equality filter, {@code null} or empty for none
+     * @return hits ordered by descending cosine similarity
+     */
+    List<SearchResult> search(float[] queryVector, int topK, double minScore, Map<String, String> filter) {
+        if (topK <= 0) {
+            return Collections.emptyList();
+        }
+        float[] query = normalize(queryVector);
+        lock.readLock().lock();
+        try {
+            if (rowById.isEmpty()) {
+                return Collections.emptyList();
+            }
+            if (query.length != dim) {
+                throw new IllegalArgumentException("Vectors must be of the same length.");
+            }
+            int[] selected = selectRows(filter);
+            if (selected != null && selected.length == 0) {
+                return Collections.emptyList();
+            }
+            Predicate<EmbeddingRecord> predicate = unindexedFilter(filter);
+            int live = selected == null ? rowById.size() : selected.length;
+            int k = Math.min(topK, live);
+            int candidates = candidates(k, live);
+            VectorRows.RowScorer scorer = rows.scorer(query);
+            int extent = selected == null ? rowCount : selected.length;
+            TopKHeap heap;
+            int chunks = live >= parallelThreshold ? pool.getParallelism() : 1;
+            if (chunks <= 1) {
+                heap = scan(scorer, selected, 0, extent, candidates, scanMinScore(minScore), predicate);
+            } else {
+                heap = scanParallel(scorer, selected, extent, chunks, candidates, scanMinScore(minScore), predicate);
+            }
+            return results(query, heap, k, minScore);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches several queries in one pass over the rows: they are walked in blocks of {@link #BLOCK_ROWS}, and
+     * each block is scored against groups of {@link #BLOCK_QUERIES} queries while it is still in cache, so the
+     * matrix is read from memory once per batch instead of once per query (a blocked queries x rows product).
+     *
+     * @param filter metadata equality filter shared by all queries, {@code null} or empty for none
+     * @return one hit list per query, in query order
+     */
+    List<List<SearchResult>> searchBatch(float[][] queryVectors, int topK, double minScore,
+                                         Map<String, String> filter) {
+        if (queryVectors.length == 1) {
+            return List.of(search(queryVectors[0], topK, minScore, filter));
+        }
+        List<List<SearchResult>> results = new ArrayList<>(queryVectors.length);
+        if (topK <= 0) {
+            for (int q = 0; q < queryVectors.length; q++) {
+                results.add(Collections.emptyList());
+            }
+            return results;
+        }
+        float[][] queries = new float[queryVectors.length][];
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = normalize(queryVectors[q]);
+        }
+        lock.readLock().lock();
+        try {
+            int[] selected = rowById.isEmpty() ? new int[0] : selectRows(filter);
+            if (selected != null && selected.length == 0) {
+                for (int q = 0; q < queries.length; q++) {
+                    results.add(Collections.emptyList());
+                }
+                return results;
+            }
+            for (float[] query : queries) {
+                if (query.length != dim) {
+                    throw new IllegalArgumentException("Vectors must be of the same length.");
+                }
+            }
+            Predicate<EmbeddingRecord> predicate = unindexedFilter(filter);
+            int live = selected == null ? rowById.size() : selected.length;
+            int k = Math.min(topK, live);
+            int candidates = candidates(k, live);
+            VectorRows.BatchScorer scorer = rows.batchScorer(queries);
+            int extent = selected == null ? rowCount : selected.length;
+            int chunks = live >= parallelThreshold ? pool.getParallelism() : 1;
+            TopKHeap[] heaps;
+            if (chunks <= 1) {
+                heaps = scanBatch(scorer, queries.length, selected, 0, extent, candidates, scanMinScore(minScore),
+                        predicate);
+            } else {
+                heaps = scanBatchParallel(scorer, queries.length, selected, extent, chunks, candidates,
+                        scanMinScore(minScore), predicate);
+            }
+            for (int q = 0; q < queries.length; q++) {
+                results.add(results(queries[q], heaps[q], k, minScore));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param filter metadata equality filter, {@code null} or empty for all records
+     */
+    List<EmbeddingRecord> find(Map<String, String> filter) {
+        lock.readLock().lock();
+        try {
+            if (filter != null && !filter.isEmpty() && MetadataIndex.supports(filter)) {
+                int[] selected = metadata.select(filter);
+                List<EmbeddingRecord> matches = new ArrayList<>(selected.length);
+                for (int row : selected) {
+                    matches.add(materialize(row));
+                }
+                return matches;
+            }
+            Predicate<EmbeddingRecord> predicate = InMemoryChromaStore.toPredicate(filter);
+            List<EmbeddingRecord> matches = new ArrayList<>();
+            for (int row = 0; row < rowCount; row++) {
+                EmbeddingRecord record = records[row];
+                if (record != null && (predicate == null || predicate.test(record))) {
+                    matches.add(materialize(row));
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Streams the live rows to {@code sink}, taking the read lock one chunk of rows at a time so writers are only
+     * paused briefly. The result is fuzzy: writes that land between chunks may or may not be included, and a row
+     * that is deleted and re-inserted meanwhile may be seen twice; replaying the write-ahead log from the point the
+     * snapshot started repairs both.
+     */
+    void forEachRow(RowSink sink) throws IOException {
+        float[] vector = null;
+        for (int start = 0; ; start += SNAPSHOT_CHUNK_ROWS) {
+            lock.readLock().lock();
+            try {
+                if (start >= rowCount) {
+                    return;
+                }
+                if (vector == null || vector.length != dim) {
+                    vector = new float[dim];
+                }
+                int end = Math.min(rowCount, start + SNAPSHOT_CHUNK_ROWS);
+                for (int row = start; row < end; row++) {
+                    EmbeddingRecord record = records[row];
+                    if (record != null) {
+                        rows.get(row, vector, 0);
+                        sink.accept(record, vector, 0, dim);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Replaces the content with {@code stubs.length} normalised rows read from {@code source}. A later duplicate id
+     * replaces the earlier row, as an upsert would.
+     *
+     * @param stubs records without embedding, in row order
+     */
+    void restore(int dimension, EmbeddingRecord[] stubs, VectorSource source) throws IOException {
+        lock.writeLock().lock();
+        try {
+            int count = stubs.length;
+            rowById.clear();
+            metadata.clear();
+            freeRows = new int[0];
+            freeCount = 0;
+            closeRows();
+            dim = count == 0 ? -1 : dimension;
+            records = new EmbeddingRecord[0];
+            rowCount = 0;
+            if (count == 0) {
+                return;
+            }
+            rows = VectorRows.create(quantization, dimension, pool);
+            if (count > rows.maxRows()) {
+                throw new IllegalStateException("In-memory vector store is full: " + count + " x " + dimension);
+            }
+            int capacity = (int) Math.min(rows.maxRows(), Math.max(INITIAL_ROWS, count + (long) (count >> 3)));
+            rows.ensureCapacity(capacity);
+            records = new EmbeddingRecord[capacity];
+            rowCount = count;
+            rows.load(count, source);
+            System.arraycopy(stubs, 0, records, 0, count);
+            for (int row = 0; row < count; row++) {
+                Integer previous = rowById.put(records[row].getId(), row);
+                if (previous != null) {
+                    releaseRow(previous);
+                }
+            }
+            for (int row = 0; row < count; row++) {
+                if (records[row] != null) {
+                    metadata.add(row, records[row].getMetadata());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the matrix and releases the scratch file of a quantized store.
+     */
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * @return rows matching an indexed filter, {@code null} when every live row is a candidate
+     */
+    private int[] selectRows(Map<String, String> filter) {
+        if (filter == null || filter.isEmpty() || !MetadataIndex.supports(filter)) {
+            return null;
+        }
+        return metadata.select(filter);
+    }
+
+    /**
+     * @return the filter as a per-record predicate when the metadata index cannot answer it, otherwise {@code null}
+     */
+    private static Predicate<EmbeddingRecord> unindexedFilter(Map<String, String> filter) {
+        if (filter == null || filter.isEmpty() || MetadataIndex.supports(filter)) {
+            return null;
+        }
+        return InMemoryChromaStore.toPredicate(filter);
+    }
+
+    /**
+     * Hits kept by the scan: {@code k}, or {@code k x rerankFactor} when the scores are approximate.
+     */
+    private int candidates(int k, int live) {
+        return rows.exactScores() ? k : (int) Math.min(live, (long) k * quantization.getRerankFactor());
+    }
+
+    /**
+     * Approximate scores are not comparable to {@code minScore}; it is applied after re-ranking instead.
+     */
+    private double scanMinScore(double minScore) {
+        return rows.exactScores() ? minScore : Double.NEGATIVE_INFINITY;
+    }
+
+    private List<SearchResult> results(float[] query, TopKHeap heap, int k, double minScore) {
+        int[] hitRows = new int[heap.size()];
+        float[] scores = new float[heap.size()];
+        int n = heap.drainDescending(hitRows, scores);
+        if (!rows.exactScores()) {
+            n = rerank(query, hitRows, scores, n, k, minScore);
+        }
+        List<SearchResult> results = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            results.add(new SearchResult(materialize(hitRows[i]), scores[i]));
+        }
+        return results;
+    }
+
+    private EmbeddingRecord materialize(int row) {
+        float[] vector = new float[dim];
+        rows.get(row, vector, 0);
+        return records[row].withEmbedding(vector);
+    }
+
+    /**
+     * Re-scores the approximate candidates with their exact vectors, keeping the best {@code k} above
+     * {@code minScore}.
+     *
+     * @return number of hits left in {@code hitRows} and {@code scores}, best first
+     */
+    private int rerank(float[] query, int[] hitRows, float[] scores, int candidates, int k, double minScore) {
+        TopKHeap exact = new TopKHeap(k);
+        float[] scratch = new float[dim];
+        for (int i = 0; i < candidates; i++) {
+            float score = rows.exactScore(query, hitRows[i], scratch);
+            if (score >= minScore) {
+                exact.offer(hitRows[i], score);
+            }
+        }
+        return exact.drainDescending(hitRows, scores);
+    }
+
+    private void closeRows() {
+        if (rows == null) {
+            return;
+        }
+        try {
+            rows.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot release vector storage", e);
+        } finally {
+            rows = null;
+        }
+    }
+
+    private TopKHeap scanParallel(VectorRows.RowScorer scorer, int[] selected, int extent, int chunks, int k,
+                                  double minScore, Predicate<EmbeddingRecord> filter) {
+        int rowsPerChunk = (extent + chunks - 1) / chunks;
+        List<ForkJoinTask<TopKHeap>> tasks = new ArrayList<>(chunks);
+        for (int start = 0; start < extent; start += rowsPerChunk) {
+            int from = start;
+            int to = Math.min(extent, start + rowsPerChunk);
+            tasks.add(pool.submit(() -> scan(scorer, selected, from, to, k, minScore, filter)));
+        }
+        TopKHeap merged = new TopKHeap(k);
+        for (ForkJoinTask<TopKHeap> task : tasks) {
+            merged.addAll(task.join());
+        }
+        return merged;
+    }
+
+    /**
+     * Scores rows {@code from..to}, or {@code selected[from..to]} when the metadata index narrowed the rows down.
+     *
+     * @param filter applied only to rows whose score would make the top K, {@code null} for none
+     */
+    private TopKHeap scan(VectorRows.RowScorer scorer, int[] selected, int from, int to, int k, double minScore,
+                          Predicate<EmbeddingRecord> filter) {
+        TopKHeap heap = new TopKHeap(k);
+        if (selected != null) {
+            for (int i = from; i < to; i++) {
+                int row = selected[i];
+                float score = scorer.score(row);
+                if (score >= minScore && heap.accepts(score)) {
+                    heap.offer(row, score);
+                }
+            }
+            return heap;
+        }
+        EmbeddingRecord[] rowRecords = records;
+        for (int row = from; row < to; row++) {
+            EmbeddingRecord record = rowRecords[row];
+            if (record == null) {
+                continue;
+            }
+            float score = scorer.score(row);
+            if (score >= minScore && heap.accepts(score) && (filter == null || filter.test(record))) {
+                heap.offer(row, score);
+            }
+        }
+        return heap;
+    }
+
+    private TopKHeap[] scanBatchParallel(VectorRows.BatchScorer scorer, int queries, int[] selected, int extent,
+                                         int chunks, int k, double minScore, Predicate<EmbeddingRecord> filter) {
+        int rowsPerChunk = (extent + chunks - 1) / chunks;
+        List<ForkJoinTask<TopKHeap[]>> tasks = new ArrayList<>(chunks);
+        for (int start = 0; start < extent; start += rowsPerChunk) {
+            int from = start;
+            int to = Math.min(extent, start + rowsPerChunk);
+            tasks.add(pool.submit(() -> scanBatch(scorer, queries, selected, from, to, k, minScore, filter)));
+        }
+        TopKHeap[] merged = new TopKHeap[queries];
+        for (int q = 0; q < queries; q++) {
+            merged[q] = new TopKHeap(k);
+        }
+        for (ForkJoinTask<TopKHeap[]> task : tasks) {
+            TopKHeap[] heaps = task.join();
+            for (int q = 0; q < queries; q++) {
+                merged[q].addAll(heaps[q]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Multi-query counterpart of {@link #scan}, one heap per query.
+     */
+    private TopKHeap[] scanBatch(VectorRows.BatchScorer scorer, int queries, int[] selected, int from, int to, int k,
+                                 double minScore, Predicate<EmbeddingRecord> filter) {
+        TopKHeap[] heaps = new TopKHeap[queries];
+        for (int q = 0; q < queries; q++) {
+            heaps[q] = new TopKHeap(k);
+        }
+        float[] scores = new float[queries];
+        EmbeddingRecord[] rowRecords = records;
+        for (int blockStart = from; blockStart < to; blockStart += BLOCK_ROWS) {
+            int blockEnd = Math.min(to, blockStart + BLOCK_ROWS);
+            for (int queryStart = 0; queryStart < queries; queryStart += BLOCK_QUERIES) {
+                int queryEnd = Math.min(queries, queryStart + BLOCK_QUERIES);
+                for (int i = blockStart; i < blockEnd; i++) {
+                    int row = selected == null ? i : selected[i];
+                    EmbeddingRecord record = rowRecords[row];
+                    if (record == null) {
+                        continue;
+                    }
+                    scorer.score(row, queryStart, queryEnd, scores);
+                    for (int q = queryStart; q < queryEnd; q++) {
+                        float score = scores[q];
+                        TopKHeap heap = heaps[q];
+                        if (score >= minScore && heap.accepts(score) && (filter == null || filter.test(record))) {
+                            heap.offer(row, score);
+                        }
+                    }
+                }
+            }
+        }
+        return heaps;
+    }
+
+    private int allocateRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        if (rowCount == records.length) {
+            grow();
+        }
+        return rowCount++;
+    }
+
+    private void releaseRow(int row) {
+        records[row] = null;
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, Math.max(INITIAL_ROWS, freeCount * 2));
+        }
+        freeRows[freeCount++] = row;
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min(rows.maxRows(),
+                Math.max(INITIAL_ROWS, records.length + (long) (records.length >> 1)));
+        if (capacity <= rowCount) {
+            throw new IllegalStateException("In-memory vector store is full: " + rowCount + " x " + dim);
+        }
+        rows.ensureCapacity(capacity);
+        records = Arrays.copyOf(records, capacity);
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = squaredNorm(vector);
+        if (norm == 0) {
+            throw new IllegalArgumentException("Vector norm cannot be 0.");
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static double squaredNorm(float[] vector) {
+        double norm = 0.0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        return norm;
+    }
+}
@@ -0,0 +1,118 @@
+package com.yuqiangdede.common.chroma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Row-addressed storage of the normalised vectors behind a {@link VectorMatrix}. Writes happen under the matrix's
+ * write lock; {@link #get}, {@link #exactScore} and the scorers may run concurrently under its read lock.
+ */
+abstract class VectorRows implements Closeable {
+
+    /**
+     * Score of one row against the query a scorer was created for.
+     */
+    @FunctionalInterface
+    interface RowScorer {
+        float score(int row);
+    }
+
+    /**
+     * Scores of one row against a batch of queries.
+     */
+    @FunctionalInterface
+    interface BatchScorer {
+        /**
+         * Writes the scores of {@code row} against queries {@code from..to-1} to {@code out[from..to-1]}.
+         */
+        void score(int row, int from, int to, float[] out);
+    }
+
+    final int dim;
+
+    VectorRows(int dim) {
+        this.dim = dim;
+    }
+
+    static VectorRows create(QuantizationConfig config, int dim, ForkJoinPool pool) {
+        return switch (config.getMode()) {
+            case NONE -> new HeapVectorRows(dim);
+            case INT8 -> new Int8VectorRows(dim, config);
+            case PQ -> new PqVectorRows(dim, config, pool);
+        };
+    }
+
+    /**
+     * Largest capacity this storage can address.
+     */
+    abstract int maxRows();
+
+    /**
+     * Grows the storage to {@code capacity} rows, keeping the existing ones.
+     */
+    abstract void ensureCapacity(int capacity);
+
+    abstract void set(int row, float[] normalized);
+
+    /**
+     * Copies the exact normalised vector of {@code row} into {@code target} at {@code offset}.
+     */
+    abstract void get(int row, float[] target, int offset);
+
+    /**
+     * @return a scorer for {@code query}, exact when {@link #exactScores()} holds and an approximation otherwise
+     */
+    abstract RowScorer scorer(float[] query);
+
+    /**
+     * Batch form of {@link #scorer}; the default scores the queries one by one.
+     */
+    BatchScorer batchScorer(float[][] queries) {
+        RowScorer[] scorers = new RowScorer[queries.length];
+        for (int q = 0; q < queries.length; q++) {
+            scorers[q] = scorer(queries[q]);
+        }
+        return (row, from, to, out) -> {
+            for (int q = from; q < to; q++) {
+                out[q] = scorers[q].score(row);
+            }
+        };
+    }
+
+    /**
+     * Whether {@link #scorer} scores are exact; otherwise the best candidates are re-scored with {@link #exactScore}.
+     */
+    boolean exactScores() {
+        return true;
+    }
+
+    /**
+     * @param scratch {@code dim} floats owned by the caller
+     */
+    float exactScore(float[] query, int row, float[] scratch) {
+        get(row, scratch, 0);
+        return DotProduct.INSTANCE.dot(query, scratch, 0, dim);
+    }
+
+    /**
+     * Fills rows {@code 0..count-1} from {@code source}; capacity for them has already been ensured.
+     */
+    void load(int count, VectorMatrix.VectorSource source) throws IOException {
+        int chunkRows = Math.max(1, (1 << 20) / dim);
+        float[] buffer = new float[Math.min(count, chunkRows) * dim];
+        for (int start = 0; start < count; start += chunkRows) {
+            int rows = Math.min(chunkRows, count - start);
+            source.read(buffer, 0, rows * dim);
+            float[] row = new float[dim];
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(buffer, i * dim, row, 0, dim);
+                set(start + i, row);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
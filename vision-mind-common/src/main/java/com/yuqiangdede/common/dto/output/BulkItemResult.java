@@ -0,0 +1,40 @@
+package com.yuqiangdede.common.dto.output;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量接口中一行输入的处理结果，按输入顺序逐行（NDJSON）返回
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkItemResult {
+
+    /**
+     * 对应请求体中的行号，从 1 开始，空行也计数
+     */
+    private long line;
+
+    /**
+     * 错误码 0正常 其他错误
+     */
+    private String code;
+
+    /**
+     * 错误信息
+     */
+    private String msg;
+
+    /**
+     * 这一行的处理结果数据
+     */
+    private Object data;
+
+    public BulkItemResult(long line, boolean success, String msg, Object data) {
+        this(line, success ? "0" : "-1", msg, data);
+    }
+}
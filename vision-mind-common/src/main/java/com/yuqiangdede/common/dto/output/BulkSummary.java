@@ -0,0 +1,34 @@
+package com.yuqiangdede.common.dto.output;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量接口的汇总，作为响应的最后一行返回；客户端没有收到这一行说明处理中途被中断
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkSummary {
+
+    /**
+     * 处理的非空行数
+     */
+    private long total;
+
+    /**
+     * 成功行数
+     */
+    private long succeeded;
+
+    /**
+     * 失败行数
+     */
+    private long failed;
+
+    /**
+     * 总耗时 毫秒
+     */
+    private long costMs;
+}
@@ -0,0 +1,164 @@
+package com.yuqiangdede.common.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 单次请求内共享的已解码图片。
+ * <p>
+ * 同一个 imgUrl 在一次请求里往往要被检测、裁剪、绘制多次，以前每一步都重新下载并解码。
+ * 这里只下载一次原始字节，首次用到像素时解码为 BGR {@link Mat}，{@link BufferedImage} 在需要时才由 Mat 转出，
+ * 之后的访问全部复用。实例不跨请求缓存，用完调用 {@link #close()} 释放 Mat。
+ * <p>
+ * {@link #getMat()} 与 {@link #getImage()} 返回的都是共享实例：Mat 只读使用；BufferedImage 由 Mat 拷贝而来，
+ * 在其上绘制不会影响 Mat，但会影响之后拿到同一 BufferedImage 的调用方。
+ * <p>
+ * 下载、解码和省掉的下载次数注册为 Micrometer 计数器 {@code vision.image.context.fetches}、
+ * {@code vision.image.context.decodes}、{@code vision.image.context.fetches.saved}。
+ */
+@Slf4j
+public final class ImageContext implements AutoCloseable {
+
+    private static final AtomicLong FETCHES = new AtomicLong();
+    private static final AtomicLong DECODES = new AtomicLong();
+    private static final AtomicLong FETCHES_SAVED = new AtomicLong();
+
+    static {
+        registerMeters(Metrics.globalRegistry);
+    }
+
+    private final String source;
+    private final byte[] bytes;
+    private Mat mat;
+    private BufferedImage image;
+    private int accesses;
+
+    private ImageContext(String source, byte[] bytes) {
+        this.source = source;
+        this.bytes = bytes;
+    }
+
+    /**
+     * 下载（或读取）图片原始字节并创建上下文，解码延迟到第一次取像素时进行。
+     *
+     * @param urlStr 图片地址，支持 http(s)/file URL、本地路径和 data:image base64
+     * @return 图片上下文
+     * @throws IOException 读取失败时抛出
+     */
+    public static ImageContext load(String urlStr) throws IOException {
+        byte[] bytes = ImageUtil.urlToBytes(urlStr);
+        FETCHES.incrementAndGet();
+        return new ImageContext(urlStr, bytes);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return 图片文件的原始字节，调用方不应修改
+     */
+    public synchronized byte[] getBytes() {
+        touch();
+        return bytes;
+    }
+
+    /**
+     * @return CV_8UC3（BGR）Mat，首次调用时解码
+     * @throws IOException 图片无法解码时抛出
+     */
+    public synchronized Mat getMat() throws IOException {
+        touch();
+        return decodeMat();
+    }
+
+    /**
+     * @return 由 Mat 转出的 TYPE_3BYTE_BGR 图像，首次调用时生成
+     * @throws IOException 图片无法解码时抛出
+     */
+    public synchronized BufferedImage getImage() throws IOException {
+        touch();
+        if (image == null) {
+            image = ImageMatBridge.toBufferedImage(decodeMat());
+        }
+        return image;
+    }
+
+    /**
+     * 优先用 OpenCV 直接从字节解码；OpenCV 不支持的格式退回 ImageIO 解码后再转 Mat。
+     * 忽略 EXIF 方向，与 ImageIO 的行为保持一致，保证坐标不变。
+     */
+    private Mat decodeMat() throws IOException {
+        if (mat != null) {
+            return mat;
+        }
+        Mat decoded;
+        MatOfByte buffer = new MatOfByte(bytes);
+        try {
+            decoded = Imgcodecs.imdecode(buffer, Imgcodecs.IMREAD_COLOR | Imgcodecs.IMREAD_IGNORE_ORIENTATION);
+        } finally {
+            buffer.release();
+        }
+        if (decoded == null || decoded.empty()) {
+            BufferedImage fallback = ImageUtil.bytesToImage(source, bytes);
+            decoded = ImageMatBridge.toMat(fallback);
+        }
+        DECODES.incrementAndGet();
+        mat = decoded;
+        return mat;
+    }
+
+    /**
+     * 每次取用都对应以前的一次 urlToMat/urlToImage，除第一次外都记为省掉的下载。
+     */
+    private void touch() {
+        if (++accesses > 1) {
+            FETCHES_SAVED.incrementAndGet();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mat != null) {
+            mat.release();
+            mat = null;
+        }
+        image = null;
+        log.trace("ImageContext closed: accesses={}, source={}", accesses, source);
+    }
+
+    /**
+     * 把下载、解码和省掉的下载次数注册到 {@code registry}
+     */
+    static void registerMeters(MeterRegistry registry) {
+        FunctionCounter.builder("vision.image.context.fetches", FETCHES, AtomicLong::get)
+                .description("Images downloaded or read once per request")
+                .register(registry);
+        FunctionCounter.builder("vision.image.context.decodes", DECODES, AtomicLong::get)
+                .description("Images decoded into a Mat")
+                .register(registry);
+        FunctionCounter.builder("vision.image.context.fetches.saved", FETCHES_SAVED, AtomicLong::get)
+                .description("Repeated image accesses within a request served without another download")
+                .register(registry);
+    }
+
+    /**
+     * @return 进程启动以来的下载、解码次数以及复用省掉的下载次数
+     */
+    public static Stats stats() {
+        return new Stats(FETCHES.get(), DECODES.get(), FETCHES_SAVED.get());
+    }
+
+    public record Stats(long fetches, long decodes, long fetchesSaved) {
+    }
+}
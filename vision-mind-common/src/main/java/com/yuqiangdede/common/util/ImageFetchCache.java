@@ -0,0 +1,330 @@
+package com.yuqiangdede.common.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yuqiangdede.common.Constant;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按 URL 缓存 http(s) 图片原始字节的进程内 LRU 缓存。
+ * <p>
+ * 同一张抓拍图往往在几秒内先后被检测、人脸、ReID、TBIR 等接口请求，这里让它们共用一次下载：
+ * <ul>
+ *     <li>按缓存字节总量（而非条目数）淘汰最久未使用的条目；</li>
+ *     <li>TTL 内直接命中；过期后若响应带 ETag / Last-Modified，则发条件请求，304 时续期复用；</li>
+ *     <li>遵守响应的 Cache-Control：{@code no-store} 不缓存；{@code no-cache}、{@code max-age=0}、{@code must-revalidate}
+ *     每次都发条件请求，没有 ETag / Last-Modified 时不缓存；</li>
+ *     <li>同一 URL 的并发未命中只发一次请求；</li>
+ *     <li>使用共享的 {@link HttpClient}（连接复用）并设置连接、读取超时。</li>
+ * </ul>
+ * 共享实例的配置在 application.properties 中（见 {@link Constant}）：
+ * {@code image.cache.max-bytes}（默认 64MB，0 关闭缓存）、
+ * {@code image.cache.ttl-ms}（默认 30000）、
+ * {@code image.cache.connect-timeout-ms}（默认 3000）、
+ * {@code image.cache.read-timeout-ms}（默认 10000）。
+ * <p>
+ * 共享实例的命中、未命中、304 续期、淘汰次数注册为 Micrometer 计数器 {@code vision.image.cache.requests}
+ * （tag: result = hit / miss / revalidated）和 {@code vision.image.cache.evictions}，
+ * 当前条目数和字节数为 {@code vision.image.cache.entries}、{@code vision.image.cache.bytes}。
+ */
+@Slf4j
+public final class ImageFetchCache {
+
+    private static volatile ImageFetchCache shared;
+
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final Duration readTimeout;
+    private final HttpClient client;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ImageFetchCache(long maxBytes, Duration ttl, Duration connectTimeout, Duration readTimeout) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.ttlNanos = ttl.toNanos();
+        this.readTimeout = readTimeout;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * @return 进程内共享的实例，首次调用时按配置创建并注册指标
+     */
+    public static ImageFetchCache shared() {
+        ImageFetchCache cache = shared;
+        if (cache == null) {
+            synchronized (ImageFetchCache.class) {
+                cache = shared;
+                if (cache == null) {
+                    cache = new ImageFetchCache(
+                            Constant.IMAGE_CACHE_MAX_BYTES,
+                            Duration.ofMillis(Constant.IMAGE_CACHE_TTL_MS),
+                            Duration.ofMillis(Constant.IMAGE_CACHE_CONNECT_TIMEOUT_MS),
+                            Duration.ofMillis(Constant.IMAGE_CACHE_READ_TIMEOUT_MS));
+                    cache.registerMeters(Metrics.globalRegistry);
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 把计数器和缓存大小注册到 {@code registry}，每个注册表只应注册一个实例
+     */
+    void registerMeters(MeterRegistry registry) {
+        FunctionCounter.builder("vision.image.cache.requests", hits, AtomicLong::get)
+                .description("Image fetches served from the cache, including shared in-flight downloads and 304 revalidations")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("vision.image.cache.requests", misses, AtomicLong::get)
+                .description("Image fetches that downloaded the body")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("vision.image.cache.requests", revalidations, AtomicLong::get)
+                .description("Expired entries renewed by a 304 Not Modified")
+                .tag("result", "revalidated")
+                .register(registry);
+        FunctionCounter.builder("vision.image.cache.evictions", evictions, AtomicLong::get)
+                .description("Entries evicted to stay within image.cache.max-bytes")
+                .register(registry);
+        Gauge.builder("vision.image.cache.entries", this, cache -> cache.stats().entries())
+                .register(registry);
+        Gauge.builder("vision.image.cache.bytes", this, cache -> cache.stats().bytes())
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * 获取 URL 对应的图片字节，优先使用缓存。返回的数组被缓存共享，调用方不应修改。
+     *
+     * @param url http 或 https 地址
+     * @return 图片原始字节
+     * @throws IOException 请求失败、超时或返回非 2xx/304 状态时抛出
+     */
+    public byte[] fetch(String url) throws IOException {
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(url);
+            if (cached != null && !cached.revalidate && System.nanoTime() - cached.validatedAt < ttlNanos) {
+                hits.incrementAndGet();
+                return cached.bytes;
+            }
+        }
+
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(url, mine);
+        if (running != null) {
+            // 另一个线程正在下载同一个 URL，等它的结果即可
+            hits.incrementAndGet();
+            return await(running);
+        }
+        try {
+            byte[] bytes = load(url, cached);
+            mine.complete(bytes);
+            return bytes;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(url, mine);
+        }
+    }
+
+    private byte[] load(String url, Entry stale) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .GET();
+        boolean conditional = stale != null && (stale.etag != null || stale.lastModified != null);
+        if (conditional) {
+            if (stale.etag != null) {
+                builder.header("If-None-Match", stale.etag);
+            }
+            if (stale.lastModified != null) {
+                builder.header("If-Modified-Since", stale.lastModified);
+            }
+        }
+
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while fetching " + url, e);
+        }
+
+        int status = response.statusCode();
+        if (status == 304 && conditional) {
+            revalidations.incrementAndGet();
+            hits.incrementAndGet();
+            synchronized (this) {
+                stale.validatedAt = System.nanoTime();
+                // 条目可能在请求期间被淘汰，重新放回
+                if (entries.get(url) != stale) {
+                    put(url, stale);
+                }
+            }
+            return stale.bytes;
+        }
+        misses.incrementAndGet();
+        if (status < 200 || status >= 300) {
+            throw new IOException("HTTP status " + status);
+        }
+        if (response.headers().firstValue("Content-Type").isEmpty()) {
+            throw new IOException("Content-Type missing");
+        }
+
+        byte[] body = response.body();
+        String cacheControl = String.join(",", response.headers().allValues("Cache-Control")).toLowerCase(Locale.ROOT);
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        boolean revalidate = requiresRevalidation(cacheControl);
+        if (isCacheable(cacheControl, body, revalidate && etag == null && lastModified == null)) {
+            Entry entry = new Entry(body, etag, lastModified, revalidate, System.nanoTime());
+            synchronized (this) {
+                put(url, entry);
+            }
+        } else if (stale != null) {
+            // 资源不再允许缓存，丢掉旧条目，免得之后继续用它发条件请求
+            synchronized (this) {
+                remove(url, stale);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * @param noValidator 要求每次验证、但响应既没有 ETag 也没有 Last-Modified，缓存下来也无法复用
+     */
+    private boolean isCacheable(String cacheControl, byte[] body, boolean noValidator) {
+        if (maxBytes == 0 || body.length > maxBytes || noValidator) {
+            return false;
+        }
+        return !cacheControl.contains("no-store");
+    }
+
+    /**
+     * {@code no-cache}、{@code max-age=0}、{@code must-revalidate} 都按"每次使用前向源站验证"处理，不走 TTL 直接命中
+     *
+     * @param cacheControl 小写的 Cache-Control 头，多个头以逗号拼接
+     */
+    static boolean requiresRevalidation(String cacheControl) {
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim();
+            if (d.startsWith("no-cache") || d.equals("must-revalidate")) {
+                return true;
+            }
+            if (d.startsWith("max-age=")) {
+                try {
+                    if (Long.parseLong(d.substring("max-age=".length()).replace("\"", "").trim()) <= 0) {
+                        return true;
+                    }
+                } catch (NumberFormatException e) {
+                    // 格式不对的 max-age 按过期处理
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void remove(String url, Entry entry) {
+        if (entries.remove(url, entry)) {
+            currentBytes -= entry.bytes.length;
+        }
+    }
+
+    private void put(String url, Entry entry) {
+        Entry previous = entries.put(url, entry);
+        if (previous != null) {
+            currentBytes -= previous.bytes.length;
+        }
+        currentBytes += entry.bytes.length;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getValue() == entry) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().bytes.length;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for image download", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(cause == null ? e.getMessage() : cause.getMessage(), cause);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * @return 命中、未命中、304 续期、淘汰次数以及当前缓存条目数和字节数
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), revalidations.get(), evictions.get(), entries.size(), currentBytes, maxBytes);
+    }
+
+    public record Stats(long hits, long misses, long revalidations, long evictions,
+                        int entries, long bytes, long maxBytes) {
+    }
+
+    private static final class Entry {
+        private final byte[] bytes;
+        private final String etag;
+        private final String lastModified;
+        /**
+         * 源站要求每次使用前验证，TTL 内也要发条件请求
+         */
+        private final boolean revalidate;
+        private long validatedAt;
+
+        private Entry(byte[] bytes, String etag, String lastModified, boolean revalidate, long validatedAt) {
+            this.bytes = bytes;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.revalidate = revalidate;
+            this.validatedAt = validatedAt;
+        }
+    }
+}
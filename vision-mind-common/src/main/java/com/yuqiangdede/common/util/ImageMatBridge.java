@@ -0,0 +1,235 @@
+package com.yuqiangdede.common.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * BufferedImage 与 OpenCV Mat 之间的像素直通转换。
+ * <p>
+ * 直接读取 {@link DataBufferByte} / {@link DataBufferInt} 中的像素并写入 CV_8UC3（BGR）Mat，
+ * 避免原先 JPEG 编码再解码的往返，既省掉编解码开销，也不会因为有损压缩而改变像素。
+ * 常见的 TYPE_3BYTE_BGR、TYPE_4BYTE_ABGR、TYPE_INT_RGB/ARGB/BGR、TYPE_BYTE_GRAY 走快速路径，
+ * 其余类型（索引色、16 位灰度、自定义 ColorModel 等）退化为按行 getRGB。
+ */
+public final class ImageMatBridge {
+
+    private ImageMatBridge() {
+    }
+
+    /**
+     * 将 BufferedImage 转换为 CV_8UC3（BGR）Mat。
+     *
+     * @param image 输入图像
+     * @return BGR 三通道 Mat
+     */
+    public static Mat toMat(BufferedImage image) {
+        if (image == null) {
+            throw new IllegalArgumentException("BufferedImage is null");
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        byte[] gray = compactGrayBytes(image);
+        if (gray != null) {
+            Mat grayMat = new Mat(height, width, CvType.CV_8UC1);
+            grayMat.put(0, 0, gray);
+            Mat bgr = new Mat();
+            Imgproc.cvtColor(grayMat, bgr, Imgproc.COLOR_GRAY2BGR);
+            grayMat.release();
+            return bgr;
+        }
+
+        Mat mat = new Mat(height, width, CvType.CV_8UC3);
+        mat.put(0, 0, toBgrBytes(image));
+        return mat;
+    }
+
+    /**
+     * 将 BufferedImage 的像素展开为按行排列的 BGR 字节数组，长度为 width * height * 3。
+     * <p>
+     * 对紧凑存储的 TYPE_3BYTE_BGR 图像直接返回底层数组，不做任何拷贝，调用方不应修改返回值。
+     *
+     * @param image 输入图像
+     * @return BGR 字节数组
+     */
+    public static byte[] toBgrBytes(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int pixels = width * height;
+        Raster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+
+        if (buffer instanceof DataBufferByte byteBuffer && isCompact(raster)) {
+            byte[] src = byteBuffer.getData();
+            switch (image.getType()) {
+                case BufferedImage.TYPE_3BYTE_BGR:
+                    if (src.length == pixels * 3) {
+                        return src;
+                    }
+                    break;
+                case BufferedImage.TYPE_4BYTE_ABGR:
+                case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                    if (src.length == pixels * 4) {
+                        byte[] bgr = new byte[pixels * 3];
+                        for (int i = 0, j = 0; j < bgr.length; i += 4, j += 3) {
+                            bgr[j] = src[i + 1];
+                            bgr[j + 1] = src[i + 2];
+                            bgr[j + 2] = src[i + 3];
+                        }
+                        return bgr;
+                    }
+                    break;
+                case BufferedImage.TYPE_BYTE_GRAY:
+                    if (src.length == pixels) {
+                        byte[] bgr = new byte[pixels * 3];
+                        for (int i = 0, j = 0; i < pixels; i++, j += 3) {
+                            byte v = src[i];
+                            bgr[j] = v;
+                            bgr[j + 1] = v;
+                            bgr[j + 2] = v;
+                        }
+                        return bgr;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (buffer instanceof DataBufferInt intBuffer && isCompact(raster)) {
+            int[] src = intBuffer.getData();
+            if (src.length == pixels) {
+                switch (image.getType()) {
+                    case BufferedImage.TYPE_INT_RGB:
+                    case BufferedImage.TYPE_INT_ARGB:
+                    case BufferedImage.TYPE_INT_ARGB_PRE:
+                        return packedRgbToBgr(src, pixels);
+                    case BufferedImage.TYPE_INT_BGR:
+                        byte[] bgr = new byte[pixels * 3];
+                        for (int i = 0, j = 0; i < pixels; i++, j += 3) {
+                            int p = src[i];
+                            bgr[j] = (byte) (p >> 16);
+                            bgr[j + 1] = (byte) (p >> 8);
+                            bgr[j + 2] = (byte) p;
+                        }
+                        return bgr;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        // 兜底：按行取 ARGB，避免一次性分配 width*height 的 int 数组
+        byte[] bgr = new byte[pixels * 3];
+        int[] row = new int[width];
+        for (int y = 0, j = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++, j += 3) {
+                int p = row[x];
+                bgr[j] = (byte) p;
+                bgr[j + 1] = (byte) (p >> 8);
+                bgr[j + 2] = (byte) (p >> 16);
+            }
+        }
+        return bgr;
+    }
+
+    /**
+     * 将 Mat 转换为 BufferedImage，单通道输出 TYPE_BYTE_GRAY，三/四通道输出 TYPE_3BYTE_BGR。
+     * 像素通过一次 {@code Mat.get} 直接写入 BufferedImage 的底层数组。
+     *
+     * @param mat 输入 Mat，非 8 位深度会先缩放到 CV_8U
+     * @return BufferedImage
+     */
+    public static BufferedImage toBufferedImage(Mat mat) {
+        if (mat == null || mat.empty()) {
+            throw new IllegalArgumentException("Mat is null or empty");
+        }
+
+        Mat working = mat;
+        if (working.depth() != CvType.CV_8U) {
+            Mat converted = new Mat();
+            double scale = working.depth() == CvType.CV_32F || working.depth() == CvType.CV_64F ? 255.0 : 1.0;
+            working.convertTo(converted, CvType.CV_8U, scale);
+            working = converted;
+        }
+        if (working.channels() == 4) {
+            Mat converted = new Mat();
+            Imgproc.cvtColor(working, converted, Imgproc.COLOR_BGRA2BGR);
+            if (working != mat) {
+                working.release();
+            }
+            working = converted;
+        }
+
+        int type = switch (working.channels()) {
+            case 1 -> BufferedImage.TYPE_BYTE_GRAY;
+            case 3 -> BufferedImage.TYPE_3BYTE_BGR;
+            default -> throw new IllegalArgumentException("Unsupported Mat channel count: " + working.channels());
+        };
+
+        BufferedImage bufferedImage = new BufferedImage(working.cols(), working.rows(), type);
+        byte[] data = ((DataBufferByte) bufferedImage.getRaster().getDataBuffer()).getData();
+        working.get(0, 0, data);
+
+        if (working != mat) {
+            working.release();
+        }
+        return bufferedImage;
+    }
+
+    private static byte[] packedRgbToBgr(int[] src, int pixels) {
+        byte[] bgr = new byte[pixels * 3];
+        for (int i = 0, j = 0; i < pixels; i++, j += 3) {
+            int p = src[i];
+            bgr[j] = (byte) p;
+            bgr[j + 1] = (byte) (p >> 8);
+            bgr[j + 2] = (byte) (p >> 16);
+        }
+        return bgr;
+    }
+
+    /**
+     * 灰度图直接以单通道写入再由 OpenCV 扩展为三通道，比 Java 侧逐像素复制更快。
+     */
+    private static byte[] compactGrayBytes(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            return null;
+        }
+        Raster raster = image.getRaster();
+        if (raster.getDataBuffer() instanceof DataBufferByte byteBuffer && isCompact(raster)) {
+            byte[] data = byteBuffer.getData();
+            return data.length == image.getWidth() * image.getHeight() ? data : null;
+        }
+        return null;
+    }
+
+    /**
+     * 判断 Raster 是否为从 (0,0) 开始、行间无填充的紧凑存储；getSubimage 得到的子图不满足此条件。
+     */
+    private static boolean isCompact(Raster raster) {
+        if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || raster.getParent() != null || raster.getDataBuffer().getNumBanks() != 1
+                || raster.getDataBuffer().getOffset() != 0) {
+            return false;
+        }
+        SampleModel sampleModel = raster.getSampleModel();
+        if (sampleModel instanceof PixelInterleavedSampleModel interleaved) {
+            return interleaved.getScanlineStride() == interleaved.getPixelStride() * raster.getWidth();
+        }
+        if (sampleModel instanceof SinglePixelPackedSampleModel packed) {
+            return packed.getScanlineStride() == raster.getWidth();
+        }
+        return false;
+    }
+}
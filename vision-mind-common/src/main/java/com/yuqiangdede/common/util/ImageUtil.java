@@ -12,9 +12,7 @@ import java.awt.RenderingHints;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.ComponentSampleModel;
-import java.awt.image.DataBufferByte;
-import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -22,6 +20,7 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
@@ -29,9 +28,6 @@ import java.util.List;
 import javax.imageio.ImageIO;
 
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfByte;
-import org.opencv.imgcodecs.Imgcodecs;
-import org.opencv.imgproc.Imgproc;
 
 import com.yuqiangdede.common.dto.Point;
 import com.yuqiangdede.common.dto.output.Box;
@@ -50,6 +46,18 @@ public class ImageUtil {
      * @throws IOException 如果无法从URL读取图片，则抛出IOException异常
      */
     public static BufferedImage urlToImage(String urlStr) throws IOException {
+        return bytesToImage(urlStr, urlToBytes(urlStr));
+    }
+
+    /**
+     * 读取图片的原始（未解码）字节，支持 http(s)/file URL、本地路径和 data:image base64。
+     * http(s) 地址经 {@link ImageFetchCache} 下载并缓存。
+     *
+     * @param urlStr 图片的URL地址
+     * @return 图片文件的原始字节
+     * @throws IOException 地址为空、无法连接或读取失败时抛出
+     */
+    public static byte[] urlToBytes(String urlStr) throws IOException {
         try {
             if (urlStr == null || urlStr.isBlank()) {
                 throw new IOException(buildImgUrlError(urlStr, "url is empty"));
@@ -61,37 +69,25 @@ public class ImageUtil {
                     throw new IOException(buildImgUrlError(urlStr, "invalid data-uri"));
                 }
                 String payload = urlStr.substring(commaIndex + 1);
-                byte[] bytes = Base64.getDecoder().decode(payload);
-                BufferedImage bufferedImage = ImageIO.read(new java.io.ByteArrayInputStream(bytes));
-                if (bufferedImage == null) {
-                    throw new IOException(buildImgUrlError(urlStr, "unsupported base64 image payload"));
-                }
-                return bufferedImage;
+                return Base64.getDecoder().decode(payload);
             }
 
             if (!urlStr.startsWith("http://") && !urlStr.startsWith("https://") && !urlStr.startsWith("file:")) {
                 File localFile = new File(urlStr);
                 if (localFile.exists()) {
-                    BufferedImage bufferedImage = ImageIO.read(localFile);
-                    if (bufferedImage == null) {
-                        throw new IOException(buildImgUrlError(urlStr, "unsupported local image format"));
-                    }
-                    return bufferedImage;
+                    return Files.readAllBytes(localFile.toPath());
                 }
             }
 
+            if (urlStr.startsWith("http://") || urlStr.startsWith("https://")) {
+                // 走共享缓存：带超时、连接复用，同一 URL 短时间内只下载一次
+                return ImageFetchCache.shared().fetch(urlStr);
+            }
+
             URL url = URI.create(urlStr).toURL();
             URLConnection connection = url.openConnection();
-            String contentType = connection.getContentType();
-            if (contentType == null && (urlStr.startsWith("http://") || urlStr.startsWith("https://"))) {
-                throw new IOException(buildImgUrlError(urlStr, "Content-Type missing"));
-            }
             try (InputStream in = connection.getInputStream()) {
-                BufferedImage bufferedImage = ImageIO.read(in);
-                if (bufferedImage == null) {
-                    throw new IOException(buildImgUrlError(urlStr, "Unsupported image format or corrupted image data"));
-                }
-                return bufferedImage;
+                return in.readAllBytes();
             }
         } catch (IOException e) {
             throw new IOException(buildImgUrlError(urlStr, e.getMessage()), e);
@@ -100,6 +96,22 @@ public class ImageUtil {
         }
     }
 
+    /**
+     * 使用 ImageIO 解码图片字节。
+     *
+     * @param urlStr 图片来源，仅用于错误信息
+     * @param bytes  图片文件的原始字节
+     * @return BufferedImage
+     * @throws IOException 格式不支持或数据损坏时抛出
+     */
+    public static BufferedImage bytesToImage(String urlStr, byte[] bytes) throws IOException {
+        BufferedImage bufferedImage = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (bufferedImage == null) {
+            throw new IOException(buildImgUrlError(urlStr, "Unsupported image format or corrupted image data"));
+        }
+        return bufferedImage;
+    }
+
     /**
      * 从指定URL下载图片并将其转换为OpenCV的Mat对象
      *
@@ -114,48 +126,21 @@ public class ImageUtil {
     }
 
     /**
-     * 将Java BufferedImage对象转换为OpenCV Mat对象
+     * 将Java BufferedImage对象转换为OpenCV Mat对象（CV_8UC3，BGR）
+     * <p>
+     * 像素直接从 Raster 拷贝到 Mat，不再经过 JPEG 编码/解码，见 {@link ImageMatBridge}。
      *
      * @param image 要转换的Java BufferedImage对象
      * @return 转换后的OpenCV Mat对象
-     * @throws IOException 如果在转换过程中发生IO异常
+     * @throws IOException 保留以兼容既有调用方
      */
     public static Mat imgToMat(BufferedImage image) throws IOException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        log.trace("image type: {}", checkColorType(image));
-        ImageIO.write(image, "jpg", byteArrayOutputStream);
-
-        byte[] bytes = byteArrayOutputStream.toByteArray();
-        // 将字节数组转换为OpenCV的Mat对象
-        return Imgcodecs.imdecode(new MatOfByte(bytes), Imgcodecs.IMREAD_COLOR);
+        log.trace("image type: {}", image.getType());
+        return ImageMatBridge.toMat(image);
     }
 
     public static BufferedImage matToBufferedImage(Mat mat) {
-        if (mat == null || mat.empty()) {
-            throw new IllegalArgumentException("Mat is null or empty");
-        }
-
-        Mat working = mat;
-        if (mat.channels() == 4) {
-            Mat converted = new Mat();
-            Imgproc.cvtColor(mat, converted, Imgproc.COLOR_BGRA2BGR);
-            working = converted;
-        }
-
-        int type = switch (working.channels()) {
-            case 1 -> BufferedImage.TYPE_BYTE_GRAY;
-            case 3 -> BufferedImage.TYPE_3BYTE_BGR;
-            default -> throw new IllegalArgumentException("Unsupported Mat channel count: " + working.channels());
-        };
-
-        BufferedImage bufferedImage = new BufferedImage(working.cols(), working.rows(), type);
-        byte[] data = ((DataBufferByte) bufferedImage.getRaster().getDataBuffer()).getData();
-        working.get(0, 0, data);
-
-        if (working != mat) {
-            working.release();
-        }
-        return bufferedImage;
+        return ImageMatBridge.toBufferedImage(mat);
     }
 
     public static String urlToBase64( String urlStr) throws IOException {
@@ -167,36 +152,6 @@ public class ImageUtil {
         return Base64.getEncoder().encodeToString(bytes);
     }
 
-    /**
-     * 检查BufferedImage对象的颜色类型
-     *
-     * @param image 要检查的BufferedImage对象
-     * @return 返回BufferedImage对象的颜色类型，包括"RGB", "BGR", "RGBA", "BGRA"和"Unknown or Other Type"
-     */
-    private static String checkColorType(BufferedImage image) {
-        Raster raster = image.getRaster();
-        ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
-
-        int[] bandOffsets = sampleModel.getBandOffsets(); // 正确获取通道偏移
-
-        // 检查是否是BGR或RGB
-        if (bandOffsets.length == 3) {
-            if (bandOffsets[0] == 0 && bandOffsets[1] == 1 && bandOffsets[2] == 2) {
-                return "RGB";
-            } else if (bandOffsets[0] == 2 && bandOffsets[1] == 1 && bandOffsets[2] == 0) {
-                return "BGR";
-            }
-        } else if (bandOffsets.length == 4) { // 检查带Alpha通道的情况
-            if (bandOffsets[0] == 0 && bandOffsets[1] == 1 && bandOffsets[2] == 2 && bandOffsets[3] == 3) {
-                return "RGBA";
-            } else if (bandOffsets[0] == 2 && bandOffsets[1] == 1 && bandOffsets[2] == 0 && bandOffsets[3] == 3) {
-                return "BGRA";
-            }
-        }
-
-        return "Unknown or Other Type";
-    }
-
     private static String buildImgUrlError(String urlStr, String reason) {
         String detail = reason == null || reason.isBlank() ? "unknown" : reason;
         return "imgUrl download failed or image could not be parsed, url=" + urlStr + ", reason=" + detail;
@@ -0,0 +1,146 @@
+package com.yuqiangdede.common.util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD projection kernel on the preferred vector width of the CPU. Only instantiated through
+ * {@link ProjectionKernel#INSTANCE} when {@code jdk.incubator.vector} is in the boot layer.
+ * <p>
+ * {@link #dot4x2} keeps eight accumulators and six loaded vectors live, which still fits the sixteen registers of
+ * AVX2.
+ */
+final class PanamaProjectionKernel implements ProjectionKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    PanamaProjectionKernel() {
+        if (SPECIES.length() < 4) {
+            throw new UnsupportedOperationException("No SIMD support, preferred species is " + SPECIES);
+        }
+    }
+
+    @Override
+    public float dot(float[] matrix, int offset, int cols, float[] x) {
+        int lanes = SPECIES.length();
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int j = 0;
+        int bound = SPECIES.loopBound(cols);
+        for (; j < bound; j += lanes) {
+            acc = FloatVector.fromArray(SPECIES, matrix, offset + j)
+                    .fma(FloatVector.fromArray(SPECIES, x, j), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; j < cols; j++) {
+            sum += matrix[offset + j] * x[j];
+        }
+        return sum;
+    }
+
+    @Override
+    public void dot4(float[] matrix, int offset, int cols, float[] x, float[] out, int outIndex) {
+        int lanes = SPECIES.length();
+        int r0 = offset;
+        int r1 = r0 + cols;
+        int r2 = r1 + cols;
+        int r3 = r2 + cols;
+        FloatVector acc0 = FloatVector.zero(SPECIES);
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        FloatVector acc2 = FloatVector.zero(SPECIES);
+        FloatVector acc3 = FloatVector.zero(SPECIES);
+        int j = 0;
+        int bound = SPECIES.loopBound(cols);
+        for (; j < bound; j += lanes) {
+            FloatVector v = FloatVector.fromArray(SPECIES, x, j);
+            acc0 = FloatVector.fromArray(SPECIES, matrix, r0 + j).fma(v, acc0);
+            acc1 = FloatVector.fromArray(SPECIES, matrix, r1 + j).fma(v, acc1);
+            acc2 = FloatVector.fromArray(SPECIES, matrix, r2 + j).fma(v, acc2);
+            acc3 = FloatVector.fromArray(SPECIES, matrix, r3 + j).fma(v, acc3);
+        }
+        float s0 = acc0.reduceLanes(VectorOperators.ADD);
+        float s1 = acc1.reduceLanes(VectorOperators.ADD);
+        float s2 = acc2.reduceLanes(VectorOperators.ADD);
+        float s3 = acc3.reduceLanes(VectorOperators.ADD);
+        for (; j < cols; j++) {
+            float v = x[j];
+            s0 += matrix[r0 + j] * v;
+            s1 += matrix[r1 + j] * v;
+            s2 += matrix[r2 + j] * v;
+            s3 += matrix[r3 + j] * v;
+        }
+        out[outIndex] = s0;
+        out[outIndex + 1] = s1;
+        out[outIndex + 2] = s2;
+        out[outIndex + 3] = s3;
+    }
+
+    @Override
+    public void dot4x2(float[] matrix, int offset, int cols, float[] x0, float[] x1, float[] out0, float[] out1,
+                       int outIndex) {
+        int lanes = SPECIES.length();
+        int r0 = offset;
+        int r1 = r0 + cols;
+        int r2 = r1 + cols;
+        int r3 = r2 + cols;
+        FloatVector a0 = FloatVector.zero(SPECIES);
+        FloatVector a1 = FloatVector.zero(SPECIES);
+        FloatVector a2 = FloatVector.zero(SPECIES);
+        FloatVector a3 = FloatVector.zero(SPECIES);
+        FloatVector b0 = FloatVector.zero(SPECIES);
+        FloatVector b1 = FloatVector.zero(SPECIES);
+        FloatVector b2 = FloatVector.zero(SPECIES);
+        FloatVector b3 = FloatVector.zero(SPECIES);
+        int j = 0;
+        int bound = SPECIES.loopBound(cols);
+        for (; j < bound; j += lanes) {
+            FloatVector v = FloatVector.fromArray(SPECIES, x0, j);
+            FloatVector w = FloatVector.fromArray(SPECIES, x1, j);
+            FloatVector m0 = FloatVector.fromArray(SPECIES, matrix, r0 + j);
+            FloatVector m1 = FloatVector.fromArray(SPECIES, matrix, r1 + j);
+            a0 = m0.fma(v, a0);
+            b0 = m0.fma(w, b0);
+            a1 = m1.fma(v, a1);
+            b1 = m1.fma(w, b1);
+            FloatVector m2 = FloatVector.fromArray(SPECIES, matrix, r2 + j);
+            FloatVector m3 = FloatVector.fromArray(SPECIES, matrix, r3 + j);
+            a2 = m2.fma(v, a2);
+            b2 = m2.fma(w, b2);
+            a3 = m3.fma(v, a3);
+            b3 = m3.fma(w, b3);
+        }
+        float s0 = a0.reduceLanes(VectorOperators.ADD);
+        float s1 = a1.reduceLanes(VectorOperators.ADD);
+        float s2 = a2.reduceLanes(VectorOperators.ADD);
+        float s3 = a3.reduceLanes(VectorOperators.ADD);
+        float t0 = b0.reduceLanes(VectorOperators.ADD);
+        float t1 = b1.reduceLanes(VectorOperators.ADD);
+        float t2 = b2.reduceLanes(VectorOperators.ADD);
+        float t3 = b3.reduceLanes(VectorOperators.ADD);
+        for (; j < cols; j++) {
+            float v = x0[j];
+            float w = x1[j];
+            s0 += matrix[r0 + j] * v;
+            s1 += matrix[r1 + j] * v;
+            s2 += matrix[r2 + j] * v;
+            s3 += matrix[r3 + j] * v;
+            t0 += matrix[r0 + j] * w;
+            t1 += matrix[r1 + j] * w;
+            t2 += matrix[r2 + j] * w;
+            t3 += matrix[r3 + j] * w;
+        }
+        out0[outIndex] = s0;
+        out0[outIndex + 1] = s1;
+        out0[outIndex + 2] = s2;
+        out0[outIndex + 3] = s3;
+        out1[outIndex] = t0;
+        out1[outIndex + 1] = t1;
+        out1[outIndex + 2] = t2;
+        out1[outIndex + 3] = t3;
+    }
+
+    @Override
+    public String toString() {
+        return "PanamaProjectionKernel[" + SPECIES + "]";
+    }
+}
@@ -0,0 +1,36 @@
+package com.yuqiangdede.common.util;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Dot products of rows of a row-major projection matrix with input vectors, in the register tiles
+ * {@link RandomProjection} is blocked into.
+ * <p>
+ * {@link #INSTANCE} uses the {@code jdk.incubator.vector} API when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, and an unrolled scalar loop otherwise (see {@link VectorKernels}).
+ */
+interface ProjectionKernel {
+
+    ProjectionKernel INSTANCE = VectorKernels.select(MethodHandles.lookup(), ProjectionKernel.class,
+            "com.yuqiangdede.common.util.PanamaProjectionKernel", ScalarProjectionKernel::new, "Random projection");
+
+    /**
+     * @param matrix row-major matrix
+     * @param offset start of the row in {@code matrix}
+     * @param cols   row length, also the length of {@code x}
+     */
+    float dot(float[] matrix, int offset, int cols, float[] x);
+
+    /**
+     * Four consecutive rows against one input, loading each input chunk once; writes {@code out[outIndex]} to
+     * {@code out[outIndex + 3]}.
+     */
+    void dot4(float[] matrix, int offset, int cols, float[] x, float[] out, int outIndex);
+
+    /**
+     * Four consecutive rows against two inputs, loading each row chunk once for both; writes four outputs of each
+     * input starting at {@code outIndex}.
+     */
+    void dot4x2(float[] matrix, int offset, int cols, float[] x0, float[] x1, float[] out0, float[] out1,
+                int outIndex);
+}
@@ -0,0 +1,130 @@
+package com.yuqiangdede.common.util;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@code rows x cols} projection matrix held in one flat row-major array, applied with {@link ProjectionKernel}.
+ * <p>
+ * A single vector is projected four rows at a time, so each chunk of the input is loaded once per four rows. A batch
+ * is a matrix-matrix product: inputs are taken {@value #INPUT_BLOCK} at a time (their working set stays in L2), and
+ * every block of four rows is applied to all of them in pairs before moving on, so the matrix is read from memory
+ * once per block of inputs instead of once per input.
+ */
+public final class RandomProjection {
+
+    /**
+     * Inputs per pass over the matrix; 64 inputs of 2048 floats are 512 KB.
+     */
+    private static final int INPUT_BLOCK = 64;
+
+    private final float[] matrix;
+    private final int rows;
+    private final int cols;
+    private final ProjectionKernel kernel;
+
+    public RandomProjection(float[] matrix, int rows, int cols) {
+        this(matrix, rows, cols, ProjectionKernel.INSTANCE);
+    }
+
+    RandomProjection(float[] matrix, int rows, int cols, ProjectionKernel kernel) {
+        if (rows <= 0 || cols <= 0 || (long) rows * cols != matrix.length) {
+            throw new IllegalArgumentException("Matrix of " + matrix.length + " floats is not " + rows + " x " + cols);
+        }
+        this.matrix = matrix;
+        this.rows = rows;
+        this.cols = cols;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Reads a matrix written by {@link GenerateProjectionMatrix}: a big-endian {@code int} row count and column count,
+     * then the rows. The file is memory-mapped and converted into the flat array with one bulk copy.
+     */
+    public static RandomProjection load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 2 * Integer.BYTES) {
+                throw new IOException("Projection matrix file too short: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            int rows = buffer.getInt();
+            int cols = buffer.getInt();
+            long floats = (long) rows * cols;
+            if (rows <= 0 || cols <= 0 || floats > Integer.MAX_VALUE
+                    || size != 2L * Integer.BYTES + floats * Float.BYTES) {
+                throw new IOException("Projection matrix " + path + " of " + size + " bytes is not " + rows + " x "
+                        + cols);
+            }
+            float[] matrix = new float[(int) floats];
+            buffer.asFloatBuffer().get(matrix);
+            return new RandomProjection(matrix, rows, cols);
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @param input {@link #getCols()} long
+     * @return {@link #getRows()} long
+     */
+    public float[] transform(float[] input) {
+        checkInput(input);
+        float[] output = new float[rows];
+        int r = 0;
+        for (; r + 4 <= rows; r += 4) {
+            kernel.dot4(matrix, r * cols, cols, input, output, r);
+        }
+        for (; r < rows; r++) {
+            output[r] = kernel.dot(matrix, r * cols, cols, input);
+        }
+        return output;
+    }
+
+    /**
+     * Projects every input; the result equals {@link #transform(float[])} of each.
+     */
+    public float[][] transform(float[][] inputs) {
+        for (float[] input : inputs) {
+            checkInput(input);
+        }
+        float[][] outputs = new float[inputs.length][rows];
+        for (int from = 0; from < inputs.length; from += INPUT_BLOCK) {
+            int to = Math.min(inputs.length, from + INPUT_BLOCK);
+            int r = 0;
+            for (; r + 4 <= rows; r += 4) {
+                int offset = r * cols;
+                int b = from;
+                for (; b + 2 <= to; b += 2) {
+                    kernel.dot4x2(matrix, offset, cols, inputs[b], inputs[b + 1], outputs[b], outputs[b + 1], r);
+                }
+                if (b < to) {
+                    kernel.dot4(matrix, offset, cols, inputs[b], outputs[b], r);
+                }
+            }
+            for (; r < rows; r++) {
+                for (int b = from; b < to; b++) {
+                    outputs[b][r] = kernel.dot(matrix, r * cols, cols, inputs[b]);
+                }
+            }
+        }
+        return outputs;
+    }
+
+    private void checkInput(float[] input) {
+        if (input.length != cols) {
+            throw new IllegalArgumentException("Input vector dimension must be " + cols);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.yuqiangdede.common.util;
+
+/**
+ * Scalar projection kernel; every output keeps its own accumulator so the adds of a tile do not serialise.
+ */
+final class ScalarProjectionKernel implements ProjectionKernel {
+
+    @Override
+    public float dot(float[] matrix, int offset, int cols, float[] x) {
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int j = 0;
+        int bound = cols & ~3;
+        for (; j < bound; j += 4) {
+            s0 += matrix[offset + j] * x[j];
+            s1 += matrix[offset + j + 1] * x[j + 1];
+            s2 += matrix[offset + j + 2] * x[j + 2];
+            s3 += matrix[offset + j + 3] * x[j + 3];
+        }
+        for (; j < cols; j++) {
+            s0 += matrix[offset + j] * x[j];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public void dot4(float[] matrix, int offset, int cols, float[] x, float[] out, int outIndex) {
+        int r0 = offset;
+        int r1 = r0 + cols;
+        int r2 = r1 + cols;
+        int r3 = r2 + cols;
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        for (int j = 0; j < cols; j++) {
+            float v = x[j];
+            s0 += matrix[r0 + j] * v;
+            s1 += matrix[r1 + j] * v;
+            s2 += matrix[r2 + j] * v;
+            s3 += matrix[r3 + j] * v;
+        }
+        out[outIndex] = s0;
+        out[outIndex + 1] = s1;
+        out[outIndex + 2] = s2;
+        out[outIndex + 3] = s3;
+    }
+
+    @Override
+    public void dot4x2(float[] matrix, int offset, int cols, float[] x0, float[] x1, float[] out0, float[] out1,
+                       int outIndex) {
+        dot4(matrix, offset, cols, x0, out0, outIndex);
+        dot4(matrix, offset, cols, x1, out1, outIndex);
+    }
+
+    @Override
+    public String toString() {
+        return "ScalarProjectionKernel";
+    }
+}
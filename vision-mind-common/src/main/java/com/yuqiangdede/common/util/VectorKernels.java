@@ -0,0 +1,47 @@
+package com.yuqiangdede.common.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Supplier;
+
+/**
+ * Chooses between the {@code jdk.incubator.vector} implementation of a SIMD kernel and its unrolled scalar fallback.
+ * <p>
+ * The Panama implementation is used when the JVM was started with {@code --add-modules jdk.incubator.vector} and the
+ * class can be loaded and constructed; otherwise the scalar one is used.
+ */
+@Slf4j
+public final class VectorKernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private VectorKernels() {
+    }
+
+    /**
+     * @param lookup      lookup of the kernel interface, so package-private implementations can be constructed
+     * @param type        kernel interface
+     * @param panamaClass binary name of the Panama implementation, which needs a no-arg constructor
+     * @param scalar      creates the scalar fallback
+     * @param purpose     what the kernel is used for, only for the log
+     */
+    public static <T> T select(MethodHandles.Lookup lookup, Class<T> type, String panamaClass,
+                               Supplier<? extends T> scalar, String purpose) {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                // loaded by name so the scalar path never links against the incubator module
+                Class<?> implementation = lookup.findClass(panamaClass);
+                T simd = type.cast(lookup.findConstructor(implementation, MethodType.methodType(void.class)).invoke());
+                log.info("{} uses {}", purpose, simd);
+                return simd;
+            } catch (VirtualMachineError e) {
+                throw e;
+            } catch (Throwable e) {
+                log.warn("{} is present but unusable, {} falls back to the scalar implementation", VECTOR_MODULE, purpose, e);
+            }
+        }
+        return scalar.get();
+    }
+}
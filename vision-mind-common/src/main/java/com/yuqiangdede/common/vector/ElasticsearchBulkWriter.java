@@ -0,0 +1,431 @@
+package com.yuqiangdede.common.vector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.yuqiangdede.common.util.JsonUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Batches the index and delete writes of all callers into {@code _bulk} requests against one index.
+ * <p>
+ * Writes are buffered and sent once {@link ElasticsearchWriteConfig#getBulkActions()} writes or
+ * {@link ElasticsearchWriteConfig#getBulkSizeBytes()} bytes are pending, or at the latest after
+ * {@link ElasticsearchWriteConfig#getFlushIntervalMs()}. At most {@link ElasticsearchWriteConfig#getConcurrentRequests()}
+ * bulks are in flight; a caller whose write fills the next one blocks until one of them completes, which pushes back
+ * on ingestion instead of queueing without bound. Items rejected with 429, or whole bulks rejected with 429, are
+ * resent with exponential backoff. The scheduler thread that runs the periodic flush and the retries never waits for a
+ * free slot: a flush with all slots taken leaves the writes buffered, a retry is put off until a slot is free. Each write gets its own future, completed from its item of the bulk response, so
+ * a failed item fails only its caller. Bulks carry {@code refresh=wait_for} or no refresh at all, see
+ * {@link ElasticsearchWriteConfig.RefreshMode}; no write forces a refresh.
+ * <p>
+ * This is the batching of the client's {@code BulkProcessor}, done on the low-level {@link RestClient}: the bulk
+ * processor and the client's parsing of failed items load Elasticsearch server classes that need Lucene 8, while this
+ * project runs Lucene 9. Bodies are written and responses read with Jackson, vectors as plain float arrays.
+ */
+@Slf4j
+public final class ElasticsearchBulkWriter implements Closeable {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int NOT_FOUND = 404;
+    private static final String INDEX = "index";
+    private static final String DELETE = "delete";
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson");
+
+    private final RestClient client;
+    private final String index;
+    private final ElasticsearchWriteConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final Semaphore inFlight;
+    private final Set<Write> unresolved = ConcurrentHashMap.newKeySet();
+    private final Object lock = new Object();
+    private List<Write> buffer = new ArrayList<>();
+    private long bufferBytes;
+    private boolean closed;
+
+    /**
+     * @param name name of the flush and retry scheduler thread
+     */
+    @SuppressWarnings({"deprecation"})
+    public ElasticsearchBulkWriter(RestHighLevelClient client, String index, ElasticsearchWriteConfig config,
+                                   String name) {
+        this.client = client.getLowLevelClient();
+        this.index = Objects.requireNonNull(index, "index");
+        this.config = config == null ? ElasticsearchWriteConfig.defaults() : config;
+        this.inFlight = new Semaphore(this.config.getConcurrentRequests());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = this.config.getFlushIntervalMs();
+        scheduler.scheduleWithFixedDelay(this::flushIfIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a write of a document holding {@code fields} and the vector; {@code null} field values are left out.
+     * May block while the in-flight bulk requests are at their limit.
+     *
+     * @return completed once the bulk carrying the write is acknowledged, exceptionally if its item failed
+     */
+    public CompletableFuture<Void> submit(String id, Map<String, ?> fields, String vectorField, float[] vector)
+            throws IOException {
+        Objects.requireNonNull(id, "id");
+        return enqueue(new Write(id, INDEX, encode(id, fields, vectorField, vector)));
+    }
+
+    /**
+     * Queues a delete of the document {@code id}, sent and made visible like {@link #submit} writes. Deleting a
+     * document that does not exist succeeds. May block while the in-flight bulk requests are at their limit.
+     *
+     * @return completed once the bulk carrying the delete is acknowledged, exceptionally if its item failed
+     */
+    public CompletableFuture<Void> delete(String id) throws IOException {
+        Objects.requireNonNull(id, "id");
+        return enqueue(new Write(id, DELETE, encodeAction(DELETE, id)));
+    }
+
+    private CompletableFuture<Void> enqueue(Write write) throws IOException {
+        List<Write> full = null;
+        synchronized (lock) {
+            if (closed) {
+                throw new IOException("Elasticsearch bulk writer is closed");
+            }
+            unresolved.add(write);
+            buffer.add(write);
+            bufferBytes += write.lines.length;
+            if (buffer.size() >= config.getBulkActions() || bufferBytes >= config.getBulkSizeBytes()) {
+                full = drain();
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return write.future;
+    }
+
+    /**
+     * Waits until the given writes are acknowledged.
+     *
+     * @throws IOException if any of them failed or was not acknowledged within
+     *                     {@link ElasticsearchWriteConfig#getAckTimeoutMs()}; the others may still have been stored
+     */
+    public void await(List<CompletableFuture<Void>> writes) throws IOException {
+        try {
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]))
+                    .get(config.getAckTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            int failed = 0;
+            for (CompletableFuture<Void> write : writes) {
+                if (write.isCompletedExceptionally()) {
+                    failed++;
+                }
+            }
+            Throwable cause = e.getCause();
+            throw new IOException(failed + " of " + writes.size() + " Elasticsearch writes failed: "
+                    + cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Elasticsearch writes not acknowledged within " + config.getAckTimeoutMs() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Elasticsearch writes");
+        }
+    }
+
+    /**
+     * Sends the buffered writes now instead of waiting for the flush interval.
+     */
+    public void flush() {
+        List<Write> pending;
+        synchronized (lock) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            pending = drain();
+        }
+        send(pending);
+    }
+
+    /**
+     * Periodic flush on the scheduler thread: sends only if a bulk slot is free, otherwise the writes stay buffered for
+     * the next flush or the next full bulk.
+     */
+    private void flushIfIdle() {
+        if (!inFlight.tryAcquire()) {
+            return;
+        }
+        List<Write> pending;
+        synchronized (lock) {
+            pending = buffer.isEmpty() ? null : drain();
+        }
+        if (pending == null) {
+            inFlight.release();
+            return;
+        }
+        dispatch(pending);
+    }
+
+    /**
+     * Sends the buffered writes and waits for the outstanding ones; writes still unacknowledged after
+     * {@link ElasticsearchWriteConfig#getAckTimeoutMs()} fail.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flush();
+        List<CompletableFuture<Void>> outstanding = new ArrayList<>();
+        for (Write write : unresolved) {
+            outstanding.add(write.future);
+        }
+        try {
+            await(outstanding);
+        } catch (IOException e) {
+            log.warn("Closing Elasticsearch bulk writer of {}: {}", index, e.getMessage());
+        } finally {
+            scheduler.shutdownNow();
+            for (Write write : unresolved) {
+                fail(write, new IOException("Elasticsearch bulk writer closed"));
+            }
+        }
+    }
+
+    private List<Write> drain() {
+        List<Write> drained = buffer;
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+        return drained;
+    }
+
+    /**
+     * Sends from a caller thread, waiting for a free bulk slot.
+     */
+    private void send(List<Write> batch) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Write write : batch) {
+                fail(write, new InterruptedIOException("Interrupted before sending Elasticsearch bulk"));
+            }
+            return;
+        }
+        dispatch(batch);
+    }
+
+    /**
+     * Resends from the scheduler thread; if all bulk slots are taken, tries again after the initial retry delay
+     * instead of blocking the thread the other retries and the periodic flush run on.
+     */
+    private void resend(List<Write> batch) {
+        if (inFlight.tryAcquire()) {
+            dispatch(batch);
+            return;
+        }
+        schedule(batch, Math.max(1, config.getRetryInitialDelayMs()));
+    }
+
+    /**
+     * Posts the batch; the caller holds a bulk slot, released when the response arrives.
+     */
+    private void dispatch(List<Write> batch) {
+        int size = 0;
+        for (Write write : batch) {
+            size += write.lines.length;
+        }
+        byte[] body = new byte[size];
+        int offset = 0;
+        for (Write write : batch) {
+            System.arraycopy(write.lines, 0, body, offset, write.lines.length);
+            offset += write.lines.length;
+        }
+        Request request = new Request("POST", "/" + index + "/_bulk");
+        if (config.getRefreshMode() == ElasticsearchWriteConfig.RefreshMode.WAIT_UNTIL) {
+            request.addParameter("refresh", "wait_for");
+        }
+        request.setEntity(new ByteArrayEntity(body, NDJSON));
+        log.debug("Sending bulk of {} writes, {} bytes to {}", batch.size(), body.length, index);
+        client.performRequestAsync(request, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                inFlight.release();
+                try (InputStream in = response.getEntity().getContent()) {
+                    complete(batch, JsonUtils.objectMapper.readTree(in));
+                } catch (IOException | RuntimeException e) {
+                    for (Write write : batch) {
+                        fail(write, e);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                inFlight.release();
+                if (e instanceof ResponseException re
+                        && re.getResponse().getStatusLine().getStatusCode() == TOO_MANY_REQUESTS) {
+                    retry(batch, "bulk rejected with 429");
+                    return;
+                }
+                log.warn("Bulk of {} writes to {} failed", batch.size(), index, e);
+                for (Write write : batch) {
+                    fail(write, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Items come back in request order.
+     */
+    private void complete(List<Write> batch, JsonNode response) {
+        JsonNode items = response.path("items");
+        List<Write> rejected = new ArrayList<>();
+        int failed = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Write write = batch.get(i);
+            JsonNode item = items.path(i).path(write.action);
+            int status = item.path("status").asInt(0);
+            if (status >= 200 && status < 300 || status == NOT_FOUND && write.action.equals(DELETE)) {
+                unresolved.remove(write);
+                write.future.complete(null);
+            } else if (status == TOO_MANY_REQUESTS) {
+                rejected.add(write);
+            } else {
+                failed++;
+                JsonNode error = item.path("error");
+                fail(write, new IOException(item.isMissingNode()
+                        ? "No bulk response item for " + write.id
+                        : "Elasticsearch rejected " + write.id + ": " + error.path("type").asText()
+                        + ": " + error.path("reason").asText()));
+            }
+        }
+        if (failed > 0) {
+            log.warn("Bulk to {}: {} of {} writes failed", index, failed, batch.size());
+        }
+        if (!rejected.isEmpty()) {
+            retry(rejected, rejected.size() + " writes rejected with 429");
+        }
+    }
+
+    private void retry(List<Write> writes, String reason) {
+        List<Write> again = new ArrayList<>(writes.size());
+        long delay = 0;
+        for (Write write : writes) {
+            if (write.attempts >= config.getRetryMaxRetries()) {
+                fail(write, new IOException("Elasticsearch rejected " + write.id + " with 429 after "
+                        + write.attempts + " retries"));
+                continue;
+            }
+            delay = Math.max(delay, config.getRetryInitialDelayMs() << write.attempts);
+            write.attempts++;
+            again.add(write);
+        }
+        if (again.isEmpty()) {
+            return;
+        }
+        log.debug("Retrying {} writes to {} in {} ms: {}", again.size(), index, delay, reason);
+        schedule(again, delay);
+    }
+
+    private void schedule(List<Write> batch, long delayMs) {
+        try {
+            scheduler.schedule(() -> resend(batch), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            for (Write write : batch) {
+                fail(write, new IOException("Elasticsearch bulk writer closed before retrying " + write.id, e));
+            }
+        }
+    }
+
+    private void fail(Write write, Throwable failure) {
+        unresolved.remove(write);
+        write.future.completeExceptionally(failure);
+    }
+
+    /**
+     * The action and source lines of one write.
+     */
+    private static byte[] encode(String id, Map<String, ?> fields, String vectorField, float[] vector)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128 + vector.length * 12);
+        out.write(encodeAction(INDEX, id));
+        try (JsonGenerator gen = JsonUtils.objectMapper.getFactory().createGenerator(out)) {
+            gen.writeStartObject();
+            for (Map.Entry<String, ?> field : fields.entrySet()) {
+                if (field.getValue() != null) {
+                    gen.writeObjectField(field.getKey(), field.getValue());
+                }
+            }
+            gen.writeArrayFieldStart(vectorField);
+            for (float value : vector) {
+                gen.writeNumber(value);
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    /**
+     * The action line {@code {"<action>":{"_id":"<id>"}}}.
+     */
+    private static byte[] encodeAction(String action, String id) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + id.length());
+        try (JsonGenerator gen = JsonUtils.objectMapper.getFactory().createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeObjectFieldStart(action);
+            gen.writeStringField("_id", id);
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    private static final class Write {
+        private final String id;
+        private final String action;
+        private final byte[] lines;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private int attempts;
+
+        private Write(String id, String action, byte[] lines) {
+            this.id = id;
+            this.action = action;
+            this.lines = lines;
+        }
+    }
+}
@@ -9,13 +9,20 @@ public final class ElasticsearchConfig {
     private final String password;
     private final String apiKey;
     private final String index;
+    private final ElasticsearchWriteConfig writeConfig;
 
     public ElasticsearchConfig(String uris, String username, String password, String apiKey, String index) {
+        this(uris, username, password, apiKey, index, ElasticsearchWriteConfig.defaults());
+    }
+
+    public ElasticsearchConfig(String uris, String username, String password, String apiKey, String index,
+                               ElasticsearchWriteConfig writeConfig) {
         this.uris = uris;
         this.username = username;
         this.password = password;
         this.apiKey = apiKey;
         this.index = index;
+        this.writeConfig = writeConfig == null ? ElasticsearchWriteConfig.defaults() : writeConfig;
     }
 
     public String getUris() {
@@ -38,6 +45,10 @@ public final class ElasticsearchConfig {
         return index;
     }
 
+    public ElasticsearchWriteConfig getWriteConfig() {
+        return writeConfig;
+    }
+
     public boolean hasValidIndex() {
         return index != null && !index.isBlank();
     }
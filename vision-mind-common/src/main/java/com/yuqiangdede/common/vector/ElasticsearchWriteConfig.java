@@ -0,0 +1,181 @@
+package com.yuqiangdede.common.vector;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Write-path settings for {@link ElasticsearchBulkWriter}: when a pending bulk is sent, how many may be in flight, how
+ * rejected writes are retried and how writes become searchable.
+ */
+public final class ElasticsearchWriteConfig {
+
+    /**
+     * How an acknowledged write becomes visible to searches.
+     */
+    public enum RefreshMode {
+        /**
+         * Every bulk is sent with {@code refresh=wait_for}: a write is acknowledged once a scheduled refresh has made
+         * it searchable, without forcing a refresh of its own.
+         */
+        WAIT_UNTIL,
+        /**
+         * Bulks are sent without a refresh parameter and the index is created with {@code index.refresh_interval};
+         * writes are acknowledged as soon as they are indexed and become searchable within that interval.
+         */
+        INTERVAL
+    }
+
+    private final int bulkActions;
+    private final long bulkSizeBytes;
+    private final long flushIntervalMs;
+    private final int concurrentRequests;
+    private final long retryInitialDelayMs;
+    private final int retryMaxRetries;
+    private final long ackTimeoutMs;
+    private final RefreshMode refreshMode;
+    private final String refreshInterval;
+
+    public ElasticsearchWriteConfig(int bulkActions, long bulkSizeBytes, long flushIntervalMs, int concurrentRequests,
+                                    long retryInitialDelayMs, int retryMaxRetries, long ackTimeoutMs,
+                                    RefreshMode refreshMode, String refreshInterval) {
+        this.bulkActions = Math.max(1, bulkActions);
+        this.bulkSizeBytes = Math.max(1024, bulkSizeBytes);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.concurrentRequests = Math.max(1, concurrentRequests);
+        this.retryInitialDelayMs = Math.max(1, retryInitialDelayMs);
+        this.retryMaxRetries = Math.max(0, retryMaxRetries);
+        this.ackTimeoutMs = Math.max(1, ackTimeoutMs);
+        this.refreshMode = refreshMode == null ? RefreshMode.WAIT_UNTIL : refreshMode;
+        this.refreshInterval = refreshInterval == null || refreshInterval.isBlank() ? "1s" : refreshInterval.trim();
+    }
+
+    public static ElasticsearchWriteConfig defaults() {
+        return new ElasticsearchWriteConfig(1000, 5L * 1024 * 1024, 50, 2, 50, 3, 60_000,
+                RefreshMode.WAIT_UNTIL, "1s");
+    }
+
+    /**
+     * Reads {@code es.bulk.*} and {@code es.refresh.*}; missing keys keep the defaults.
+     */
+    public static ElasticsearchWriteConfig fromProperties(Properties properties) {
+        ElasticsearchWriteConfig d = defaults();
+        return new ElasticsearchWriteConfig(
+                (int) getLong(properties, "es.bulk.actions", d.bulkActions),
+                getLong(properties, "es.bulk.size-kb", d.bulkSizeBytes / 1024) * 1024,
+                getLong(properties, "es.bulk.flush-interval-ms", d.flushIntervalMs),
+                (int) getLong(properties, "es.bulk.concurrent-requests", d.concurrentRequests),
+                getLong(properties, "es.bulk.retry.initial-delay-ms", d.retryInitialDelayMs),
+                (int) getLong(properties, "es.bulk.retry.max-retries", d.retryMaxRetries),
+                getLong(properties, "es.bulk.ack-timeout-ms", d.ackTimeoutMs),
+                getRefreshMode(properties, d.refreshMode),
+                properties.getProperty("es.refresh.interval", d.refreshInterval));
+    }
+
+    /**
+     * Pending writes that trigger a bulk request.
+     */
+    public int getBulkActions() {
+        return bulkActions;
+    }
+
+    /**
+     * Pending request bytes that trigger a bulk request.
+     */
+    public long getBulkSizeBytes() {
+        return bulkSizeBytes;
+    }
+
+    /**
+     * Longest a write waits for more writes to share its bulk request.
+     */
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    /**
+     * Bulk requests in flight at once; a writer that would exceed it blocks until one completes.
+     */
+    public int getConcurrentRequests() {
+        return concurrentRequests;
+    }
+
+    /**
+     * First delay of the exponential backoff for writes rejected with 429; it doubles with every retry.
+     */
+    public long getRetryInitialDelayMs() {
+        return retryInitialDelayMs;
+    }
+
+    public int getRetryMaxRetries() {
+        return retryMaxRetries;
+    }
+
+    /**
+     * Longest a caller waits for the acknowledgement of its writes.
+     */
+    public long getAckTimeoutMs() {
+        return ackTimeoutMs;
+    }
+
+    public RefreshMode getRefreshMode() {
+        return refreshMode;
+    }
+
+    /**
+     * {@code index.refresh_interval} of indices created in {@link RefreshMode#INTERVAL} mode.
+     */
+    public String getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Settings for a newly created index; empty unless the refresh interval is managed by this config.
+     */
+    public Map<String, Object> indexSettings() {
+        if (refreshMode == RefreshMode.INTERVAL) {
+            return Map.of("index.refresh_interval", refreshInterval);
+        }
+        return Map.of();
+    }
+
+    /**
+     * {@code refresh} flag of a {@code _delete_by_query}, which accepts no {@code wait_for}: in
+     * {@link RefreshMode#WAIT_UNTIL} mode the request refreshes once when done so the deletes are visible on return,
+     * in {@link RefreshMode#INTERVAL} mode they become visible with the next scheduled refresh.
+     */
+    public boolean refreshAfterDeleteByQuery() {
+        return refreshMode == RefreshMode.WAIT_UNTIL;
+    }
+
+    private static long getLong(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Long.parseLong(value.trim());
+    }
+
+    private static RefreshMode getRefreshMode(Properties properties, RefreshMode defaultValue) {
+        String value = properties.getProperty("es.refresh.mode");
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return RefreshMode.valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    @Override
+    public String toString() {
+        return "ElasticsearchWriteConfig{" +
+                "bulkActions=" + bulkActions +
+                ", bulkSizeBytes=" + bulkSizeBytes +
+                ", flushIntervalMs=" + flushIntervalMs +
+                ", concurrentRequests=" + concurrentRequests +
+                ", retryInitialDelayMs=" + retryInitialDelayMs +
+                ", retryMaxRetries=" + retryMaxRetries +
+                ", ackTimeoutMs=" + ackTimeoutMs +
+                ", refreshMode=" + refreshMode +
+                ", refreshInterval='" + refreshInterval + '\'' +
+                '}';
+    }
+}
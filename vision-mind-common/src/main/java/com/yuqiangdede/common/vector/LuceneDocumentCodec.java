@@ -0,0 +1,181 @@
+package com.yuqiangdede.common.vector;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of the documents and terms {@link LuceneVectorIndex} writes to its {@link WriteAheadLog}.
+ * Supports the field types the vector stores use: KNN float vectors, 1-dimensional {@link LongPoint},
+ * {@link StringField} and {@link StoredField}.
+ */
+final class LuceneDocumentCodec {
+
+    static final byte OP_ADD = 1;
+    static final byte OP_DELETE = 2;
+    static final byte OP_DELETE_ALL = 3;
+
+    private static final byte FIELD_STRING = 1;
+    private static final byte FIELD_STORED_STRING = 2;
+    private static final byte FIELD_STORED_INT = 3;
+    private static final byte FIELD_STORED_LONG = 4;
+    private static final byte FIELD_STORED_FLOAT = 5;
+    private static final byte FIELD_STORED_DOUBLE = 6;
+    private static final byte FIELD_STORED_BYTES = 7;
+    private static final byte FIELD_LONG_POINT = 8;
+    private static final byte FIELD_KNN_FLOAT = 9;
+
+    private LuceneDocumentCodec() {
+    }
+
+    static byte[] encodeDocument(Iterable<? extends IndexableField> document) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<IndexableField> fields = new ArrayList<>();
+        document.forEach(fields::add);
+        out.writeInt(fields.size());
+        for (IndexableField field : fields) {
+            if (field instanceof KnnFloatVectorField knn) {
+                out.writeByte(FIELD_KNN_FLOAT);
+                writeString(out, field.name());
+                out.writeByte(knn.fieldType().vectorSimilarityFunction().ordinal());
+                float[] vector = knn.vectorValue();
+                out.writeInt(vector.length);
+                for (float v : vector) {
+                    out.writeFloat(v);
+                }
+            } else if (field instanceof LongPoint point) {
+                if (point.fieldType().pointDimensionCount() != 1) {
+                    throw new IllegalArgumentException("Only 1-dimensional LongPoint is supported: " + field.name());
+                }
+                out.writeByte(FIELD_LONG_POINT);
+                writeString(out, field.name());
+                out.writeLong(point.numericValue().longValue());
+            } else if (field instanceof StringField) {
+                out.writeByte(FIELD_STRING);
+                writeString(out, field.name());
+                writeString(out, field.stringValue());
+                out.writeBoolean(field.fieldType().stored());
+            } else if (field instanceof StoredField) {
+                writeStoredField(out, field);
+            } else {
+                throw new IllegalArgumentException("Unsupported field type for translog: "
+                        + field.getClass().getSimpleName() + " (" + field.name() + ")");
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Document decodeDocument(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Document doc = new Document();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            String name = readString(in);
+            switch (type) {
+                case FIELD_KNN_FLOAT -> {
+                    VectorSimilarityFunction similarity = VectorSimilarityFunction.values()[in.readByte()];
+                    float[] vector = new float[in.readInt()];
+                    for (int j = 0; j < vector.length; j++) {
+                        vector[j] = in.readFloat();
+                    }
+                    doc.add(new KnnFloatVectorField(name, vector, similarity));
+                }
+                case FIELD_LONG_POINT -> doc.add(new LongPoint(name, in.readLong()));
+                case FIELD_STRING -> {
+                    String value = readString(in);
+                    doc.add(new StringField(name, value, in.readBoolean() ? Field.Store.YES : Field.Store.NO));
+                }
+                case FIELD_STORED_STRING -> doc.add(new StoredField(name, readString(in)));
+                case FIELD_STORED_INT -> doc.add(new StoredField(name, in.readInt()));
+                case FIELD_STORED_LONG -> doc.add(new StoredField(name, in.readLong()));
+                case FIELD_STORED_FLOAT -> doc.add(new StoredField(name, in.readFloat()));
+                case FIELD_STORED_DOUBLE -> doc.add(new StoredField(name, in.readDouble()));
+                case FIELD_STORED_BYTES -> {
+                    byte[] value = new byte[in.readInt()];
+                    in.readFully(value);
+                    doc.add(new StoredField(name, value));
+                }
+                default -> throw new IOException("Unknown translog field type " + type);
+            }
+        }
+        return doc;
+    }
+
+    static byte[] encodeTerm(Term term) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, term.field());
+        writeString(out, term.text());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Term decodeTerm(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        return new Term(readString(in), readString(in));
+    }
+
+    private static void writeStoredField(DataOutputStream out, IndexableField field) throws IOException {
+        Number number = field.numericValue();
+        if (number instanceof Integer) {
+            out.writeByte(FIELD_STORED_INT);
+            writeString(out, field.name());
+            out.writeInt(number.intValue());
+        } else if (number instanceof Long) {
+            out.writeByte(FIELD_STORED_LONG);
+            writeString(out, field.name());
+            out.writeLong(number.longValue());
+        } else if (number instanceof Float) {
+            out.writeByte(FIELD_STORED_FLOAT);
+            writeString(out, field.name());
+            out.writeFloat(number.floatValue());
+        } else if (number instanceof Double) {
+            out.writeByte(FIELD_STORED_DOUBLE);
+            writeString(out, field.name());
+            out.writeDouble(number.doubleValue());
+        } else if (field.stringValue() != null) {
+            out.writeByte(FIELD_STORED_STRING);
+            writeString(out, field.name());
+            writeString(out, field.stringValue());
+        } else if (field.binaryValue() != null) {
+            BytesRef value = field.binaryValue();
+            out.writeByte(FIELD_STORED_BYTES);
+            writeString(out, field.name());
+            out.writeInt(value.length);
+            out.write(value.bytes, value.offset, value.length);
+        } else {
+            throw new IllegalArgumentException("Unsupported stored field value: " + field.name());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
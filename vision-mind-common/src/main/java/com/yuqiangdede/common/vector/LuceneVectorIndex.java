@@ -0,0 +1,525 @@
+package com.yuqiangdede.common.vector;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.KnnVectorsFormat;
+import org.apache.lucene.codecs.lucene912.Lucene912Codec;
+import org.apache.lucene.codecs.lucene99.Lucene99HnswScalarQuantizedVectorsFormat;
+import org.apache.lucene.codecs.lucene99.Lucene99HnswVectorsFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lucene index with a group-commit write path, shared by the FFE, ReID and TBIR vector stores.
+ * <p>
+ * Writes are not committed one by one. Each add/delete is appended to a translog, applied to the {@link IndexWriter}
+ * and acknowledged once the translog record is durable (see {@link WriteAheadLog.Durability}). A background
+ * {@link ControlledRealTimeReopenThread} makes writes searchable within {@code maxStaleMs}, and a Lucene commit runs
+ * on a timer or after {@code commitMaxDocs} writes, after which the covered translog generations are deleted.
+ * <p>
+ * After a crash, translog records newer than the last commit are replayed on open. Every document carries a hidden
+ * op id so that replaying a record the commit already contains replaces the document instead of duplicating it.
+ * <p>
+ * {@link #searchBatch} runs several queries on one acquired searcher across a small search thread pool.
+ */
+@Slf4j
+public final class LuceneVectorIndex implements Closeable {
+
+    static final String OP_ID_FIELD = "_op_id";
+    private static final AtomicInteger SEARCH_THREADS = new AtomicInteger();
+    private static final String TRANSLOG_GENERATION_KEY = "translog_generation";
+
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+    private final WriteAheadLog translog;
+    private final LuceneWriteConfig config;
+    private final ScheduledExecutorService maintenance;
+    private final ExecutorService searchExecutor;
+
+    /**
+     * Orders translog append and IndexWriter apply, so the translog order is the apply order.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Object commitLock = new Object();
+    private final AtomicInteger uncommitted = new AtomicInteger();
+    private final AtomicBoolean commitScheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private LuceneVectorIndex(Directory directory, IndexWriter writer, WriteAheadLog translog, LuceneWriteConfig config)
+            throws IOException {
+        this.directory = directory;
+        this.writer = writer;
+        this.translog = translog;
+        this.config = config;
+        this.searcherManager = new SearcherManager(writer, new SearcherFactory());
+        this.reopenThread = new ControlledRealTimeReopenThread<>(writer, searcherManager,
+                config.getMaxStaleMs() / 1000.0, config.getMinStaleMs() / 1000.0);
+        reopenThread.setName("lucene-nrt-reopen");
+        reopenThread.setDaemon(true);
+        reopenThread.start();
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lucene-commit");
+            t.setDaemon(true);
+            return t;
+        });
+        maintenance.scheduleWithFixedDelay(this::commitQuietly,
+                config.getCommitIntervalMs(), config.getCommitIntervalMs(), TimeUnit.MILLISECONDS);
+        if (config.getDurability() == WriteAheadLog.Durability.ASYNC) {
+            maintenance.scheduleWithFixedDelay(this::syncQuietly,
+                    config.getSyncIntervalMs(), config.getSyncIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+        this.searchExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "lucene-search-" + SEARCH_THREADS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Reads the hits of one query of {@link #searchBatch} while the shared searcher is still acquired.
+     */
+    @FunctionalInterface
+    public interface HitReader<T> {
+        T read(IndexSearcher searcher, TopDocs topDocs) throws IOException;
+    }
+
+    /**
+     * Opens (or creates) the index at {@code indexPath} and replays any translog left by an unclean shutdown.
+     * The translog lives next to the index in {@code <indexPath>-translog}.
+     */
+    public static LuceneVectorIndex open(String indexPath, LuceneWriteConfig config) throws IOException {
+        LuceneWriteConfig effective = config == null ? LuceneWriteConfig.defaults() : config;
+        Path path = Paths.get(indexPath);
+        Path translogDir = translogDir(path);
+        FSDirectory directory = FSDirectory.open(path);
+        IndexWriter writer = null;
+        WriteAheadLog translog = null;
+        try {
+            IndexWriterConfig writerConfig = new IndexWriterConfig();
+            writerConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            writerConfig.setCodec(codec(effective.getVectorFormat()));
+            writer = new IndexWriter(directory, writerConfig);
+            long committedGeneration = committedGeneration(writer);
+            long replayed = replay(writer, translogDir, committedGeneration);
+            List<Long> generations = WriteAheadLog.generations(translogDir);
+            // never reuse the opIds of indexed documents, even when the translog directory was lost
+            long nextGeneration = Math.max(Math.max(1, committedGeneration),
+                    generations.isEmpty() ? 1 : generations.get(generations.size() - 1) + 1);
+            translog = new WriteAheadLog(translogDir, nextGeneration);
+            writer.setLiveCommitData(Map.of(TRANSLOG_GENERATION_KEY, String.valueOf(nextGeneration)).entrySet());
+            writer.commit();
+            translog.trimBelow(nextGeneration);
+            if (replayed > 0) {
+                log.info("Lucene index {} recovered {} translog operations", indexPath, replayed);
+            }
+            return new LuceneVectorIndex(directory, writer, translog, effective);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(translog, e);
+            closeQuietly(writer, e);
+            closeQuietly(directory, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a document.
+     *
+     * @return generation to pass to {@link #awaitVisible(long)}
+     */
+    public long add(Document document) throws IOException {
+        byte[] payload = LuceneDocumentCodec.encodeDocument(document);
+        long generation;
+        WriteAheadLog.Location location;
+        writeLock.lock();
+        try {
+            ensureOpen();
+            location = translog.append(LuceneDocumentCodec.OP_ADD, payload);
+            document.add(new StringField(OP_ID_FIELD, location.opId(), Field.Store.NO));
+            generation = writer.addDocument(document);
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite(location, 1);
+        return generation;
+    }
+
+    /**
+     * Adds several documents under one lock acquisition; with {@link WriteAheadLog.Durability#REQUEST} the call
+     * waits for a single translog fsync covering all of them.
+     *
+     * @return generation to pass to {@link #awaitVisible(long)}, 0 for an empty list
+     */
+    public long addAll(List<Document> documents) throws IOException {
+        if (documents.isEmpty()) {
+            return 0L;
+        }
+        List<byte[]> payloads = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            payloads.add(LuceneDocumentCodec.encodeDocument(document));
+        }
+        long generation = 0L;
+        WriteAheadLog.Location location = null;
+        writeLock.lock();
+        try {
+            ensureOpen();
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                location = translog.append(LuceneDocumentCodec.OP_ADD, payloads.get(i));
+                document.add(new StringField(OP_ID_FIELD, location.opId(), Field.Store.NO));
+                generation = writer.addDocument(document);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite(location, documents.size());
+        return generation;
+    }
+
+    /**
+     * Deletes every document matching {@code term}.
+     *
+     * @return generation to pass to {@link #awaitVisible(long)}
+     */
+    public long delete(Term term) throws IOException {
+        byte[] payload = LuceneDocumentCodec.encodeTerm(term);
+        long generation;
+        WriteAheadLog.Location location;
+        writeLock.lock();
+        try {
+            ensureOpen();
+            location = translog.append(LuceneDocumentCodec.OP_DELETE, payload);
+            generation = writer.deleteDocuments(term);
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite(location, 1);
+        return generation;
+    }
+
+    /**
+     * @return generation to pass to {@link #awaitVisible(long)}
+     */
+    public long deleteAll() throws IOException {
+        long generation;
+        WriteAheadLog.Location location;
+        writeLock.lock();
+        try {
+            ensureOpen();
+            location = translog.append(LuceneDocumentCodec.OP_DELETE_ALL, new byte[0]);
+            generation = writer.deleteAll();
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite(location, 1);
+        return generation;
+    }
+
+    /**
+     * Blocks until searchers acquired from {@link #searcherManager()} reflect the write that returned
+     * {@code generation}; the reopen thread refreshes within {@code minStaleMs} while someone is waiting.
+     */
+    public void awaitVisible(long generation) throws InterruptedException {
+        reopenThread.waitForGeneration(generation);
+    }
+
+    /**
+     * @return whether the generation became visible within {@code maxWaitMs}
+     */
+    public boolean awaitVisible(long generation, int maxWaitMs) throws InterruptedException {
+        return reopenThread.waitForGeneration(generation, maxWaitMs);
+    }
+
+    public SearcherManager searcherManager() {
+        return searcherManager;
+    }
+
+    /**
+     * Runs {@code queries} against one acquired searcher, concurrently on the index's search executor, so a batch
+     * sees a single point-in-time view and pays for one acquire/release. Returns after every query has finished.
+     *
+     * @param n      hits per query
+     * @param reader turns the hits of one query into a result; runs on the search thread
+     * @return one result per query, in query order
+     */
+    public <T> List<T> searchBatch(List<Query> queries, int n, HitReader<T> reader) throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            if (queries.size() == 1) {
+                return List.of(reader.read(searcher, searcher.search(queries.get(0), n)));
+            }
+            List<Future<T>> futures = new ArrayList<>(queries.size());
+            for (Query query : queries) {
+                futures.add(searchExecutor.submit(() -> reader.read(searcher, searcher.search(query, n))));
+            }
+            List<T> results = new ArrayList<>(queries.size());
+            Throwable failure = null;
+            boolean interrupted = false;
+            // wait for every task before the searcher is released, even after a failure
+            for (Future<T> future : futures) {
+                while (true) {
+                    try {
+                        results.add(future.get());
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        failure = failure == null ? e.getCause() : failure;
+                        break;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure instanceof IOException io) {
+                throw io;
+            }
+            if (failure instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (failure != null) {
+                throw new IOException("Lucene batch search failed", failure);
+            }
+            return results;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * kNN query restricted to documents whose keyword fields equal {@code terms}.
+     * <p>
+     * The terms are passed as the query's filter rather than as {@code FILTER} clauses next to it, so the HNSW walk
+     * only collects matching documents and a selective filter still yields {@code k} hits instead of whatever part of
+     * the global top {@code k} survives. Lucene scores a segment exactly when the filter matches no more than
+     * {@code k} of its documents, or once the graph walk would visit more documents than the filter matches.
+     *
+     * @param terms field-to-value equality filter; {@code null} values and an empty map mean no filter
+     */
+    public static Query knnQuery(String field, float[] vector, int k, Map<String, String> terms) {
+        BooleanQuery.Builder filter = new BooleanQuery.Builder();
+        int clauses = 0;
+        if (terms != null) {
+            for (Map.Entry<String, String> entry : terms.entrySet()) {
+                if (entry.getValue() != null) {
+                    filter.add(new TermQuery(new Term(entry.getKey(), entry.getValue())), BooleanClause.Occur.FILTER);
+                    clauses++;
+                }
+            }
+        }
+        int limit = Math.max(k, 1);
+        return clauses == 0
+                ? new KnnFloatVectorQuery(field, vector, limit)
+                : new KnnFloatVectorQuery(field, vector, limit, filter.build());
+    }
+
+    /**
+     * Commits everything applied so far and drops the translog generations the commit covers.
+     */
+    public void commit() throws IOException {
+        synchronized (commitLock) {
+            long generation;
+            writeLock.lock();
+            try {
+                ensureOpen();
+                // records of older generations have all been applied to the writer at this point
+                generation = translog.roll();
+                writer.setLiveCommitData(Map.of(TRANSLOG_GENERATION_KEY, String.valueOf(generation)).entrySet());
+                uncommitted.set(0);
+            } finally {
+                writeLock.unlock();
+            }
+            writer.commit();
+            translog.trimBelow(generation);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        stopMaintenance();
+        try {
+            commit();
+        } finally {
+            closed = true;
+            searchExecutor.shutdown();
+            reopenThread.close();
+            searcherManager.close();
+            writer.close();
+            translog.close();
+            directory.close();
+        }
+    }
+
+    /**
+     * Simulates a crash for tests: drops uncommitted writer state and leaves the translog as it is on disk.
+     */
+    void crash() throws IOException {
+        closed = true;
+        maintenance.shutdownNow();
+        searchExecutor.shutdown();
+        reopenThread.close();
+        searcherManager.close();
+        translog.close();
+        writer.rollback();
+        directory.close();
+    }
+
+    private void afterWrite(WriteAheadLog.Location location, int writes) throws IOException {
+        if (config.getDurability() == WriteAheadLog.Durability.REQUEST) {
+            translog.sync(location);
+        }
+        if (uncommitted.addAndGet(writes) >= config.getCommitMaxDocs() && commitScheduled.compareAndSet(false, true)) {
+            maintenance.execute(() -> {
+                commitScheduled.set(false);
+                commitQuietly();
+            });
+        }
+    }
+
+    private void commitQuietly() {
+        if (closed || uncommitted.get() == 0) {
+            return;
+        }
+        try {
+            commit();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Lucene background commit failed", e);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            translog.syncAll();
+        } catch (IOException e) {
+            log.warn("Lucene translog sync failed", e);
+        }
+    }
+
+    /**
+     * Lets a running background commit or sync finish: interrupting a thread blocked in file I/O would close the
+     * log channel.
+     */
+    private void stopMaintenance() {
+        maintenance.shutdown();
+        try {
+            maintenance.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Lucene index is closed");
+        }
+    }
+
+    /**
+     * Translog generation recorded by the last commit: everything before it is in the index. 0 for a new index.
+     */
+    private static long committedGeneration(IndexWriter writer) {
+        long generation = 0;
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (TRANSLOG_GENERATION_KEY.equals(entry.getKey())) {
+                    generation = Long.parseLong(entry.getValue());
+                }
+            }
+        }
+        return generation;
+    }
+
+    private static long replay(IndexWriter writer, Path translogDir, long fromGeneration) throws IOException {
+        return WriteAheadLog.replay(translogDir, fromGeneration, entry -> {
+            switch (entry.op()) {
+                case LuceneDocumentCodec.OP_ADD -> {
+                    Document doc = LuceneDocumentCodec.decodeDocument(entry.payload());
+                    String opId = entry.location().opId();
+                    doc.add(new StringField(OP_ID_FIELD, opId, Field.Store.NO));
+                    writer.updateDocument(new Term(OP_ID_FIELD, opId), doc);
+                }
+                case LuceneDocumentCodec.OP_DELETE -> writer.deleteDocuments(LuceneDocumentCodec.decodeTerm(entry.payload()));
+                case LuceneDocumentCodec.OP_DELETE_ALL -> writer.deleteAll();
+                default -> throw new IOException("Unknown translog op " + entry.op());
+            }
+        });
+    }
+
+    /**
+     * Codec writing vector fields in {@code format}. Readers need no matching setting: each segment records the
+     * format it was written with.
+     */
+    static Codec codec(LuceneWriteConfig.VectorFormat format) {
+        if (format == LuceneWriteConfig.VectorFormat.FLOAT32) {
+            return Codec.getDefault();
+        }
+        boolean int4 = format == LuceneWriteConfig.VectorFormat.INT4;
+        KnnVectorsFormat vectors = new Lucene99HnswScalarQuantizedVectorsFormat(
+                Lucene99HnswVectorsFormat.DEFAULT_MAX_CONN, Lucene99HnswVectorsFormat.DEFAULT_BEAM_WIDTH,
+                1, int4 ? 4 : 7, int4, null, null);
+        return new Lucene912Codec() {
+            @Override
+            public KnnVectorsFormat getKnnVectorsFormatForField(String field) {
+                return vectors;
+            }
+        };
+    }
+
+    static Path translogDir(Path indexPath) {
+        return indexPath.resolveSibling(indexPath.getFileName() + "-translog");
+    }
+
+    /**
+     * Closes {@code closeable} while failing to open; a close failure is attached to {@code failure} instead of
+     * replacing it.
+     */
+    private static void closeQuietly(Closeable closeable, Throwable failure) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException | RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.yuqiangdede.common.vector;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Write-path settings for {@link LuceneVectorIndex}: NRT refresh staleness, commit cadence, translog durability and
+ * the on-disk vector format.
+ */
+public final class LuceneWriteConfig {
+
+    /**
+     * Encoding of the {@code KnnFloatVectorField}s of an index. Applies to segments written from now on; existing
+     * segments keep their format until they are merged.
+     */
+    public enum VectorFormat {
+        /**
+         * Lucene's default HNSW graph over float32 vectors.
+         */
+        FLOAT32,
+        /**
+         * HNSW over scalar-quantized vectors, 7 bits per dimension like Elasticsearch's {@code int8_hnsw}. The
+         * graph is searched on the quantized copy, about a quarter of the float32 working set; the float32 vectors
+         * stay on disk for merges.
+         */
+        INT8,
+        /**
+         * As {@link #INT8} with 4-bit codes packed two per byte; the vector dimension must be even.
+         */
+        INT4
+    }
+
+    private final long maxStaleMs;
+    private final long minStaleMs;
+    private final long commitIntervalMs;
+    private final int commitMaxDocs;
+    private final WriteAheadLog.Durability durability;
+    private final long syncIntervalMs;
+    private final VectorFormat vectorFormat;
+
+    public LuceneWriteConfig(long maxStaleMs, long minStaleMs, long commitIntervalMs, int commitMaxDocs,
+                             WriteAheadLog.Durability durability, long syncIntervalMs) {
+        this(maxStaleMs, minStaleMs, commitIntervalMs, commitMaxDocs, durability, syncIntervalMs, VectorFormat.FLOAT32);
+    }
+
+    public LuceneWriteConfig(long maxStaleMs, long minStaleMs, long commitIntervalMs, int commitMaxDocs,
+                             WriteAheadLog.Durability durability, long syncIntervalMs, VectorFormat vectorFormat) {
+        this.maxStaleMs = Math.max(1, maxStaleMs);
+        this.minStaleMs = Math.max(1, Math.min(minStaleMs, this.maxStaleMs));
+        this.commitIntervalMs = Math.max(1, commitIntervalMs);
+        this.commitMaxDocs = Math.max(1, commitMaxDocs);
+        this.durability = durability == null ? WriteAheadLog.Durability.REQUEST : durability;
+        this.syncIntervalMs = Math.max(1, syncIntervalMs);
+        this.vectorFormat = vectorFormat == null ? VectorFormat.FLOAT32 : vectorFormat;
+    }
+
+    public static LuceneWriteConfig defaults() {
+        return new LuceneWriteConfig(500, 20, 30_000, 10_000, WriteAheadLog.Durability.REQUEST, 200);
+    }
+
+    /**
+     * Reads {@code lucene.refresh.*}, {@code lucene.commit.*}, {@code lucene.translog.*} and
+     * {@code lucene.vector.format}; missing keys keep the defaults.
+     */
+    public static LuceneWriteConfig fromProperties(Properties properties) {
+        LuceneWriteConfig d = defaults();
+        return new LuceneWriteConfig(
+                getLong(properties, "lucene.refresh.max-stale-ms", d.maxStaleMs),
+                getLong(properties, "lucene.refresh.min-stale-ms", d.minStaleMs),
+                getLong(properties, "lucene.commit.interval-ms", d.commitIntervalMs),
+                (int) getLong(properties, "lucene.commit.max-docs", d.commitMaxDocs),
+                getDurability(properties, d.durability),
+                getLong(properties, "lucene.translog.sync-interval-ms", d.syncIntervalMs),
+                getVectorFormat(properties, d.vectorFormat));
+    }
+
+    /**
+     * Upper bound on how long a write may stay invisible to searchers when nobody waits for it.
+     */
+    public long getMaxStaleMs() {
+        return maxStaleMs;
+    }
+
+    /**
+     * Refresh delay applied when a caller is waiting for a generation.
+     */
+    public long getMinStaleMs() {
+        return minStaleMs;
+    }
+
+    public long getCommitIntervalMs() {
+        return commitIntervalMs;
+    }
+
+    public int getCommitMaxDocs() {
+        return commitMaxDocs;
+    }
+
+    public WriteAheadLog.Durability getDurability() {
+        return durability;
+    }
+
+    public long getSyncIntervalMs() {
+        return syncIntervalMs;
+    }
+
+    public VectorFormat getVectorFormat() {
+        return vectorFormat;
+    }
+
+    private static long getLong(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Long.parseLong(value.trim());
+    }
+
+    private static WriteAheadLog.Durability getDurability(Properties properties, WriteAheadLog.Durability defaultValue) {
+        String value = properties.getProperty("lucene.translog.durability");
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return WriteAheadLog.Durability.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private static VectorFormat getVectorFormat(Properties properties, VectorFormat defaultValue) {
+        String value = properties.getProperty("lucene.vector.format");
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return VectorFormat.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    @Override
+    public String toString() {
+        return "LuceneWriteConfig{" +
+                "maxStaleMs=" + maxStaleMs +
+                ", minStaleMs=" + minStaleMs +
+                ", commitIntervalMs=" + commitIntervalMs +
+                ", commitMaxDocs=" + commitMaxDocs +
+                ", durability=" + durability +
+                ", syncIntervalMs=" + syncIntervalMs +
+                ", vectorFormat=" + vectorFormat +
+                '}';
+    }
+}
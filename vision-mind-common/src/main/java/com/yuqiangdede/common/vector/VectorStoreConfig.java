@@ -0,0 +1,139 @@
+package com.yuqiangdede.common.vector;
+
+import com.yuqiangdede.common.chroma.ChromaPersistenceConfig;
+import com.yuqiangdede.common.chroma.HnswConfig;
+import com.yuqiangdede.common.chroma.QuantizationConfig;
+
+/**
+ * Everything a vector store helper needs to open its backend: the selected {@link VectorStoreMode} plus the settings
+ * of each backend. Only the settings of the selected mode are used; unset ones keep their defaults.
+ */
+public final class VectorStoreConfig {
+
+    private final VectorStoreMode mode;
+    private final String lucenePath;
+    private final LuceneWriteConfig luceneWrite;
+    private final ChromaPersistenceConfig persistence;
+    private final HnswConfig hnsw;
+    private final QuantizationConfig quantization;
+    private final ElasticsearchConfig elasticsearch;
+
+    private VectorStoreConfig(Builder builder) {
+        this.mode = builder.mode == null ? VectorStoreMode.LUCENE : builder.mode;
+        this.lucenePath = builder.lucenePath;
+        this.luceneWrite = builder.luceneWrite == null ? LuceneWriteConfig.defaults() : builder.luceneWrite;
+        this.persistence = builder.persistence == null ? ChromaPersistenceConfig.disabled() : builder.persistence;
+        this.hnsw = builder.hnsw == null ? HnswConfig.defaults() : builder.hnsw;
+        this.quantization = builder.quantization == null ? QuantizationConfig.none() : builder.quantization;
+        this.elasticsearch = builder.elasticsearch;
+    }
+
+    /**
+     * @param mode selected backend, {@code null} means {@link VectorStoreMode#LUCENE}
+     */
+    public static Builder builder(VectorStoreMode mode) {
+        return new Builder(mode);
+    }
+
+    public VectorStoreMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Directory of the Lucene index (mode {@code LUCENE}).
+     */
+    public String getLucenePath() {
+        return lucenePath;
+    }
+
+    /**
+     * Lucene refresh, commit and translog settings (mode {@code LUCENE}).
+     */
+    public LuceneWriteConfig getLuceneWrite() {
+        return luceneWrite;
+    }
+
+    /**
+     * Snapshot and write-ahead log settings of the in-memory store (mode {@code MEMORY}).
+     */
+    public ChromaPersistenceConfig getPersistence() {
+        return persistence;
+    }
+
+    /**
+     * Graph settings of the HNSW store (mode {@code HNSW}).
+     */
+    public HnswConfig getHnsw() {
+        return hnsw;
+    }
+
+    /**
+     * Vector compression of the in-memory store (mode {@code MEMORY}).
+     */
+    public QuantizationConfig getQuantization() {
+        return quantization;
+    }
+
+    /**
+     * Connection, index and bulk write settings (mode {@code ELASTICSEARCH}); may be {@code null} for other modes.
+     */
+    public ElasticsearchConfig getElasticsearch() {
+        return elasticsearch;
+    }
+
+    @Override
+    public String toString() {
+        return "VectorStoreConfig{" +
+                "mode=" + mode +
+                ", lucenePath='" + lucenePath + '\'' +
+                ", luceneWrite=" + luceneWrite +
+                ", hnsw=" + hnsw +
+                ", quantization=" + quantization +
+                ", elasticsearchIndex=" + (elasticsearch == null ? null : elasticsearch.getIndex()) +
+                '}';
+    }
+
+    public static final class Builder {
+        private final VectorStoreMode mode;
+        private String lucenePath;
+        private LuceneWriteConfig luceneWrite;
+        private ChromaPersistenceConfig persistence;
+        private HnswConfig hnsw;
+        private QuantizationConfig quantization;
+        private ElasticsearchConfig elasticsearch;
+
+        private Builder(VectorStoreMode mode) {
+            this.mode = mode;
+        }
+
+        public Builder lucene(String path, LuceneWriteConfig writeConfig) {
+            this.lucenePath = path;
+            this.luceneWrite = writeConfig;
+            return this;
+        }
+
+        public Builder persistence(ChromaPersistenceConfig persistence) {
+            this.persistence = persistence;
+            return this;
+        }
+
+        public Builder hnsw(HnswConfig hnsw) {
+            this.hnsw = hnsw;
+            return this;
+        }
+
+        public Builder quantization(QuantizationConfig quantization) {
+            this.quantization = quantization;
+            return this;
+        }
+
+        public Builder elasticsearch(ElasticsearchConfig elasticsearch) {
+            this.elasticsearch = elasticsearch;
+            return this;
+        }
+
+        public VectorStoreConfig build() {
+            return new VectorStoreConfig(this);
+        }
+    }
+}
@@ -3,11 +3,13 @@ package com.yuqiangdede.common.vector;
 import java.util.Locale;
 
 /**
- * Supported backing stores for vector persistence and retrieval.
+ * Supported backing stores for vector persistence and retrieval. {@code MEMORY} is an exact scan, {@code HNSW} an
+ * approximate in-process graph index.
  */
 public enum VectorStoreMode {
     LUCENE,
     MEMORY,
+    HNSW,
     ELASTICSEARCH;
 
     /**
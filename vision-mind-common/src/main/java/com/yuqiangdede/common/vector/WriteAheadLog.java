@@ -0,0 +1,288 @@
+package com.yuqiangdede.common.vector;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.util.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log shared by {@link LuceneVectorIndex} and the persistent in-memory vector store.
+ * <p>
+ * One file per generation ({@code translog-<gen>.tlog}); a record is {@code [int length][byte op][payload][int crc32]}.
+ * A torn record at the tail of a file (crash mid-write) ends replay of that file. The owner rolls to a new generation
+ * when it checkpoints (Lucene commit, snapshot) and deletes the generations the checkpoint covers.
+ */
+@Slf4j
+public final class WriteAheadLog implements Closeable {
+
+    /**
+     * When an acknowledged write is guaranteed to be on disk.
+     */
+    public enum Durability {
+        /**
+         * Every write returns only after its record is fsynced; concurrent writers share one fsync.
+         */
+        REQUEST,
+        /**
+         * The log is fsynced on a timer; a crash may lose the writes of the last sync interval.
+         */
+        ASYNC
+    }
+
+    private static final String FILE_PREFIX = "translog-";
+    private static final String FILE_SUFFIX = ".tlog";
+
+    /**
+     * Position of a record; {@code end} is what has to be fsynced for the record to be durable.
+     */
+    public record Location(long generation, long offset, long end) {
+        /**
+         * Stable id of the operation, identical when the record is replayed.
+         */
+        public String opId() {
+            return generation + "_" + offset;
+        }
+    }
+
+    public record Entry(Location location, byte op, byte[] payload) {
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(Entry entry) throws IOException;
+    }
+
+    private final Path dir;
+    private final Object syncLock = new Object();
+
+    // guarded by this
+    private FileChannel channel;
+    private long generation;
+    private long position;
+
+    // guarded by syncLock
+    private long syncedGeneration;
+    private long syncedPosition;
+
+    public WriteAheadLog(Path dir, long generation) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        openGeneration(generation);
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Writes a record to the OS; call {@link #sync(Location)} to make it durable.
+     */
+    public synchronized Location append(byte op, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(op);
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 1 + payload.length + 4);
+        buffer.putInt(1 + payload.length).put(op).put(payload).putInt((int) crc.getValue()).flip();
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position += buffer.capacity();
+        return new Location(generation, offset, position);
+    }
+
+    /**
+     * Group fsync: the first caller forces the channel for everything written so far, later callers whose record is
+     * already covered return immediately.
+     */
+    public void sync(Location location) throws IOException {
+        synchronized (syncLock) {
+            if (isSynced(location)) {
+                return;
+            }
+            FileChannel current;
+            long currentGeneration;
+            long currentPosition;
+            synchronized (this) {
+                current = channel;
+                currentGeneration = generation;
+                currentPosition = position;
+            }
+            current.force(false);
+            syncedGeneration = currentGeneration;
+            syncedPosition = currentPosition;
+        }
+    }
+
+    /**
+     * Fsyncs everything written so far.
+     */
+    public void syncAll() throws IOException {
+        Location head;
+        synchronized (this) {
+            head = new Location(generation, position, position);
+        }
+        sync(head);
+    }
+
+    /**
+     * Closes the current generation and starts a new one.
+     *
+     * @return the new generation; every record of older generations was appended before this call returned
+     */
+    public long roll() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                channel.force(false);
+                channel.close();
+                openGeneration(generation + 1);
+                syncedGeneration = generation;
+                syncedPosition = 0;
+                return generation;
+            }
+        }
+    }
+
+    /**
+     * Deletes generations below {@code minGeneration}, i.e. the ones covered by a checkpoint.
+     */
+    public void trimBelow(long minGeneration) throws IOException {
+        for (long gen : generations(dir)) {
+            if (gen < minGeneration) {
+                Files.deleteIfExists(file(dir, gen));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (channel.isOpen()) {
+                    channel.force(false);
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    private boolean isSynced(Location location) {
+        // roll() forces the old file, so any older generation is already durable
+        return location.generation() < syncedGeneration
+                || (location.generation() == syncedGeneration && location.end() <= syncedPosition);
+    }
+
+    private void openGeneration(long gen) throws IOException {
+        channel = FileChannel.open(file(dir, gen), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        generation = gen;
+        position = 0;
+        try {
+            IOUtils.fsync(dir, true);
+        } catch (IOException e) {
+            // directory fsync is not supported everywhere (e.g. Windows)
+            log.debug("translog directory fsync skipped: {}", e.getMessage());
+        }
+    }
+
+    public static Path file(Path dir, long gen) {
+        return dir.resolve(FILE_PREFIX + gen + FILE_SUFFIX);
+    }
+
+    /**
+     * @return generations present in {@code dir}, ascending
+     */
+    public static List<Long> generations(Path dir) throws IOException {
+        List<Long> result = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return result;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX))
+                    .map(name -> name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()))
+                    .forEach(gen -> {
+                        try {
+                            result.add(Long.parseLong(gen));
+                        } catch (NumberFormatException ignored) {
+                            // not ours
+                        }
+                    });
+        }
+        result.sort(Long::compare);
+        return result;
+    }
+
+    /**
+     * Replays every intact record of generations {@code >= fromGeneration}, in order.
+     *
+     * @return number of records replayed
+     */
+    public static long replay(Path dir, long fromGeneration, EntryConsumer consumer) throws IOException {
+        long count = 0;
+        for (long gen : generations(dir)) {
+            if (gen < fromGeneration) {
+                continue;
+            }
+            Path path = file(dir, gen);
+            long size = Files.size(path);
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+                DataInputStream data = new DataInputStream(in);
+                long offset = 0;
+                while (true) {
+                    int length;
+                    try {
+                        length = data.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (length <= 0) {
+                        log.warn("translog {} has a corrupt record at offset {}, ignoring the rest", gen, offset);
+                        break;
+                    }
+                    // a corrupt length must not allocate more than the file can hold; the CRC check comes after the read
+                    if (length > size - offset - 4 - 4) {
+                        log.warn("translog {} has a record at offset {} longer than the file ({} bytes), ignoring the rest",
+                                gen, offset, length);
+                        break;
+                    }
+                    byte[] body = new byte[length];
+                    int crcValue;
+                    try {
+                        data.readFully(body);
+                        crcValue = data.readInt();
+                    } catch (EOFException e) {
+                        log.warn("translog {} ends with a torn record at offset {}, ignoring it", gen, offset);
+                        break;
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(body);
+                    if ((int) crc.getValue() != crcValue) {
+                        log.warn("translog {} has a checksum mismatch at offset {}, ignoring the rest", gen, offset);
+                        break;
+                    }
+                    long end = offset + 4 + length + 4;
+                    byte[] payload = new byte[length - 1];
+                    System.arraycopy(body, 1, payload, 0, payload.length);
+                    consumer.accept(new Entry(new Location(gen, offset, end), body[0], payload));
+                    offset = end;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
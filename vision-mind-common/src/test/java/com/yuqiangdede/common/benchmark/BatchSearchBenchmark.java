@@ -0,0 +1,97 @@
+package com.yuqiangdede.common.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yuqiangdede.common.chroma.EmbeddingRecord;
+import com.yuqiangdede.common.chroma.InMemoryChromaStore;
+import com.yuqiangdede.common.chroma.SearchResult;
+import com.yuqiangdede.common.util.VectorUtil;
+
+/**
+ * 内存向量库多查询检索：逐条调用 {@code similaritySearch} 与一次 {@code similaritySearchBatch} 的对比，512 维，
+ * 每个查询取 top-10。
+ * <p>
+ * 批量检索按行分块、每块对所有查询打分（每 4 个查询共用一次行加载），矩阵只从内存读一遍；查询数 5 对应
+ * 以图搜图的扩写条数，16 对应一张图里人脸较多的情况。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx3g"})
+public class BatchSearchBenchmark {
+
+    private static final int DIM = 512;
+    private static final int TOP_K = 10;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"5", "16"})
+    public int queries;
+
+    private InMemoryChromaStore store;
+    private float[][] queryVectors;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        store = new InMemoryChromaStore();
+        for (int i = 0; i < size; i++) {
+            store.upsert(new EmbeddingRecord("id-" + i, VectorUtil.normalizeVector(gaussian(random)),
+                    Map.of("groupId", "g" + (i % 4)), Map.of(), 0L));
+        }
+        queryVectors = new float[queries][];
+        for (int q = 0; q < queries; q++) {
+            queryVectors[q] = gaussian(random);
+        }
+    }
+
+    @Benchmark
+    public List<List<SearchResult>> oneByOne() {
+        List<List<SearchResult>> results = new ArrayList<>(queries);
+        for (float[] query : queryVectors) {
+            results.add(store.similaritySearch(query, TOP_K, null, 0));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<List<SearchResult>> batch() {
+        return store.similaritySearchBatch(queryVectors, TOP_K, null, 0);
+    }
+
+    private static float[] gaussian(Random random) {
+        float[] vector = new float[DIM];
+        for (int d = 0; d < DIM; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BatchSearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
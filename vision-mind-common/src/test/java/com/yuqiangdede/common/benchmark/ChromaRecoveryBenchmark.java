@@ -0,0 +1,114 @@
+package com.yuqiangdede.common.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yuqiangdede.common.chroma.ChromaPersistenceConfig;
+import com.yuqiangdede.common.chroma.DurableChromaStore;
+import com.yuqiangdede.common.chroma.EmbeddingRecord;
+import com.yuqiangdede.common.vector.WriteAheadLog;
+
+/**
+ * 内存向量库重启耗时：{@code snapshot} 为映射快照文件整块拷入矩阵后只回放 1 万条日志尾部，
+ * {@code walOnly} 为没有快照、整份预写日志逐条解码回放，512 维，10 万与 100 万条。
+ * <p>
+ * 数据在临时目录中生成一次，每次测量都从磁盘重新打开；100 万条时快照约 2 GB，生成数据时矩阵扩容需要约 6 GB 堆，
+ * 只跑 10 万条时可用 {@code -jvmArgsAppend "-Xms2g -Xmx2g"} 覆盖。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ChromaRecoveryBenchmark {
+
+    private static final int DIM = 512;
+    private static final int WAL_TAIL = 10_000;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"snapshot", "walOnly"})
+    public String layout;
+
+    private Path dir;
+    private ChromaPersistenceConfig config;
+    private float[] query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("chroma-recovery");
+        // 快照只由基准显式触发，关闭时不再写快照，保证每次打开的磁盘状态相同
+        config = new ChromaPersistenceConfig(dir, Long.MAX_VALUE, Long.MAX_VALUE,
+                WriteAheadLog.Durability.ASYNC, 1_000);
+        Random random = new Random(42);
+        try (DurableChromaStore store = DurableChromaStore.open(config)) {
+            for (int i = 0; i < size; i++) {
+                store.upsert(record(i, random));
+            }
+            if ("snapshot".equals(layout)) {
+                store.snapshot();
+            }
+            for (int i = 0; i < WAL_TAIL; i++) {
+                store.upsert(record(random.nextInt(size), random));
+            }
+        }
+        query = record(0, random).getEmbedding();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        try (DurableChromaStore store = DurableChromaStore.open(config)) {
+            // 打开后立即可查询，这里只做一次 top-1 检索确认数据已就绪
+            return store.similaritySearch(query, 1, null, -1).size();
+        }
+    }
+
+    private static EmbeddingRecord record(int i, Random random) {
+        float[] vector = new float[DIM];
+        for (int d = 0; d < DIM; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return new EmbeddingRecord("id-" + i, vector, Map.of("groupId", "g" + (i % 4)),
+                Map.of("imgUrl", "http://host/img/" + i + ".jpg"), i);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChromaRecoveryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
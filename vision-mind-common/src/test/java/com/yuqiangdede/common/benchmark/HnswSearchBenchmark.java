@@ -0,0 +1,161 @@
+package com.yuqiangdede.common.benchmark;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yuqiangdede.common.chroma.EmbeddingRecord;
+import com.yuqiangdede.common.chroma.HnswChromaStore;
+import com.yuqiangdede.common.chroma.HnswConfig;
+import com.yuqiangdede.common.chroma.InMemoryChromaStore;
+import com.yuqiangdede.common.chroma.SearchResult;
+
+/**
+ * HNSW 与精确扫描（MEMORY 模式）的 top-10 检索延迟对比，512 维。
+ * <p>
+ * 数据模拟人脸库：身份中心取自 64 维潜空间再投影到 512 维（真实特征的本征维度远低于 512），库中每人 10 张、
+ * 查询为同一身份的新样本。召回率在 setup 中用 200 个查询对照精确扫描计算并打印（{@code recall@10}），
+ * 延迟由 JMH 测量；不同 efSearch 反映召回与延迟的取舍。
+ * 图按默认 M=16、efConstruction=200 构建，单核上 10 万条约需数分钟。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xms4g", "-Xmx4g"})
+public class HnswSearchBenchmark {
+
+    private static final int DIM = 512;
+    private static final int LATENT = 64;
+    private static final int TOP_K = 10;
+    private static final int SAMPLES_PER_IDENTITY = 10;
+    private static final int RECALL_QUERIES = 200;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"16", "64", "256"})
+    public int efSearch;
+
+    private InMemoryChromaStore exact;
+    private HnswChromaStore hnsw;
+    private float[][] projection;
+    private float[][] centers;
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        HnswConfig defaults = HnswConfig.defaults();
+        hnsw = new HnswChromaStore(new HnswConfig(defaults.getM(), defaults.getEfConstruction(), efSearch,
+                defaults.getRebuildDeletedRatio(), defaults.getRebuildMinDeleted()));
+        exact = new InMemoryChromaStore();
+        projection = new float[LATENT][];
+        for (int l = 0; l < LATENT; l++) {
+            projection[l] = gaussian(random, 1f);
+        }
+        centers = new float[size / SAMPLES_PER_IDENTITY][];
+        for (int c = 0; c < centers.length; c++) {
+            float[] center = new float[DIM];
+            for (int l = 0; l < LATENT; l++) {
+                float z = (float) random.nextGaussian();
+                for (int d = 0; d < DIM; d++) {
+                    center[d] += z * projection[l][d];
+                }
+            }
+            centers[c] = center;
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            EmbeddingRecord record = new EmbeddingRecord("id-" + i, sample(random, i / SAMPLES_PER_IDENTITY),
+                    Map.of("groupId", "g" + (i % 4)), Map.of(), 0L);
+            exact.upsert(record);
+            hnsw.upsert(record);
+        }
+        System.out.printf("%nbuilt %d vectors in %d s%n", size,
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+        queries = new float[1024][];
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = sample(random, random.nextInt(centers.length));
+        }
+        int found = 0;
+        for (int q = 0; q < RECALL_QUERIES; q++) {
+            Set<String> expected = new HashSet<>();
+            for (SearchResult hit : exact.similaritySearch(queries[q], TOP_K, null, -1)) {
+                expected.add(hit.getRecord().getId());
+            }
+            for (SearchResult hit : hnsw.similaritySearch(queries[q], TOP_K, null, -1)) {
+                if (expected.contains(hit.getRecord().getId())) {
+                    found++;
+                }
+            }
+        }
+        System.out.printf("recall@%d = %.4f (efSearch=%d)%n", TOP_K, found / (double) (RECALL_QUERIES * TOP_K),
+                efSearch);
+    }
+
+    @TearDown
+    public void tearDown() {
+        hnsw.close();
+    }
+
+    @Benchmark
+    public List<SearchResult> exactScan() {
+        return exact.similaritySearch(nextQuery(), TOP_K, null, 0);
+    }
+
+    @Benchmark
+    public List<SearchResult> hnsw() {
+        return hnsw.similaritySearch(nextQuery(), TOP_K, null, 0);
+    }
+
+    private float[] nextQuery() {
+        next = (next + 1) & (queries.length - 1);
+        return queries[next];
+    }
+
+    private float[] sample(Random random, int identity) {
+        float[] center = centers[identity];
+        // 同一身份样本间余弦相似度约 0.5，近邻中混有其他身份，检索难度接近真实人脸库
+        float[] noise = gaussian(random, 8f);
+        for (int d = 0; d < DIM; d++) {
+            noise[d] += center[d];
+        }
+        return noise;
+    }
+
+    private static float[] gaussian(Random random, float sigma) {
+        float[] vector = new float[DIM];
+        for (int d = 0; d < DIM; d++) {
+            vector[d] = (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HnswSearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
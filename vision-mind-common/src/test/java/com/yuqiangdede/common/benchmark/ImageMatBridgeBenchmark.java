@@ -0,0 +1,110 @@
+package com.yuqiangdede.common.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yuqiangdede.common.util.ImageMatBridge;
+
+/**
+ * 对比 JPEG 往返与像素直通两种 BufferedImage -> Mat 转换方式。
+ * <p>
+ * 运行前需要能加载 OpenCV 本地库（见 {@link #loadOpenCv()}），执行 {@code mvn -pl vision-mind-common test-compile}
+ * 后直接运行 main，或使用 {@code org.openjdk.jmh.Main ImageMatBridgeBenchmark}。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageMatBridgeBenchmark {
+
+    @Param({"1920x1080", "3840x2160"})
+    public String resolution;
+
+    @Param({"3BYTE_BGR", "INT_RGB"})
+    public String imageType;
+
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() throws IOException {
+        loadOpenCv();
+        String[] wh = resolution.split("x");
+        int type = "INT_RGB".equals(imageType) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_3BYTE_BGR;
+        image = new BufferedImage(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]), type);
+        Random random = new Random(42);
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < row.length; x++) {
+                row[x] = random.nextInt();
+            }
+            image.setRGB(0, y, row.length, 1, row, 0, row.length);
+        }
+    }
+
+    @Benchmark
+    public Mat jpegRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        Mat mat = Imgcodecs.imdecode(new MatOfByte(out.toByteArray()), Imgcodecs.IMREAD_COLOR);
+        mat.release();
+        return mat;
+    }
+
+    @Benchmark
+    public Mat rasterBridge() {
+        Mat mat = ImageMatBridge.toMat(image);
+        mat.release();
+        return mat;
+    }
+
+    /**
+     * 与应用保持一致，按 VISION_MIND_PATH + native-defaults.properties 中的 opencv.so.path 加载；
+     * 也可以通过 -Dopencv.so.path 直接指定绝对路径。
+     */
+    static void loadOpenCv() throws IOException {
+        String path = System.getProperty("opencv.so.path");
+        if (path == null) {
+            Properties properties = new Properties();
+            try (InputStream in = ImageMatBridgeBenchmark.class.getClassLoader()
+                    .getResourceAsStream("native-defaults.properties")) {
+                properties.load(in);
+            }
+            String root = System.getenv("VISION_MIND_PATH");
+            path = (root == null ? "" : root) + properties.getProperty("opencv.so.path");
+        }
+        System.load(path);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageMatBridgeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,188 @@
+package com.yuqiangdede.common.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yuqiangdede.common.chroma.EmbeddingRecord;
+import com.yuqiangdede.common.chroma.InMemoryChromaStore;
+import com.yuqiangdede.common.chroma.QuantizationConfig;
+import com.yuqiangdede.common.chroma.SearchResult;
+import com.yuqiangdede.common.util.VectorUtil;
+
+/**
+ * 内存向量库压缩：不压缩（NONE）、int8 标量量化与 PQ（64 个子空间）的堆占用、召回率和 top-10 检索延迟，512 维。
+ * <p>
+ * 数据与 {@link HnswSearchBenchmark} 相同（64 维潜空间投影到 512 维，每人 10 张）。setup 中打印构建耗时、
+ * 每条向量留在堆上的字节数（float 2048、int8 516、PQ 64；id、记录对象等与模式无关的开销另计），以及 100 个查询
+ * 对照精确结果的 {@code recall@10}；量化模式的候选数为 topK x 8，再用映射文件里的原始向量重排。
+ * 堆差值受 GC 时机影响波动很大，整体堆占用请用 {@code jcmd <pid> GC.class_histogram} 查看。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xms6g", "-Xmx6g"})
+public class QuantizationBenchmark {
+
+    private static final int DIM = 512;
+    private static final int LATENT = 64;
+    private static final int TOP_K = 10;
+    private static final int SAMPLES_PER_IDENTITY = 10;
+    private static final int RECALL_QUERIES = 100;
+    private static final int SUBSPACES = 64;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"NONE", "INT8", "PQ"})
+    public QuantizationConfig.Mode quantization;
+
+    private Path rawDir;
+    private InMemoryChromaStore store;
+    private float[][] centers;
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        float[][] projection = new float[LATENT][];
+        for (int l = 0; l < LATENT; l++) {
+            projection[l] = gaussian(random, 1f);
+        }
+        centers = new float[size / SAMPLES_PER_IDENTITY][];
+        for (int c = 0; c < centers.length; c++) {
+            float[] center = new float[DIM];
+            for (int l = 0; l < LATENT; l++) {
+                float z = (float) random.nextGaussian();
+                for (int d = 0; d < DIM; d++) {
+                    center[d] += z * projection[l][d];
+                }
+            }
+            centers[c] = center;
+        }
+        float[][] vectors = new float[size][];
+        for (int i = 0; i < size; i++) {
+            vectors[i] = VectorUtil.normalizeVector(sample(random, i / SAMPLES_PER_IDENTITY));
+        }
+        queries = new float[1024][];
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = VectorUtil.normalizeVector(sample(random, random.nextInt(centers.length)));
+        }
+
+        rawDir = Files.createTempDirectory("quantization-benchmark");
+        long started = System.nanoTime();
+        store = new InMemoryChromaStore(new QuantizationConfig(quantization, 8, SUBSPACES, 10_000, rawDir));
+        for (int i = 0; i < size; i++) {
+            store.upsert(new EmbeddingRecord("id-" + i, vectors[i], Map.of(), Map.of(), 0L));
+        }
+        long buildMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        int vectorBytes = switch (quantization) {
+            case NONE -> DIM * Float.BYTES;
+            case INT8 -> DIM + Float.BYTES;
+            case PQ -> SUBSPACES;
+        };
+        System.out.printf("%n%s: built %d vectors in %d ms, %d heap bytes per vector%n",
+                quantization, size, buildMs, vectorBytes);
+
+        int found = 0;
+        for (int q = 0; q < RECALL_QUERIES; q++) {
+            Set<String> expected = exactTopK(vectors, queries[q]);
+            for (SearchResult hit : store.similaritySearch(queries[q], TOP_K, null, -1)) {
+                if (expected.contains(hit.getRecord().getId())) {
+                    found++;
+                }
+            }
+        }
+        System.out.printf("%s: recall@%d = %.4f%n", quantization, TOP_K,
+                found / (double) (RECALL_QUERIES * TOP_K));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        Files.deleteIfExists(rawDir);
+    }
+
+    @Benchmark
+    public List<SearchResult> search() {
+        next = (next + 1) & (queries.length - 1);
+        return store.similaritySearch(queries[next], TOP_K, null, 0);
+    }
+
+    private static Set<String> exactTopK(float[][] vectors, float[] query) {
+        int[] best = new int[TOP_K];
+        float[] scores = new float[TOP_K];
+        Arrays.fill(scores, Float.NEGATIVE_INFINITY);
+        for (int i = 0; i < vectors.length; i++) {
+            float s = 0f;
+            float[] v = vectors[i];
+            for (int d = 0; d < DIM; d++) {
+                s += query[d] * v[d];
+            }
+            if (s > scores[TOP_K - 1]) {
+                int p = TOP_K - 1;
+                while (p > 0 && scores[p - 1] < s) {
+                    scores[p] = scores[p - 1];
+                    best[p] = best[p - 1];
+                    p--;
+                }
+                scores[p] = s;
+                best[p] = i;
+            }
+        }
+        Set<String> ids = new HashSet<>();
+        for (int i : best) {
+            ids.add("id-" + i);
+        }
+        return ids;
+    }
+
+    private float[] sample(Random random, int identity) {
+        float[] center = centers[identity];
+        float[] noise = gaussian(random, 8f);
+        for (int d = 0; d < DIM; d++) {
+            noise[d] += center[d];
+        }
+        return noise;
+    }
+
+    private static float[] gaussian(Random random, float sigma) {
+        float[] vector = new float[DIM];
+        for (int d = 0; d < DIM; d++) {
+            vector[d] = (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(QuantizationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
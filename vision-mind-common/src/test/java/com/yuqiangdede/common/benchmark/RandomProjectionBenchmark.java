@@ -0,0 +1,105 @@
+package com.yuqiangdede.common.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yuqiangdede.common.util.RandomProjection;
+
+/**
+ * ReID 特征 2048 -> 1024 随机投影：原来的 {@code float[1024][2048]} 逐元素标量循环，对照扁平矩阵 + Vector API 的
+ * 逐个投影（{@code singleFlat}）与按 64 个输入分块的矩阵乘（{@code batchFlat}）。
+ * <p>
+ * {@code batch} 为每次调用投影的向量数，结果为整批耗时；矩阵 8 MB，超出 L2，批量路径每块输入只读一遍矩阵。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx3g"})
+public class RandomProjectionBenchmark {
+
+    private static final int ROWS = 1024;
+    private static final int COLS = 2048;
+
+    @Param({"1", "64"})
+    public int batch;
+
+    private float[][] jagged;
+    private RandomProjection projection;
+    private float[][] inputs;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        jagged = new float[ROWS][COLS];
+        float[] flat = new float[ROWS * COLS];
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < COLS; c++) {
+                float v = (float) random.nextGaussian();
+                jagged[r][c] = v;
+                flat[r * COLS + c] = v;
+            }
+        }
+        projection = new RandomProjection(flat, ROWS, COLS);
+        inputs = new float[batch][COLS];
+        for (float[] input : inputs) {
+            for (int c = 0; c < COLS; c++) {
+                input[c] = (float) random.nextGaussian();
+            }
+        }
+    }
+
+    @Benchmark
+    public float[][] scalarJagged() {
+        float[][] outputs = new float[inputs.length][];
+        for (int b = 0; b < inputs.length; b++) {
+            float[] input = inputs[b];
+            float[] output = new float[ROWS];
+            for (int i = 0; i < ROWS; i++) {
+                float sum = 0;
+                for (int j = 0; j < COLS; j++) {
+                    sum += jagged[i][j] * input[j];
+                }
+                output[i] = sum;
+            }
+            outputs[b] = output;
+        }
+        return outputs;
+    }
+
+    @Benchmark
+    public float[][] singleFlat() {
+        float[][] outputs = new float[inputs.length][];
+        for (int b = 0; b < inputs.length; b++) {
+            outputs[b] = projection.transform(inputs[b]);
+        }
+        return outputs;
+    }
+
+    @Benchmark
+    public float[][] batchFlat() {
+        return projection.transform(inputs);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RandomProjectionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
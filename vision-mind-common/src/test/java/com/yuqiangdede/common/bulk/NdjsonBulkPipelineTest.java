@@ -0,0 +1,196 @@
+package com.yuqiangdede.common.bulk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.yuqiangdede.common.dto.output.BulkSummary;
+import com.yuqiangdede.common.util.JsonUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NdjsonBulkPipelineTest {
+
+    @Test
+    void resultsFollowInputOrderAndFailuresStayPerLine() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            body.append(i % 7 == 3 ? "{\"value\":\"fail\"}" : "{\"value\":\"v" + i + "\"}").append('\n');
+        }
+        body.append('\n').append("not json\n").append("{\"value\":\"last\"}");
+
+        try (NdjsonBulkPipeline pipeline = new NdjsonBulkPipeline(new BulkConfig(4, 2, 3, 5), "test")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BulkSummary summary = pipeline.run(stream(body.toString()), out, Item.class,
+                    new UpperCaseHandler(batchSizes, null));
+
+            List<JsonNode> lines = lines(out);
+            assertEquals(22, lines.size() - 1);
+            for (int i = 0; i < 20; i++) {
+                JsonNode line = lines.get(i);
+                assertEquals(i + 1, line.get("line").asLong());
+                if (i % 7 == 3) {
+                    assertEquals("-1", line.get("code").asText());
+                    assertEquals("bad value", line.get("msg").asText());
+                } else {
+                    assertEquals("0", line.get("code").asText());
+                    assertEquals("V" + i, line.get("data").asText());
+                }
+            }
+            // 空行不输出结果，但仍计入行号
+            assertEquals(22, lines.get(20).get("line").asLong());
+            assertEquals("-1", lines.get(20).get("code").asText());
+            assertEquals("LAST", lines.get(21).get("data").asText());
+
+            JsonNode last = lines.get(22);
+            assertEquals(22, last.get("total").asLong());
+            assertEquals(4, last.get("failed").asLong());
+            assertEquals(18, summary.getSucceeded());
+            int stored = 0;
+            for (int size : batchSizes) {
+                assertTrue(size <= 5);
+                stored += size;
+            }
+            assertEquals(18, stored);
+        }
+    }
+
+    @Test
+    void storeFailureFailsOnlyItsBatch() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            body.append("{\"value\":\"v").append(i).append("\"}\n");
+        }
+        try (NdjsonBulkPipeline pipeline = new NdjsonBulkPipeline(new BulkConfig(2, 2, 10, 4), "test")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BulkSummary summary = pipeline.run(stream(body.toString()), out, Item.class,
+                    new UpperCaseHandler(new ArrayList<>(), "V5"));
+
+            List<JsonNode> lines = lines(out);
+            for (int i = 0; i < 10; i++) {
+                // 第 5 到 8 行与 v5 同批写库
+                boolean failed = i >= 4 && i < 8;
+                assertEquals(failed ? "-1" : "0", lines.get(i).get("code").asText());
+            }
+            assertEquals(4, summary.getFailed());
+            assertEquals(6, summary.getSucceeded());
+        }
+    }
+
+    @Test
+    void inFlightLinesAreBoundedAndStoresSeeWholeBatches() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Integer> batchSizes = new ArrayList<>();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            body.append("{\"value\":\"v").append(i).append("\"}\n");
+        }
+        NdjsonBulkPipeline.Handler<Item, String, String> handler = new NdjsonBulkPipeline.Handler<>() {
+            @Override
+            public String fetch(Item item) throws Exception {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(1);
+                return item.value;
+            }
+
+            @Override
+            public String extract(String fetched) {
+                active.decrementAndGet();
+                return fetched;
+            }
+
+            @Override
+            public void store(List<String> batch) {
+                batchSizes.add(batch.size());
+            }
+
+            @Override
+            public Object result(String stored) {
+                return Map.of("id", stored);
+            }
+        };
+        try (NdjsonBulkPipeline pipeline = new NdjsonBulkPipeline(new BulkConfig(16, 2, 6, 50), "test")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BulkSummary summary = pipeline.run(stream(body.toString()), out, Item.class, handler);
+
+            assertEquals(200, summary.getSucceeded());
+            assertTrue(peak.get() <= 6, "peak in flight " + peak.get());
+            assertEquals(List.of(50, 50, 50, 50), batchSizes);
+            assertEquals("v199", lines(out).get(199).get("data").get("id").asText());
+        }
+    }
+
+    @Test
+    void emptyBodyWritesOnlySummary() throws Exception {
+        try (NdjsonBulkPipeline pipeline = new NdjsonBulkPipeline(BulkConfig.defaults(), "test")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BulkSummary summary = pipeline.run(stream("\n \n"), out, Item.class,
+                    new UpperCaseHandler(new ArrayList<>(), null));
+            assertEquals(0, summary.getTotal());
+            List<JsonNode> lines = lines(out);
+            assertEquals(1, lines.size());
+            assertFalse(lines.get(0).has("line"));
+        }
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<JsonNode> lines(ByteArrayOutputStream out) throws IOException {
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(JsonUtils.objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    static class Item {
+        public String value;
+    }
+
+    /**
+     * fetch 拒绝 "fail"，extract 转大写，store 遇到 {@code failOn} 时整批失败
+     */
+    private record UpperCaseHandler(List<Integer> batchSizes, String failOn)
+            implements NdjsonBulkPipeline.Handler<Item, String, String> {
+
+        @Override
+        public String fetch(Item item) {
+            if ("fail".equals(item.value)) {
+                throw new IllegalArgumentException("bad value");
+            }
+            return item.value;
+        }
+
+        @Override
+        public String extract(String fetched) {
+            return fetched.toUpperCase();
+        }
+
+        @Override
+        public void store(List<String> batch) throws IOException {
+            batchSizes.add(batch.size());
+            if (batch.contains(failOn)) {
+                throw new IOException("store down");
+            }
+        }
+
+        @Override
+        public Object result(String stored) {
+            return stored;
+        }
+    }
+}
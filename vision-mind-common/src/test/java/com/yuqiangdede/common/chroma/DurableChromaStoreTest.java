@@ -0,0 +1,173 @@
+package com.yuqiangdede.common.chroma;
+
+import com.yuqiangdede.common.vector.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DurableChromaStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ChromaPersistenceConfig config() {
+        // 定时快照间隔足够长，测试中只有显式 snapshot 或关闭时才会写快照
+        return new ChromaPersistenceConfig(tempDir.resolve("memory"), 3_600_000, 1,
+                WriteAheadLog.Durability.REQUEST, 200);
+    }
+
+    @Test
+    void crashRecoversFromWriteAheadLog() throws Exception {
+        DurableChromaStore store = DurableChromaStore.open(config());
+        store.upsert(record("a", new float[]{1, 0, 0}, "g"));
+        store.upsert(record("b", new float[]{0, 1, 0}, "g"));
+        store.upsert(record("c", new float[]{0, 0, 1}, "h"));
+        store.delete("a");
+        store.upsert(record("b", new float[]{0, 1, 1}, "h"));
+        store.crash();
+
+        try (DurableChromaStore reopened = DurableChromaStore.open(config())) {
+            assertEquals(List.of("b", "c"), ids(reopened.find(null)));
+            assertEquals(List.of("b", "c"), ids(reopened.find(Map.of("group", "h"))));
+            List<SearchResult> hits = reopened.similaritySearch(new float[]{0, 1, 1}, 1, null, 0);
+            assertEquals("b", hits.get(0).getRecord().getId());
+            assertEquals(1.0, hits.get(0).getScore(), 1e-6);
+        }
+    }
+
+    @Test
+    void snapshotPlusLogTailRestoresState() throws Exception {
+        Path dir = tempDir.resolve("memory");
+        DurableChromaStore store = DurableChromaStore.open(config());
+        for (int i = 0; i < 100; i++) {
+            store.upsert(record("r" + i, new float[]{i, 1, 0}, i % 2 == 0 ? "even" : "odd"));
+        }
+        store.snapshot();
+        store.snapshot();
+        // 第二次快照后只保留一份快照和一个日志代
+        assertEquals(1, ChromaSnapshot.generations(dir).size());
+        assertEquals(1, WriteAheadLog.generations(dir.resolve("wal")).size());
+
+        store.delete("r0");
+        store.upsert(record("r1", new float[]{0, 0, 1}, "odd"));
+        store.upsert(record("new", new float[]{1, 1, 1}, "even"));
+        store.crash();
+
+        try (DurableChromaStore reopened = DurableChromaStore.open(config())) {
+            assertEquals(100, reopened.find(null).size());
+            assertTrue(reopened.find(Map.of("group", "even")).stream().noneMatch(r -> r.getId().equals("r0")));
+            assertEquals("r1", reopened.similaritySearch(new float[]{0, 0, 1}, 1, null, 0).get(0).getRecord().getId());
+            reopened.clear();
+        }
+        // 关闭时写了快照，清空操作也被持久化
+        try (DurableChromaStore reopened = DurableChromaStore.open(config())) {
+            assertTrue(reopened.find(null).isEmpty());
+            reopened.upsert(record("x", new float[]{1, 0}, "g"));
+        }
+        try (DurableChromaStore reopened = DurableChromaStore.open(config())) {
+            assertEquals(List.of("x"), ids(reopened.find(null)));
+        }
+    }
+
+    @Test
+    void rejectedWriteIsNotLogged() throws Exception {
+        DurableChromaStore store = DurableChromaStore.open(config());
+        store.upsert(record("a", new float[]{1, 0}, "g"));
+        assertThrows(IllegalArgumentException.class, () -> store.upsert(record("b", new float[]{1, 0, 0}, "g")));
+        assertThrows(IllegalArgumentException.class, () -> store.upsert(record("c", new float[]{0, 0}, "g")));
+        assertEquals(List.of("a"), ids(store.find(null)));
+        store.crash();
+
+        try (DurableChromaStore reopened = DurableChromaStore.open(config())) {
+            assertEquals(List.of("a"), ids(reopened.find(null)));
+        }
+    }
+
+    @Test
+    void unreadableNewestSnapshotFailsOpen() throws Exception {
+        Path dir = tempDir.resolve("memory");
+        DurableChromaStore store = DurableChromaStore.open(config());
+        store.upsert(record("a", new float[]{1, 0}, "g"));
+        store.snapshot();
+        store.crash();
+        long generation = ChromaSnapshot.generations(dir).get(0);
+        // 旧快照和已覆盖的日志代都已删除，不能退回到空库继续运行
+        Files.write(dir.resolve("snapshot-" + generation + ".vec"), new byte[64]);
+
+        IOException failure = assertThrows(IOException.class, () -> DurableChromaStore.open(config()));
+        assertTrue(failure.getMessage().contains("Snapshot " + generation));
+    }
+
+    @Test
+    void upsertAllIsLoggedAndRejectedAsAWhole() throws Exception {
+        DurableChromaStore store = DurableChromaStore.open(config());
+        store.upsertAll(List.of(
+                record("a", new float[]{1, 0}, "g"),
+                record("b", new float[]{0, 1}, "g"),
+                record("a", new float[]{1, 1}, "h")));
+        // 维度不一致的批次整体拒绝，前面的记录也不能写入
+        assertThrows(IllegalArgumentException.class, () -> store.upsertAll(List.of(
+                record("c", new float[]{1, 0}, "g"),
+                record("d", new float[]{1, 0, 0}, "g"))));
+        assertThrows(IllegalArgumentException.class, () -> store.upsertAll(List.of(
+                record("e", new float[]{1, 0, 0}, "g"))));
+        store.upsertAll(List.of());
+        store.crash();
+
+        try (DurableChromaStore reopened = DurableChromaStore.open(config())) {
+            assertEquals(List.of("a", "b"), ids(reopened.find(null)));
+            assertEquals(List.of("a"), ids(reopened.find(Map.of("group", "h"))));
+            assertEquals("a", reopened.similaritySearch(new float[]{1, 1}, 1, null, 0).get(0).getRecord().getId());
+        }
+    }
+
+    @Test
+    void codecRoundTripsPayloadValues() throws Exception {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("imgUrl", "http://x/1.jpg");
+        payload.put("count", 3);
+        payload.put("time", 7L);
+        payload.put("score", 0.5d);
+        payload.put("conf", 0.25f);
+        payload.put("ok", true);
+        payload.put("none", null);
+        payload.put("box", new float[]{1, 2, 3, 4});
+        payload.put("tags", List.of("a", "b"));
+        payload.put("nested", Map.of("k", "v"));
+        EmbeddingRecord record = new EmbeddingRecord("id", new float[]{0.6f, 0.8f}, Map.of("group", "g"), payload, 9L);
+
+        EmbeddingRecord decoded = ChromaRecordCodec.decode(ChromaRecordCodec.encode(record));
+
+        assertEquals("id", decoded.getId());
+        assertEquals(9L, decoded.getTimestamp());
+        assertEquals(Map.of("group", "g"), decoded.getMetadata());
+        assertArrayEquals(new float[]{0.6f, 0.8f}, decoded.getEmbedding());
+        assertArrayEquals(new float[]{1, 2, 3, 4}, (float[]) decoded.getPayload().get("box"));
+        Map<String, Object> rest = new LinkedHashMap<>(decoded.getPayload());
+        rest.remove("box");
+        Map<String, Object> expected = new LinkedHashMap<>(payload);
+        expected.remove("box");
+        assertEquals(expected, rest);
+        assertThrows(IllegalArgumentException.class, () -> ChromaRecordCodec.encode(new EmbeddingRecord("bad",
+                new float[]{1}, Map.of(), Map.of("x", new Object()), 0L)));
+    }
+
+    private static List<String> ids(List<EmbeddingRecord> records) {
+        return records.stream().map(EmbeddingRecord::getId).sorted().toList();
+    }
+
+    private static EmbeddingRecord record(String id, float[] vector, String group) {
+        return new EmbeddingRecord(id, vector, Map.of("group", group), Map.of("imgUrl", "url-" + id), 0L);
+    }
+}
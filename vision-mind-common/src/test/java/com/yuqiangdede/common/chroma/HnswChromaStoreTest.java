@@ -0,0 +1,155 @@
+package com.yuqiangdede.common.chroma;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswChromaStoreTest {
+
+    private static final int DIM = 24;
+
+    @Test
+    void recallAgainstExactScanIsHigh() {
+        Random random = new Random(5);
+        HnswChromaStore hnsw = new HnswChromaStore(new HnswConfig(12, 100, 64, 0.2, 1_000));
+        InMemoryChromaStore exact = new InMemoryChromaStore();
+        for (int i = 0; i < 3000; i++) {
+            EmbeddingRecord record = record("r" + i, randomVector(random), i % 2 == 0 ? "a" : "b");
+            hnsw.upsert(record);
+            exact.upsert(record);
+        }
+        int found = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random);
+            Set<String> expected = new HashSet<>(ids(exact.similaritySearch(query, 10, null, -1)));
+            List<SearchResult> hits = hnsw.similaritySearch(query, 10, null, -1);
+            assertEquals(10, hits.size());
+            for (SearchResult hit : hits) {
+                if (expected.contains(hit.getRecord().getId())) {
+                    found++;
+                }
+            }
+        }
+        // 近似检索，允许少量漏召回
+        assertTrue(found >= 50 * 10 * 0.9, "recall@10 = " + found / 500.0);
+
+        float[] query = randomVector(random);
+        List<SearchResult> filtered = hnsw.similaritySearch(query, 5, Map.of("group", "a"), -1);
+        assertEquals(5, filtered.size());
+        assertTrue(filtered.stream().allMatch(h -> "a".equals(h.getRecord().getMetadata().get("group"))));
+        for (SearchResult hit : filtered) {
+            assertEquals(DIM, hit.getRecord().getEmbedding().length);
+        }
+        hnsw.close();
+    }
+
+    @Test
+    void deletedAndReplacedNodesAreNotReturnedAndRebuildDropsThem() {
+        HnswChromaStore store = new HnswChromaStore(new HnswConfig(8, 50, 32, 0.5, 1_000_000));
+        Random random = new Random(9);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            float[] vector = randomVector(random);
+            vectors.add(vector);
+            store.upsert(record("r" + i, vector, "g"));
+        }
+        for (int i = 0; i < 100; i++) {
+            store.delete("r" + i);
+        }
+        store.upsert(record("r150", vectors.get(0), "h"));
+
+        List<SearchResult> hits = store.similaritySearch(vectors.get(0), 5, null, -1);
+        assertEquals("r150", hits.get(0).getRecord().getId());
+        assertEquals(1.0, hits.get(0).getScore(), 1e-5);
+        assertTrue(hits.stream().noneMatch(h -> Integer.parseInt(h.getRecord().getId().substring(1)) < 100));
+        assertEquals(100, store.find(null).size());
+
+        store.rebuild();
+        assertEquals(100, store.find(null).size());
+        assertEquals("r150", store.similaritySearch(vectors.get(0), 1, null, -1).get(0).getRecord().getId());
+        assertEquals(List.of("r150"), ids(store.similaritySearch(vectors.get(0), 1, Map.of("group", "h"), -1)));
+
+        store.clear();
+        assertTrue(store.find(null).isEmpty());
+        assertTrue(store.similaritySearch(vectors.get(0), 1, null, -1).isEmpty());
+        store.close();
+    }
+
+    @Test
+    void concurrentInsertsBuildASearchableGraph() throws Exception {
+        HnswChromaStore store = new HnswChromaStore(new HnswConfig(8, 64, 64, 0.2, 1_000));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<float[]> vectors = new ArrayList<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 4000; i++) {
+            vectors.add(randomVector(random));
+        }
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = thread; i < vectors.size(); i += 4) {
+                        store.upsert(record("r" + i, vectors.get(i), "g"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(4000, store.find(null).size());
+        int self = 0;
+        for (int i = 0; i < 4000; i += 40) {
+            List<SearchResult> hits = store.similaritySearch(vectors.get(i), 1, null, -1);
+            if (("r" + i).equals(hits.get(0).getRecord().getId())) {
+                self++;
+            }
+        }
+        // 每个向量都应能找回自己
+        assertTrue(self >= 98, "self recall " + self);
+        store.close();
+    }
+
+    @Test
+    void rejectsMismatchedVectors() {
+        HnswChromaStore store = new HnswChromaStore();
+        store.upsert(record("a", new float[]{1, 0}, "g"));
+
+        assertThrows(IllegalArgumentException.class, () -> store.upsert(record("b", new float[]{1, 0, 0}, "g")));
+        assertThrows(IllegalArgumentException.class, () -> store.similaritySearch(new float[]{1, 0, 0}, 1, null, 0));
+        assertEquals(List.of("a"), ids(store.similaritySearch(new float[]{0.5f, 0.1f}, 3, null, -1)));
+        store.close();
+    }
+
+    private static List<String> ids(List<SearchResult> hits) {
+        return hits.stream().map(h -> h.getRecord().getId()).toList();
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static EmbeddingRecord record(String id, float[] vector, String group) {
+        return new EmbeddingRecord(id, vector, Map.of("group", group), Map.of(), 0L);
+    }
+}
@@ -0,0 +1,325 @@
+package com.yuqiangdede.common.chroma;
+
+import com.yuqiangdede.common.util.VectorUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryChromaStoreTest {
+
+    private static final int DIM = 37;
+
+    @Test
+    void similaritySearch_matchesReferenceCosineRanking() {
+        Random random = new Random(7);
+        InMemoryChromaStore store = new InMemoryChromaStore();
+        List<EmbeddingRecord> all = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            EmbeddingRecord record = record("r" + i, randomVector(random), i % 3 == 0 ? "a" : "b");
+            all.add(record);
+            store.upsert(record);
+        }
+        float[] query = randomVector(random);
+
+        List<SearchResult> hits = store.similaritySearch(query, 10, Map.of("group", "a"), -1);
+
+        List<String> expected = all.stream()
+                .filter(r -> "a".equals(r.getMetadata().get("group")))
+                .sorted(Comparator.comparingDouble(
+                        (EmbeddingRecord r) -> VectorUtil.calculateCosineSimilarity(query, r.getEmbedding())).reversed())
+                .limit(10)
+                .map(EmbeddingRecord::getId)
+                .toList();
+        assertEquals(expected, hits.stream().map(h -> h.getRecord().getId()).toList());
+        for (SearchResult hit : hits) {
+            assertEquals(VectorUtil.calculateCosineSimilarity(query, hit.getRecord().getEmbedding()), hit.getScore(), 1e-5);
+        }
+    }
+
+    @Test
+    void similaritySearch_appliesMinScoreAndTopK() {
+        InMemoryChromaStore store = new InMemoryChromaStore();
+        store.upsert(record("x", new float[]{1, 0}, "g"));
+        store.upsert(record("xy", new float[]{1, 1}, "g"));
+        store.upsert(record("y", new float[]{0, 2}, "g"));
+
+        List<SearchResult> hits = store.similaritySearch(new float[]{3, 0}, 5, null, 0.5);
+
+        assertEquals(List.of("x", "xy"), hits.stream().map(h -> h.getRecord().getId()).toList());
+        assertEquals(1.0, hits.get(0).getScore(), 1e-6);
+        assertEquals(1, store.similaritySearch(new float[]{3, 0}, 1, null, 0).size());
+        assertTrue(store.similaritySearch(new float[]{3, 0}, 0, null, 0).isEmpty());
+    }
+
+    @Test
+    void deleteTombstonesRowAndUpsertReusesIt() {
+        InMemoryChromaStore store = new InMemoryChromaStore();
+        store.upsert(record("a", new float[]{1, 0}, "g"));
+        store.upsert(record("b", new float[]{0, 1}, "g"));
+        store.delete("a");
+
+        assertEquals(List.of("b"), ids(store.similaritySearch(new float[]{1, 0}, 5, null, -1)));
+
+        store.upsert(record("c", new float[]{1, 0.1f}, "g"));
+        store.upsert(record("b", new float[]{1, 0}, "h"));
+
+        assertEquals(List.of("b", "c"), ids(store.similaritySearch(new float[]{1, 0}, 5, null, -1)));
+        assertEquals(List.of("c"), ids(store.similaritySearch(new float[]{1, 0}, 5, Map.of("group", "g"), -1)));
+        assertEquals(2, store.find(null).size());
+
+        store.clear();
+        assertTrue(store.find(null).isEmpty());
+        // 清空后可以换维度
+        store.upsert(record("d", new float[]{1, 0, 0}, "g"));
+        assertEquals(List.of("d"), ids(store.similaritySearch(new float[]{1, 0, 0}, 5, null, -1)));
+    }
+
+    @Test
+    void selectiveFilterScoresOnlyIndexedRowsAndReturnsFullTopK() {
+        Random random = new Random(23);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            InMemoryChromaStore store = new InMemoryChromaStore(1, pool);
+            List<EmbeddingRecord> rare = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                String group = i % 100 == 0 ? "rare" : "common";
+                EmbeddingRecord record = new EmbeddingRecord("r" + i, randomVector(random),
+                        Map.of("group", group, "camera", "c" + (i % 2)), Map.of(), 0L);
+                store.upsert(record);
+                if (group.equals("rare")) {
+                    rare.add(record);
+                }
+            }
+            // 改组、删除后倒排索引同步更新，复用的行不会残留旧的元数据
+            store.upsert(new EmbeddingRecord("r0", randomVector(random), Map.of("group", "common", "camera", "c0"),
+                    Map.of(), 0L));
+            store.delete("r100");
+            store.upsert(new EmbeddingRecord("new", randomVector(random), Map.of("group", "rare", "camera", "c0"),
+                    Map.of(), 0L));
+            rare.removeIf(r -> r.getId().equals("r0") || r.getId().equals("r100"));
+            rare.add(store.find(Map.of("group", "rare", "camera", "c0")).stream()
+                    .filter(r -> r.getId().equals("new")).findFirst().orElseThrow());
+
+            float[] query = randomVector(random);
+            List<String> expected = rare.stream()
+                    .sorted(Comparator.comparingDouble(
+                            (EmbeddingRecord r) -> VectorUtil.calculateCosineSimilarity(query, r.getEmbedding())).reversed())
+                    .limit(20)
+                    .map(EmbeddingRecord::getId)
+                    .toList();
+            assertEquals(expected, ids(store.similaritySearch(query, 20, Map.of("group", "rare"), -1)));
+            assertEquals(29, store.find(Map.of("group", "rare")).size());
+            assertEquals(29, store.find(Map.of("group", "rare", "camera", "c0")).size());
+            assertTrue(store.similaritySearch(query, 5, Map.of("group", "rare", "camera", "c1"), -1).isEmpty());
+            assertTrue(store.similaritySearch(query, 5, Map.of("group", "missing"), -1).isEmpty());
+
+            // 值为 null 的条件匹配没有该字段的记录，走逐条判断
+            Map<String, String> absent = new HashMap<>();
+            absent.put("camera", null);
+            assertTrue(store.similaritySearch(query, 5, absent, -1).isEmpty());
+            assertTrue(store.find(absent).isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void rowBitmapMatchesReferenceSet() {
+        Random random = new Random(31);
+        RowBitmap bitmap = new RowBitmap();
+        TreeSet<Integer> reference = new TreeSet<>();
+        // 覆盖单值、稀疏数组、位图及其来回转换，以及多个 65536 行的桶
+        for (int i = 0; i < 40_000; i++) {
+            int row = i % 3 == 0 ? random.nextInt(200_000) : random.nextInt(8192);
+            if (random.nextInt(4) == 0) {
+                bitmap.remove(row);
+                reference.remove(row);
+            } else {
+                bitmap.add(row);
+                reference.add(row);
+            }
+            if (i % 5000 == 0) {
+                assertArrayEquals(reference.stream().mapToInt(Integer::intValue).toArray(), bitmap.toArray());
+            }
+        }
+        for (int row = 0; row < 8192; row++) {
+            if (reference.contains(row)) {
+                bitmap.remove(row);
+            }
+        }
+        reference.headSet(8192).clear();
+        assertEquals(reference.size(), bitmap.cardinality());
+        assertArrayEquals(reference.stream().mapToInt(Integer::intValue).toArray(), bitmap.toArray());
+
+        RowBitmap single = new RowBitmap();
+        single.add(70_000);
+        assertArrayEquals(reference.contains(70_000) ? new int[]{70_000} : new int[0],
+                RowBitmap.intersect(new RowBitmap[]{bitmap, single}));
+        single.remove(70_000);
+        assertTrue(single.isEmpty());
+    }
+
+    @Test
+    void rejectsMismatchedAndZeroVectors() {
+        InMemoryChromaStore store = new InMemoryChromaStore();
+        store.upsert(record("a", new float[]{1, 0}, "g"));
+
+        assertThrows(IllegalArgumentException.class, () -> store.upsert(record("b", new float[]{1, 0, 0}, "g")));
+        assertThrows(IllegalArgumentException.class, () -> store.similaritySearch(new float[]{1, 0, 0}, 1, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> store.upsert(record("c", new float[]{0, 0}, "g")));
+    }
+
+    @Test
+    void parallelScanReturnsSameHitsAsSerialScan() {
+        Random random = new Random(11);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            InMemoryChromaStore serial = new InMemoryChromaStore(Integer.MAX_VALUE);
+            InMemoryChromaStore parallel = new InMemoryChromaStore(1, pool);
+            for (int i = 0; i < 2000; i++) {
+                EmbeddingRecord record = record("r" + i, randomVector(random), "g");
+                serial.upsert(record);
+                parallel.upsert(record);
+            }
+            for (int q = 0; q < 5; q++) {
+                float[] query = randomVector(random);
+                assertEquals(ids(serial.similaritySearch(query, 25, null, -1)),
+                        ids(parallel.similaritySearch(query, 25, null, -1)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void batchSearchMatchesOneByOneSearch() throws Exception {
+        Random random = new Random(19);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try (InMemoryChromaStore int8 = new InMemoryChromaStore(1, pool,
+                new QuantizationConfig(QuantizationConfig.Mode.INT8, 4, 8, 256, null))) {
+            InMemoryChromaStore serial = new InMemoryChromaStore(Integer.MAX_VALUE);
+            InMemoryChromaStore parallel = new InMemoryChromaStore(1, pool);
+            for (int i = 0; i < 1500; i++) {
+                EmbeddingRecord record = record("r" + i, randomVector(random), i % 5 == 0 ? "a" : "b");
+                serial.upsert(record);
+                parallel.upsert(record);
+                int8.upsert(record);
+            }
+            serial.delete("r7");
+            parallel.delete("r7");
+            int8.delete("r7");
+            // 11 个查询：两组 4 个走 dot4，剩下 3 个逐个打分
+            float[][] queries = new float[11][];
+            for (int q = 0; q < queries.length; q++) {
+                queries[q] = randomVector(random);
+            }
+            for (Map<String, String> filter : List.of(Map.<String, String>of(), Map.of("group", "a"))) {
+                for (InMemoryChromaStore store : List.of(serial, parallel, int8)) {
+                    List<List<SearchResult>> batch = store.similaritySearchBatch(queries, 15, filter, 0.05);
+                    assertEquals(queries.length, batch.size());
+                    for (int q = 0; q < queries.length; q++) {
+                        List<SearchResult> single = store.similaritySearch(queries[q], 15, filter, 0.05);
+                        assertEquals(ids(single), ids(batch.get(q)));
+                        for (int i = 0; i < single.size(); i++) {
+                            assertEquals(single.get(i).getScore(), batch.get(q).get(i).getScore(), 1e-5);
+                        }
+                    }
+                }
+            }
+            assertEquals(List.of(List.of(), List.of()),
+                    serial.similaritySearchBatch(new float[][]{queries[0], queries[1]}, 5, Map.of("group", "x"), -1));
+            assertEquals(List.of(List.of(), List.of()),
+                    new InMemoryChromaStore().similaritySearchBatch(new float[][]{queries[0], queries[1]}, 5, null, -1));
+            assertThrows(IllegalArgumentException.class,
+                    () -> serial.similaritySearchBatch(new float[][]{queries[0], new float[]{1, 0}}, 5, null, -1));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void simdAndScalarDotProductsAgree() {
+        Random random = new Random(3);
+        float[] matrix = new float[3 * 131];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = random.nextFloat() - 0.5f;
+        }
+        float[] query = new float[131];
+        for (int i = 0; i < query.length; i++) {
+            query[i] = random.nextFloat() - 0.5f;
+        }
+        DotProduct scalar = new ScalarDotProduct();
+        DotProduct simd = new PanamaDotProduct();
+        for (int row = 0; row < 3; row++) {
+            double expected = 0;
+            for (int i = 0; i < query.length; i++) {
+                expected += (double) query[i] * matrix[row * query.length + i];
+            }
+            assertEquals(expected, scalar.dot(query, matrix, row * query.length, query.length), 1e-4);
+            assertEquals(expected, simd.dot(query, matrix, row * query.length, query.length), 1e-4);
+        }
+        float[] queries = new float[4 * 131];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextFloat() - 0.5f;
+        }
+        float[] scalarOut = new float[5];
+        float[] simdOut = new float[5];
+        scalar.dot4(queries, 0, matrix, 131, 131, scalarOut, 1);
+        simd.dot4(queries, 0, matrix, 131, 131, simdOut, 1);
+        for (int q = 0; q < 4; q++) {
+            float[] single = Arrays.copyOfRange(queries, q * 131, (q + 1) * 131);
+            assertEquals(scalar.dot(single, matrix, 131, 131), scalarOut[q + 1], 1e-4);
+            assertEquals(scalarOut[q + 1], simdOut[q + 1], 1e-4);
+        }
+        byte[] codes = new byte[3 * 131];
+        random.nextBytes(codes);
+        for (int row = 0; row < 3; row++) {
+            double expected = 0;
+            for (int i = 0; i < query.length; i++) {
+                expected += (double) query[i] * codes[row * query.length + i];
+            }
+            assertEquals(expected, scalar.dot(query, codes, row * query.length, query.length), 1e-2);
+            assertEquals(expected, simd.dot(query, codes, row * query.length, query.length), 1e-2);
+        }
+        float[] scalarAcc = new float[131];
+        float[] simdAcc = new float[131];
+        scalar.accumulateSquaredDifference(0.3f, matrix, 5, scalarAcc, 131);
+        simd.accumulateSquaredDifference(0.3f, matrix, 5, simdAcc, 131);
+        scalar.accumulateScaled(-0.7f, matrix, 9, scalarAcc, 0, 131);
+        simd.accumulateScaled(-0.7f, matrix, 9, simdAcc, 0, 131);
+        for (int c = 0; c < 131; c++) {
+            float diff = 0.3f - matrix[5 + c];
+            assertEquals(diff * diff - 0.7f * matrix[9 + c], scalarAcc[c], 1e-5);
+            assertEquals(scalarAcc[c], simdAcc[c], 1e-5);
+        }
+    }
+
+    private static List<String> ids(List<SearchResult> hits) {
+        return hits.stream().map(h -> h.getRecord().getId()).toList();
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static EmbeddingRecord record(String id, float[] vector, String group) {
+        return new EmbeddingRecord(id, vector, Map.of("group", group), Map.of(), 0L);
+    }
+}
@@ -0,0 +1,164 @@
+package com.yuqiangdede.common.chroma;
+
+import com.yuqiangdede.common.util.VectorUtil;
+import com.yuqiangdede.common.vector.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantizedChromaStoreTest {
+
+    private static final int DIM = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void int8SearchMatchesExactRankingAfterRerank() throws Exception {
+        QuantizationConfig config = new QuantizationConfig(QuantizationConfig.Mode.INT8, 4, 16, 256, tempDir);
+        assertRecallAndExactScores(config, 0.98);
+    }
+
+    @Test
+    void pqSearchKeepsRecallAfterRerank() throws Exception {
+        QuantizationConfig config = new QuantizationConfig(QuantizationConfig.Mode.PQ, 8, 16, 500, tempDir);
+        assertRecallAndExactScores(config, 0.9);
+    }
+
+    @Test
+    void pqScoresExactlyUntilTrainedAndReturnsExactVectors() throws Exception {
+        QuantizationConfig config = new QuantizationConfig(QuantizationConfig.Mode.PQ, 4, 8, 300, tempDir);
+        try (InMemoryChromaStore store = new InMemoryChromaStore(config)) {
+            Random random = new Random(5);
+            float[] first = randomVector(random);
+            store.upsert(record("first", first, "g"));
+            for (int i = 0; i < 100; i++) {
+                store.upsert(record("r" + i, randomVector(random), "g"));
+            }
+            SearchResult hit = store.similaritySearch(first, 1, null, 0).get(0);
+            assertEquals("first", hit.getRecord().getId());
+            assertEquals(1.0, hit.getScore(), 1e-5);
+
+            // 达到训练行数后切到 PQ 码，返回的向量和分数仍是原始精度
+            for (int i = 100; i < 400; i++) {
+                store.upsert(record("r" + i, randomVector(random), "g"));
+            }
+            store.delete("r3");
+            hit = store.similaritySearch(first, 1, null, 0.99).get(0);
+            assertEquals("first", hit.getRecord().getId());
+            assertEquals(1.0, hit.getScore(), 1e-5);
+            assertArrayEquals(VectorUtil.normalizeVector(first), hit.getRecord().getEmbedding(), 1e-6f);
+            assertEquals(400, store.find(null).size());
+
+            store.clear();
+            assertTrue(store.find(null).isEmpty());
+            store.upsert(record("d", new float[]{1, 0, 0}, "g"));
+            assertEquals("d", store.similaritySearch(new float[]{1, 0, 0}, 1, null, 0).get(0).getRecord().getId());
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count(), "scratch file is deleted on close");
+        }
+    }
+
+    @Test
+    void durableStoreRebuildsCodesFromSnapshot() throws Exception {
+        ChromaPersistenceConfig persistence = new ChromaPersistenceConfig(tempDir.resolve("memory"), 3_600_000, 1,
+                WriteAheadLog.Durability.REQUEST, 200);
+        QuantizationConfig quantization = new QuantizationConfig(QuantizationConfig.Mode.INT8, 4, 16, 256,
+                tempDir.resolve("raw"));
+        Random random = new Random(9);
+        float[] probe = randomVector(random);
+        try (DurableChromaStore store = DurableChromaStore.open(persistence, quantization)) {
+            store.upsert(record("probe", probe, "g"));
+            for (int i = 0; i < 50; i++) {
+                store.upsert(record("r" + i, randomVector(random), "g"));
+            }
+            store.snapshot();
+            store.upsert(record("tail", randomVector(random), "h"));
+        }
+        try (DurableChromaStore reopened = DurableChromaStore.open(persistence, quantization)) {
+            assertEquals(52, reopened.find(null).size());
+            SearchResult hit = reopened.similaritySearch(probe, 1, null, 0).get(0);
+            assertEquals("probe", hit.getRecord().getId());
+            assertEquals(1.0, hit.getScore(), 1e-5);
+        }
+    }
+
+    private void assertRecallAndExactScores(QuantizationConfig config, double minRecall) throws Exception {
+        Random random = new Random(17);
+        float[][] centers = new float[40][];
+        for (int c = 0; c < centers.length; c++) {
+            centers[c] = randomVector(random);
+        }
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try (InMemoryChromaStore exact = new InMemoryChromaStore(1, pool);
+             InMemoryChromaStore quantized = new InMemoryChromaStore(1, pool, config)) {
+            for (int i = 0; i < 3000; i++) {
+                float[] center = centers[i % centers.length];
+                float[] vector = new float[DIM];
+                for (int d = 0; d < DIM; d++) {
+                    vector[d] = center[d] + (float) random.nextGaussian() * 0.6f;
+                }
+                EmbeddingRecord record = record("r" + i, vector, i % 2 == 0 ? "a" : "b");
+                exact.upsert(record);
+                quantized.upsert(record);
+            }
+            int found = 0;
+            int expected = 0;
+            for (int q = 0; q < 30; q++) {
+                float[] query = randomVector(random);
+                for (int d = 0; d < DIM; d++) {
+                    query[d] += centers[q % centers.length][d];
+                }
+                Map<String, String> filter = q % 3 == 0 ? Map.of("group", "a") : null;
+                Set<String> truth = new HashSet<>(ids(exact.similaritySearch(query, 10, filter, -1)));
+                List<SearchResult> hits = quantized.similaritySearch(query, 10, filter, -1);
+                for (SearchResult hit : hits) {
+                    if (truth.contains(hit.getRecord().getId())) {
+                        found++;
+                    }
+                    // 返回的是重排后的精确分数
+                    assertEquals(VectorUtil.calculateCosineSimilarity(query, hit.getRecord().getEmbedding()),
+                            hit.getScore(), 1e-5);
+                    if (filter != null) {
+                        assertEquals("a", hit.getRecord().getMetadata().get("group"));
+                    }
+                }
+                expected += truth.size();
+            }
+            double recall = (double) found / expected;
+            assertTrue(recall >= minRecall, "recall@10 " + recall);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<String> ids(List<SearchResult> hits) {
+        return hits.stream().map(h -> h.getRecord().getId()).toList();
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static EmbeddingRecord record(String id, float[] vector, String group) {
+        return new EmbeddingRecord(id, vector, Map.of("group", group), Map.of(), 0L);
+    }
+}
@@ -0,0 +1,82 @@
+package com.yuqiangdede.common.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageContextTest {
+
+    @Test
+    void load_fetchesOnceAndCountsReuse() throws IOException {
+        byte[] png = encodePng();
+        String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(png);
+
+        ImageContext.Stats before = ImageContext.stats();
+        try (ImageContext context = ImageContext.load(dataUri)) {
+            byte[] first = context.getBytes();
+            byte[] second = context.getBytes();
+            byte[] third = context.getBytes();
+
+            assertArrayEquals(png, first);
+            assertSame(first, second);
+            assertSame(first, third);
+        }
+        ImageContext.Stats after = ImageContext.stats();
+
+        assertEquals(1, after.fetches() - before.fetches());
+        assertEquals(2, after.fetchesSaved() - before.fetchesSaved());
+    }
+
+    @Test
+    void registerMeters_exposesFetchDecodeAndSavedCounters() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ImageContext.registerMeters(registry);
+        String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(encodePng());
+
+        double fetches = registry.get("vision.image.context.fetches").functionCounter().count();
+        double saved = registry.get("vision.image.context.fetches.saved").functionCounter().count();
+        try (ImageContext context = ImageContext.load(dataUri)) {
+            context.getBytes();
+            context.getBytes();
+        }
+
+        assertEquals(fetches + 1, registry.get("vision.image.context.fetches").functionCounter().count());
+        assertEquals(saved + 1, registry.get("vision.image.context.fetches.saved").functionCounter().count());
+        assertNotNull(registry.find("vision.image.context.decodes").functionCounter());
+    }
+
+    @Test
+    void urlToBytes_readsLocalFileAndRejectsBlank() throws IOException {
+        byte[] png = encodePng();
+        Path file = Files.createTempFile("image-context", ".png");
+        try {
+            Files.write(file, png);
+            assertArrayEquals(png, ImageUtil.urlToBytes(file.toString()));
+            assertEquals(3, ImageUtil.bytesToImage(file.toString(), png).getWidth());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        assertThrows(IOException.class, () -> ImageContext.load(" "));
+    }
+
+    private static byte[] encodePng() throws IOException {
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_3BYTE_BGR);
+        image.setRGB(1, 1, 0xFF336699);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
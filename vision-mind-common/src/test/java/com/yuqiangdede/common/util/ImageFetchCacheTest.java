@@ -0,0 +1,203 @@
+package com.yuqiangdede.common.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageFetchCacheTest {
+
+    private static final byte[] SMALL = new byte[100];
+    private static final byte[] LARGE = new byte[700];
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/etag.jpg", exchange -> respondWithEtag(exchange, null));
+        server.createContext("/no-cache.jpg", exchange -> respondWithEtag(exchange, "no-cache"));
+        server.createContext("/must-revalidate.jpg", exchange -> respondWithEtag(exchange, "public, must-revalidate"));
+        server.createContext("/max-age-0.jpg", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+            exchange.getResponseHeaders().add("Cache-Control", "max-age=0");
+            respond(exchange, SMALL);
+        });
+        server.createContext("/large.jpg", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+            respond(exchange, LARGE);
+        });
+        server.createContext("/missing.jpg", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void fetch_hitsWithinTtl() throws IOException {
+        ImageFetchCache cache = newCache(1024, Duration.ofMinutes(1));
+
+        byte[] first = cache.fetch(url("/etag.jpg"));
+        byte[] second = cache.fetch(url("/etag.jpg"));
+
+        assertSame(first, second);
+        assertEquals(1, requests.get());
+        ImageFetchCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(SMALL.length, stats.bytes());
+    }
+
+    @Test
+    void fetch_revalidatesWithEtagAfterTtl() throws IOException {
+        ImageFetchCache cache = newCache(1024, Duration.ZERO);
+
+        byte[] first = cache.fetch(url("/etag.jpg"));
+        byte[] second = cache.fetch(url("/etag.jpg"));
+
+        assertSame(first, second);
+        assertEquals(2, requests.get());
+        assertEquals(1, notModified.get());
+        assertEquals(1, cache.stats().revalidations());
+    }
+
+    @Test
+    void fetch_noCacheRevalidatesOnEveryFetchWithinTtl() throws IOException {
+        ImageFetchCache cache = newCache(1024, Duration.ofMinutes(1));
+
+        byte[] first = cache.fetch(url("/no-cache.jpg"));
+        byte[] second = cache.fetch(url("/no-cache.jpg"));
+        byte[] third = cache.fetch(url("/must-revalidate.jpg"));
+        byte[] fourth = cache.fetch(url("/must-revalidate.jpg"));
+
+        assertSame(first, second);
+        assertSame(third, fourth);
+        assertEquals(4, requests.get());
+        assertEquals(2, notModified.get());
+        assertEquals(2, cache.stats().revalidations());
+    }
+
+    @Test
+    void fetch_revalidationWithoutValidatorIsNotCached() throws IOException {
+        ImageFetchCache cache = newCache(1024, Duration.ofMinutes(1));
+
+        cache.fetch(url("/max-age-0.jpg"));
+        cache.fetch(url("/max-age-0.jpg"));
+
+        assertEquals(2, requests.get());
+        assertEquals(0, cache.stats().entries());
+        assertEquals(2, cache.stats().misses());
+    }
+
+    @Test
+    void requiresRevalidation_recognisesCacheControlDirectives() {
+        assertTrue(ImageFetchCache.requiresRevalidation("no-cache"));
+        assertTrue(ImageFetchCache.requiresRevalidation("private, no-cache=\"set-cookie\""));
+        assertTrue(ImageFetchCache.requiresRevalidation("public, max-age=0"));
+        assertTrue(ImageFetchCache.requiresRevalidation("max-age=\"0\""));
+        assertTrue(ImageFetchCache.requiresRevalidation("max-age=60,must-revalidate"));
+        assertFalse(ImageFetchCache.requiresRevalidation("public, max-age=60"));
+        assertFalse(ImageFetchCache.requiresRevalidation(""));
+    }
+
+    @Test
+    void fetch_evictsLeastRecentlyUsedByBytes() throws IOException {
+        ImageFetchCache cache = newCache(750, Duration.ofMinutes(1));
+
+        cache.fetch(url("/etag.jpg"));
+        cache.fetch(url("/large.jpg"));
+
+        ImageFetchCache.Stats stats = cache.stats();
+        assertEquals(1, stats.evictions());
+        assertEquals(1, stats.entries());
+        assertEquals(LARGE.length, stats.bytes());
+
+        assertArrayEquals(SMALL, cache.fetch(url("/etag.jpg")));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void fetch_rejectsErrorStatus() {
+        ImageFetchCache cache = newCache(1024, Duration.ofMinutes(1));
+
+        IOException error = assertThrows(IOException.class, () -> cache.fetch(url("/missing.jpg")));
+        assertEquals("HTTP status 404", error.getMessage());
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void registerMeters_exposesHitMissEvictionCountersAndSize() throws IOException {
+        ImageFetchCache cache = newCache(750, Duration.ofMinutes(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.registerMeters(registry);
+
+        cache.fetch(url("/etag.jpg"));
+        cache.fetch(url("/etag.jpg"));
+        cache.fetch(url("/large.jpg"));
+
+        assertEquals(1, registry.get("vision.image.cache.requests").tag("result", "hit").functionCounter().count());
+        assertEquals(2, registry.get("vision.image.cache.requests").tag("result", "miss").functionCounter().count());
+        assertEquals(1, registry.get("vision.image.cache.evictions").functionCounter().count());
+        assertEquals(1, registry.get("vision.image.cache.entries").gauge().value());
+        assertEquals(LARGE.length, registry.get("vision.image.cache.bytes").gauge().value());
+    }
+
+    private ImageFetchCache newCache(long maxBytes, Duration ttl) {
+        return new ImageFetchCache(maxBytes, ttl, Duration.ofSeconds(2), Duration.ofSeconds(2));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * 带 ETag "v1" 的图片，请求带上同一个 ETag 时返回 304
+     */
+    private void respondWithEtag(HttpExchange exchange, String cacheControl) throws IOException {
+        requests.incrementAndGet();
+        if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        if (cacheControl != null) {
+            exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+        }
+        respond(exchange, SMALL);
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.yuqiangdede.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ImageMatBridgeTest {
+
+    private static final int[] PIXELS = {0xFF102030, 0x80405060, 0x00708090, 0xFFA0B0C0, 0xFFD0E0F0, 0xFF010203};
+
+    @Test
+    void toBgrBytes_reusesBackingArrayFor3ByteBgr() {
+        BufferedImage image = fill(new BufferedImage(3, 2, BufferedImage.TYPE_3BYTE_BGR));
+        byte[] bgr = ImageMatBridge.toBgrBytes(image);
+
+        assertSame(((java.awt.image.DataBufferByte) image.getRaster().getDataBuffer()).getData(), bgr);
+        assertArrayEquals(expectedBgr(), bgr);
+    }
+
+    @Test
+    void toBgrBytes_convertsPackedAndAlphaTypes() {
+        int[] types = {
+                BufferedImage.TYPE_INT_RGB,
+                BufferedImage.TYPE_INT_ARGB,
+                BufferedImage.TYPE_INT_BGR,
+                BufferedImage.TYPE_4BYTE_ABGR
+        };
+        for (int type : types) {
+            BufferedImage image = fill(new BufferedImage(3, 2, type));
+            assertArrayEquals(expectedBgr(), ImageMatBridge.toBgrBytes(image), "type=" + type);
+        }
+    }
+
+    @Test
+    void toBgrBytes_handlesSubImageAndGray() {
+        BufferedImage image = fill(new BufferedImage(3, 2, BufferedImage.TYPE_3BYTE_BGR));
+        BufferedImage sub = image.getSubimage(1, 1, 2, 1);
+        assertArrayEquals(new byte[]{(byte) 0xF0, (byte) 0xE0, (byte) 0xD0, 0x03, 0x02, 0x01},
+                ImageMatBridge.toBgrBytes(sub));
+
+        BufferedImage gray = new BufferedImage(2, 1, BufferedImage.TYPE_BYTE_GRAY);
+        gray.getRaster().setSample(0, 0, 0, 7);
+        gray.getRaster().setSample(1, 0, 0, 200);
+        assertArrayEquals(new byte[]{7, 7, 7, (byte) 200, (byte) 200, (byte) 200}, ImageMatBridge.toBgrBytes(gray));
+    }
+
+    private static BufferedImage fill(BufferedImage image) {
+        for (int i = 0; i < PIXELS.length; i++) {
+            // 非预乘 ARGB 的颜色分量与 alpha 无关，统一写入不透明像素便于比较
+            image.setRGB(i % 3, i / 3, PIXELS[i] | 0xFF000000);
+        }
+        return image;
+    }
+
+    private static byte[] expectedBgr() {
+        byte[] bgr = new byte[PIXELS.length * 3];
+        for (int i = 0; i < PIXELS.length; i++) {
+            bgr[i * 3] = (byte) PIXELS[i];
+            bgr[i * 3 + 1] = (byte) (PIXELS[i] >> 8);
+            bgr[i * 3 + 2] = (byte) (PIXELS[i] >> 16);
+        }
+        return bgr;
+    }
+}
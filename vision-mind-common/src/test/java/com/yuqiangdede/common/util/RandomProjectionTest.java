@@ -0,0 +1,144 @@
+package com.yuqiangdede.common.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RandomProjectionTest {
+
+    // 行列数都不是 4 或向量宽度的整数倍，覆盖尾部行与尾部列
+    private static final int ROWS = 38;
+    private static final int COLS = 133;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void load_readsGeneratedMatrixFormat() throws IOException {
+        float[][] jagged = randomMatrix(new Random(1), ROWS, COLS);
+        Path file = writeMatrix(jagged);
+
+        RandomProjection projection = RandomProjection.load(file);
+
+        assertEquals(ROWS, projection.getRows());
+        assertEquals(COLS, projection.getCols());
+        float[] x = randomVector(new Random(2), COLS);
+        assertArrayEquals(naive(jagged, x), projection.transform(x), 1e-4f);
+    }
+
+    @Test
+    void load_rejectsTruncatedFile() throws IOException {
+        Path file = writeMatrix(randomMatrix(new Random(1), ROWS, COLS));
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = dir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertThrows(IOException.class, () -> RandomProjection.load(truncated));
+    }
+
+    @Test
+    void transform_matchesNaiveProductWithBothKernels() {
+        Random random = new Random(3);
+        float[][] jagged = randomMatrix(random, ROWS, COLS);
+        float[] x = randomVector(random, COLS);
+        float[] expected = naive(jagged, x);
+
+        for (ProjectionKernel kernel : new ProjectionKernel[]{ProjectionKernel.INSTANCE, new ScalarProjectionKernel()}) {
+            RandomProjection projection = new RandomProjection(flatten(jagged), ROWS, COLS, kernel);
+            assertArrayEquals(expected, projection.transform(x), 1e-4f, kernel.toString());
+        }
+    }
+
+    @Test
+    void batchTransform_equalsSingleTransformAcrossInputBlocks() {
+        Random random = new Random(4);
+        float[][] jagged = randomMatrix(random, ROWS, COLS);
+        // 奇数个输入且超过一个输入块（64），覆盖成对路径、单个剩余输入和第二个块
+        float[][] inputs = new float[131][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = randomVector(random, COLS);
+        }
+
+        for (ProjectionKernel kernel : new ProjectionKernel[]{ProjectionKernel.INSTANCE, new ScalarProjectionKernel()}) {
+            RandomProjection projection = new RandomProjection(flatten(jagged), ROWS, COLS, kernel);
+            float[][] batch = projection.transform(inputs);
+            assertEquals(inputs.length, batch.length);
+            for (int i = 0; i < inputs.length; i++) {
+                assertArrayEquals(naive(jagged, inputs[i]), batch[i], 1e-4f, kernel + " input " + i);
+            }
+        }
+    }
+
+    @Test
+    void transform_rejectsWrongDimension() {
+        RandomProjection projection = new RandomProjection(new float[ROWS * COLS], ROWS, COLS);
+
+        assertThrows(IllegalArgumentException.class, () -> projection.transform(new float[COLS - 1]));
+        assertThrows(IllegalArgumentException.class,
+                () -> projection.transform(new float[][]{new float[COLS], new float[COLS + 1]}));
+        assertThrows(IllegalArgumentException.class, () -> new RandomProjection(new float[10], ROWS, COLS));
+    }
+
+    private Path writeMatrix(float[][] matrix) throws IOException {
+        Path file = dir.resolve("projection.bin");
+        try (OutputStream out = Files.newOutputStream(file);
+             DataOutputStream data = new DataOutputStream(out)) {
+            data.writeInt(matrix.length);
+            data.writeInt(matrix[0].length);
+            for (float[] row : matrix) {
+                for (float v : row) {
+                    data.writeFloat(v);
+                }
+            }
+        }
+        return file;
+    }
+
+    private static float[] naive(float[][] matrix, float[] x) {
+        float[] out = new float[matrix.length];
+        for (int r = 0; r < matrix.length; r++) {
+            double sum = 0;
+            for (int c = 0; c < x.length; c++) {
+                sum += (double) matrix[r][c] * x[c];
+            }
+            out[r] = (float) sum;
+        }
+        return out;
+    }
+
+    private static float[] flatten(float[][] matrix) {
+        int cols = matrix[0].length;
+        float[] flat = new float[matrix.length * cols];
+        for (int r = 0; r < matrix.length; r++) {
+            System.arraycopy(matrix[r], 0, flat, r * cols, cols);
+        }
+        return flat;
+    }
+
+    private static float[][] randomMatrix(Random random, int rows, int cols) {
+        float[][] matrix = new float[rows][];
+        for (int r = 0; r < rows; r++) {
+            matrix[r] = randomVector(random, cols);
+        }
+        return matrix;
+    }
+
+    private static float[] randomVector(Random random, int length) {
+        float[] v = new float[length];
+        for (int i = 0; i < length; i++) {
+            v[i] = (float) random.nextGaussian();
+        }
+        return v;
+    }
+}
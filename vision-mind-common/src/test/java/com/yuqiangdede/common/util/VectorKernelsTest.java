@@ -0,0 +1,56 @@
+package com.yuqiangdede.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VectorKernelsTest {
+
+    @Test
+    void select_usesPanamaImplementationWhenModuleIsPresent() {
+        // surefire starts the test JVM with --add-modules jdk.incubator.vector
+        assertTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent());
+
+        ProjectionKernel kernel = VectorKernels.select(MethodHandles.lookup(), ProjectionKernel.class,
+                "com.yuqiangdede.common.util.PanamaProjectionKernel", ScalarProjectionKernel::new, "test");
+
+        assertInstanceOf(PanamaProjectionKernel.class, kernel);
+        assertInstanceOf(PanamaProjectionKernel.class, ProjectionKernel.INSTANCE);
+    }
+
+    @Test
+    void select_fallsBackToScalarWhenImplementationIsMissingOrFails() {
+        assertInstanceOf(ScalarProjectionKernel.class, VectorKernels.select(MethodHandles.lookup(), ProjectionKernel.class,
+                "com.yuqiangdede.common.util.MissingProjectionKernel", ScalarProjectionKernel::new, "test"));
+        assertInstanceOf(ScalarProjectionKernel.class, VectorKernels.select(MethodHandles.lookup(), ProjectionKernel.class,
+                BrokenKernel.class.getName(), ScalarProjectionKernel::new, "test"));
+    }
+
+    /**
+     * Stands in for a Panama kernel whose vector species cannot be created on this CPU.
+     */
+    private static final class BrokenKernel implements ProjectionKernel {
+        private BrokenKernel() {
+            throw new UnsupportedOperationException("no SIMD");
+        }
+
+        @Override
+        public float dot(float[] matrix, int offset, int cols, float[] x) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void dot4(float[] matrix, int offset, int cols, float[] x, float[] out, int outIndex) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void dot4x2(float[] matrix, int offset, int cols, float[] x0, float[] x1, float[] out0, float[] out1,
+                           int outIndex) {
+            throw new AssertionError();
+        }
+    }
+}
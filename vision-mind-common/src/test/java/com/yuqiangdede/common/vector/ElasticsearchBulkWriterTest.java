@@ -0,0 +1,299 @@
+package com.yuqiangdede.common.vector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.yuqiangdede.common.util.JsonUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用本地 HttpServer 模拟 Elasticsearch 的 {@code /faces/_bulk}
+ */
+class ElasticsearchBulkWriterTest {
+
+    private HttpServer server;
+    private RestHighLevelClient client;
+    /**
+     * 每次 _bulk 请求的 refresh 参数与文档 id
+     */
+    private final List<String> refreshParams = new CopyOnWriteArrayList<>();
+    private final List<List<String>> bulkIds = new CopyOnWriteArrayList<>();
+    private final List<JsonNode> sources = new CopyOnWriteArrayList<>();
+    /**
+     * 首次出现时返回 429 的 id，以及总是返回 400 的 id
+     */
+    private final Set<String> rejectOnce = ConcurrentHashMap.newKeySet();
+    private final Set<String> invalid = ConcurrentHashMap.newKeySet();
+    /**
+     * 删除时返回 404 的 id
+     */
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+    private volatile CountDownLatch holdBulks = new CountDownLatch(0);
+    /**
+     * 非空时只挂起包含这些 id 的 bulk
+     */
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestURI().getPath().equals("/faces/_bulk")) {
+                bulk(exchange);
+            } else {
+                respond(exchange, 404, "{}");
+            }
+        });
+        server.start();
+        client = ElasticsearchClientFactory.createClient(
+                "http://127.0.0.1:" + server.getAddress().getPort(), null, null, null);
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        holdBulks.countDown();
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void writesShareBulkRequestsWithWaitUntilAndCompactVectors() throws Exception {
+        try (ElasticsearchBulkWriter writer = newWriter(10, 1, ElasticsearchWriteConfig.RefreshMode.WAIT_UNTIL)) {
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                writes.add(submit(writer, "d" + i, new float[]{i, 0.5f, -1f}));
+            }
+            // 剩余 5 条不足一批，手动 flush
+            writer.flush();
+            writer.await(writes);
+        }
+
+        assertEquals(List.of(10, 10, 5), bulkIds.stream().map(List::size).toList());
+        assertEquals(List.of("wait_for", "wait_for", "wait_for"), refreshParams);
+        JsonNode source = sources.get(7);
+        assertEquals("g", source.get("groupId").asText());
+        assertFalse(source.has("imgUrl"));
+        assertTrue(source.get("vector").isArray());
+        assertEquals(7.0, source.get("vector").get(0).asDouble());
+        assertEquals(-1.0, source.get("vector").get(2).asDouble());
+    }
+
+    @Test
+    void rejectedItemsAreRetriedAndFailedItemsFailOnlyTheirWrite() throws Exception {
+        rejectOnce.add("busy");
+        invalid.add("bad");
+        try (ElasticsearchBulkWriter writer = newWriter(3, 1, ElasticsearchWriteConfig.RefreshMode.INTERVAL)) {
+            writer.await(List.of(submit(writer, "a", new float[]{1}), submit(writer, "busy", new float[]{2}),
+                    submit(writer, "b", new float[]{3})));
+            assertEquals(List.of(List.of("a", "busy", "b"), List.of("busy")), bulkIds);
+            // interval 模式不带 refresh 参数
+            assertEquals(List.of("", ""), refreshParams);
+
+            CompletableFuture<Void> ok = submit(writer, "c", new float[]{4});
+            CompletableFuture<Void> bad = submit(writer, "bad", new float[]{5});
+            CompletableFuture<Void> last = submit(writer, "e", new float[]{6});
+            ok.get(5, TimeUnit.SECONDS);
+            last.get(5, TimeUnit.SECONDS);
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertTrue(failure.getCause().getMessage().contains("mapper_parsing_exception"));
+
+            List<CompletableFuture<Void>> mixed = List.of(submit(writer, "f", new float[]{7}),
+                    submit(writer, "bad", new float[]{8}), submit(writer, "g", new float[]{9}));
+            IOException e = assertThrows(IOException.class, () -> writer.await(mixed));
+            assertTrue(e.getMessage().startsWith("1 of 3"), e.getMessage());
+        }
+    }
+
+    @Test
+    void deletesShareBulksAndRefreshModeWithWrites() throws Exception {
+        missing.add("gone");
+        try (ElasticsearchBulkWriter writer = newWriter(3, 1, ElasticsearchWriteConfig.RefreshMode.WAIT_UNTIL)) {
+            writer.await(List.of(submit(writer, "a", new float[]{1}), writer.delete("b"), writer.delete("gone")));
+        }
+
+        // 删除与写入同批发送，同样带 wait_for，不再单独强制 refresh；删除不存在的文档视为成功
+        assertEquals(List.of(List.of("a", "-b", "-gone")), bulkIds);
+        assertEquals(List.of("wait_for"), refreshParams);
+        assertTrue(newConfig(1, 1, ElasticsearchWriteConfig.RefreshMode.WAIT_UNTIL).refreshAfterDeleteByQuery());
+        assertFalse(newConfig(1, 1, ElasticsearchWriteConfig.RefreshMode.INTERVAL).refreshAfterDeleteByQuery());
+    }
+
+    @Test
+    void callersBlockWhileBulksAreInFlight() throws Exception {
+        holdBulks = new CountDownLatch(1);
+        try (ElasticsearchBulkWriter writer = newWriter(1, 1, ElasticsearchWriteConfig.RefreshMode.WAIT_UNTIL)) {
+            CompletableFuture<Void> first = submit(writer, "first", new float[]{1});
+            Thread second = new Thread(() -> submit(writer, "second", new float[]{2}));
+            second.start();
+            second.join(300);
+            assertTrue(second.isAlive(), "second write should wait for the in-flight bulk");
+            assertFalse(first.isDone());
+
+            holdBulks.countDown();
+            second.join(5_000);
+            assertFalse(second.isAlive());
+            first.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of(List.of("first"), List.of("second")), bulkIds);
+    }
+
+    @Test
+    void retriesDoNotBlockTheSchedulerWhileBulksAreInFlight() throws Exception {
+        rejectOnce.add("busy");
+        held.add("held");
+        holdBulks = new CountDownLatch(1);
+        ElasticsearchWriteConfig config = new ElasticsearchWriteConfig(1, 1024 * 1024, 60_000, 1, 200, 3, 10_000,
+                ElasticsearchWriteConfig.RefreshMode.INTERVAL, "1s");
+        try (ElasticsearchBulkWriter writer = new ElasticsearchBulkWriter(client, "faces", config, "retry-bulk")) {
+            CompletableFuture<Void> busy = submit(writer, "busy", new float[]{1});
+            // busy 收到 429 后 200ms 重试，在此之前 held 占住唯一的并发名额
+            CompletableFuture<Void> holding = submit(writer, "held", new float[]{2});
+            Thread.sleep(500);
+
+            Thread scheduler = Thread.getAllStackTraces().keySet().stream()
+                    .filter(t -> t.getName().equals("retry-bulk-scheduler"))
+                    .findFirst()
+                    .orElseThrow();
+            for (StackTraceElement frame : scheduler.getStackTrace()) {
+                assertFalse(frame.getClassName().equals(Semaphore.class.getName()),
+                        "scheduler thread must not wait for a bulk slot");
+            }
+            assertFalse(busy.isDone());
+
+            holdBulks.countDown();
+            holding.get(5, TimeUnit.SECONDS);
+            busy.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of(List.of("busy"), List.of("held"), List.of("busy")), bulkIds);
+    }
+
+    @Test
+    void intervalModeSetsTheIndexRefreshInterval() {
+        Map<String, Object> settings = newConfig(1, 1, ElasticsearchWriteConfig.RefreshMode.INTERVAL).indexSettings();
+        assertEquals(Map.of("index.refresh_interval", "1s"), settings);
+        assertTrue(ElasticsearchWriteConfig.defaults().indexSettings().isEmpty());
+    }
+
+    private ElasticsearchBulkWriter newWriter(int actions, int concurrent, ElasticsearchWriteConfig.RefreshMode mode) {
+        return new ElasticsearchBulkWriter(client, "faces", newConfig(actions, concurrent, mode), "test-bulk");
+    }
+
+    private static ElasticsearchWriteConfig newConfig(int actions, int concurrent,
+                                                      ElasticsearchWriteConfig.RefreshMode mode) {
+        // 定时 flush 放长，批次只由条数决定
+        return new ElasticsearchWriteConfig(actions, 1024 * 1024, 60_000, concurrent, 10, 3, 10_000, mode, "1s");
+    }
+
+    private static CompletableFuture<Void> submit(ElasticsearchBulkWriter writer, String id, float[] vector) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", id);
+        fields.put("groupId", "g");
+        fields.put("imgUrl", null);
+        try {
+            return writer.submit(id, fields, "vector", vector);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void bulk(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getQuery();
+        String refresh = "";
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("refresh=")) {
+                    refresh = param.substring("refresh=".length());
+                }
+            }
+        }
+        String[] lines = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8).split("\n");
+        List<String> ids = new ArrayList<>();
+        StringBuilder items = new StringBuilder();
+        boolean errors = false;
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode line = JsonUtils.objectMapper.readTree(lines[i]);
+            if (line.has("delete")) {
+                String id = line.get("delete").get("_id").asText();
+                ids.add("-" + id);
+                if (items.length() > 0) {
+                    items.append(',');
+                }
+                // 不存在的文档 ES 返回 404 not_found
+                int status = missing.contains(id) ? 404 : 200;
+                items.append("{\"delete\":{\"_index\":\"faces\",\"_id\":\"").append(id).append("\",\"result\":\"")
+                        .append(status == 404 ? "not_found" : "deleted").append("\",\"status\":").append(status).append("}}");
+                continue;
+            }
+            String id = line.get("index").get("_id").asText();
+            sources.add(JsonUtils.objectMapper.readTree(lines[++i]));
+            ids.add(id);
+            if (items.length() > 0) {
+                items.append(',');
+            }
+            if (rejectOnce.remove(id)) {
+                errors = true;
+                items.append(failure(id, 429, "es_rejected_execution_exception"));
+            } else if (invalid.contains(id)) {
+                errors = true;
+                items.append(failure(id, 400, "mapper_parsing_exception"));
+            } else {
+                items.append("{\"index\":{\"_index\":\"faces\",\"_type\":\"_doc\",\"_id\":\"").append(id)
+                        .append("\",\"_version\":1,\"result\":\"created\",\"_shards\":{\"total\":1,"
+                                + "\"successful\":1,\"failed\":0},\"_seq_no\":0,\"_primary_term\":1,\"status\":201}}");
+            }
+        }
+        refreshParams.add(refresh);
+        bulkIds.add(ids);
+        try {
+            if (held.isEmpty() || ids.stream().anyMatch(held::contains)) {
+                holdBulks.await(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        respond(exchange, 200, "{\"took\":1,\"errors\":" + errors + ",\"items\":[" + items + "]}");
+    }
+
+    private static String failure(String id, int status, String type) {
+        return "{\"index\":{\"_index\":\"faces\",\"_type\":\"_doc\",\"_id\":\"" + id + "\",\"status\":" + status
+                + ",\"error\":{\"type\":\"" + type + "\",\"reason\":\"" + type + " for " + id + "\"}}}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("X-Elastic-Product", "Elasticsearch");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.yuqiangdede.common.vector;
+
+import org.apache.lucene.codecs.lucene99.Lucene99HnswScalarQuantizedVectorsFormat;
+import org.apache.lucene.codecs.perfield.PerFieldKnnVectorsFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LuceneVectorIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static LuceneWriteConfig config() {
+        // 提交间隔足够长，测试中只有显式 commit 或关闭时才会提交
+        return new LuceneWriteConfig(60_000, 5, 3_600_000, 1_000_000, WriteAheadLog.Durability.REQUEST, 200);
+    }
+
+    @Test
+    void writesBecomeVisibleAfterAwaitWithoutCommit() throws Exception {
+        String path = tempDir.resolve("index").toString();
+        try (LuceneVectorIndex index = LuceneVectorIndex.open(path, config())) {
+            index.add(doc("a", new float[]{1, 0, 0}));
+            long generation = index.add(doc("b", new float[]{0, 1, 0}));
+            index.awaitVisible(generation);
+            assertEquals(2, count(index.searcherManager(), null));
+
+            generation = index.delete(new Term("id", "a"));
+            index.awaitVisible(generation);
+            assertEquals(1, count(index.searcherManager(), null));
+            assertEquals(0, count(index.searcherManager(), "a"));
+        }
+    }
+
+    @Test
+    void crashReplaysTranslogWithoutDuplicates() throws Exception {
+        String path = tempDir.resolve("index").toString();
+        LuceneVectorIndex index = LuceneVectorIndex.open(path, config());
+        index.add(doc("a", new float[]{1, 0, 0}));
+        index.commit();
+        index.add(doc("b", new float[]{0, 1, 0}));
+        index.add(doc("c", new float[]{0, 0, 1}));
+        index.delete(new Term("id", "a"));
+        index.crash();
+
+        try (LuceneVectorIndex reopened = LuceneVectorIndex.open(path, config())) {
+            SearcherManager manager = reopened.searcherManager();
+            assertEquals(2, count(manager, null));
+            assertEquals(0, count(manager, "a"));
+            assertEquals(1, count(manager, "b"));
+
+            IndexSearcher searcher = manager.acquire();
+            try {
+                TopDocs hits = searcher.search(new KnnFloatVectorQuery("vector", new float[]{0, 0, 1}, 1), 1);
+                Document best = searcher.storedFields().document(hits.scoreDocs[0].doc);
+                assertEquals("c", best.get("id"));
+                assertEquals("url-c", best.get("img_url"));
+                assertEquals(7L, best.getField("time_stored").numericValue().longValue());
+            } finally {
+                manager.release(searcher);
+            }
+            // 回放结果已提交，正常关闭再打开不能重复入库
+            reopened.add(doc("d", new float[]{1, 1, 0}));
+        }
+        try (LuceneVectorIndex reopened = LuceneVectorIndex.open(path, config())) {
+            assertEquals(3, count(reopened.searcherManager(), null));
+        }
+    }
+
+    @Test
+    void addAllIsVisibleAndReplayedAfterCrash() throws Exception {
+        String path = tempDir.resolve("index").toString();
+        LuceneVectorIndex index = LuceneVectorIndex.open(path, config());
+        assertEquals(0L, index.addAll(List.of()));
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            docs.add(doc("d" + i, new float[]{i, 1, 0}));
+        }
+        long generation = index.addAll(docs);
+        index.awaitVisible(generation);
+        assertEquals(50, count(index.searcherManager(), null));
+        index.crash();
+
+        try (LuceneVectorIndex reopened = LuceneVectorIndex.open(path, config())) {
+            assertEquals(50, count(reopened.searcherManager(), null));
+            assertEquals(1, count(reopened.searcherManager(), "d49"));
+        }
+    }
+
+    @Test
+    void replayIsIdempotentWhenCommitAlreadyContainsRecords() throws Exception {
+        String path = tempDir.resolve("index").toString();
+        LuceneVectorIndex index = LuceneVectorIndex.open(path, config());
+        index.add(doc("a", new float[]{1, 0, 0}));
+        index.crash();
+
+        // 首次恢复会提交回放结果；再次恢复同一目录时文档数不变
+        LuceneVectorIndex.open(path, config()).crash();
+        try (LuceneVectorIndex reopened = LuceneVectorIndex.open(path, config())) {
+            assertEquals(1, count(reopened.searcherManager(), null));
+        }
+    }
+
+    @Test
+    void lostTranslogDirectoryDoesNotReuseCommittedOpIds() throws Exception {
+        Path indexPath = tempDir.resolve("index");
+        String path = indexPath.toString();
+        LuceneVectorIndex index = LuceneVectorIndex.open(path, config());
+        index.add(doc("a", new float[]{1, 0, 0}));
+        index.crash();
+        LuceneVectorIndex.open(path, config()).close();
+
+        // translog 目录整个丢失：新的 opId 若从 1_0 重新开始，回放时会覆盖文档 a
+        deleteTranslog(LuceneVectorIndex.translogDir(indexPath));
+        Files.delete(LuceneVectorIndex.translogDir(indexPath));
+        LuceneVectorIndex reopened = LuceneVectorIndex.open(path, config());
+        reopened.add(doc("b", new float[]{0, 1, 0}));
+        reopened.crash();
+
+        try (LuceneVectorIndex recovered = LuceneVectorIndex.open(path, config())) {
+            assertEquals(1, count(recovered.searcherManager(), "a"));
+            assertEquals(1, count(recovered.searcherManager(), "b"));
+        }
+    }
+
+    @Test
+    void commitTrimsTranslog() throws Exception {
+        Path indexPath = tempDir.resolve("index");
+        try (LuceneVectorIndex index = LuceneVectorIndex.open(indexPath.toString(), config())) {
+            index.add(doc("a", new float[]{1, 0, 0}));
+            index.commit();
+            index.add(doc("b", new float[]{0, 1, 0}));
+            index.commit();
+            assertEquals(1, WriteAheadLog.generations(LuceneVectorIndex.translogDir(indexPath)).size());
+        }
+    }
+
+    @Test
+    void commitMaxDocsTriggersBackgroundCommit() throws Exception {
+        String path = tempDir.resolve("index").toString();
+        LuceneWriteConfig config = new LuceneWriteConfig(60_000, 5, 3_600_000, 2,
+                WriteAheadLog.Durability.ASYNC, 10);
+        LuceneVectorIndex index = LuceneVectorIndex.open(path, config);
+        index.add(doc("a", new float[]{1, 0, 0}));
+        index.add(doc("b", new float[]{0, 1, 0}));
+        Path translogDir = LuceneVectorIndex.translogDir(Path.of(path));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (WriteAheadLog.generations(translogDir).get(0) == 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(WriteAheadLog.generations(translogDir).get(0) > 1);
+        index.crash();
+        // 异步提交后即使丢掉 translog 也能读到数据
+        deleteTranslog(translogDir);
+        try (LuceneVectorIndex reopened = LuceneVectorIndex.open(path, config())) {
+            assertEquals(2, count(reopened.searcherManager(), null));
+        }
+    }
+
+    @Test
+    void int8VectorFormatWritesQuantizedVectors() throws Exception {
+        Path indexPath = tempDir.resolve("index");
+        LuceneWriteConfig config = new LuceneWriteConfig(60_000, 5, 3_600_000, 1_000_000,
+                WriteAheadLog.Durability.REQUEST, 200, LuceneWriteConfig.VectorFormat.INT8);
+        try (LuceneVectorIndex index = LuceneVectorIndex.open(indexPath.toString(), config)) {
+            index.add(doc("a", new float[]{1, 0, 0}));
+            index.add(doc("b", new float[]{0, 1, 0}));
+            index.add(doc("c", new float[]{0, 0, 1}));
+            index.commit();
+        }
+        // 读取端不需要同样的配置，段里记录了写入时的格式
+        try (LuceneVectorIndex reopened = LuceneVectorIndex.open(indexPath.toString(), config())) {
+            IndexSearcher searcher = reopened.searcherManager().acquire();
+            try {
+                for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                    assertEquals(Lucene99HnswScalarQuantizedVectorsFormat.NAME, leaf.reader().getFieldInfos()
+                            .fieldInfo("vector").getAttribute(PerFieldKnnVectorsFormat.PER_FIELD_FORMAT_KEY));
+                }
+                TopDocs hits = searcher.search(new KnnFloatVectorQuery("vector", new float[]{0, 0.9f, 0.1f}, 1), 1);
+                assertEquals("b", searcher.storedFields().document(hits.scoreDocs[0].doc).get("id"));
+            } finally {
+                reopened.searcherManager().release(searcher);
+            }
+        }
+    }
+
+    @Test
+    void filteredKnnReturnsTopKOfSelectiveGroup() throws Exception {
+        try (LuceneVectorIndex index = LuceneVectorIndex.open(tempDir.resolve("index").toString(), config())) {
+            Random random = new Random(13);
+            long generation = 0;
+            for (int i = 0; i < 500; i++) {
+                // 大组的向量都靠近查询方向，小组的 5 条离得远
+                boolean rare = i % 100 == 0;
+                float[] vector = new float[8];
+                for (int d = 0; d < vector.length; d++) {
+                    vector[d] = (float) random.nextGaussian() * 0.1f;
+                }
+                vector[0] += rare ? -1f : 1f;
+                Document doc = doc("d" + i, vector);
+                doc.add(new StringField("group_id", rare ? "rare" : "common", Field.Store.NO));
+                generation = index.add(doc);
+            }
+            index.awaitVisible(generation);
+            float[] query = {1, 0, 0, 0, 0, 0, 0, 0};
+            IndexSearcher searcher = index.searcherManager().acquire();
+            try {
+                // 先取全局 top-k 再过滤，小组一条都剩不下
+                BooleanQuery.Builder postFilter = new BooleanQuery.Builder();
+                postFilter.add(new KnnFloatVectorQuery("vector", query, 5), BooleanClause.Occur.MUST);
+                postFilter.add(new TermQuery(new Term("group_id", "rare")), BooleanClause.Occur.FILTER);
+                assertEquals(0, searcher.search(postFilter.build(), 5).scoreDocs.length);
+
+                TopDocs hits = searcher.search(
+                        LuceneVectorIndex.knnQuery("vector", query, 5, Map.of("group_id", "rare")), 5);
+                assertEquals(5, hits.scoreDocs.length);
+                for (ScoreDoc hit : hits.scoreDocs) {
+                    int id = Integer.parseInt(searcher.storedFields().document(hit.doc).get("id").substring(1));
+                    assertEquals(0, id % 100);
+                }
+                assertEquals(3, searcher.search(LuceneVectorIndex.knnQuery("vector", query, 3, null), 3)
+                        .scoreDocs.length);
+            } finally {
+                index.searcherManager().release(searcher);
+            }
+        }
+    }
+
+    @Test
+    void searchBatchReturnsPerQueryHitsInOrder() throws Exception {
+        try (LuceneVectorIndex index = LuceneVectorIndex.open(tempDir.resolve("index").toString(), config())) {
+            Random random = new Random(29);
+            long generation = 0;
+            for (int i = 0; i < 200; i++) {
+                float[] vector = new float[8];
+                for (int d = 0; d < vector.length; d++) {
+                    vector[d] = (float) random.nextGaussian();
+                }
+                generation = index.add(doc("d" + i, vector));
+            }
+            index.awaitVisible(generation);
+            List<Query> queries = new ArrayList<>();
+            for (int q = 0; q < 6; q++) {
+                float[] query = new float[8];
+                query[q] = 1;
+                queries.add(LuceneVectorIndex.knnQuery("vector", query, 4, null));
+            }
+            List<List<String>> batch = index.searchBatch(queries, 4, LuceneVectorIndexTest::ids);
+            assertEquals(queries.size(), batch.size());
+            IndexSearcher searcher = index.searcherManager().acquire();
+            try {
+                for (int q = 0; q < queries.size(); q++) {
+                    assertEquals(ids(searcher, searcher.search(queries.get(q), 4)), batch.get(q));
+                }
+            } finally {
+                index.searcherManager().release(searcher);
+            }
+            IOException failure = assertThrows(IOException.class, () -> index.searchBatch(queries, 4, (s, topDocs) -> {
+                throw new IOException("boom");
+            }));
+            assertEquals("boom", failure.getMessage());
+        }
+    }
+
+    private static List<String> ids(IndexSearcher searcher, TopDocs topDocs) throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (ScoreDoc hit : topDocs.scoreDocs) {
+            ids.add(searcher.storedFields().document(hit.doc).get("id"));
+        }
+        return ids;
+    }
+
+    private static void deleteTranslog(Path translogDir) throws IOException {
+        for (long generation : WriteAheadLog.generations(translogDir)) {
+            Files.delete(WriteAheadLog.file(translogDir, generation));
+        }
+    }
+
+    private static Document doc(String id, float[] vector) {
+        Document doc = new Document();
+        doc.add(new KnnFloatVectorField("vector", vector));
+        doc.add(new StringField("id", id, Field.Store.YES));
+        doc.add(new StoredField("img_url", "url-" + id));
+        doc.add(new LongPoint("time", 7L));
+        doc.add(new StoredField("time_stored", 7L));
+        return doc;
+    }
+
+    private static int count(SearcherManager manager, String id) throws IOException {
+        IndexSearcher searcher = manager.acquire();
+        try {
+            return searcher.count(id == null ? new MatchAllDocsQuery() : new TermQuery(new Term("id", id)));
+        } finally {
+            manager.release(searcher);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.yuqiangdede.common.vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayStopsAtRecordLongerThanFileWithoutAllocatingIt() throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 1)) {
+            wal.append((byte) 1, new byte[]{1, 2, 3});
+            wal.append((byte) 2, new byte[]{4});
+            wal.syncAll();
+        }
+        // 损坏的记录头声明接近 2GB 的长度，不能按该长度分配内存
+        Files.write(WriteAheadLog.file(dir, 1), ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE - 16).putInt(0).array(),
+                StandardOpenOption.APPEND);
+
+        List<WriteAheadLog.Entry> entries = new ArrayList<>();
+        long count = WriteAheadLog.replay(dir, 1, entries::add);
+
+        assertEquals(2, count);
+        assertEquals(1, entries.get(0).op());
+        assertArrayEquals(new byte[]{1, 2, 3}, entries.get(0).payload());
+        assertArrayEquals(new byte[]{4}, entries.get(1).payload());
+    }
+
+    @Test
+    void replayIgnoresTornTailButKeepsLaterGenerations() throws Exception {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, 1)) {
+            wal.append((byte) 1, new byte[]{1});
+            wal.roll();
+            wal.append((byte) 1, new byte[]{2});
+            wal.syncAll();
+        }
+        // 第 1 代末尾只写了一半的记录：长度完整，内容缺失
+        Files.write(WriteAheadLog.file(dir, 1), ByteBuffer.allocate(6).putInt(10).putShort((short) 7).array(),
+                StandardOpenOption.APPEND);
+
+        List<WriteAheadLog.Entry> entries = new ArrayList<>();
+        WriteAheadLog.replay(dir, 1, entries::add);
+
+        assertEquals(2, entries.size());
+        assertEquals(2, entries.get(1).location().generation());
+    }
+}
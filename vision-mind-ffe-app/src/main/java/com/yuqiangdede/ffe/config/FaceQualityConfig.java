@@ -0,0 +1,54 @@
+package com.yuqiangdede.ffe.config;
+
+import java.util.Properties;
+
+/**
+ * 人脸质量门限，检测之后、属性/关键点/特征之前判断，不合格的人脸不再进入后面的模型。
+ *
+ * @param enabled      是否启用
+ * @param minScore     最低检测分数，接口请求中的 faceScoreThreshold 更高时以请求为准
+ * @param minFaceSize  人脸框短边的最小像素数
+ * @param maxAngle     人脸与正立方向的最大夹角（度，0~180），180 表示不限制
+ * @param minSharpness 最低清晰度：人脸缩放到 64x64 灰度图后的 Laplacian 方差，0 表示不计算
+ */
+public record FaceQualityConfig(boolean enabled,
+                                float minScore,
+                                float minFaceSize,
+                                float maxAngle,
+                                double minSharpness) {
+
+    public FaceQualityConfig {
+        minScore = Math.max(0, minScore);
+        minFaceSize = Math.max(0, minFaceSize);
+        maxAngle = maxAngle <= 0 || maxAngle > 180 ? 180 : maxAngle;
+        minSharpness = Math.max(0, minSharpness);
+    }
+
+    /**
+     * 只按请求中的分数阈值过滤
+     */
+    public static FaceQualityConfig defaults() {
+        return new FaceQualityConfig(true, 0, 0, 180, 0);
+    }
+
+    /**
+     * 读取 {@code face.quality.*}，未配置的项取默认值
+     */
+    public static FaceQualityConfig fromProperties(Properties properties) {
+        FaceQualityConfig d = defaults();
+        return new FaceQualityConfig(
+                Boolean.parseBoolean(get(properties, "face.quality.enabled", String.valueOf(d.enabled))),
+                Float.parseFloat(get(properties, "face.quality.min-score", String.valueOf(d.minScore))),
+                Float.parseFloat(get(properties, "face.quality.min-face-size", String.valueOf(d.minFaceSize))),
+                Float.parseFloat(get(properties, "face.quality.max-angle", String.valueOf(d.maxAngle))),
+                Double.parseDouble(get(properties, "face.quality.min-sharpness", String.valueOf(d.minSharpness))));
+    }
+
+    private static String get(Properties properties, String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+}
@@ -0,0 +1,90 @@
+package com.yuqiangdede.ffe.config;
+
+import ai.onnxruntime.OrtSession;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * 单个人脸模型的 ONNX 会话池配置。
+ *
+ * @param poolSize          池中最多创建的会话数，按需创建
+ * @param intraOpThreads    单个算子内部的线程数，0 表示按 CPU 核数平分给池中的会话
+ * @param interOpThreads    算子之间并行的线程数，0 表示使用 onnxruntime 默认值
+ * @param optLevel          图优化级别
+ * @param executionMode     SEQUENTIAL 按拓扑顺序执行算子，PARALLEL 让无依赖的算子在 inter-op 线程上并行
+ * @param memoryPattern     是否按首次推理的内存分配模式预分配，输入尺寸固定的模型收益明显
+ * @param memoryArena       是否启用 CPU 内存 arena
+ * @param optimizedModelDir 优化后模型的缓存目录，为 null 时不缓存
+ */
+public record SessionPoolConfig(int poolSize,
+                                int intraOpThreads,
+                                int interOpThreads,
+                                OrtSession.SessionOptions.OptLevel optLevel,
+                                OrtSession.SessionOptions.ExecutionMode executionMode,
+                                boolean memoryPattern,
+                                boolean memoryArena,
+                                String optimizedModelDir) {
+
+    public SessionPoolConfig {
+        poolSize = Math.max(1, poolSize);
+        if (optLevel == null) {
+            optLevel = OrtSession.SessionOptions.OptLevel.ALL_OPT;
+        }
+        if (executionMode == null) {
+            executionMode = OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL;
+        }
+        if (optimizedModelDir != null && optimizedModelDir.isBlank()) {
+            optimizedModelDir = null;
+        }
+    }
+
+    /**
+     * 原来的单会话配置：一个会话、inter-op 线程数为 threads、BASIC_OPT、不缓存优化后的模型
+     */
+    public static SessionPoolConfig ofThreads(int threads) {
+        return new SessionPoolConfig(1, 0, threads, OrtSession.SessionOptions.OptLevel.BASIC_OPT,
+                OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL, true, true, null);
+    }
+
+    /**
+     * 读取 {@code face.<model>.session.*}，未配置的项取 {@code face.session.*}，再没有则取默认值
+     *
+     * @param properties 配置
+     * @param model      模型简称：scrfd、coord、arc、arr
+     */
+    public static SessionPoolConfig fromProperties(Properties properties, String model) {
+        String cache = sessionProperty(properties, model, "optimized-model.cache", "true");
+        String dir = sessionProperty(properties, model, "optimized-model.dir", "");
+        if (dir.isEmpty()) {
+            dir = System.getProperty("java.io.tmpdir") + "/vision-mind-ffe-ort";
+        }
+        return new SessionPoolConfig(
+                Integer.parseInt(sessionProperty(properties, model, "pool.size", "2")),
+                Integer.parseInt(sessionProperty(properties, model, "intra.threads", "0")),
+                Integer.parseInt(sessionProperty(properties, model, "inter.threads", "0")),
+                OrtSession.SessionOptions.OptLevel.valueOf(sessionProperty(properties, model, "optimization", "ALL_OPT").toUpperCase(Locale.ROOT)),
+                OrtSession.SessionOptions.ExecutionMode.valueOf(sessionProperty(properties, model, "execution.mode", "SEQUENTIAL").toUpperCase(Locale.ROOT)),
+                Boolean.parseBoolean(sessionProperty(properties, model, "memory.pattern", "true")),
+                Boolean.parseBoolean(sessionProperty(properties, model, "memory.arena", "true")),
+                Boolean.parseBoolean(cache) ? dir : null);
+    }
+
+    /**
+     * @return 实际使用的 intra-op 线程数；未配置时让池中所有会话合计约占满 CPU 核数
+     */
+    public int effectiveIntraOpThreads() {
+        if (intraOpThreads > 0) {
+            return intraOpThreads;
+        }
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / poolSize);
+    }
+
+    private static String sessionProperty(Properties properties, String model, String key, String defaultValue) {
+        String value = properties.getProperty("face." + model + ".session." + key);
+        if (value == null || value.isBlank()) {
+            value = properties.getProperty("face.session." + key, defaultValue);
+        }
+        return value.trim();
+    }
+}
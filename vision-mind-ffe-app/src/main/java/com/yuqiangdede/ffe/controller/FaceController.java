@@ -2,6 +2,8 @@ package com.yuqiangdede.ffe.controller;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,8 +19,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.yuqiangdede.common.dto.output.BulkSummary;
 import com.yuqiangdede.common.dto.output.HttpResult;
 import com.yuqiangdede.common.util.ImageUtil;
+import com.yuqiangdede.common.util.JsonUtils;
 import com.yuqiangdede.ffe.core.domain.FaceImage;
 import com.yuqiangdede.ffe.core.domain.FaceInfo;
 import com.yuqiangdede.ffe.dto.input.Input4Compare;
@@ -31,6 +35,8 @@ import com.yuqiangdede.ffe.dto.output.FaceInfo4Search;
 import com.yuqiangdede.ffe.dto.output.FaceInfo4SearchAdd;
 import com.yuqiangdede.ffe.service.FaceService;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -115,6 +121,30 @@ public class FaceController {
         }
     }
 
+    /**
+     * 批量入库，请求体和响应体都是 NDJSON（每行一个 JSON），边读边处理边返回，请求和响应都不会整体缓存在内存中
+     *
+     * @param request  每行一个 {@link com.yuqiangdede.ffe.dto.input.Input4Bulk}
+     * @param response 按输入顺序每行一个处理结果，最后一行是 {@link BulkSummary}
+     */
+    @PostMapping(value = {"/v1/face/bulk", "/v1/face/store/bulk"}, produces = "application/x-ndjson", consumes = "application/x-ndjson")
+    @SuppressWarnings("UseSpecificCatch")
+    public void bulkStore(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long start_time = System.currentTimeMillis();
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try {
+            BulkSummary summary = faceService.bulkStore(request.getInputStream(), response.getOutputStream());
+            log.info("BulkStore : {}. Cost time:{} ms.", summary, (System.currentTimeMillis() - start_time));
+        } catch (Exception e) {
+            log.error("bulkStore error", e);
+            if (!response.isCommitted()) {
+                String error = JsonUtils.object2Json(new HttpResult<>(false, e.getMessage())) + "\n";
+                response.getOutputStream().write(error.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
     @PostMapping(value = {"/v1/face/deleteFace", "/v1/face/index/delete"}, produces = "application/json", consumes = "application/json")
     @SuppressWarnings("UseSpecificCatch")
     public HttpResult<Object> deleteFace(@RequestBody Input4Del input) {
@@ -1,10 +1,17 @@
 package com.yuqiangdede.ffe.core.base;
 
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtEnvironment;
-import ai.onnxruntime.OrtLoggingLevel;
+import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import com.yuqiangdede.ffe.config.SessionPoolConfig;
 import lombok.Getter;
 
+import java.nio.file.Path;
+import java.util.Collections;
+
 @Getter
 public abstract class BaseOnnxInfer extends OpenCVLoader{
 
@@ -22,34 +29,61 @@ public abstract class BaseOnnxInfer extends OpenCVLoader{
     private final String[] inputNames;
     /**
      * -- GETTER --
-     *  获取session
+     *  获取会话池
+     *
+     */
+    private final OnnxSessionPool sessionPool;
+    /**
+     * -- GETTER --
+     *  输入张量的 batch 维是否可变（模型导出时为动态维度），可变时多张图片可以叠成一次推理
      *
      */
-    private final OrtSession[] sessions;
+    private final boolean batchSupported;
 
 
     /**
-     * 构造方法，用于初始化ONNX模型推理环境。
+     * 构造方法，用于初始化ONNX模型推理环境，单个会话。
      *
      * @param modelPath ONNX模型的路径。
      * @param threads 推理过程中使用的线程数。
      * @throws RuntimeException 如果在初始化过程中发生异常，则抛出运行时异常。
      */
     public BaseOnnxInfer(String modelPath, int threads){
+        this(modelPath, SessionPoolConfig.ofThreads(threads));
+    }
+
+    /**
+     * 构造方法，用于初始化ONNX模型推理环境，会话池按 config 创建，以类名作为日志和指标中的模型名（匿名类取模型文件名）。
+     *
+     * @param modelPath ONNX模型的路径。
+     * @param config 会话池配置。
+     * @throws RuntimeException 如果在初始化过程中发生异常，则抛出运行时异常。
+     */
+    public BaseOnnxInfer(String modelPath, SessionPoolConfig config){
         try {
             this.env = OrtEnvironment.getEnvironment();
-            try (OrtSession.SessionOptions opts = new OrtSession.SessionOptions()) {
-                opts.setInterOpNumThreads(threads);
-                opts.setSessionLogLevel(OrtLoggingLevel.ORT_LOGGING_LEVEL_ERROR);
-                opts.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.BASIC_OPT);
-                this.sessions = new OrtSession[]{env.createSession(modelPath, opts)};
-                this.inputNames = new String[]{this.sessions[0].getInputNames().iterator().next()};
-            }
+            this.sessionPool = OnnxSessionPool.create(modelName(modelPath), modelPath, config);
+            OrtSession session = this.sessionPool.metadataSession();
+            this.inputNames = new String[]{session.getInputNames().iterator().next()};
+            this.batchSupported = isDynamicBatch(session.getInputInfo().get(this.inputNames[0]));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    private String modelName(String modelPath) {
+        String name = getClass().getSimpleName();
+        return name.isEmpty() ? Path.of(modelPath).getFileName().toString() : name;
+    }
+
+    private static boolean isDynamicBatch(NodeInfo input) {
+        if (input != null && input.getInfo() instanceof TensorInfo tensorInfo) {
+            long[] shape = tensorInfo.getShape();
+            return shape.length > 0 && shape[0] < 0;
+        }
+        return false;
+    }
+
     /**
      * 获取输入端的名称
      * @return
@@ -59,11 +93,15 @@ public abstract class BaseOnnxInfer extends OpenCVLoader{
     }
 
     /**
-     * 获取session
+     * 从会话池借一个会话执行推理，结果与会话无关，归还会话后仍可读取，由调用方关闭
+     * @param tensor 输入张量
      * @return
+     * @throws OrtException
      */
-    public OrtSession getSession() {
-        return sessions[0];
+    public OrtSession.Result run(OnnxTensor tensor) throws OrtException {
+        try (OnnxSessionPool.Lease lease = sessionPool.borrow()) {
+            return lease.session().run(Collections.singletonMap(getInputName(), tensor));
+        }
     }
 
     /**
@@ -71,10 +109,8 @@ public abstract class BaseOnnxInfer extends OpenCVLoader{
      */
     public void close(){
         try {
-            if(sessions != null){
-                for(OrtSession session : sessions){
-                    session.close();
-                }
+            if(sessionPool != null){
+                sessionPool.close();
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -3,6 +3,8 @@ package com.yuqiangdede.ffe.core.base;
 import com.yuqiangdede.ffe.core.domain.FaceInfo;
 import com.yuqiangdede.ffe.core.domain.ImageMat;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public interface FaceAttribute {
@@ -15,4 +17,25 @@ public interface FaceAttribute {
      */
     FaceInfo.Attribute inference(ImageMat imageMat, Map<String, Object> params);
 
+    /**
+     * 多张人脸一次推理，结果与输入一一对应；默认逐张调用
+     * @param imageMats 图像数据
+     * @param params    参数信息
+     * @return
+     */
+    default List<FaceInfo.Attribute> inference(List<ImageMat> imageMats, Map<String, Object> params) {
+        List<FaceInfo.Attribute> attributes = new ArrayList<>(imageMats.size());
+        for (ImageMat imageMat : imageMats) {
+            attributes.add(inference(imageMat, params));
+        }
+        return attributes;
+    }
+
+    /**
+     * 模型输入的 batch 维是否可变，可变时 {@link #inference(List, Map)} 把多张人脸叠成一个张量
+     */
+    default boolean isBatchSupported() {
+        return false;
+    }
+
 }
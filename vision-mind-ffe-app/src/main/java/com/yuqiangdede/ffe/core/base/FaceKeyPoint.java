@@ -1,5 +1,7 @@
 package com.yuqiangdede.ffe.core.base;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import com.yuqiangdede.ffe.core.domain.FaceInfo;
@@ -18,4 +20,25 @@ public interface FaceKeyPoint {
      */
     FaceInfo.Points inference(ImageMat imageMat, Map<String, Object> params);
 
+    /**
+     * 多张人脸一次检测关键点，结果与输入一一对应；默认逐张调用
+     * @param imageMats 图像数据
+     * @param params    参数信息
+     * @return
+     */
+    default List<FaceInfo.Points> inference(List<ImageMat> imageMats, Map<String, Object> params) {
+        List<FaceInfo.Points> points = new ArrayList<>(imageMats.size());
+        for (ImageMat imageMat : imageMats) {
+            points.add(inference(imageMat, params));
+        }
+        return points;
+    }
+
+    /**
+     * 模型输入的 batch 维是否可变，可变时 {@link #inference(List, Map)} 把多张人脸叠成一个张量
+     */
+    default boolean isBatchSupported() {
+        return false;
+    }
+
 }
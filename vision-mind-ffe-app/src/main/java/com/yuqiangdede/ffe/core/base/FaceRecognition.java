@@ -3,6 +3,8 @@ package com.yuqiangdede.ffe.core.base;
 import com.yuqiangdede.ffe.core.domain.FaceInfo;
 import com.yuqiangdede.ffe.core.domain.ImageMat;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -18,4 +20,25 @@ public interface FaceRecognition {
      */
     FaceInfo.Embedding inference(ImageMat image, Map<String, Object> params);
 
+    /**
+     * 多张对齐后的人脸一次提取特征，结果与输入一一对应；默认逐张调用
+     * @param images    图像信息
+     * @param params    参数信息
+     * @return
+     */
+    default List<FaceInfo.Embedding> inference(List<ImageMat> images, Map<String, Object> params) {
+        List<FaceInfo.Embedding> embeddings = new ArrayList<>(images.size());
+        for (ImageMat image : images) {
+            embeddings.add(inference(image, params));
+        }
+        return embeddings;
+    }
+
+    /**
+     * 模型输入的 batch 维是否可变，可变时 {@link #inference(List, Map)} 把多张人脸叠成一个张量
+     */
+    default boolean isBatchSupported() {
+        return false;
+    }
+
 }
@@ -0,0 +1,346 @@
+package com.yuqiangdede.ffe.core.base;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtLoggingLevel;
+import ai.onnxruntime.OrtSession;
+import com.yuqiangdede.ffe.config.SessionPoolConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个人脸模型的 ONNX 会话池。
+ * <p>
+ * 会话按需创建，最多 {@link SessionPoolConfig#poolSize()} 个；推理时通过 {@link #borrow()} 独占一个会话，
+ * 用完在 try-with-resources 中归还。全部会话都被占用时请求排队等待，等待时间记录到
+ * Micrometer 计时器 {@code vision.ffe.session.wait}（tag: model、pool），同时可通过 {@link #stats()} 查看。
+ * <p>
+ * 每个会话池有唯一的 {@link #id()}（模型名 + 模型文件 + 序号），同一模型重复创建（如重新加载）时互不影响，
+ * 各自只关闭自己的会话；close 时从全局列表和 Micrometer 中移除自己的指标。
+ * <p>
+ * 配置了 {@link SessionPoolConfig#optimizedModelDir()} 时，第一次加载把图优化后的模型写到该目录，
+ * 之后的会话和下次启动直接加载优化后的模型并跳过图优化。缓存文件名包含原模型的大小、修改时间、
+ * 优化级别和 onnxruntime 版本，任一变化都会重新生成。
+ */
+@Slf4j
+public final class OnnxSessionPool implements AutoCloseable {
+
+    private static final Map<String, OnnxSessionPool> POOLS = new ConcurrentHashMap<>();
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final String id;
+    private final String name;
+    private final String modelPath;
+    private final SessionPoolConfig config;
+    private final OrtEnvironment env;
+    private final LinkedBlockingDeque<OrtSession> idle = new LinkedBlockingDeque<>();
+    private final List<OrtSession> all = new ArrayList<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final Timer waitTimer;
+    private final List<Meter> meters = new ArrayList<>();
+    private volatile boolean optimizedModelLoaded;
+
+    private OnnxSessionPool(String name, String modelPath, SessionPoolConfig config) throws OrtException {
+        this.id = name + "@" + modelPath + "#" + SEQUENCE.incrementAndGet();
+        this.name = name;
+        this.modelPath = modelPath;
+        this.config = config;
+        this.env = OrtEnvironment.getEnvironment();
+        // pool tag 保证重新创建的会话池注册的是新指标，而不是拿回旧池已注册的同名指标
+        this.waitTimer = Timer.builder("vision.ffe.session.wait")
+                .description("Time spent waiting for a pooled ONNX session")
+                .tag("model", name)
+                .tag("pool", id)
+                .register(Metrics.globalRegistry);
+        meters.add(waitTimer);
+        meters.add(Gauge.builder("vision.ffe.session.in-use", inUse, AtomicInteger::get)
+                .tag("model", name)
+                .tag("pool", id)
+                .register(Metrics.globalRegistry));
+        // 直接读计数，不能走 stats()：stats() 要拿会话列表的锁，而创建会话时会持有该锁直到模型加载完
+        meters.add(Gauge.builder("vision.ffe.session.created", created, AtomicInteger::get)
+                .tag("model", name)
+                .tag("pool", id)
+                .register(Metrics.globalRegistry));
+        try {
+            // 先建一个会话，调用方需要用它读取输入名称、输入形状等元数据
+            idle.add(createSession());
+        } catch (OrtException | RuntimeException e) {
+            removeMeters();
+            throw e;
+        }
+    }
+
+    /**
+     * 创建会话池并登记到全局列表。同一模型可以有多个会话池，由创建者各自关闭。
+     *
+     * @param name      模型简称，用于日志和指标
+     * @param modelPath 模型文件路径
+     * @param config    会话池配置
+     */
+    public static OnnxSessionPool create(String name, String modelPath, SessionPoolConfig config) throws OrtException {
+        OnnxSessionPool pool = new OnnxSessionPool(name, modelPath, config);
+        POOLS.put(pool.id, pool);
+        return pool;
+    }
+
+    /**
+     * @return 会话池的唯一标识，{@link #allStats()} 的 key
+     */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * @return 所有未关闭会话池的统计信息，按 {@link #id()} 索引
+     */
+    public static Map<String, Stats> allStats() {
+        Map<String, Stats> result = new ConcurrentHashMap<>();
+        POOLS.forEach((key, pool) -> result.put(key, pool.stats()));
+        return result;
+    }
+
+    /**
+     * @return 池中任意一个会话，仅用于读取元数据，不要用它执行推理
+     */
+    OrtSession metadataSession() {
+        synchronized (all) {
+            return all.get(0);
+        }
+    }
+
+    /**
+     * 借出一个会话，池满时阻塞等待其他请求归还。
+     *
+     * @return 会话租约，close 时归还
+     * @throws OrtException 新建会话失败时抛出
+     */
+    public Lease borrow() throws OrtException {
+        borrows.incrementAndGet();
+        OrtSession session = idle.pollFirst();
+        if (session == null) {
+            session = createIfBelowLimit();
+        }
+        if (session == null) {
+            long start = System.nanoTime();
+            try {
+                session = idle.takeFirst();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + name + " session", e);
+            }
+            recordWait(System.nanoTime() - start);
+        } else {
+            waitTimer.record(0, TimeUnit.NANOSECONDS);
+        }
+        inUse.incrementAndGet();
+        return new Lease(session);
+    }
+
+    private OrtSession createIfBelowLimit() throws OrtException {
+        synchronized (all) {
+            if (all.size() >= config.poolSize()) {
+                return null;
+            }
+            return createSession();
+        }
+    }
+
+    private OrtSession createSession() throws OrtException {
+        synchronized (all) {
+            long start = System.currentTimeMillis();
+            Path optimized = optimizedModelPath();
+            boolean cached = optimized != null && Files.isRegularFile(optimized);
+            Path written = null;
+            OrtSession session;
+            try (OrtSession.SessionOptions opts = new OrtSession.SessionOptions()) {
+                opts.setIntraOpNumThreads(config.effectiveIntraOpThreads());
+                if (config.interOpThreads() > 0) {
+                    opts.setInterOpNumThreads(config.interOpThreads());
+                }
+                opts.setSessionLogLevel(OrtLoggingLevel.ORT_LOGGING_LEVEL_ERROR);
+                opts.setExecutionMode(config.executionMode());
+                opts.setMemoryPatternOptimization(config.memoryPattern());
+                opts.setCPUArenaAllocator(config.memoryArena());
+                if (cached) {
+                    // 缓存的模型已经优化过，再跑一遍图优化只会拖慢加载
+                    opts.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.NO_OPT);
+                    session = env.createSession(optimized.toString(), opts);
+                } else {
+                    opts.setOptimizationLevel(config.optLevel());
+                    if (optimized != null) {
+                        written = prepareOptimizedModelFile(optimized);
+                        if (written != null) {
+                            opts.setOptimizedModelFilePath(written.toString());
+                        }
+                    }
+                    session = env.createSession(modelPath, opts);
+                }
+            }
+            if (written != null) {
+                publishOptimizedModelFile(written, optimized);
+            }
+            optimizedModelLoaded = cached;
+            all.add(session);
+            created.set(all.size());
+            log.info("ffe session created: model={}, index={}/{}, intraOp={}, interOp={}, opt={}, mode={}, memoryPattern={}, arena={}, optimizedModel={}, cost={} ms",
+                    name, all.size(), config.poolSize(), config.effectiveIntraOpThreads(), config.interOpThreads(),
+                    config.optLevel(), config.executionMode(), config.memoryPattern(), config.memoryArena(),
+                    cached ? optimized : "-", System.currentTimeMillis() - start);
+            return session;
+        }
+    }
+
+    /**
+     * @return 优化后模型的缓存路径，未开启缓存或原模型不存在时返回 null
+     */
+    Path optimizedModelPath() {
+        if (config.optimizedModelDir() == null) {
+            return null;
+        }
+        try {
+            Path model = Path.of(modelPath);
+            String fileName = model.getFileName().toString();
+            String stem = fileName.endsWith(".onnx") ? fileName.substring(0, fileName.length() - 5) : fileName;
+            String key = Files.size(model) + "|" + Files.getLastModifiedTime(model).toMillis() + "|"
+                    + env.getVersion() + "|" + System.getProperty("os.arch");
+            return Path.of(config.optimizedModelDir()).resolve(stem + "-" + config.optLevel().name().toLowerCase()
+                    + "-" + Integer.toHexString(key.hashCode()) + ".onnx");
+        } catch (IOException e) {
+            log.warn("Cannot read {} model file {}, optimized model cache disabled", name, modelPath, e);
+            return null;
+        }
+    }
+
+    /**
+     * 优化后的模型先写到同目录的临时文件，加载成功后再改名，避免其他进程读到写了一半的文件
+     */
+    private Path prepareOptimizedModelFile(Path optimized) {
+        try {
+            Files.createDirectories(optimized.getParent());
+            return Files.createTempFile(optimized.getParent(), optimized.getFileName().toString(), ".tmp");
+        } catch (IOException e) {
+            log.warn("Cannot create optimized model cache for {} in {}", name, optimized.getParent(), e);
+            return null;
+        }
+    }
+
+    private void publishOptimizedModelFile(Path written, Path optimized) {
+        try {
+            if (Files.size(written) > 0) {
+                Files.move(written, optimized, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.info("ffe optimized model cached: model={}, path={}", name, optimized);
+            } else {
+                Files.deleteIfExists(written);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot cache optimized model for {} at {}", name, optimized, e);
+            try {
+                Files.deleteIfExists(written);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waits.incrementAndGet();
+        waitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        waitTimer.record(nanos, TimeUnit.NANOSECONDS);
+        if (log.isDebugEnabled()) {
+            log.debug("ffe session wait: model={}, waited={} ms", name, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(config.poolSize(), created.get(), inUse.get(), borrows.get(), waits.get(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+                optimizedModelLoaded);
+    }
+
+    @Override
+    public void close() {
+        POOLS.remove(id, this);
+        removeMeters();
+        synchronized (all) {
+            for (OrtSession session : all) {
+                try {
+                    session.close();
+                } catch (OrtException e) {
+                    log.warn("Failed to close {} session", name, e);
+                }
+            }
+            all.clear();
+            idle.clear();
+            created.set(0);
+        }
+    }
+
+    private void removeMeters() {
+        for (Meter meter : meters) {
+            Metrics.globalRegistry.remove(meter);
+        }
+        meters.clear();
+    }
+
+    /**
+     * @param maxSize              池上限
+     * @param created              已创建的会话数
+     * @param inUse                当前被借出的会话数
+     * @param borrows              累计借出次数
+     * @param waits                累计需要排队等待的次数
+     * @param totalWaitMs          累计等待时间
+     * @param maxWaitMs            单次最长等待时间
+     * @param optimizedModelLoaded 最近创建的会话是否直接加载了缓存的优化后模型
+     */
+    public record Stats(int maxSize, int created, int inUse, long borrows, long waits, long totalWaitMs, long maxWaitMs,
+                        boolean optimizedModelLoaded) {
+    }
+
+    /**
+     * 会话租约，close 时把会话放回池中。
+     */
+    public final class Lease implements AutoCloseable {
+        private final OrtSession session;
+        private boolean released;
+
+        private Lease(OrtSession session) {
+            this.session = session;
+        }
+
+        public OrtSession session() {
+            return session;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            inUse.decrementAndGet();
+            idle.offerFirst(session);
+        }
+    }
+}
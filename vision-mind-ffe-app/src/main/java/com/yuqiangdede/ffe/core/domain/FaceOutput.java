@@ -0,0 +1,148 @@
+package com.yuqiangdede.ffe.core.domain;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * 人脸特征提取需要输出的内容，未要求的内容不会计算：
+ * 不要属性时不跑属性模型，不要关键点和特征时不跑关键点、对齐和特征模型，不要图片时不做 JPEG + base64 编码。
+ */
+public class FaceOutput implements Serializable {
+
+    /**
+     * 原图的 base64（{@link FaceImage#imageBase64}）
+     */
+    public static final String IMAGE = "image";
+    /**
+     * 对齐后人脸的 base64（{@link FaceInfo.Embedding#getImage()}）
+     */
+    public static final String FACE_IMAGE = "faceImage";
+    /**
+     * 年龄、性别
+     */
+    public static final String ATTRIBUTE = "attribute";
+    /**
+     * 原图坐标系下的 106 个关键点
+     */
+    public static final String POINTS = "points";
+    /**
+     * 人脸特征向量
+     */
+    public static final String EMBEDDING = "embedding";
+
+    private boolean image;
+
+    private boolean faceImage;
+
+    private boolean attribute;
+
+    private boolean points;
+
+    private boolean embedding;
+
+    private FaceOutput(){}
+
+    /**
+     * 什么都不输出，只做检测
+     */
+    public static FaceOutput build(){
+        return new FaceOutput();
+    }
+
+    /**
+     * 全部输出
+     */
+    public static FaceOutput all(){
+        return build().setImage(true).setFaceImage(true).setAttribute(true).setPoints(true).setEmbedding(true);
+    }
+
+    /**
+     * 按字段名解析，字段名见本类常量，不区分大小写
+     * @param fields    需要输出的字段，为空时返回 defaultOutput
+     * @param defaultOutput 未指定字段时的输出
+     * @return
+     */
+    public static FaceOutput parse(Collection<String> fields, FaceOutput defaultOutput){
+        if (fields == null || fields.isEmpty()) {
+            return defaultOutput;
+        }
+        FaceOutput output = build();
+        for (String field : fields) {
+            String name = field == null ? "" : field.trim().toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "image" -> output.image = true;
+                case "faceimage" -> output.faceImage = true;
+                case "attribute" -> output.attribute = true;
+                case "points" -> output.points = true;
+                case "embedding" -> output.embedding = true;
+                default -> throw new IllegalArgumentException("Unknown face output field: " + field
+                        + ", expected one of [" + IMAGE + ", " + FACE_IMAGE + ", " + ATTRIBUTE + ", " + POINTS + ", " + EMBEDDING + "]");
+            }
+        }
+        return output;
+    }
+
+    /**
+     * 是否需要跑关键点模型：关键点本身，以及对齐所需的特征和对齐人脸图
+     */
+    public boolean needKeyPoint() {
+        return points || embedding || faceImage;
+    }
+
+    public boolean isImage() {
+        return image;
+    }
+
+    public FaceOutput setImage(boolean image) {
+        this.image = image;
+        return this;
+    }
+
+    public boolean isFaceImage() {
+        return faceImage;
+    }
+
+    public FaceOutput setFaceImage(boolean faceImage) {
+        this.faceImage = faceImage;
+        return this;
+    }
+
+    public boolean isAttribute() {
+        return attribute;
+    }
+
+    public FaceOutput setAttribute(boolean attribute) {
+        this.attribute = attribute;
+        return this;
+    }
+
+    public boolean isPoints() {
+        return points;
+    }
+
+    public FaceOutput setPoints(boolean points) {
+        this.points = points;
+        return this;
+    }
+
+    public boolean isEmbedding() {
+        return embedding;
+    }
+
+    public FaceOutput setEmbedding(boolean embedding) {
+        this.embedding = embedding;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "FaceOutput{" +
+                "image=" + image +
+                ", faceImage=" + faceImage +
+                ", attribute=" + attribute +
+                ", points=" + points +
+                ", embedding=" + embedding +
+                '}';
+    }
+}
@@ -2,7 +2,9 @@ package com.yuqiangdede.ffe.core.domain;
 
 import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
 import com.yuqiangdede.common.util.MatUtil;
+import com.yuqiangdede.ffe.core.utils.TensorBufferPool;
 import org.opencv.core.*;
 import org.opencv.core.Point;
 import org.opencv.dnn.Dnn;
@@ -14,7 +16,13 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 图片加载工具
@@ -291,7 +299,7 @@ public class ImageMat implements Serializable, Cloneable {
     private ImageMat blobFromImage(double scale, Scalar mean, boolean swapRB, boolean release) {
         try {
             Mat dst = Dnn.blobFromImage(mat, scale, new Size(mat.cols(), mat.rows()), mean, swapRB);
-            java.util.List<Mat> mats = new ArrayList<>();
+            List<Mat> mats = new ArrayList<>();
             Dnn.imagesFromBlob(dst, mats);
             dst.release();
             return new ImageMat(mats.get(0));
@@ -366,25 +374,17 @@ public class ImageMat implements Serializable, Cloneable {
             int width = this.mat.cols();
             int height = this.mat.rows();
             int channel = this.mat.channels();
-            int[][][][] array;
-            if (firstChannel) {
-                array = new int[1][channel][height][width];
-                for (int i = 0; i < height; i++) {
-                    for (int j = 0; j < width; j++) {
-                        double[] c = mat.get(i, j);
-                        for (int k = 0; k < channel; k++) {
-                            array[0][k][i][j] = (int) Math.round(c[k]);
-                        }
-                    }
-                }
-            } else {
-                array = new int[1][height][width][channel];
-                for (int i = 0; i < height; i++) {
-                    for (int j = 0; j < width; j++) {
-                        double[] c = mat.get(i, j);
-                        for (int k = 0; k < channel; k++) {
-                            array[0][i][j][k] = (int) Math.round(c[k]);
-                        }
+            double[] data = this.toDoubleData(firstChannel);
+            int[][][][] array = firstChannel
+                    ? new int[1][channel][height][width]
+                    : new int[1][height][width][channel];
+            int[][][] planes = array[0];
+            int rowLength = firstChannel ? width : channel;
+            int index = 0;
+            for (int[][] plane : planes) {
+                for (int[] row : plane) {
+                    for (int k = 0; k < rowLength; k++) {
+                        row[k] = (int) Math.round(data[index++]);
                     }
                 }
             }
@@ -426,25 +426,16 @@ public class ImageMat implements Serializable, Cloneable {
             int width = this.mat.cols();
             int height = this.mat.rows();
             int channel = this.mat.channels();
-            long[][][][] array;
-            if (firstChannel) {
-                array = new long[1][channel][height][width];
-                for (int i = 0; i < height; i++) {
-                    for (int j = 0; j < width; j++) {
-                        double[] c = mat.get(i, j);
-                        for (int k = 0; k < channel; k++) {
-                            array[0][k][i][j] = Math.round(c[k]);
-                        }
-                    }
-                }
-            } else {
-                array = new long[1][height][width][channel];
-                for (int i = 0; i < height; i++) {
-                    for (int j = 0; j < width; j++) {
-                        double[] c = mat.get(i, j);
-                        for (int k = 0; k < channel; k++) {
-                            array[0][i][j][k] = Math.round(c[k]);
-                        }
+            double[] data = this.toDoubleData(firstChannel);
+            long[][][][] array = firstChannel
+                    ? new long[1][channel][height][width]
+                    : new long[1][height][width][channel];
+            int rowLength = firstChannel ? width : channel;
+            int index = 0;
+            for (long[][] plane : array[0]) {
+                for (long[] row : plane) {
+                    for (int k = 0; k < rowLength; k++) {
+                        row[k] = Math.round(data[index++]);
                     }
                 }
             }
@@ -486,26 +477,16 @@ public class ImageMat implements Serializable, Cloneable {
             int width = this.mat.cols();
             int height = this.mat.rows();
             int channel = this.mat.channels();
-            float[][][][] array;
-            if (firstChannel) {
-                array = new float[1][channel][height][width];
-                for (int i = 0; i < height; i++) {
-                    for (int j = 0; j < width; j++) {
-                        double[] c = mat.get(i, j);
-                        for (int k = 0; k < channel; k++) {
-                            array[0][k][i][j] = (float) c[k];
-                        }
-                    }
-                }
-            } else {
-                array = new float[1][height][width][channel];
-                for (int i = 0; i < height; i++) {
-                    for (int j = 0; j < width; j++) {
-                        double[] c = mat.get(i, j);
-                        for (int k = 0; k < channel; k++) {
-                            array[0][i][j][k] = (float) c[k];
-                        }
-                    }
+            float[] data = this.toFloatData(firstChannel);
+            float[][][][] array = firstChannel
+                    ? new float[1][channel][height][width]
+                    : new float[1][height][width][channel];
+            int rowLength = firstChannel ? width : channel;
+            int index = 0;
+            for (float[][] plane : array[0]) {
+                for (float[] row : plane) {
+                    System.arraycopy(data, index, row, 0, rowLength);
+                    index += rowLength;
                 }
             }
             return array;
@@ -546,26 +527,16 @@ public class ImageMat implements Serializable, Cloneable {
             int width = this.mat.cols();
             int height = this.mat.rows();
             int channel = this.mat.channels();
-            double[][][][] array;
-            if (firstChannel) {
-                array = new double[1][channel][height][width];
-                for (int i = 0; i < height; i++) {
-                    for (int j = 0; j < width; j++) {
-                        double[] c = mat.get(i, j);
-                        for (int k = 0; k < channel; k++) {
-                            array[0][k][i][j] = c[k];
-                        }
-                    }
-                }
-            } else {
-                array = new double[1][height][width][channel];
-                for (int i = 0; i < height; i++) {
-                    for (int j = 0; j < width; j++) {
-                        double[] c = mat.get(i, j);
-                        for (int k = 0; k < channel; k++) {
-                            array[0][i][j][k] = c[k];
-                        }
-                    }
+            double[] data = this.toDoubleData(firstChannel);
+            double[][][][] array = firstChannel
+                    ? new double[1][channel][height][width]
+                    : new double[1][height][width][channel];
+            int rowLength = firstChannel ? width : channel;
+            int index = 0;
+            for (double[][] plane : array[0]) {
+                for (double[] row : plane) {
+                    System.arraycopy(data, index, row, 0, rowLength);
+                    index += rowLength;
                 }
             }
             return array;
@@ -576,6 +547,83 @@ public class ImageMat implements Serializable, Cloneable {
         }
     }
 
+    /**
+     * 一次 get 取出全部像素（非 CV_32F 先整体 convertTo），按 NCHW 或 NHWC 排列
+     *
+     * @param firstChannel true 为 NCHW
+     */
+    private float[] toFloatData(boolean firstChannel) {
+        Mat source = this.mat;
+        Mat converted = null;
+        try {
+            if (source.depth() != CvType.CV_32F) {
+                converted = new Mat();
+                source.convertTo(converted, CvType.CV_32F);
+                source = converted;
+            }
+            int channel = source.channels();
+            float[] interleaved = new float[(int) source.total() * channel];
+            source.get(0, 0, interleaved);
+            if (!firstChannel || channel == 1) {
+                return interleaved;
+            }
+            int pixels = (int) source.total();
+            float[] planar = new float[interleaved.length];
+            for (int k = 0; k < channel; k++) {
+                int offset = k * pixels;
+                for (int p = 0, q = k; p < pixels; p++, q += channel) {
+                    planar[offset + p] = interleaved[q];
+                }
+            }
+            return planar;
+        } finally {
+            if (converted != null) {
+                converted.release();
+            }
+        }
+    }
+
+    /**
+     * 同 {@link #toFloatData}，以 CV_64F 取出
+     */
+    private double[] toDoubleData(boolean firstChannel) {
+        Mat source = this.mat;
+        Mat converted = null;
+        try {
+            if (source.depth() != CvType.CV_64F) {
+                converted = new Mat();
+                source.convertTo(converted, CvType.CV_64F);
+                source = converted;
+            }
+            int channel = source.channels();
+            double[] interleaved = new double[(int) source.total() * channel];
+            source.get(0, 0, interleaved);
+            if (!firstChannel || channel == 1) {
+                return interleaved;
+            }
+            int pixels = (int) source.total();
+            double[] planar = new double[interleaved.length];
+            for (int k = 0; k < channel; k++) {
+                int offset = k * pixels;
+                for (int p = 0, q = k; p < pixels; p++, q += channel) {
+                    planar[offset + p] = interleaved[q];
+                }
+            }
+            return planar;
+        } finally {
+            if (converted != null) {
+                converted.release();
+            }
+        }
+    }
+
+    private long[] shape(boolean firstChannel) {
+        long width = this.mat.cols();
+        long height = this.mat.rows();
+        long channel = this.mat.channels();
+        return firstChannel ? new long[]{1, channel, height, width} : new long[]{1, height, width, channel};
+    }
+
 
     /**
      * 转换为整形OnnxTensor,不释放原始图片数据
@@ -583,11 +631,7 @@ public class ImageMat implements Serializable, Cloneable {
      * @param firstChannel
      */
     public OnnxTensor to4dIntOnnxTensorAndNoReleaseMat(boolean firstChannel) {
-        try {
-            return OnnxTensor.createTensor(env, this.to4dIntArrayAndNoReleaseMat(firstChannel));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        return this.to4dIntOnnxTensor(firstChannel, false);
     }
 
     /**
@@ -596,10 +640,23 @@ public class ImageMat implements Serializable, Cloneable {
      * @param firstChannel
      */
     public OnnxTensor to4dIntOnnxTensorAndDoReleaseMat(boolean firstChannel) {
+        return this.to4dIntOnnxTensor(firstChannel, true);
+    }
+
+    private OnnxTensor to4dIntOnnxTensor(boolean firstChannel, boolean release) {
         try {
-            return OnnxTensor.createTensor(env, this.to4dIntArrayAndDoReleaseMat(firstChannel));
+            double[] data = this.toDoubleData(firstChannel);
+            int[] values = new int[data.length];
+            for (int i = 0; i < data.length; i++) {
+                values[i] = (int) Math.round(data[i]);
+            }
+            return OnnxTensor.createTensor(env, IntBuffer.wrap(values), this.shape(firstChannel));
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            if (release) {
+                this.release();
+            }
         }
     }
 
@@ -609,11 +666,7 @@ public class ImageMat implements Serializable, Cloneable {
      * @param firstChannel
      */
     public OnnxTensor to4dLongOnnxTensorAndNoReleaseMat(boolean firstChannel) {
-        try {
-            return OnnxTensor.createTensor(env, this.to4dLongArrayAndNoReleaseMat(firstChannel));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        return this.to4dLongOnnxTensor(firstChannel, false);
     }
 
     /**
@@ -622,10 +675,23 @@ public class ImageMat implements Serializable, Cloneable {
      * @param firstChannel
      */
     public OnnxTensor to4dLongOnnxTensorAndDoReleaseMat(boolean firstChannel) {
+        return this.to4dLongOnnxTensor(firstChannel, true);
+    }
+
+    private OnnxTensor to4dLongOnnxTensor(boolean firstChannel, boolean release) {
         try {
-            return OnnxTensor.createTensor(env, this.to4dLongArrayAndDoReleaseMat(firstChannel));
+            double[] data = this.toDoubleData(firstChannel);
+            long[] values = new long[data.length];
+            for (int i = 0; i < data.length; i++) {
+                values[i] = Math.round(data[i]);
+            }
+            return OnnxTensor.createTensor(env, LongBuffer.wrap(values), this.shape(firstChannel));
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            if (release) {
+                this.release();
+            }
         }
     }
 
@@ -635,11 +701,7 @@ public class ImageMat implements Serializable, Cloneable {
      * @param firstChannel
      */
     public OnnxTensor to4dFloatOnnxTensorAndNoReleaseMat(boolean firstChannel) {
-        try {
-            return OnnxTensor.createTensor(env, this.to4dFloatArrayAndNoReleaseMat(firstChannel));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        return this.to4dFloatOnnxTensor(firstChannel, false);
     }
 
     /**
@@ -648,10 +710,18 @@ public class ImageMat implements Serializable, Cloneable {
      * @param firstChannel
      */
     public OnnxTensor to4dFloatOnnxTensorAndDoReleaseMat(boolean firstChannel) {
+        return this.to4dFloatOnnxTensor(firstChannel, true);
+    }
+
+    private OnnxTensor to4dFloatOnnxTensor(boolean firstChannel, boolean release) {
         try {
-            return OnnxTensor.createTensor(env, this.to4dFloatArrayAndDoReleaseMat(firstChannel));
+            return OnnxTensor.createTensor(env, FloatBuffer.wrap(this.toFloatData(firstChannel)), this.shape(firstChannel));
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            if (release) {
+                this.release();
+            }
         }
     }
 
@@ -661,22 +731,183 @@ public class ImageMat implements Serializable, Cloneable {
      * @param firstChannel
      */
     public OnnxTensor to4dDoubleOnnxTensorAndNoReleaseMat(boolean firstChannel) {
+        return this.to4dDoubleOnnxTensor(firstChannel, false);
+    }
+
+    /**
+     * 转换为双精度形OnnxTensor,并释放原始图片数据
+     *
+     * @param firstChannel
+     */
+    public OnnxTensor to4dDoubleOnnxTensorAndDoReleaseMat(boolean firstChannel) {
+        return this.to4dDoubleOnnxTensor(firstChannel, true);
+    }
+
+    private OnnxTensor to4dDoubleOnnxTensor(boolean firstChannel, boolean release) {
         try {
-            return OnnxTensor.createTensor(env, this.to4dDoubleArrayAndNoReleaseMat(firstChannel));
+            return OnnxTensor.createTensor(env, DoubleBuffer.wrap(this.toDoubleData(firstChannel)), this.shape(firstChannel));
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            if (release) {
+                this.release();
+            }
         }
     }
 
     /**
-     * 转换为双精度形OnnxTensor,并释放原始图片数据
+     * 转换为单精度张量,写入池化的堆外缓冲区,不释放原始图片数据
+     *
+     * @param firstChannel true 为 NCHW，false 为 NHWC
+     */
+    public ImageTensor toFloatTensorAndNoReleaseMat(boolean firstChannel) {
+        return this.toFloatTensor(firstChannel, false);
+    }
+
+    /**
+     * 转换为单精度张量,写入池化的堆外缓冲区,并释放原始图片数据
+     *
+     * @param firstChannel true 为 NCHW，false 为 NHWC
+     */
+    public ImageTensor toFloatTensorAndDoReleaseMat(boolean firstChannel) {
+        return this.toFloatTensor(firstChannel, true);
+    }
+
+    /**
+     * 转换为单精度张量：NCHW 由 blobFromImage 完成通道拆分，NHWC 直接 convertTo 到缓冲区
      *
      * @param firstChannel
+     * @param release      是否释放参数mat
      */
-    public OnnxTensor to4dDoubleOnnxTensorAndDoReleaseMat(boolean firstChannel) {
+    private ImageTensor toFloatTensor(boolean firstChannel, boolean release) {
         try {
-            return OnnxTensor.createTensor(env, this.to4dDoubleArrayAndDoReleaseMat(firstChannel));
-        } catch (Exception e) {
+            if (firstChannel) {
+                Mat blob = Dnn.blobFromImage(mat, 1.0, new Size(mat.cols(), mat.rows()), new Scalar(0, 0, 0, 0),
+                        false, false, CvType.CV_32F);
+                try {
+                    return this.blobToTensor(blob);
+                } finally {
+                    blob.release();
+                }
+            }
+            int channel = mat.channels();
+            ByteBuffer buffer = TensorBufferPool.acquire((int) mat.total() * channel);
+            Mat target = new Mat(mat.rows(), mat.cols(), CvType.makeType(CvType.CV_32F, channel), buffer);
+            try {
+                mat.convertTo(target, CvType.CV_32F);
+                return this.createTensor(buffer, this.shape(false));
+            } catch (RuntimeException e) {
+                TensorBufferPool.release(buffer);
+                throw e;
+            } finally {
+                target.release();
+            }
+        } finally {
+            if (release) {
+                this.release();
+            }
+        }
+    }
+
+    /**
+     * 预处理并直接生成 NCHW 单精度张量,不释放原始图片数据:（先交换RB通道（swapRB），再减法（mean），最后缩放（scale））
+     * <p>
+     * 与 blobFromImage 后再 to4dFloatOnnxTensor 结果相同，但不再把 blob 拆回 HWC 图像，blob 一次拷贝进池化的堆外缓冲区
+     *
+     * @param scale  图像各通道数值的缩放比例
+     * @param mean   用于各通道减去的值，以降低光照的影响
+     * @param swapRB 交换RB通道
+     */
+    public ImageTensor blobToFloatTensorAndNoReleaseMat(double scale, Scalar mean, boolean swapRB) {
+        return this.blobToFloatTensor(scale, mean, swapRB, false);
+    }
+
+    /**
+     * 预处理并直接生成 NCHW 单精度张量,并释放原始图片数据，见 {@link #blobToFloatTensorAndNoReleaseMat}
+     *
+     * @param scale  图像各通道数值的缩放比例
+     * @param mean   用于各通道减去的值，以降低光照的影响
+     * @param swapRB 交换RB通道
+     */
+    public ImageTensor blobToFloatTensorAndDoReleaseMat(double scale, Scalar mean, boolean swapRB) {
+        return this.blobToFloatTensor(scale, mean, swapRB, true);
+    }
+
+    private ImageTensor blobToFloatTensor(double scale, Scalar mean, boolean swapRB, boolean release) {
+        try {
+            Mat blob = Dnn.blobFromImage(mat, scale, new Size(mat.cols(), mat.rows()), mean, swapRB);
+            try {
+                return this.blobToTensor(blob);
+            } finally {
+                blob.release();
+            }
+        } finally {
+            if (release) {
+                this.release();
+            }
+        }
+    }
+
+    /**
+     * 多张同尺寸图片预处理后叠成一个 N x C x H x W 的单精度张量,并释放这些图片的数据，预处理同 {@link #blobToFloatTensorAndNoReleaseMat}
+     *
+     * @param images 同尺寸的图片，顺序即 batch 顺序
+     * @param scale  图像各通道数值的缩放比例
+     * @param mean   用于各通道减去的值，以降低光照的影响
+     * @param swapRB 交换RB通道
+     */
+    public static ImageTensor blobToFloatTensorAndDoReleaseMat(List<ImageMat> images, double scale, Scalar mean,
+                                                               boolean swapRB) {
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("images must not be empty");
+        }
+        try {
+            List<Mat> mats = new ArrayList<>(images.size());
+            for (ImageMat image : images) {
+                mats.add(image.mat);
+            }
+            Mat first = mats.get(0);
+            Mat blob = Dnn.blobFromImages(mats, scale, new Size(first.cols(), first.rows()), mean, swapRB);
+            try {
+                return images.get(0).blobToTensor(blob);
+            } finally {
+                blob.release();
+            }
+        } finally {
+            for (ImageMat image : images) {
+                image.release();
+            }
+        }
+    }
+
+    /**
+     * 把 N x C x H x W 的 CV_32F blob 拷贝进池化缓冲区：缓冲区包装为同尺寸的二维 Mat，copyTo 不会重新分配，只做一次内存拷贝
+     */
+    private ImageTensor blobToTensor(Mat blob) {
+        int batch = blob.size(0);
+        int channel = blob.size(1);
+        int height = blob.size(2);
+        int width = blob.size(3);
+        int rows = batch * channel * height;
+        ByteBuffer buffer = TensorBufferPool.acquire(rows * width);
+        Mat plane = blob.reshape(1, new int[]{rows, width});
+        Mat target = new Mat(rows, width, CvType.CV_32FC1, buffer);
+        try {
+            plane.copyTo(target);
+            return this.createTensor(buffer, new long[]{batch, channel, height, width});
+        } catch (RuntimeException e) {
+            TensorBufferPool.release(buffer);
+            throw e;
+        } finally {
+            target.release();
+            plane.release();
+        }
+    }
+
+    private ImageTensor createTensor(ByteBuffer buffer, long[] shape) {
+        try {
+            return new ImageTensor(OnnxTensor.createTensor(env, buffer.asFloatBuffer(), shape), buffer);
+        } catch (OrtException e) {
             throw new RuntimeException(e);
         }
     }
@@ -0,0 +1,43 @@
+package com.yuqiangdede.ffe.core.domain;
+
+import ai.onnxruntime.OnnxTensor;
+import com.yuqiangdede.ffe.core.utils.TensorBufferPool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 引用池化堆外缓冲区的输入张量，关闭时先关闭 OnnxTensor 再把缓冲区还给 {@link TensorBufferPool}
+ */
+public class ImageTensor implements AutoCloseable {
+
+    private OnnxTensor tensor;
+    private ByteBuffer buffer;
+
+    ImageTensor(OnnxTensor tensor, ByteBuffer buffer) {
+        this.tensor = tensor;
+        this.buffer = buffer;
+    }
+
+    public OnnxTensor getTensor() {
+        if (tensor == null) {
+            throw new IllegalStateException("ImageTensor is closed");
+        }
+        return tensor;
+    }
+
+    public long[] getShape() {
+        return getTensor().getInfo().getShape();
+    }
+
+    @Override
+    public void close() {
+        if (tensor != null) {
+            tensor.close();
+            tensor = null;
+        }
+        if (buffer != null) {
+            TensorBufferPool.release(buffer);
+            buffer = null;
+        }
+    }
+}
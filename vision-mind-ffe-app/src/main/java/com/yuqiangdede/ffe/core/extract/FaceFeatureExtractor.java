@@ -1,6 +1,7 @@
 package com.yuqiangdede.ffe.core.extract;
 
 import com.yuqiangdede.ffe.core.domain.FaceImage;
+import com.yuqiangdede.ffe.core.domain.FaceOutput;
 import com.yuqiangdede.ffe.core.domain.ImageMat;
 
 import java.util.Map;
@@ -11,11 +12,22 @@ import java.util.Map;
 public interface FaceFeatureExtractor {
 
     /**
-     * 人脸特征提取
+     * 人脸特征提取，输出全部内容
      * @param image
      * @param params
      * @return
      */
-    public FaceImage extract(ImageMat image, Map<String, Object> params);
+    public default FaceImage extract(ImageMat image, Map<String, Object> params) {
+        return extract(image, FaceOutput.all(), params);
+    }
+
+    /**
+     * 人脸特征提取，只计算 output 中要求的内容，其余字段为 null
+     * @param image
+     * @param output    需要输出的内容
+     * @param params
+     * @return
+     */
+    public FaceImage extract(ImageMat image, FaceOutput output, Map<String, Object> params);
 
 }
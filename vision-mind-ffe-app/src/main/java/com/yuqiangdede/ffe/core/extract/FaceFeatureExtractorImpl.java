@@ -1,17 +1,30 @@
 package com.yuqiangdede.ffe.core.extract;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import com.yuqiangdede.ffe.core.base.*;
 import com.yuqiangdede.ffe.core.domain.ExtParam;
 import com.yuqiangdede.ffe.core.domain.FaceImage;
 import com.yuqiangdede.ffe.core.domain.FaceInfo;
+import com.yuqiangdede.ffe.core.domain.FaceOutput;
 import com.yuqiangdede.ffe.core.domain.ImageMat;
 import com.yuqiangdede.ffe.core.models.Simple106pFaceAlignment;
 import com.yuqiangdede.ffe.core.utils.CropUtil;
 import com.yuqiangdede.ffe.core.utils.MaskUtil;
+import com.yuqiangdede.ffe.core.utils.ReleaseUtil;
+import com.yuqiangdede.ffe.core.models.InsightArcFaceRecognition;
 import com.yuqiangdede.ffe.core.models.InsightCoordFaceKeyPoint;
 
 /**
@@ -22,11 +35,18 @@ public class FaceFeatureExtractorImpl implements FaceFeatureExtractor {
     public static final float defScaling = 1.5f;
     ExtParam extParam = ExtParam.build().setMask(true).setTopK(20).setScoreTh(0).setIouTh(0);
 
+    /**
+     * 单张推理回退路径的默认并行度
+     */
+    public static final int defParallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     private final FaceKeyPoint faceKeyPoint;
     private final FaceDetection faceDetection;
     private final FaceAlignment faceAlignment;
     private final FaceRecognition faceRecognition;
     private final FaceAttribute faceAttribute;
+    private final ExecutorService inferPool;
+    private final FaceQualityGate qualityGate;
 
     /**
      * 构造函数
@@ -39,21 +59,61 @@ public class FaceFeatureExtractorImpl implements FaceFeatureExtractor {
             FaceDetection faceDetection,
             FaceKeyPoint faceKeyPoint, FaceAlignment faceAlignment,
             FaceRecognition faceRecognition, FaceAttribute faceAttribute) {
+        this(faceDetection, faceKeyPoint, faceAlignment, faceRecognition, faceAttribute, defParallelism);
+    }
+
+    /**
+     * 构造函数
+     * @param faceDetection         人脸识别模型
+     * @param faceKeyPoint          人脸关键点模型
+     * @param faceAlignment         人脸对齐模型
+     * @param faceRecognition       人脸特征提取模型
+     * @param parallelism           模型不支持批量输入时，逐张推理的并行线程数
+     */
+    public FaceFeatureExtractorImpl(
+            FaceDetection faceDetection,
+            FaceKeyPoint faceKeyPoint, FaceAlignment faceAlignment,
+            FaceRecognition faceRecognition, FaceAttribute faceAttribute, int parallelism) {
+        this(faceDetection, faceKeyPoint, faceAlignment, faceRecognition, faceAttribute, parallelism, null);
+    }
+
+    /**
+     * 构造函数
+     * @param faceDetection         人脸识别模型
+     * @param faceKeyPoint          人脸关键点模型
+     * @param faceAlignment         人脸对齐模型
+     * @param faceRecognition       人脸特征提取模型
+     * @param parallelism           模型不支持批量输入时，逐张推理的并行线程数
+     * @param qualityGate           检测后的人脸质量门限，为 null 时不过滤
+     */
+    public FaceFeatureExtractorImpl(
+            FaceDetection faceDetection,
+            FaceKeyPoint faceKeyPoint, FaceAlignment faceAlignment,
+            FaceRecognition faceRecognition, FaceAttribute faceAttribute, int parallelism,
+            FaceQualityGate qualityGate) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
         this.faceKeyPoint = faceKeyPoint;
         this.faceDetection = faceDetection;
         this.faceAlignment = faceAlignment;
         this.faceAttribute = faceAttribute;
         this.faceRecognition = faceRecognition;
+        this.inferPool = newInferPool(parallelism);
+        this.qualityGate = qualityGate;
     }
 
     /**
-     * 人脸特征提取
+     * 人脸特征提取，分阶段执行：检测一次，属性、关键点、特征三个模型各自把所有人脸叠成一个批次推理一次，
+     * 结果再按顺序写回各个 FaceInfo。模型输入的批次维度固定为 1 时，改为在有界线程池中逐张并行推理。
+     * output 中未要求的内容不计算，对应字段为 null；配置了质量门限时，不合格的人脸在检测后即被去掉。
      * @param image
+     * @param output
      * @param params
      * @return
      */
     @Override
-    public FaceImage extract(ImageMat image, Map<String, Object> params) {
+    public FaceImage extract(ImageMat image, FaceOutput output, Map<String, Object> params) {
         //人脸识别
         List<FaceInfo> faceInfos =  this.faceDetection.inference(image, extParam.getScoreTh(), extParam.getIouTh(), params);
 
@@ -62,31 +122,70 @@ public class FaceFeatureExtractorImpl implements FaceFeatureExtractor {
         if(faceInfos.size() > topK){
             faceInfos = faceInfos.subList(0, topK);
         }
-        //处理数据
-        for(FaceInfo faceInfo : faceInfos) {
-            ImageMat cropImageMat = null;
-            ImageMat alignmentImage = null;
-            try {
-                //通过旋转角度获取正脸坐标，并进行图像裁剪
-                FaceInfo.FaceBox rotateFaceBox = faceInfo.rotateFaceBox();
-                cropImageMat = ImageMat.fromCVMat(CropUtil.crop(image.toCvMat(), rotateFaceBox));
-                //人脸属性检测
-                FaceInfo.Attribute attribute = this.faceAttribute.inference(cropImageMat, params);
-                faceInfo.attribute = attribute;
-                cropImageMat.release();
-                cropImageMat = null;
-                //进行缩放人脸区域，并裁剪图片
-                float scaling = extParam.getScaling() <= 0 ? defScaling : extParam.getScaling();
+        //人脸质量过滤，不合格的人脸不再进入后面的模型
+        if(null != qualityGate){
+            faceInfos = qualityGate.filter(image, faceInfos, output, params);
+        }
+        String imageBase64 = output.isImage() ? image.toBase64AndNoReleaseMat() : null;
+        if(faceInfos.isEmpty()){
+            return FaceImage.build(imageBase64, faceInfos);
+        }
+        int size = faceInfos.size();
+        float scaling = extParam.getScaling() <= 0 ? defScaling : extParam.getScaling();
+        List<FaceInfo.FaceBox> rotateFaceBoxes = new ArrayList<>(size);
+        List<ImageMat> faceImages = new ArrayList<>(size);
+        List<ImageMat> pointImages = new ArrayList<>(size);
+        List<FaceInfo.FaceBox> pointBoxes = new ArrayList<>(size);
+        List<ImageMat> alignmentImages = new ArrayList<>(size);
+        try {
+            //通过旋转角度获取正脸坐标
+            for(FaceInfo faceInfo : faceInfos) {
+                rotateFaceBoxes.add(faceInfo.rotateFaceBox());
+                //设置人脸ID
+                faceInfo.setId(UUID.randomUUID().toString());
+            }
+            //人脸属性检测：裁剪原始人脸区域
+            if(output.isAttribute()){
+                for(FaceInfo.FaceBox rotateFaceBox : rotateFaceBoxes) {
+                    faceImages.add(ImageMat.fromCVMat(CropUtil.crop(image.toCvMat(), rotateFaceBox)));
+                }
+                List<FaceInfo.Attribute> attributes = faceAttribute.isBatchSupported()
+                        ? faceAttribute.inference(faceImages, params)
+                        : inferEach(faceImages, m -> faceAttribute.inference(m, params));
+                for(int i = 0; i < size; i++){
+                    faceInfos.get(i).attribute = attributes.get(i);
+                }
+                ReleaseUtil.release(faceImages.toArray(new ImageMat[0]));
+                faceImages.clear();
+            }
+            if(!output.needKeyPoint()){
+                return FaceImage.build(imageBase64, faceInfos);
+            }
+            //人脸标记关键点：裁剪缩放后的人脸区域
+            for(FaceInfo.FaceBox rotateFaceBox : rotateFaceBoxes) {
                 FaceInfo.FaceBox box = rotateFaceBox.scaling(scaling);
-                cropImageMat = ImageMat.fromCVMat(CropUtil.crop(image.toCvMat(), box));
-                //人脸标记关键点
-                FaceInfo.Points corpPoints = this.faceKeyPoint.inference(cropImageMat, params);
+                pointBoxes.add(box);
+                pointImages.add(ImageMat.fromCVMat(CropUtil.crop(image.toCvMat(), box)));
+            }
+            List<FaceInfo.Points> corpPointsList = faceKeyPoint.isBatchSupported()
+                    ? faceKeyPoint.inference(pointImages, params)
+                    : inferEach(pointImages, m -> faceKeyPoint.inference(m, params));
+            boolean needAlignment = output.isEmbedding() || output.isFaceImage();
+            for(int i = 0; i < size; i++){
+                FaceInfo faceInfo = faceInfos.get(i);
+                ImageMat cropImageMat = pointImages.get(i);
+                FaceInfo.Points corpPoints = corpPointsList.get(i);
                 //还原原始图片中的关键点
-                FaceInfo.Point corpImageCenter = FaceInfo.Point.build((float)cropImageMat.center().x, (float)cropImageMat.center().y);
-                FaceInfo.Points imagePoints = corpPoints.rotation(corpImageCenter, faceInfo.angle).operateSubtract(corpImageCenter);
-                faceInfo.points = imagePoints.operateAdd(box.center());
+                if(output.isPoints()){
+                    FaceInfo.Point corpImageCenter = FaceInfo.Point.build((float)cropImageMat.center().x, (float)cropImageMat.center().y);
+                    FaceInfo.Points imagePoints = corpPoints.rotation(corpImageCenter, faceInfo.angle).operateSubtract(corpImageCenter);
+                    faceInfo.points = imagePoints.operateAdd(pointBoxes.get(i).center());
+                }
+                if(!needAlignment){
+                    continue;
+                }
                 //人脸对齐
-                alignmentImage = this.faceAlignment.inference(cropImageMat, corpPoints, params);
+                ImageMat alignmentImage = this.faceAlignment.inference(cropImageMat, corpPoints, params);
                 //判断是否需要遮罩人脸以外的区域
                 if(extParam.isMask()){
                     if(faceKeyPoint instanceof InsightCoordFaceKeyPoint && faceAlignment instanceof Simple106pFaceAlignment){
@@ -96,22 +195,89 @@ public class FaceFeatureExtractorImpl implements FaceFeatureExtractor {
                                 true);
                     }
                 }
-                //人脸特征提取
-                FaceInfo.Embedding embedding = this.faceRecognition.inference(alignmentImage, params);
-                faceInfo.embedding = embedding;
-                //设置人脸ID
-                faceInfo.setId(UUID.randomUUID().toString());
-            }finally {
-                if(null != alignmentImage){
-                    alignmentImage.release();
+                alignmentImages.add(alignmentImage);
+            }
+            if(!needAlignment){
+                return FaceImage.build(imageBase64, faceInfos);
+            }
+            //人脸特征提取
+            if(output.isEmbedding()){
+                Map<String, Object> recognitionParams = new HashMap<>();
+                if(null != params){
+                    recognitionParams.putAll(params);
+                }
+                recognitionParams.put(InsightArcFaceRecognition.arcFaceNeedImageParamKey, output.isFaceImage());
+                List<FaceInfo.Embedding> embeddings = faceRecognition.isBatchSupported()
+                        ? faceRecognition.inference(alignmentImages, recognitionParams)
+                        : inferEach(alignmentImages, m -> faceRecognition.inference(m, recognitionParams));
+                for(int i = 0; i < size; i++){
+                    faceInfos.get(i).embedding = embeddings.get(i);
                 }
-                if(null != cropImageMat){
-                    cropImageMat.release();
+            }else{
+                //只要对齐人脸图，不跑特征模型
+                for(int i = 0; i < size; i++){
+                    faceInfos.get(i).embedding = FaceInfo.Embedding.build(alignmentImages.get(i).toBase64AndNoReleaseMat(), null);
                 }
             }
+        }finally {
+            ReleaseUtil.release(faceImages.toArray(new ImageMat[0]));
+            ReleaseUtil.release(pointImages.toArray(new ImageMat[0]));
+            ReleaseUtil.release(alignmentImages.toArray(new ImageMat[0]));
+        }
+        return FaceImage.build(imageBase64, faceInfos);
+    }
 
+    /**
+     * 逐张推理：第一张在当前线程执行，其余提交到线程池，队列满时由当前线程执行
+     */
+    private <T> List<T> inferEach(List<ImageMat> images, Function<ImageMat, T> infer) {
+        if (images.size() == 1) {
+            return List.of(infer.apply(images.get(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>(images.size() - 1);
+        for (int i = 1; i < images.size(); i++) {
+            ImageMat imageMat = images.get(i);
+            futures.add(inferPool.submit(() -> infer.apply(imageMat)));
         }
-        return FaceImage.build(image.toBase64AndNoReleaseMat(), faceInfos);
+        List<T> results = new ArrayList<>(images.size());
+        try {
+            results.add(infer.apply(images.get(0)));
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
+        } finally {
+            //出错时等其余任务结束再返回，调用方随后会释放这些图像
+            for (Future<T> future : futures) {
+                if (!future.isDone()) {
+                    try {
+                        future.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    } catch (ExecutionException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    private static ExecutorService newInferPool(int parallelism) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(parallelism * 4), r -> {
+                    Thread t = new Thread(r, "face-infer-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 
 }
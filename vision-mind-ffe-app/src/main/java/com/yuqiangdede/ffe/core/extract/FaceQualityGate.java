@@ -0,0 +1,231 @@
+package com.yuqiangdede.ffe.core.extract;
+
+import com.yuqiangdede.ffe.config.FaceQualityConfig;
+import com.yuqiangdede.ffe.core.domain.FaceInfo;
+import com.yuqiangdede.ffe.core.domain.FaceOutput;
+import com.yuqiangdede.ffe.core.domain.ImageMat;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Metrics;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 人脸质量门限：SCRFD 检测之后按检测分数、人脸框大小、人脸角度、清晰度依次判断，
+ * 前面的判断不通过就不再计算后面的（清晰度需要裁剪人脸，最后算）。不合格的人脸从结果中去掉，
+ * 不再跑属性、关键点、对齐和 ArcFace。
+ * <p>
+ * 只在调用方传入 {@link #needFilterParamKey} 时过滤：入库和检索反正要丢弃这些人脸，
+ * 分析类接口（computeFaceVector 等）不传，仍返回检测到的全部人脸。
+ * <p>
+ * 被拒绝的人脸按原因计数（Micrometer {@code vision.ffe.quality.rejected}，tag: reason），
+ * 由此跳过的模型阶段也分别计数（{@code vision.ffe.stage.skipped}，tag: stage），同时可通过 {@link #stats()} 查看。
+ */
+public class FaceQualityGate {
+
+    /**
+     * 本次调用的最低检测分数参数KEY，与配置中的 minScore 取较大值
+     */
+    public final static String minScoreParamKey = "faceQualityMinScore";
+
+    /**
+     * 本次调用是否经过质量门限的参数KEY，不传或为 false 时原样返回检测结果
+     */
+    public final static String needFilterParamKey = "faceQualityNeedFilter";
+
+    /**
+     * 计算清晰度前把人脸缩放到的边长，使不同大小人脸的 Laplacian 方差可以比较
+     */
+    private static final int SHARPNESS_SIZE = 64;
+
+    /**
+     * 拒绝原因
+     */
+    public enum Reason {
+        SCORE, SIZE, ANGLE, BLUR
+    }
+
+    /**
+     * 被跳过的模型阶段
+     */
+    public enum Stage {
+        ATTRIBUTE, KEYPOINT, EMBEDDING
+    }
+
+    private final FaceQualityConfig config;
+    private final LongAdder passed = new LongAdder();
+    private final Map<Reason, LongAdder> rejected = new EnumMap<>(Reason.class);
+    private final Map<Stage, LongAdder> skipped = new EnumMap<>(Stage.class);
+
+    public FaceQualityGate(FaceQualityConfig config) {
+        this.config = config;
+        for (Reason reason : Reason.values()) {
+            LongAdder counter = new LongAdder();
+            rejected.put(reason, counter);
+            FunctionCounter.builder("vision.ffe.quality.rejected", counter, LongAdder::sum)
+                    .description("Faces rejected by the quality gate before the attribute, keypoint and embedding models")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(Metrics.globalRegistry);
+        }
+        for (Stage stage : Stage.values()) {
+            LongAdder counter = new LongAdder();
+            skipped.put(stage, counter);
+            FunctionCounter.builder("vision.ffe.stage.skipped", counter, LongAdder::sum)
+                    .description("Per-face model runs skipped because the face failed the quality gate")
+                    .tag("stage", stage.name().toLowerCase())
+                    .register(Metrics.globalRegistry);
+        }
+        FunctionCounter.builder("vision.ffe.quality.passed", passed, LongAdder::sum)
+                .description("Faces passed by the quality gate")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 过滤人脸
+     * @param image     原始图片
+     * @param faceInfos 检测到的人脸
+     * @param output    本次需要输出的内容，用于统计跳过的阶段
+     * @param params    参数信息，带 {@link #needFilterParamKey} 时才过滤，可带 {@link #minScoreParamKey}
+     * @return 合格的人脸，保持原有顺序
+     */
+    public List<FaceInfo> filter(ImageMat image, List<FaceInfo> faceInfos, FaceOutput output, Map<String, Object> params) {
+        if (!config.enabled() || faceInfos.isEmpty() || !needFilter(params)) {
+            return faceInfos;
+        }
+        float minScore = Math.max(config.minScore(), getMinScore(params));
+        List<FaceInfo> result = new ArrayList<>(faceInfos.size());
+        for (FaceInfo faceInfo : faceInfos) {
+            Reason reason = check(image, faceInfo, minScore);
+            if (reason == null) {
+                result.add(faceInfo);
+                passed.increment();
+                continue;
+            }
+            rejected.get(reason).increment();
+            if (output.isAttribute()) {
+                skipped.get(Stage.ATTRIBUTE).increment();
+            }
+            if (output.needKeyPoint()) {
+                skipped.get(Stage.KEYPOINT).increment();
+            }
+            if (output.isEmbedding()) {
+                skipped.get(Stage.EMBEDDING).increment();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 判断一张人脸
+     * @return 不合格的原因，合格时返回 null
+     */
+    Reason check(ImageMat image, FaceInfo faceInfo, float minScore) {
+        if (faceInfo.score < minScore) {
+            return Reason.SCORE;
+        }
+        FaceInfo.FaceBox box = faceInfo.box;
+        if (Math.min(box.width(), box.height()) < config.minFaceSize()) {
+            return Reason.SIZE;
+        }
+        if (angleFromUpright(faceInfo.angle) > config.maxAngle()) {
+            return Reason.ANGLE;
+        }
+        if (config.minSharpness() > 0 && sharpness(image.toCvMat(), box) < config.minSharpness()) {
+            return Reason.BLUR;
+        }
+        return null;
+    }
+
+    /**
+     * 人脸角度（0~360，按两眼连线计算）与正立方向的夹角，0~180
+     */
+    static float angleFromUpright(float angle) {
+        float normalized = ((angle % 360) + 360) % 360;
+        return Math.min(normalized, 360 - normalized);
+    }
+
+    /**
+     * 清晰度：人脸外接矩形的灰度图缩放到 64x64 后做 Laplacian，取方差，越模糊越小
+     */
+    static double sharpness(Mat image, FaceInfo.FaceBox box) {
+        int x1 = Math.max(0, (int) box.x1());
+        int y1 = Math.max(0, (int) box.y1());
+        int x2 = Math.min(image.cols(), (int) Math.ceil(box.x2()));
+        int y2 = Math.min(image.rows(), (int) Math.ceil(box.y2()));
+        if (x2 <= x1 || y2 <= y1) {
+            return 0;
+        }
+        Mat face = image.submat(new Rect(x1, y1, x2 - x1, y2 - y1));
+        Mat gray = new Mat();
+        Mat small = new Mat();
+        Mat laplacian = new Mat();
+        MatOfDouble mean = new MatOfDouble();
+        MatOfDouble stddev = new MatOfDouble();
+        try {
+            if (face.channels() == 1) {
+                face.copyTo(gray);
+            } else {
+                Imgproc.cvtColor(face, gray, face.channels() == 4 ? Imgproc.COLOR_BGRA2GRAY : Imgproc.COLOR_BGR2GRAY);
+            }
+            Imgproc.resize(gray, small, new Size(SHARPNESS_SIZE, SHARPNESS_SIZE), 0, 0, Imgproc.INTER_AREA);
+            Imgproc.Laplacian(small, laplacian, CvType.CV_64F);
+            Core.meanStdDev(laplacian, mean, stddev);
+            double sigma = stddev.get(0, 0)[0];
+            return sigma * sigma;
+        } finally {
+            face.release();
+            gray.release();
+            small.release();
+            laplacian.release();
+            mean.release();
+            stddev.release();
+        }
+    }
+
+    private static boolean needFilter(Map<String, Object> params) {
+        if (null == params) {
+            return false;
+        }
+        Object value = params.get(needFilterParamKey);
+        return value instanceof Boolean flag ? flag : null != value && Boolean.parseBoolean(value.toString());
+    }
+
+    private static float getMinScore(Map<String, Object> params) {
+        if (null != params && params.containsKey(minScoreParamKey)) {
+            Object value = params.get(minScoreParamKey);
+            if (value instanceof Number number) {
+                return number.floatValue();
+            }
+            if (null != value) {
+                return Float.parseFloat(value.toString());
+            }
+        }
+        return 0;
+    }
+
+    public Stats stats() {
+        Map<Reason, Long> rejectedCounts = new EnumMap<>(Reason.class);
+        rejected.forEach((reason, counter) -> rejectedCounts.put(reason, counter.sum()));
+        Map<Stage, Long> skippedCounts = new EnumMap<>(Stage.class);
+        skipped.forEach((stage, counter) -> skippedCounts.put(stage, counter.sum()));
+        return new Stats(passed.sum(), rejectedCounts, skippedCounts);
+    }
+
+    /**
+     * @param passed   累计通过的人脸数
+     * @param rejected 按原因累计拒绝的人脸数
+     * @param skipped  按阶段累计跳过的单张人脸推理次数
+     */
+    public record Stats(long passed, Map<Reason, Long> rejected, Map<Stage, Long> skipped) {
+    }
+}
@@ -1,14 +1,17 @@
 package com.yuqiangdede.ffe.core.models;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import com.yuqiangdede.ffe.config.SessionPoolConfig;
 import com.yuqiangdede.ffe.core.domain.ImageMat;
+import com.yuqiangdede.ffe.core.domain.ImageTensor;
 import com.yuqiangdede.ffe.core.base.BaseOnnxInfer;
 import com.yuqiangdede.ffe.core.base.FaceRecognition;
 import com.yuqiangdede.ffe.core.domain.FaceInfo;
+import com.yuqiangdede.ffe.core.utils.ReleaseUtil;
 import org.opencv.core.Scalar;
-import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtSession;
 
 /**
@@ -17,6 +20,11 @@ import ai.onnxruntime.OrtSession;
  */
 public class InsightArcFaceRecognition  extends BaseOnnxInfer implements FaceRecognition {
 
+    //默认在特征中带上对齐人脸的base64
+    public final static boolean defNeedImage = true;
+    //是否需要对齐人脸base64的参数KEY
+    public final static String arcFaceNeedImageParamKey = "arcFaceNeedImage";
+
     /**
      * 构造函数
      * @param modelPath     模型路径
@@ -26,6 +34,15 @@ public class InsightArcFaceRecognition  extends BaseOnnxInfer implements FaceRec
         super(modelPath, threads);
     }
 
+    /**
+     * 构造函数
+     * @param modelPath     模型路径
+     * @param config        会话池配置
+     */
+    public InsightArcFaceRecognition(String modelPath, SessionPoolConfig config) {
+        super(modelPath, config);
+    }
+
     /**
      * 人脸识别，人脸特征向量
      * @param image 图像信息
@@ -33,15 +50,57 @@ public class InsightArcFaceRecognition  extends BaseOnnxInfer implements FaceRec
      */
     @Override
     public FaceInfo.Embedding inference(ImageMat image, Map<String, Object> params) {
-        OnnxTensor tensor = null;
+        ImageTensor tensor = null;
         OrtSession.Result output = null;
         try {
             tensor = image.resizeAndNoReleaseMat(112,112)
-                    .blobFromImageAndDoReleaseMat(1.0/127.5, new Scalar(127.5, 127.5, 127.5), true)
-                    .to4dFloatOnnxTensorAndDoReleaseMat(true);
-            output = getSession().run(Collections.singletonMap(getInputName(), tensor));
+                    .blobToFloatTensorAndDoReleaseMat(1.0/127.5, new Scalar(127.5, 127.5, 127.5), true);
+            output = run(tensor.getTensor());
+            float[][] embeds = (float[][]) output.get(0).getValue();
+            String base64 = getNeedImage(params) ? image.toBase64AndNoReleaseMat() : null;
+            return FaceInfo.Embedding.build(base64, embeds[0]);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }finally {
+            if(null != tensor){
+                tensor.close();
+            }
+            if(null != output){
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * 多张人脸一次提取特征：缩放到 112x112 后叠成 N x 3 x 112 x 112 的张量，一次 session.run
+     * @param images 图像信息
+     * @return 与输入一一对应
+     */
+    @Override
+    public List<FaceInfo.Embedding> inference(List<ImageMat> images, Map<String, Object> params) {
+        if (images.isEmpty()) {
+            return List.of();
+        }
+        if (images.size() == 1 || !isBatchSupported()) {
+            return FaceRecognition.super.inference(images, params);
+        }
+        List<ImageMat> resized = new ArrayList<>(images.size());
+        ImageTensor tensor = null;
+        OrtSession.Result output = null;
+        try {
+            for (ImageMat image : images) {
+                resized.add(image.resizeAndNoReleaseMat(112, 112));
+            }
+            tensor = ImageMat.blobToFloatTensorAndDoReleaseMat(resized, 1.0/127.5, new Scalar(127.5, 127.5, 127.5), true);
+            output = run(tensor.getTensor());
             float[][] embeds = (float[][]) output.get(0).getValue();
-            return FaceInfo.Embedding.build(image.toBase64AndNoReleaseMat(), embeds[0]);
+            boolean needImage = getNeedImage(params);
+            List<FaceInfo.Embedding> embeddings = new ArrayList<>(images.size());
+            for (int i = 0; i < images.size(); i++) {
+                String base64 = needImage ? images.get(i).toBase64AndNoReleaseMat() : null;
+                embeddings.add(FaceInfo.Embedding.build(base64, embeds[i]));
+            }
+            return embeddings;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }finally {
@@ -51,7 +110,26 @@ public class InsightArcFaceRecognition  extends BaseOnnxInfer implements FaceRec
             if(null != output){
                 output.close();
             }
+            ReleaseUtil.release(resized.toArray(new ImageMat[0]));
+        }
+    }
+
+    /**
+     * 获取是否需要输出对齐人脸的base64
+     **/
+    private boolean getNeedImage(Map<String, Object> params) {
+        boolean needImage = defNeedImage;
+        if (null != params && params.containsKey(arcFaceNeedImageParamKey)) {
+            Object value = params.get(arcFaceNeedImageParamKey);
+            if (null != value) {
+                if (value instanceof Boolean) {
+                    needImage = (boolean) value;
+                } else {
+                    needImage = Boolean.parseBoolean(value.toString());
+                }
+            }
         }
+        return needImage;
     }
 
 }
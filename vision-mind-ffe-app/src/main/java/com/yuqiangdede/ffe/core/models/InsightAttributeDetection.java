@@ -1,16 +1,19 @@
 package com.yuqiangdede.ffe.core.models;
 
-import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtSession;
+import com.yuqiangdede.ffe.config.SessionPoolConfig;
 import com.yuqiangdede.ffe.core.base.BaseOnnxInfer;
 import com.yuqiangdede.ffe.core.base.FaceAttribute;
 import com.yuqiangdede.ffe.core.domain.FaceInfo;
 import com.yuqiangdede.ffe.core.domain.ImageMat;
+import com.yuqiangdede.ffe.core.domain.ImageTensor;
+import com.yuqiangdede.ffe.core.utils.ReleaseUtil;
 import com.yuqiangdede.common.util.MathUtil;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -30,6 +33,15 @@ public class InsightAttributeDetection extends BaseOnnxInfer implements FaceAttr
         super(modelPath, threads);
     }
 
+    /**
+     * 构造函数
+     * @param modelPath     模型路径
+     * @param config        会话池配置
+     */
+    public InsightAttributeDetection(String modelPath, SessionPoolConfig config) {
+        super(modelPath, config);
+    }
+
     /**
      * 人脸属性信息
      * @param imageMat  图像数据
@@ -40,7 +52,7 @@ public class InsightAttributeDetection extends BaseOnnxInfer implements FaceAttr
     public FaceInfo.Attribute inference(ImageMat imageMat, Map<String, Object> params) {
         Mat M =null;
         Mat img = null;
-        OnnxTensor tensor = null;
+        ImageTensor tensor = null;
         OrtSession.Result output = null;
         try {
             Mat image = imageMat.toCvMat();
@@ -55,13 +67,10 @@ public class InsightAttributeDetection extends BaseOnnxInfer implements FaceAttr
             img = transform[0];
             M = transform[1];
             tensor = ImageMat.fromCVMat(img)
-                    .blobFromImageAndDoReleaseMat(1.0, new Scalar(0, 0, 0), true)
-                    .to4dFloatOnnxTensorAndDoReleaseMat(true);
-            output = this.getSession().run(Collections.singletonMap(this.getInputName(), tensor));
+                    .blobToFloatTensorAndDoReleaseMat(1.0, new Scalar(0, 0, 0), true);
+            output = this.run(tensor.getTensor());
             float[] value = ((float[][]) output.get(0).getValue())[0];
-            Integer age = Double.valueOf(Math.floor(value[2] * 100)).intValue();
-            FaceInfo.Gender gender = (value[0] > value[1]) ? FaceInfo.Gender.FEMALE : FaceInfo.Gender.MALE;
-            return FaceInfo.Attribute.build(gender, age);
+            return toAttribute(value);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }finally {
@@ -81,6 +90,66 @@ public class InsightAttributeDetection extends BaseOnnxInfer implements FaceAttr
     }
 
 
+    /**
+     * 多张人脸一次检测属性：各自仿射到 96x96 后叠成 N x 3 x 96 x 96 的张量，一次 session.run
+     * @param imageMats 图像数据
+     * @param params    参数信息
+     * @return 与输入一一对应
+     */
+    @Override
+    public List<FaceInfo.Attribute> inference(List<ImageMat> imageMats, Map<String, Object> params) {
+        if (imageMats.isEmpty()) {
+            return List.of();
+        }
+        if (imageMats.size() == 1 || !isBatchSupported()) {
+            return FaceAttribute.super.inference(imageMats, params);
+        }
+        List<Mat> affines = new ArrayList<>(imageMats.size());
+        List<ImageMat> inputs = new ArrayList<>(imageMats.size());
+        ImageTensor tensor = null;
+        OrtSession.Result output = null;
+        try {
+            for (ImageMat imageMat : imageMats) {
+                Mat image = imageMat.toCvMat();
+                int w = image.size(1);
+                int h = image.size(0);
+                float[] center = new float[]{1.0f * w / 2, 1.0f * h / 2};
+                float _scale = (float) (1.0f * inputSize[0] / (Math.max(w, h) * 1.5));
+                Mat[] transform = transform(image, center, inputSize, _scale, 0);
+                inputs.add(ImageMat.fromCVMat(transform[0]));
+                affines.add(transform[1]);
+            }
+            tensor = ImageMat.blobToFloatTensorAndDoReleaseMat(inputs, 1.0, new Scalar(0, 0, 0), true);
+            output = this.run(tensor.getTensor());
+            float[][] values = (float[][]) output.get(0).getValue();
+            List<FaceInfo.Attribute> attributes = new ArrayList<>(values.length);
+            for (float[] value : values) {
+                attributes.add(toAttribute(value));
+            }
+            return attributes;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }finally {
+            if(null != tensor){
+                tensor.close();
+            }
+            if(null != output){
+                output.close();
+            }
+            ReleaseUtil.release(affines.toArray(new Mat[0]));
+            ReleaseUtil.release(inputs.toArray(new ImageMat[0]));
+        }
+    }
+
+    /**
+     * 模型输出：前两个值为女、男的得分，第三个值为年龄 / 100
+     */
+    private static FaceInfo.Attribute toAttribute(float[] value){
+        Integer age = Double.valueOf(Math.floor(value[2] * 100)).intValue();
+        FaceInfo.Gender gender = (value[0] > value[1]) ? FaceInfo.Gender.FEMALE : FaceInfo.Gender.MALE;
+        return FaceInfo.Attribute.build(gender, age);
+    }
+
     /**
      * 获取人脸数据和仿射矩阵
      * @param image
@@ -1,17 +1,20 @@
 package com.yuqiangdede.ffe.core.models;
 
-import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtSession;
+import com.yuqiangdede.ffe.config.SessionPoolConfig;
 import com.yuqiangdede.ffe.core.base.BaseOnnxInfer;
 import com.yuqiangdede.ffe.core.base.FaceKeyPoint;
 import com.yuqiangdede.ffe.core.domain.FaceInfo;
 import com.yuqiangdede.ffe.core.domain.ImageMat;
+import com.yuqiangdede.ffe.core.domain.ImageTensor;
+import com.yuqiangdede.ffe.core.utils.ReleaseUtil;
 import com.yuqiangdede.common.util.MathUtil;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class InsightCoordFaceKeyPoint extends BaseOnnxInfer implements FaceKeyPoint {
@@ -27,6 +30,15 @@ public class InsightCoordFaceKeyPoint extends BaseOnnxInfer implements FaceKeyPo
         super(modelPath, threads);
     }
 
+    /**
+     * 构造函数
+     * @param modelPath     模型路径
+     * @param config        会话池配置
+     */
+    public InsightCoordFaceKeyPoint(String modelPath, SessionPoolConfig config) {
+        super(modelPath, config);
+    }
+
     /**
      * 人脸关键点检测
      * @param imageMat  图像数据
@@ -38,7 +50,7 @@ public class InsightCoordFaceKeyPoint extends BaseOnnxInfer implements FaceKeyPo
         Mat M =null;
         Mat IM = null;
         Mat img = null;
-        OnnxTensor tensor = null;
+        ImageTensor tensor = null;
         OrtSession.Result output = null;
         try {
             Mat image = imageMat.toCvMat();
@@ -53,18 +65,12 @@ public class InsightCoordFaceKeyPoint extends BaseOnnxInfer implements FaceKeyPo
             img = transform[0];
             M = transform[1];
             tensor = ImageMat.fromCVMat(img)
-                    .blobFromImageAndDoReleaseMat(1.0, new Scalar(0, 0, 0), true)
-                    .to4dFloatOnnxTensorAndDoReleaseMat(true);
-            output = this.getSession().run(Collections.singletonMap(this.getInputName(), tensor));
+                    .blobToFloatTensorAndDoReleaseMat(1.0, new Scalar(0, 0, 0), true);
+            output = this.run(tensor.getTensor());
             float[] value = ((float[][]) output.get(0).getValue())[0];
-            float points[][] = new float[106][2];
-            for(int i=0; i< 106; i++){
-                points[i][0] = (value[2*i] + 1) * 96;
-                points[i][1] = (value[2*i + 1] + 1) * 96;
-            }
             IM = new Mat();
             Imgproc.invertAffineTransform(M, IM);
-            return transPoints(points, IM);
+            return transPoints(toPoints(value), IM);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }finally {
@@ -86,6 +92,73 @@ public class InsightCoordFaceKeyPoint extends BaseOnnxInfer implements FaceKeyPo
         }
     }
 
+    /**
+     * 多张人脸一次检测关键点：各自仿射到 192x192 后叠成 N x 3 x 192 x 192 的张量，一次 session.run
+     * @param imageMats 图像数据
+     * @param params    参数信息
+     * @return 与输入一一对应
+     */
+    @Override
+    public List<FaceInfo.Points> inference(List<ImageMat> imageMats, Map<String, Object> params) {
+        if (imageMats.isEmpty()) {
+            return List.of();
+        }
+        if (imageMats.size() == 1 || !isBatchSupported()) {
+            return FaceKeyPoint.super.inference(imageMats, params);
+        }
+        List<Mat> affines = new ArrayList<>(imageMats.size());
+        List<ImageMat> inputs = new ArrayList<>(imageMats.size());
+        Mat IM = null;
+        ImageTensor tensor = null;
+        OrtSession.Result output = null;
+        try {
+            for (ImageMat imageMat : imageMats) {
+                Mat image = imageMat.toCvMat();
+                int w = image.size(1);
+                int h = image.size(0);
+                float[] center = new float[]{1.0f * w / 2, 1.0f * h / 2};
+                float _scale = (float) (1.0f * outputSize[0] / (Math.max(w, h) * 1.5));
+                Mat[] transform = transform(image, center, outputSize, _scale, 0);
+                inputs.add(ImageMat.fromCVMat(transform[0]));
+                affines.add(transform[1]);
+            }
+            tensor = ImageMat.blobToFloatTensorAndDoReleaseMat(inputs, 1.0, new Scalar(0, 0, 0), true);
+            output = this.run(tensor.getTensor());
+            float[][] values = (float[][]) output.get(0).getValue();
+            List<FaceInfo.Points> points = new ArrayList<>(imageMats.size());
+            IM = new Mat();
+            for (int i = 0; i < values.length; i++) {
+                Imgproc.invertAffineTransform(affines.get(i), IM);
+                points.add(transPoints(toPoints(values[i]), IM));
+            }
+            return points;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }finally {
+            if(null != tensor){
+                tensor.close();
+            }
+            if(null != output){
+                output.close();
+            }
+            ReleaseUtil.release(IM);
+            ReleaseUtil.release(affines.toArray(new Mat[0]));
+            ReleaseUtil.release(inputs.toArray(new ImageMat[0]));
+        }
+    }
+
+    /**
+     * 模型输出的 212 个值还原为 192x192 图上的 106 个点
+     */
+    private static float[][] toPoints(float[] value){
+        float points[][] = new float[106][2];
+        for(int i=0; i< 106; i++){
+            points[i][0] = (value[2*i] + 1) * 96;
+            points[i][1] = (value[2*i + 1] + 1) * 96;
+        }
+        return points;
+    }
+
     /**
      * 获取人脸数据和仿射矩阵
      * @param image
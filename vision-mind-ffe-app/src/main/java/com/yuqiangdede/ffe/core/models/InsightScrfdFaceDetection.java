@@ -3,10 +3,12 @@ package com.yuqiangdede.ffe.core.models;
 import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
+import com.yuqiangdede.ffe.config.SessionPoolConfig;
 import com.yuqiangdede.ffe.core.base.BaseOnnxInfer;
 import com.yuqiangdede.ffe.core.base.FaceDetection;
 import com.yuqiangdede.ffe.core.domain.FaceInfo;
 import com.yuqiangdede.ffe.core.domain.ImageMat;
+import com.yuqiangdede.ffe.core.domain.ImageTensor;
 import com.yuqiangdede.ffe.core.utils.ReleaseUtil;
 import org.opencv.core.Core;
 import org.opencv.core.Scalar;
@@ -49,6 +51,15 @@ public class InsightScrfdFaceDetection extends BaseOnnxInfer implements FaceDete
         super(modelPath, threads);
     }
 
+    /**
+     * 构造函数
+     * @param modelPath     模型路径
+     * @param config        会话池配置
+     */
+    public InsightScrfdFaceDetection(String modelPath, SessionPoolConfig config) {
+        super(modelPath, config);
+    }
+
     /**
      * 获取人脸信息
      *
@@ -94,7 +105,7 @@ public class InsightScrfdFaceDetection extends BaseOnnxInfer implements FaceDete
      * @return 人脸模型
      */
     public List<FaceInfo> modelInference(ImageMat image, float scoreTh, float iouTh, Map<String, Object> params) {
-        OnnxTensor tensor = null;
+        ImageTensor tensor = null;
         OrtSession.Result output = null;
         ImageMat imageMat = image.clone();
         try {
@@ -125,14 +136,13 @@ public class InsightScrfdFaceDetection extends BaseOnnxInfer implements FaceDete
 
             // 将图像转换为OnnxTensor
             tensor = imageMat
-                    .blobFromImageAndDoReleaseMat(1.0 / 128, new Scalar(127.5, 127.5, 127.5), true)
-                    .to4dFloatOnnxTensorAndDoReleaseMat(true);
+                    .blobToFloatTensorAndDoReleaseMat(1.0 / 128, new Scalar(127.5, 127.5, 127.5), true);
 
             // 运行模型推理
-            output = getSession().run(Collections.singletonMap(getInputName(), tensor));
+            output = run(tensor.getTensor());
 
             // 获取人脸信息
-            List<FaceInfo> faceInfos = fitterBoxes(output, scoreTh, iouTh, tensor.getInfo().getShape()[3], imgScale, boxScale);
+            List<FaceInfo> faceInfos = fitterBoxes(output, scoreTh, iouTh, tensor.getShape()[3], imgScale, boxScale);
 
             // 对人脸进行角度检查
             return this.checkFaceAngle(faceInfos, this.getNeedCheckFaceAngle(params));
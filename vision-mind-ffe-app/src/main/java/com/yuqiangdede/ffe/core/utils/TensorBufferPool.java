@@ -0,0 +1,72 @@
+package com.yuqiangdede.ffe.core.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模型输入张量用的堆外缓冲池。
+ * <p>
+ * 缓冲区为本机字节序的 direct ByteBuffer，OnnxTensor 直接引用其内存而不再拷贝，OpenCV 也可以用它构造 Mat 直接写入。
+ * 容量按 float 个数向上取 2 的幂分桶（SCRFD 的输入尺寸随图片变化），每个桶最多保留 {@link #MAX_IDLE_PER_BUCKET} 个空闲缓冲区，
+ * 多出的归还后交给 GC 回收。
+ */
+public final class TensorBufferPool {
+
+    private static final int MAX_IDLE_PER_BUCKET = 8;
+
+    private static final ConcurrentHashMap<Integer, Bucket> BUCKETS = new ConcurrentHashMap<>();
+
+    private TensorBufferPool() {
+    }
+
+    /**
+     * 取一个至少能放下 {@code floats} 个 float 的缓冲区，position 为 0、limit 为 {@code floats * 4}
+     */
+    public static ByteBuffer acquire(int floats) {
+        if (floats <= 0) {
+            throw new IllegalArgumentException("Tensor size must be positive: " + floats);
+        }
+        int capacity = bucketCapacity(floats);
+        ByteBuffer buffer = BUCKETS.computeIfAbsent(capacity, c -> new Bucket()).idle.pollFirst();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, Float.BYTES)).order(ByteOrder.nativeOrder());
+        } else {
+            BUCKETS.get(capacity).idleCount.decrementAndGet();
+        }
+        buffer.clear().limit(floats * Float.BYTES);
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区，调用前必须先关闭引用它的 OnnxTensor
+     */
+    public static void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        int floats = buffer.capacity() / Float.BYTES;
+        Bucket bucket = BUCKETS.get(floats);
+        if (bucket == null || bucketCapacity(floats) != floats) {
+            return;
+        }
+        if (bucket.idleCount.incrementAndGet() <= MAX_IDLE_PER_BUCKET) {
+            bucket.idle.offerFirst(buffer);
+        } else {
+            bucket.idleCount.decrementAndGet();
+        }
+    }
+
+    static int bucketCapacity(int floats) {
+        int capacity = Integer.highestOneBit(floats);
+        return capacity == floats ? capacity : Math.multiplyExact(capacity, 2);
+    }
+
+    private static final class Bucket {
+        private final Deque<ByteBuffer> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+    }
+}
@@ -0,0 +1,65 @@
+package com.yuqiangdede.ffe.dto.input;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+
+/**
+ * 批量入库（NDJSON）中的一行：带 embeds 时直接入库，否则按 imgUrl 下载图片、检测并提取人脸后入库
+ */
+@Setter
+@Getter
+public class Input4Bulk {
+
+    /**
+     * 图片url
+     */
+    private final String imgUrl;
+
+    /**
+     * 人脸分组
+     */
+    private final String groupId;
+
+    /**
+     * 人脸ID，带 embeds 时必填
+     */
+    private final String id;
+
+    /**
+     * 预先计算好的人脸向量
+     */
+    private final float[] embeds;
+
+    /**
+     * 人脸分数阈值，计算向量时小于这个值的人脸不入库
+     */
+    private final Float faceScoreThreshold;
+
+    @JsonCreator
+    public Input4Bulk(
+            @JsonProperty("imgUrl") String imgUrl,
+            @JsonProperty("groupId") String groupId,
+            @JsonProperty("id") String id,
+            @JsonProperty("embeds") float[] embeds,
+            @JsonProperty("faceScoreThreshold") Float faceScoreThreshold) {
+        this.imgUrl = imgUrl;
+        this.groupId = groupId;
+        this.id = id;
+        this.embeds = embeds;
+        this.faceScoreThreshold = (faceScoreThreshold != null) ? faceScoreThreshold : 0.5f;
+    }
+
+    @Override
+    public String toString() {
+        return "Input4Bulk{" +
+                "imgUrl='" + imgUrl + '\'' +
+                ", groupId='" + groupId + '\'' +
+                ", id='" + id + '\'' +
+                ", embeds=" + (embeds == null ? "null" : embeds.length + "d") +
+                ", faceScoreThreshold=" + faceScoreThreshold +
+                '}';
+    }
+}
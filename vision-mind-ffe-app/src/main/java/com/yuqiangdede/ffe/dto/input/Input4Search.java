@@ -6,6 +6,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 
 @Setter
 @Getter
@@ -35,6 +37,17 @@ public class Input4Search {
     @JsonInclude(JsonInclude.Include.NON_NULL) // 只序列化非空字段
     private Float confidenceThreshold;
 
+    /**
+     * 需要输出的人脸内容：image、faceImage、attribute、points、embedding，为空时按接口默认输出，
+     * 未要求的内容不会计算，见 {@link com.yuqiangdede.ffe.core.domain.FaceOutput}
+     */
+    @JsonProperty("fields")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final List<String> fields;
+
+    public Input4Search(String imgUrl, String groupId, Float faceScoreThreshold, Float confidenceThreshold) {
+        this(imgUrl, groupId, faceScoreThreshold, confidenceThreshold, null);
+    }
 
     /**
      * Jackson 反序列化构造方法
@@ -44,11 +57,13 @@ public class Input4Search {
             @JsonProperty("imgUrl") String imgUrl,
             @JsonProperty("groupId") String groupId,
             @JsonProperty("faceScoreThreshold") Float faceScoreThreshold,
-            @JsonProperty("confidenceThreshold") Float confidenceThreshold) {
+            @JsonProperty("confidenceThreshold") Float confidenceThreshold,
+            @JsonProperty("fields") List<String> fields) {
         this.imgUrl = imgUrl;
         this.groupId = groupId;
         this.faceScoreThreshold = (faceScoreThreshold != null) ? faceScoreThreshold : 0.5f;
         this.confidenceThreshold = (confidenceThreshold != null) ? confidenceThreshold : 0.45f;
+        this.fields = fields;
     }
 
 
@@ -59,6 +74,7 @@ public class Input4Search {
                 ", groupId='" + groupId + '\'' +
                 ", faceScoreThreshold=" + faceScoreThreshold +
                 ", confidenceThreshold=" + confidenceThreshold +
+                ", fields=" + fields +
                 '}';
     }
 }
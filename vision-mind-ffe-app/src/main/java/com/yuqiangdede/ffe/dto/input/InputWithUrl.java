@@ -6,6 +6,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 
 @Setter
 @Getter
@@ -28,15 +30,29 @@ public class InputWithUrl {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private final Float faceScoreThreshold;
 
+    /**
+     * 需要输出的人脸内容：image、faceImage、attribute、points、embedding，为空时按接口默认输出，
+     * 未要求的内容不会计算，见 {@link com.yuqiangdede.ffe.core.domain.FaceOutput}
+     */
+    @JsonProperty("fields")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final List<String> fields;
+
+
+    public InputWithUrl(String imgUrl, String groupId, Float faceScoreThreshold) {
+        this(imgUrl, groupId, faceScoreThreshold, null);
+    }
 
     @JsonCreator
     public InputWithUrl(
             @JsonProperty("imgUrl") String imgUrl,
             @JsonProperty("groupId") String groupId,
-            @JsonProperty("faceScoreThreshold") Float faceScoreThreshold) {
+            @JsonProperty("faceScoreThreshold") Float faceScoreThreshold,
+            @JsonProperty("fields") List<String> fields) {
         this.imgUrl = imgUrl;
         this.groupId = groupId;
         this.faceScoreThreshold = (faceScoreThreshold != null) ? faceScoreThreshold : 0.5f;
+        this.fields = fields;
     }
 
     @Override
@@ -45,6 +61,7 @@ public class InputWithUrl {
                 "imgUrl='" + imgUrl + '\'' +
                 ", groupId='" + groupId + '\'' +
                 ", faceScoreThreshold=" + faceScoreThreshold +
+                ", fields=" + fields +
                 '}';
     }
 }
@@ -34,8 +34,11 @@ public class FaceInfo4Add {
         this.score = faceInfo.getScore();
         this.angle = faceInfo.getAngle();
         this.embeds = faceInfo.getEmbedding().getEmbeds();
-        this.age = faceInfo.getAttribute().getAge();
-        this.gender = faceInfo.getAttribute().getGender();
+        // 未要求属性时不计算，attribute 为 null
+        if (faceInfo.getAttribute() != null) {
+            this.age = faceInfo.getAttribute().getAge();
+            this.gender = faceInfo.getAttribute().getGender();
+        }
     }
 
     @Override
@@ -1,16 +1,19 @@
 package com.yuqiangdede.ffe.service;
 
+import com.yuqiangdede.common.bulk.NdjsonBulkPipeline;
+import com.yuqiangdede.common.dto.output.BulkSummary;
 import com.yuqiangdede.common.util.RuntimeEnvironment;
 import com.yuqiangdede.common.util.ImageUtil;
 import com.yuqiangdede.common.util.VectorUtil;
-import com.yuqiangdede.common.vector.ElasticsearchConfig;
 import com.yuqiangdede.ffe.config.Constant;
 import com.yuqiangdede.ffe.core.base.*;
 import com.yuqiangdede.ffe.core.domain.FaceImage;
 import com.yuqiangdede.ffe.core.domain.FaceInfo;
+import com.yuqiangdede.ffe.core.domain.FaceOutput;
 import com.yuqiangdede.ffe.core.domain.ImageMat;
 import com.yuqiangdede.ffe.core.extract.FaceFeatureExtractor;
 import com.yuqiangdede.ffe.core.extract.FaceFeatureExtractorImpl;
+import com.yuqiangdede.ffe.core.extract.FaceQualityGate;
 import com.yuqiangdede.ffe.core.models.*;
 import com.yuqiangdede.ffe.dto.input.*;
 import com.yuqiangdede.ffe.dto.output.FaceInfo4Add;
@@ -20,8 +23,12 @@ import com.yuqiangdede.ffe.util.FfeVectorStoreUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.opencv.core.Mat;
 import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
 
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
 
 @Service
@@ -31,29 +38,42 @@ public class FaceService {
 
     static FaceFeatureExtractor extractor;
 
+    static FaceQualityGate qualityGate;
+
+    /**
+     * computeFaceVector 未指定 fields 时的输出：属性、关键点、特征，不带图片
+     */
+    private static final FaceOutput COMPUTE_OUTPUT = FaceOutput.build().setAttribute(true).setPoints(true).setEmbedding(true);
+    /**
+     * 入库类接口未指定 fields 时的输出：返回的 FaceInfo4Add 带年龄、性别
+     */
+    private static final FaceOutput STORE_OUTPUT = FaceOutput.build().setAttribute(true).setEmbedding(true);
+    /**
+     * 检索、比对、批量入库只用特征
+     */
+    private static final FaceOutput EMBEDDING_OUTPUT = FaceOutput.build().setEmbedding(true);
+
+    private static final NdjsonBulkPipeline bulkPipeline = new NdjsonBulkPipeline(Constant.BULK_CONFIG, "face-bulk");
+
     static {
         if (shouldSkipNativeLoad()) {
             log.debug("Skipping face feature extractor native initialization for tests.");
             extractor = null;
         } else {
             try {
-                FaceDetection insightScrfdFaceDetection = new InsightScrfdFaceDetection(Constant.MODEL_SCRFD_PATH, 1);
-                FaceKeyPoint insightCoordFaceKeyPoint = new InsightCoordFaceKeyPoint(Constant.MODEL_COORD_PATH, 1);
-                FaceRecognition insightArcFaceRecognition = new InsightArcFaceRecognition(Constant.MODEL_ARC_PATH, 1);
+                FaceDetection insightScrfdFaceDetection = new InsightScrfdFaceDetection(Constant.MODEL_SCRFD_PATH, Constant.SCRFD_SESSION_CONFIG);
+                FaceKeyPoint insightCoordFaceKeyPoint = new InsightCoordFaceKeyPoint(Constant.MODEL_COORD_PATH, Constant.COORD_SESSION_CONFIG);
+                FaceRecognition insightArcFaceRecognition = new InsightArcFaceRecognition(Constant.MODEL_ARC_PATH, Constant.ARC_SESSION_CONFIG);
                 FaceAlignment simple106pFaceAlignment = new Simple106pFaceAlignment();
-                FaceAttribute insightFaceAttribute = new InsightAttributeDetection(Constant.MODEL_ARR_PATH, 1);
+                FaceAttribute insightFaceAttribute = new InsightAttributeDetection(Constant.MODEL_ARR_PATH, Constant.ARR_SESSION_CONFIG);
 
-                ElasticsearchConfig esConfig = new ElasticsearchConfig(
-                        Constant.ES_URIS,
-                        Constant.ES_USERNAME,
-                        Constant.ES_PASSWORD,
-                        Constant.ES_API_KEY,
-                        Constant.ES_FACE_INDEX);
-                FfeVectorStoreUtil.init(Constant.LUCENE_PATH, Constant.VECTOR_STORE_MODE, esConfig);
+                FfeVectorStoreUtil.init(Constant.VECTOR_STORE_CONFIG);
 
+                qualityGate = new FaceQualityGate(Constant.FACE_QUALITY_CONFIG);
                 extractor = new FaceFeatureExtractorImpl(
                         insightScrfdFaceDetection, insightCoordFaceKeyPoint,
-                        simple106pFaceAlignment, insightArcFaceRecognition, insightFaceAttribute);
+                        simple106pFaceAlignment, insightArcFaceRecognition, insightFaceAttribute,
+                        Constant.FACE_INFER_PARALLELISM, qualityGate);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -73,25 +93,42 @@ public class FaceService {
      * @throws IOException 如果在添加过程中发生异常，则抛出该异常
      */
     public FaceImage computeAndSaveFaceVector(InputWithUrl input) throws IOException {
+        FaceOutput output = storeOutput(input.getFields());
         Mat mat = ImageUtil.urlToMat(input.getImgUrl());
-        FaceImage faceImage = getFaceInfos(mat);
+        FaceImage faceImage = getFaceInfos(mat, output, input.getFaceScoreThreshold());
         List<FaceInfo> fs = faceImage.getFaceInfos();
         List<FaceInfo> faceInfos = new ArrayList<>();
+        long generation = 0L;
         // 若有多个人脸就都入库
         for (FaceInfo faceInfo : fs) {
             // 大于设置的阈值的人脸才入库和返回，否则都丢掉
             if (faceInfo.getScore() > input.getFaceScoreThreshold()) {
                 // 添加到索引库
-                FfeVectorStoreUtil.add(faceInfo.getEmbedding().getEmbeds(), input.getImgUrl(), faceInfo.getId(), input.getGroupId());
+                generation = FfeVectorStoreUtil.add(faceInfo.getEmbedding().getEmbeds(), input.getImgUrl(), faceInfo.getId(), input.getGroupId());
                 faceInfos.add(faceInfo);
             }
         }
+        // 返回前保证刚入库的人脸可以被检索到
+        FfeVectorStoreUtil.awaitVisible(generation);
         faceImage.setFaceInfos(faceInfos);
         return faceImage;
     }
 
     public void saveFaceVector(Input4Save input) throws IOException {
-        FfeVectorStoreUtil.add(input.getEmbeds(), input.getImgUrl(), input.getId(), input.getGroupId());
+        FfeVectorStoreUtil.awaitVisible(FfeVectorStoreUtil.add(input.getEmbeds(), input.getImgUrl(), input.getId(), input.getGroupId()));
+    }
+
+    /**
+     * 批量入库：请求体每行一个 {@link Input4Bulk}，带 embeds 的行直接入库，其余行下载图片、提取人脸后入库。
+     * 下载、提取在有界的线程池中并行，入库按批写入，每行的结果按输入顺序逐行写回，最后一行是汇总。
+     *
+     * @param in  NDJSON 请求体
+     * @param out NDJSON 响应体，每行的 data 为这一行入库的人脸ID列表
+     * @return 汇总信息
+     * @throws IOException 读取请求体或写回结果失败时抛出
+     */
+    public BulkSummary bulkStore(InputStream in, OutputStream out) throws IOException {
+        return bulkPipeline.run(in, out, Input4Bulk.class, new BulkHandler());
     }
 
     /**
@@ -113,7 +150,7 @@ public class FaceService {
      */
     public List<FaceInfo4Search> findMostSimilarFace(Input4Search input) throws IOException {
         Mat mat = ImageUtil.urlToMat(input.getImgUrl());
-        FaceImage faceImage = getFaceInfos(mat);
+        FaceImage faceImage = getFaceInfos(mat, EMBEDDING_OUTPUT, input.getFaceScoreThreshold());
         List<FaceInfo> faceInfos = new ArrayList<>();
         for (FaceInfo faceInfo : faceImage.getFaceInfos()) {
             // 人脸质量过滤
@@ -125,13 +162,18 @@ public class FaceService {
             throw new RuntimeException("no face found in image");
         }
 
+        // 所有人脸一次批量检索
+        float[][] embeddings = new float[faceInfos.size()][];
+        for (int i = 0; i < embeddings.length; i++) {
+            embeddings[i] = faceInfos.get(i).getEmbedding().getEmbeds();
+        }
+        List<List<FaceInfo4Search>> batch = FfeVectorStoreUtil.searchTopBatch(
+                embeddings,
+                input.getGroupId(),
+                input.getConfidenceThreshold(),
+                1);
         FaceInfo4Search best = null;
-        for (FaceInfo faceInfo : faceInfos) {
-            List<FaceInfo4Search> matches = FfeVectorStoreUtil.searchTop(
-                    faceInfo.getEmbedding().getEmbeds(),
-                    input.getGroupId(),
-                    input.getConfidenceThreshold(),
-                    1);
+        for (List<FaceInfo4Search> matches : batch) {
             if (!matches.isEmpty()) {
                 FaceInfo4Search candidate = matches.get(0);
                 if (best == null || candidate.getConfidence() > best.getConfidence()) {
@@ -151,32 +193,54 @@ public class FaceService {
      * @throws IOException 如果在读取图像文件时发生IO异常
      */
     public FaceImage computeFaceVector(InputWithUrl input) throws IOException {
+        FaceOutput output = FaceOutput.parse(input.getFields(), COMPUTE_OUTPUT);
         Mat mat = ImageUtil.urlToMat(input.getImgUrl());
-        return getFaceInfos(mat);
+        return getFaceInfos(mat, output);
     }
 
     /**
      * 从输入的图像中提取人脸信息列表
      * 该方法使用OpenCV的Mat对象作为输入，并调用人脸特征提取器来提取图像中的人脸信息。
      *
-     * @param mat OpenCV的Mat对象，表示输入的图像
+     * @param mat    OpenCV的Mat对象，表示输入的图像
+     * @param output 需要输出的内容，未要求的内容不计算（图片默认不输出，不然返回数据太大）
+     * @return 包含提取到的人脸信息的FaceImage对象
+     */
+    private FaceImage getFaceInfos(Mat mat, FaceOutput output) {
+        return extract(mat, output, Map.of(InsightScrfdFaceDetection.scrfdFaceNeedCheckFaceAngleParamKey, true));
+    }
+
+    /**
+     * 入库和检索用：经过质量门限，分数低于 minScore 或大小、角度、清晰度不合格的人脸直接去掉，不再跑后面的模型
+     *
+     * @param mat      OpenCV的Mat对象，表示输入的图像
+     * @param output   需要输出的内容
+     * @param minScore 人脸分数阈值
      * @return 包含提取到的人脸信息的FaceImage对象
      */
-    private FaceImage getFaceInfos(Mat mat) {
+    private FaceImage getFaceInfos(Mat mat, FaceOutput output, float minScore) {
+        return extract(mat, output, Map.of(
+                InsightScrfdFaceDetection.scrfdFaceNeedCheckFaceAngleParamKey, true,
+                FaceQualityGate.needFilterParamKey, true,
+                FaceQualityGate.minScoreParamKey, minScore));
+    }
+
+    private FaceImage extract(Mat mat, FaceOutput output, Map<String, Object> params) {
         // 提取人脸特征
         long start_time = System.currentTimeMillis();
-        Map<String, Object> params = Map.of(InsightScrfdFaceDetection.scrfdFaceNeedCheckFaceAngleParamKey, true);
-        FaceImage faceImage = extractor.extract(ImageMat.fromCVMat(mat), params);
-        log.info("extract : Cost time: {} ms.", (System.currentTimeMillis() - start_time));
-        // 这里强制把图片字段置空，不然返回数据太大
-        faceImage.setImageBase64(null);
-        for (FaceInfo faceInfo : faceImage.getFaceInfos()) {
-            faceInfo.getEmbedding().setImage(null);
-        }
-
+        FaceImage faceImage = extractor.extract(ImageMat.fromCVMat(mat), output, params);
+        log.info("extract : {}. Cost time: {} ms.", output, (System.currentTimeMillis() - start_time));
         return faceImage;
     }
 
+    /**
+     * 入库类接口的输出：未指定 fields 时为 {@link #STORE_OUTPUT}，指定时总会带上入库所需的特征
+     */
+    private static FaceOutput storeOutput(List<String> fields) {
+        FaceOutput output = FaceOutput.parse(fields, null);
+        return output == null ? STORE_OUTPUT : output.setEmbedding(true);
+    }
+
 
     /**
      * 比较两张图片中的人脸相似度。
@@ -187,10 +251,10 @@ public class FaceService {
      */
     public double calculateSimilarity(Input4Compare input) throws IOException {
         Mat mat = ImageUtil.urlToMat(input.getImgUrl());
-        List<FaceInfo> faces1 = getFaceInfos(mat).getFaceInfos();
+        List<FaceInfo> faces1 = getFaceInfos(mat, EMBEDDING_OUTPUT).getFaceInfos();
 
         Mat mat2 = ImageUtil.urlToMat(input.getImgUrl2());
-        List<FaceInfo> faces2 = getFaceInfos(mat2).getFaceInfos();
+        List<FaceInfo> faces2 = getFaceInfos(mat2, EMBEDDING_OUTPUT).getFaceInfos();
 
         if (faces1.isEmpty() || faces2.isEmpty()) {
             throw new RuntimeException("no face found in image");
@@ -227,27 +291,94 @@ public class FaceService {
         List<FaceInfo4Search> searchList = new ArrayList<>();
 
         // 拿到人脸特征
+        FaceOutput output = storeOutput(input.getFields());
         Mat mat = ImageUtil.urlToMat(input.getImgUrl());
-        FaceImage faceImage = getFaceInfos(mat);
+        FaceImage faceImage = getFaceInfos(mat, output, input.getFaceScoreThreshold());
 
+        // 对检测出来的每一个人脸都进行质量判断，合格的人脸一次批量检索
+        List<FaceInfo> faces = new ArrayList<>();
         for (FaceInfo face : faceImage.getFaceInfos()) {
-            // 对检测出来的每一个人脸都进行质量判断和搜索操作
             if (face.getScore() > input.getFaceScoreThreshold()) {
-                List<FaceInfo4Search> search = FfeVectorStoreUtil.searchTop(face.getEmbedding().getEmbeds(), input.getGroupId(), input.getConfidenceThreshold(), 1);
-                if (!search.isEmpty()) {
-                    searchList.addAll(search);
-                } else {
-                    // 如果这个人脸在库中没有找到就需要入库
-                    FfeVectorStoreUtil.add(face.getEmbedding().getEmbeds(), input.getImgUrl(), face.getId(), input.getGroupId());
-                    addList.add(new FaceInfo4Add(face));
-                }
+                faces.add(face);
+            }
+        }
+        float[][] embeddings = new float[faces.size()][];
+        for (int i = 0; i < embeddings.length; i++) {
+            embeddings[i] = faces.get(i).getEmbedding().getEmbeds();
+        }
+        List<List<FaceInfo4Search>> batch = FfeVectorStoreUtil.searchTopBatch(embeddings, input.getGroupId(), input.getConfidenceThreshold(), 1);
+        long generation = 0L;
+        for (int i = 0; i < faces.size(); i++) {
+            FaceInfo face = faces.get(i);
+            List<FaceInfo4Search> search = batch.get(i);
+            if (!search.isEmpty()) {
+                searchList.addAll(search);
+            } else {
+                // 如果这个人脸在库中没有找到就需要入库
+                generation = FfeVectorStoreUtil.add(face.getEmbedding().getEmbeds(), input.getImgUrl(), face.getId(), input.getGroupId());
+                addList.add(new FaceInfo4Add(face));
             }
         }
+        // 下一次 findSave 要能检索到本次新入库的人脸，否则同一个人会被重复入库
+        FfeVectorStoreUtil.awaitVisible(generation);
 
         return new FaceInfo4SearchAdd(addList, searchList);
     }
 
+    private record BulkImage(Input4Bulk input, BufferedImage image) {
+    }
 
-}
+    private final class BulkHandler implements NdjsonBulkPipeline.Handler<Input4Bulk, BulkImage, List<FfeVectorStoreUtil.Entry>> {
+
+        @Override
+        public BulkImage fetch(Input4Bulk input) throws IOException {
+            if (ObjectUtils.isEmpty(input.getImgUrl())) {
+                throw new IllegalArgumentException("imgurl is null or empty");
+            }
+            if (ObjectUtils.isEmpty(input.getGroupId())) {
+                throw new IllegalArgumentException("groupId is null or empty");
+            }
+            if (input.getEmbeds() != null) {
+                if (ObjectUtils.isEmpty(input.getId())) {
+                    throw new IllegalArgumentException("id is null or empty");
+                }
+                return new BulkImage(input, null);
+            }
+            return new BulkImage(input, ImageUtil.urlToImage(input.getImgUrl()));
+        }
 
+        @Override
+        public List<FfeVectorStoreUtil.Entry> extract(BulkImage fetched) throws IOException {
+            Input4Bulk input = fetched.input();
+            if (fetched.image() == null) {
+                return List.of(new FfeVectorStoreUtil.Entry(input.getEmbeds(), input.getImgUrl(), input.getId(), input.getGroupId()));
+            }
+            List<FfeVectorStoreUtil.Entry> entries = new ArrayList<>();
+            for (FaceInfo faceInfo : getFaceInfos(ImageUtil.imgToMat(fetched.image()), EMBEDDING_OUTPUT, input.getFaceScoreThreshold()).getFaceInfos()) {
+                // 大于设置的阈值的人脸才入库
+                if (faceInfo.getScore() > input.getFaceScoreThreshold()) {
+                    entries.add(new FfeVectorStoreUtil.Entry(faceInfo.getEmbedding().getEmbeds(), input.getImgUrl(), faceInfo.getId(), input.getGroupId()));
+                }
+            }
+            return entries;
+        }
 
+        @Override
+        public void store(List<List<FfeVectorStoreUtil.Entry>> batch) throws IOException {
+            List<FfeVectorStoreUtil.Entry> entries = new ArrayList<>();
+            for (List<FfeVectorStoreUtil.Entry> line : batch) {
+                entries.addAll(line);
+            }
+            FfeVectorStoreUtil.addAll(entries);
+        }
+
+        @Override
+        public Object result(List<FfeVectorStoreUtil.Entry> stored) {
+            List<String> ids = new ArrayList<>(stored.size());
+            for (FfeVectorStoreUtil.Entry entry : stored) {
+                ids.add(entry.id());
+            }
+            return ids;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.yuqiangdede.ffe.util;
 
 import java.io.IOException;
-import java.nio.file.Paths;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -17,26 +18,13 @@ import org.apache.lucene.document.KnnFloatVectorField;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.StoredFields;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause;
-import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.KnnFloatVectorQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.SearcherFactory;
-import org.apache.lucene.search.SearcherManager;
-import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.FSDirectory;
-import org.elasticsearch.action.delete.DeleteRequest;
-import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
-import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.CreateIndexRequest;
@@ -52,13 +40,21 @@ import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 
+import com.yuqiangdede.common.chroma.ChromaPersistenceConfig;
 import com.yuqiangdede.common.chroma.ChromaStore;
+import com.yuqiangdede.common.chroma.DurableChromaStore;
 import com.yuqiangdede.common.chroma.EmbeddingRecord;
+import com.yuqiangdede.common.chroma.HnswChromaStore;
 import com.yuqiangdede.common.chroma.InMemoryChromaStore;
+import com.yuqiangdede.common.chroma.QuantizationConfig;
 import com.yuqiangdede.common.chroma.SearchResult;
 import com.yuqiangdede.common.util.VectorUtil;
+import com.yuqiangdede.common.vector.ElasticsearchBulkWriter;
 import com.yuqiangdede.common.vector.ElasticsearchClientFactory;
 import com.yuqiangdede.common.vector.ElasticsearchConfig;
+import com.yuqiangdede.common.vector.LuceneVectorIndex;
+import com.yuqiangdede.common.vector.LuceneWriteConfig;
+import com.yuqiangdede.common.vector.VectorStoreConfig;
 import com.yuqiangdede.common.vector.VectorStoreMode;
 import com.yuqiangdede.ffe.dto.output.FaceInfo4Search;
 
@@ -71,39 +67,58 @@ public final class FfeVectorStoreUtil {
     private static final Object ES_LOCK = new Object();
 
     private static volatile VectorStoreMode mode = VectorStoreMode.MEMORY;
-    private static SearcherManager searcherManager;
-    private static IndexWriter writer;
-    private static FSDirectory directory;
+    private static volatile LuceneVectorIndex luceneIndex;
     private static ChromaStore inMemoryStore;
 
     @SuppressWarnings({"deprecation"})
     private static RestHighLevelClient esClient;
+    private static ElasticsearchBulkWriter esWriter;
     private static ElasticsearchConfig esConfig;
     private static boolean esIndexReady;
 
     private FfeVectorStoreUtil() {
     }
 
-    public static void init(String indexPath, VectorStoreMode storeMode, ElasticsearchConfig config) throws Exception {
+    /**
+     * One face vector of {@link #addAll}.
+     */
+    public record Entry(float[] vector, String imgUrl, String id, String groupId) {
+        public Entry {
+            Objects.requireNonNull(vector, "vector");
+            Objects.requireNonNull(id, "id");
+            Objects.requireNonNull(groupId, "groupId");
+        }
+    }
+
+    /**
+     * Initialise storage layer, closing the one opened before.
+     *
+     * @param config selected mode and the settings of its backend
+     */
+    public static void init(VectorStoreConfig config) throws Exception {
         close();
-        mode = storeMode == null ? VectorStoreMode.LUCENE : storeMode;
+        mode = config.getMode();
         switch (mode) {
-            case LUCENE -> initLucene(indexPath);
-            case MEMORY -> inMemoryStore = new InMemoryChromaStore();
-            case ELASTICSEARCH -> initElasticsearch(config);
+            case LUCENE -> initLucene(config.getLucenePath(), config.getLuceneWrite());
+            case MEMORY -> initMemory(config.getPersistence(), config.getQuantization());
+            case HNSW -> inMemoryStore = new HnswChromaStore(config.getHnsw());
+            case ELASTICSEARCH -> initElasticsearch(config.getElasticsearch());
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
         }
     }
 
-    private static void initLucene(String indexPath) throws IOException {
+    private static void initLucene(String indexPath, LuceneWriteConfig writeConfig) throws IOException {
         synchronized (LUCENE_LOCK) {
-            directory = FSDirectory.open(Paths.get(indexPath));
-            IndexWriterConfig config = new IndexWriterConfig();
-            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-            writer = new IndexWriter(directory, config);
-            searcherManager = new SearcherManager(writer, new SearcherFactory());
-            writer.commit();
-            searcherManager.maybeRefresh();
+            luceneIndex = LuceneVectorIndex.open(indexPath, writeConfig);
+        }
+    }
+
+    private static void initMemory(ChromaPersistenceConfig persistConfig, QuantizationConfig quantization)
+            throws IOException {
+        if (persistConfig != null && persistConfig.isEnabled()) {
+            inMemoryStore = DurableChromaStore.open(persistConfig, quantization);
+        } else {
+            inMemoryStore = new InMemoryChromaStore(quantization);
         }
     }
 
@@ -117,25 +132,25 @@ public final class FfeVectorStoreUtil {
                 config.getUsername(),
                 config.getPassword(),
                 config.getApiKey());
+        esWriter = new ElasticsearchBulkWriter(esClient, config.getIndex(), config.getWriteConfig(), "face-es-bulk");
         esIndexReady = false;
     }
 
     public static void close() throws Exception {
         synchronized (LUCENE_LOCK) {
-            if (searcherManager != null) {
-                searcherManager.close();
-                searcherManager = null;
-            }
-            if (writer != null) {
-                writer.close();
-                writer = null;
-            }
-            if (directory != null) {
-                directory.close();
-                directory = null;
+            if (luceneIndex != null) {
+                luceneIndex.close();
+                luceneIndex = null;
             }
         }
-        inMemoryStore = null;
+        if (inMemoryStore != null) {
+            inMemoryStore.close();
+            inMemoryStore = null;
+        }
+        if (esWriter != null) {
+            esWriter.close();
+            esWriter = null;
+        }
         if (esClient != null) {
             esClient.close();
             esClient = null;
@@ -144,32 +159,81 @@ public final class FfeVectorStoreUtil {
         esIndexReady = false;
     }
 
-    public static void add(float[] vector, String imgUrl, String id, String groupId) throws IOException {
+    /**
+     * @return Lucene write generation for {@link #awaitVisible(long)}; 0 for the other modes, whose writes are
+     * visible on return (Elasticsearch with {@code es.refresh.mode=interval}: within {@code es.refresh.interval})
+     */
+    public static long add(float[] vector, String imgUrl, String id, String groupId) throws IOException {
         Objects.requireNonNull(vector, "vector");
         Objects.requireNonNull(id, "id");
         Objects.requireNonNull(groupId, "groupId");
         switch (mode) {
-            case LUCENE -> addToLucene(vector, imgUrl, id, groupId);
-            case MEMORY -> addToMemory(vector, imgUrl, id, groupId);
+            case LUCENE -> {
+                return addToLucene(vector, imgUrl, id, groupId);
+            }
+            case MEMORY, HNSW -> addToMemory(vector, imgUrl, id, groupId);
             case ELASTICSEARCH -> addToElasticsearch(vector, imgUrl, id, groupId);
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
         }
+        return 0L;
+    }
+
+    /**
+     * Writes several face vectors with one store call: a single translog or write-ahead log fsync for Lucene and the
+     * persistent in-memory store, queued together on the shared {@code _bulk} writer for Elasticsearch.
+     *
+     * @return as {@link #add}
+     */
+    public static long addAll(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return 0L;
+        }
+        switch (mode) {
+            case LUCENE -> {
+                List<Document> docs = new ArrayList<>(entries.size());
+                for (Entry entry : entries) {
+                    docs.add(luceneDocument(entry.vector(), entry.imgUrl(), entry.id(), entry.groupId()));
+                }
+                return requireLucene().addAll(docs);
+            }
+            case MEMORY, HNSW -> {
+                List<EmbeddingRecord> records = new ArrayList<>(entries.size());
+                for (Entry entry : entries) {
+                    records.add(memoryRecord(entry.vector(), entry.imgUrl(), entry.id(), entry.groupId()));
+                }
+                requireMemory().upsertAll(records);
+            }
+            case ELASTICSEARCH -> addAllToElasticsearch(entries);
+            default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
+        }
+        return 0L;
+    }
+
+    /**
+     * Blocks until a Lucene write is visible to {@link #searchTop}; Lucene writes are otherwise searchable within
+     * {@code lucene.refresh.max-stale-ms}.
+     */
+    public static void awaitVisible(long generation) throws InterruptedIOException {
+        LuceneVectorIndex index = luceneIndex;
+        if (mode == VectorStoreMode.LUCENE && index != null && generation > 0) {
+            try {
+                index.awaitVisible(generation);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a Lucene write to become visible");
+            }
+        }
     }
 
     public static void delete(String id) throws IOException {
         switch (mode) {
             case LUCENE -> {
-                synchronized (LUCENE_LOCK) {
-                    if (writer != null) {
-                        writer.deleteDocuments(new Term("id", id));
-                        writer.commit();
-                        if (searcherManager != null) {
-                            searcherManager.maybeRefresh();
-                        }
-                    }
+                LuceneVectorIndex index = luceneIndex;
+                if (index != null) {
+                    index.delete(new Term("id", id));
                 }
             }
-            case MEMORY -> {
+            case MEMORY, HNSW -> {
                 if (inMemoryStore != null) {
                     inMemoryStore.delete(id);
                 }
@@ -182,17 +246,12 @@ public final class FfeVectorStoreUtil {
     public static void deleteAll() throws IOException {
         switch (mode) {
             case LUCENE -> {
-                synchronized (LUCENE_LOCK) {
-                    if (writer != null) {
-                        writer.deleteAll();
-                        writer.commit();
-                        if (searcherManager != null) {
-                            searcherManager.maybeRefresh();
-                        }
-                    }
+                LuceneVectorIndex index = luceneIndex;
+                if (index != null) {
+                    index.deleteAll();
                 }
             }
-            case MEMORY -> {
+            case MEMORY, HNSW -> {
                 if (inMemoryStore != null) {
                     inMemoryStore.clear();
                 }
@@ -203,15 +262,40 @@ public final class FfeVectorStoreUtil {
     }
 
     public static List<FaceInfo4Search> searchTop(float[] queryVector, String groupId, float confThreshold, int n) throws IOException {
+        return searchTopBatch(new float[][]{queryVector}, groupId, confThreshold, n).get(0);
+    }
+
+    /**
+     * 多个人脸特征一次检索：内存模式一遍扫描矩阵对所有查询打分，Lucene 模式在同一个 searcher 上并发执行，
+     * Elasticsearch 模式合并为一次 {@code _msearch}。
+     *
+     * @return 与 {@code queryVectors} 一一对应的命中列表
+     */
+    public static List<List<FaceInfo4Search>> searchTopBatch(float[][] queryVectors, String groupId, float confThreshold, int n) throws IOException {
+        if (queryVectors.length == 0) {
+            return List.of();
+        }
         return switch (mode) {
-            case LUCENE -> searchWithLucene(queryVector, groupId, confThreshold, n);
-            case MEMORY -> searchInMemory(queryVector, groupId, confThreshold, n);
-            case ELASTICSEARCH -> searchWithElasticsearch(queryVector, groupId, confThreshold, n);
+            case LUCENE -> searchWithLucene(queryVectors, groupId, confThreshold, n);
+            case MEMORY, HNSW -> searchInMemory(queryVectors, groupId, confThreshold, n);
+            case ELASTICSEARCH -> searchWithElasticsearch(queryVectors, groupId, confThreshold, n);
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
         };
     }
 
-    private static void addToLucene(float[] vector, String imgUrl, String id, String groupId) throws IOException {
+    private static List<List<FaceInfo4Search>> emptyResults(int queries) {
+        List<List<FaceInfo4Search>> results = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            results.add(List.of());
+        }
+        return results;
+    }
+
+    private static long addToLucene(float[] vector, String imgUrl, String id, String groupId) throws IOException {
+        return requireLucene().add(luceneDocument(vector, imgUrl, id, groupId));
+    }
+
+    private static Document luceneDocument(float[] vector, String imgUrl, String id, String groupId) {
         Document doc = new Document();
         doc.add(new KnnFloatVectorField(VECTOR_FIELD, VectorUtil.normalizeVector(vector)));
         long time = System.currentTimeMillis();
@@ -220,59 +304,73 @@ public final class FfeVectorStoreUtil {
         doc.add(new StringField("groupId", groupId, Field.Store.YES));
         doc.add(new StringField("id", id, Field.Store.YES));
         doc.add(new StringField("imgUrl", imgUrl, Field.Store.YES));
-        synchronized (LUCENE_LOCK) {
-            if (writer == null) {
-                throw new IllegalStateException("Lucene index writer is not initialised.");
-            }
-            writer.addDocument(doc);
-            writer.commit();
-            if (searcherManager != null) {
-                searcherManager.maybeRefresh();
-            }
+        return doc;
+    }
+
+    private static LuceneVectorIndex requireLucene() {
+        LuceneVectorIndex index = luceneIndex;
+        if (index == null) {
+            throw new IllegalStateException("Lucene index writer is not initialised.");
         }
+        return index;
     }
 
     private static void addToMemory(float[] vector, String imgUrl, String id, String groupId) {
-        if (inMemoryStore == null) {
-            throw new IllegalStateException("In-memory vector store is not initialised");
-        }
+        requireMemory().upsert(memoryRecord(vector, imgUrl, id, groupId));
+    }
+
+    private static EmbeddingRecord memoryRecord(float[] vector, String imgUrl, String id, String groupId) {
         Map<String, String> metadata = new HashMap<>();
         metadata.put("groupId", groupId);
         metadata.put("id", id);
         Map<String, Object> payload = new HashMap<>();
         payload.put("imgUrl", imgUrl);
         payload.put("time", System.currentTimeMillis());
-        EmbeddingRecord record = new EmbeddingRecord(
+        return new EmbeddingRecord(
                 id,
                 VectorUtil.normalizeVector(vector),
                 metadata,
                 payload,
                 System.currentTimeMillis());
-        inMemoryStore.upsert(record);
+    }
+
+    private static ChromaStore requireMemory() {
+        ChromaStore store = inMemoryStore;
+        if (store == null) {
+            throw new IllegalStateException("In-memory vector store is not initialised");
+        }
+        return store;
     }
 
     private static void addToElasticsearch(float[] vector, String imgUrl, String id, String groupId) throws IOException {
         ensureEsReady(vector.length);
+        esWriter.await(List.of(submitToElasticsearch(vector, imgUrl, id, groupId)));
+    }
+
+    private static void addAllToElasticsearch(List<Entry> entries) throws IOException {
+        ensureEsReady(entries.get(0).vector().length);
+        List<CompletableFuture<Void>> writes = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            writes.add(submitToElasticsearch(entry.vector(), entry.imgUrl(), entry.id(), entry.groupId()));
+        }
+        esWriter.await(writes);
+    }
+
+    private static CompletableFuture<Void> submitToElasticsearch(float[] vector, String imgUrl, String id, String groupId)
+            throws IOException {
         Map<String, Object> doc = new HashMap<>();
         doc.put("id", id);
         doc.put("groupId", groupId);
         doc.put("imgUrl", imgUrl);
         doc.put("time", System.currentTimeMillis());
-        doc.put(VECTOR_FIELD, floatArrayToList(VectorUtil.normalizeVector(vector)));
-        IndexRequest request = new IndexRequest(esConfig.getIndex())
-                .id(id)
-                .source(doc)
-                .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
-        esClient.index(request, RequestOptions.DEFAULT);
+        return esWriter.submit(id, doc, VECTOR_FIELD, VectorUtil.normalizeVector(vector));
     }
 
     private static void deleteFromElasticsearch(String id) throws IOException {
         if (esClient == null || esConfig == null) {
             return;
         }
-        DeleteRequest request = new DeleteRequest(esConfig.getIndex(), id)
-                .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
-        esClient.delete(request, RequestOptions.DEFAULT);
+        esWriter.await(List.of(esWriter.delete(id)));
     }
 
     private static void deleteAllFromElasticsearch() throws IOException {
@@ -281,37 +379,30 @@ public final class FfeVectorStoreUtil {
         }
         DeleteByQueryRequest request = new DeleteByQueryRequest(esConfig.getIndex());
         request.setQuery(QueryBuilders.matchAllQuery());
-        request.setRefresh(true);
+        request.setRefresh(esConfig.getWriteConfig().refreshAfterDeleteByQuery());
         esClient.deleteByQuery(request, RequestOptions.DEFAULT);
         esIndexReady = false;
     }
 
-    private static List<FaceInfo4Search> searchWithLucene(float[] queryVector, String groupId, float confThreshold, int n) throws IOException {
-        List<FaceInfo4Search> face4Search = new ArrayList<>();
-        SearcherManager manager;
-        synchronized (LUCENE_LOCK) {
-            manager = searcherManager;
+    private static List<List<FaceInfo4Search>> searchWithLucene(float[][] queryVectors, String groupId, float confThreshold, int n) throws IOException {
+        LuceneVectorIndex index = luceneIndex;
+        int limit = Math.max(n, 0);
+        if (index == null || limit == 0) {
+            return emptyResults(queryVectors.length);
         }
-        if (manager == null) {
-            return face4Search;
+        Map<String, String> filter = new HashMap<>();
+        if (groupId != null) {
+            filter.put("groupId", groupId);
         }
-        int limit = Math.max(n, 0);
-        if (limit == 0) {
-            return face4Search;
+        List<Query> queries = new ArrayList<>(queryVectors.length);
+        for (float[] queryVector : queryVectors) {
+            queries.add(LuceneVectorIndex.knnQuery(VECTOR_FIELD, VectorUtil.normalizeVector(queryVector), limit, filter));
         }
-        IndexSearcher searcher = manager.acquire();
-        try {
-            BooleanQuery.Builder finalQueryBuilder = new BooleanQuery.Builder();
-            KnnFloatVectorQuery knnQuery = new KnnFloatVectorQuery(VECTOR_FIELD, VectorUtil.normalizeVector(queryVector), Math.max(limit, 1));
-            finalQueryBuilder.add(knnQuery, BooleanClause.Occur.MUST);
-            if (groupId != null) {
-                Query resourceQuery = new TermQuery(new Term("groupId", groupId));
-                finalQueryBuilder.add(resourceQuery, BooleanClause.Occur.FILTER);
-            }
-            TopDocs topDocs = searcher.search(finalQueryBuilder.build(), limit);
+        Set<String> fields = new HashSet<>();
+        Collections.addAll(fields, "id", "imgUrl");
+        return index.searchBatch(queries, limit, (searcher, topDocs) -> {
+            List<FaceInfo4Search> face4Search = new ArrayList<>();
             StoredFields storedFields = searcher.storedFields();
-            Set<String> fields = new HashSet<>();
-            Collections.addAll(fields, "id", "imgUrl");
             for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
                 if (scoreDoc.score < confThreshold) {
                     continue;
@@ -321,49 +412,73 @@ public final class FfeVectorStoreUtil {
                 String imgUrl = doc.get("imgUrl");
                 face4Search.add(new FaceInfo4Search(hitId, imgUrl, scoreDoc.score));
             }
-        } finally {
-            manager.release(searcher);
-        }
-        return face4Search;
+            return face4Search;
+        });
     }
 
-    private static List<FaceInfo4Search> searchInMemory(float[] queryVector, String groupId, float confThreshold, int n) {
-        if (inMemoryStore == null) {
-            return List.of();
-        }
+    private static List<List<FaceInfo4Search>> searchInMemory(float[][] queryVectors, String groupId, float confThreshold, int n) {
         int limit = Math.max(n, 0);
-        if (limit == 0) {
-            return List.of();
+        if (inMemoryStore == null || limit == 0) {
+            return emptyResults(queryVectors.length);
         }
         Map<String, String> filter = new HashMap<>();
         if (groupId != null) {
             filter.put("groupId", groupId);
         }
-        List<SearchResult> results = inMemoryStore.similaritySearch(
-                VectorUtil.normalizeVector(queryVector),
-                limit,
-                filter,
-                confThreshold);
-        List<FaceInfo4Search> face4Search = new ArrayList<>(results.size());
-        for (SearchResult result : results) {
-            EmbeddingRecord record = result.getRecord();
-            String id = record.getMetadata().getOrDefault("id", record.getId());
-            Object imgUrlObj = record.getPayload().get("imgUrl");
-            String imgUrl = imgUrlObj instanceof String ? (String) imgUrlObj : null;
-            face4Search.add(new FaceInfo4Search(id, imgUrl, (float) result.getScore()));
+        float[][] normalized = new float[queryVectors.length][];
+        for (int i = 0; i < queryVectors.length; i++) {
+            normalized[i] = VectorUtil.normalizeVector(queryVectors[i]);
+        }
+        List<List<SearchResult>> batch = inMemoryStore.similaritySearchBatch(normalized, limit, filter, confThreshold);
+        List<List<FaceInfo4Search>> face4Search = new ArrayList<>(batch.size());
+        for (List<SearchResult> results : batch) {
+            List<FaceInfo4Search> hits = new ArrayList<>(results.size());
+            for (SearchResult result : results) {
+                EmbeddingRecord record = result.getRecord();
+                String id = record.getMetadata().getOrDefault("id", record.getId());
+                Object imgUrlObj = record.getPayload().get("imgUrl");
+                String imgUrl = imgUrlObj instanceof String ? (String) imgUrlObj : null;
+                hits.add(new FaceInfo4Search(id, imgUrl, (float) result.getScore()));
+            }
+            face4Search.add(hits);
         }
         return face4Search;
     }
 
-    private static List<FaceInfo4Search> searchWithElasticsearch(float[] queryVector, String groupId, float confThreshold, int n) throws IOException {
-        if (esClient == null || esConfig == null) {
-            return List.of();
-        }
+    private static List<List<FaceInfo4Search>> searchWithElasticsearch(float[][] queryVectors, String groupId, float confThreshold, int n) throws IOException {
         int limit = Math.max(n, 0);
-        if (limit == 0) {
-            return List.of();
+        if (esClient == null || esConfig == null || limit == 0) {
+            return emptyResults(queryVectors.length);
+        }
+        ensureEsReady(queryVectors[0].length);
+        MultiSearchRequest multiSearch = new MultiSearchRequest();
+        for (float[] queryVector : queryVectors) {
+            multiSearch.add(esSearchRequest(queryVector, groupId, confThreshold, limit));
         }
-        ensureEsReady(queryVector.length);
+        MultiSearchResponse responses = esClient.msearch(multiSearch, RequestOptions.DEFAULT);
+        List<List<FaceInfo4Search>> all = new ArrayList<>(queryVectors.length);
+        for (MultiSearchResponse.Item item : responses.getResponses()) {
+            if (item.isFailure()) {
+                throw new IOException("Elasticsearch search failed", item.getFailure());
+            }
+            List<FaceInfo4Search> results = new ArrayList<>();
+            for (SearchHit hit : item.getResponse().getHits().getHits()) {
+                float cosine = hit.getScore() - 1.0f;
+                if (confThreshold > 0 && cosine < confThreshold) {
+                    continue;
+                }
+                Map<String, Object> source = hit.getSourceAsMap();
+                String hitId = (String) source.getOrDefault("id", hit.getId());
+                Object imgUrlObj = source.get("imgUrl");
+                String imgUrl = imgUrlObj instanceof String ? (String) imgUrlObj : null;
+                results.add(new FaceInfo4Search(hitId, imgUrl, cosine));
+            }
+            all.add(results);
+        }
+        return all;
+    }
+
+    private static SearchRequest esSearchRequest(float[] queryVector, String groupId, float confThreshold, int limit) {
         SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
         sourceBuilder.size(limit);
         float[] normalized = VectorUtil.normalizeVector(queryVector);
@@ -388,20 +503,7 @@ public final class FfeVectorStoreUtil {
         }
         SearchRequest request = new SearchRequest(esConfig.getIndex());
         request.source(sourceBuilder);
-        SearchResponse response = esClient.search(request, RequestOptions.DEFAULT);
-        List<FaceInfo4Search> results = new ArrayList<>();
-        for (SearchHit hit : response.getHits().getHits()) {
-            float cosine = hit.getScore() - 1.0f;
-            if (confThreshold > 0 && cosine < confThreshold) {
-                continue;
-            }
-            Map<String, Object> source = hit.getSourceAsMap();
-            String hitId = (String) source.getOrDefault("id", hit.getId());
-            Object imgUrlObj = source.get("imgUrl");
-            String imgUrl = imgUrlObj instanceof String ? (String) imgUrlObj : null;
-            results.add(new FaceInfo4Search(hitId, imgUrl, cosine));
-        }
-        return results;
+        return request;
     }
 
     private static void ensureEsReady(int dims) throws IOException {
@@ -434,6 +536,10 @@ public final class FfeVectorStoreUtil {
 
                 Map<String, Object> mappings = Map.of("properties", properties);
                 createRequest.mapping(mappings);
+                Map<String, Object> settings = esConfig.getWriteConfig().indexSettings();
+                if (!settings.isEmpty()) {
+                    createRequest.settings(settings);
+                }
                 esClient.indices().create(createRequest, RequestOptions.DEFAULT);
             }
             esIndexReady = true;
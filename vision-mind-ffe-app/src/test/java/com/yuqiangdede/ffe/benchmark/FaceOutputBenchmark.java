@@ -0,0 +1,88 @@
+package com.yuqiangdede.ffe.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yuqiangdede.ffe.core.domain.ImageMat;
+
+/**
+ * 按 {@link com.yuqiangdede.ffe.core.domain.FaceOutput} 跳过的图片编码：原来每次提取都要把原图
+ * 和每张对齐人脸（112x112）JPEG + base64 编码，FaceService 随后又置为 null。
+ * <p>
+ * {@code imageBase64} 为每张图省下的原图编码（{@code width} x width*9/16），{@code faceImageBase64} 为每张人脸省下的编码；
+ * 不要属性、关键点时省下的模型推理依赖本地模型，不在这里测。OpenCV 本地库的加载方式同 {@link ImageTensorBenchmark}。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FaceOutputBenchmark {
+
+    @Param({"640", "1920"})
+    public int width;
+
+    private ImageMat image;
+    private ImageMat face;
+
+    @Setup
+    public void setUp() throws IOException {
+        ImageTensorBenchmark.loadOpenCv();
+        image = ImageMat.fromCVMat(smoothNoise(width, width * 9 / 16));
+        face = ImageMat.fromCVMat(smoothNoise(112, 112));
+    }
+
+    @TearDown
+    public void tearDown() {
+        image.release();
+        face.release();
+    }
+
+    @Benchmark
+    public String imageBase64() {
+        return image.toBase64AndNoReleaseMat();
+    }
+
+    @Benchmark
+    public String faceImageBase64() {
+        return face.toBase64AndNoReleaseMat();
+    }
+
+    /**
+     * 模糊后的随机噪声，JPEG 压缩率接近真实照片，比纯噪声更有代表性
+     */
+    private static Mat smoothNoise(int width, int height) {
+        Mat mat = new Mat(height, width, CvType.CV_8UC3);
+        Core.randu(mat, 0, 256);
+        Imgproc.GaussianBlur(mat, mat, new Size(7, 7), 0);
+        return mat;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FaceOutputBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,174 @@
+package com.yuqiangdede.ffe.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.dnn.Dnn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import com.yuqiangdede.ffe.core.domain.ImageMat;
+import com.yuqiangdede.ffe.core.domain.ImageTensor;
+
+/**
+ * 人脸模型输入从 Mat 到 OnnxTensor 的转换，按各模型的输入尺寸：SCRFD 640、关键点 192、ArcFace 112、属性 96。
+ * <p>
+ * {@code perPixel} 为原实现：blobFromImage 后 imagesFromBlob 拆回 HWC，逐像素 {@code mat.get(i, j)} 填嵌套数组，
+ * ORT 再展平拷贝；{@code bulkArray} 为现在的 {@code to4dFloatOnnxTensor}（一次 get 取出，堆上 FloatBuffer）；
+ * {@code pooledBlob} 为模型实际使用的 {@code blobToFloatTensor}（blob 一次 copyTo 进池化 direct buffer，张量直接引用）。
+ * setup 中校验三者结果一致。需要能加载 OpenCV 本地库，默认按 native-defaults.properties 中的 opencv.so.path，
+ * 也可用 {@code -Dopencv.so.path} 指定。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageTensorBenchmark {
+
+    private static final double SCALE = 1.0 / 128;
+    private static final Scalar MEAN = new Scalar(127.5, 127.5, 127.5);
+
+    @Param({"640", "192", "112", "96"})
+    public int size;
+
+    private OrtEnvironment env;
+    private Mat src;
+
+    @Setup
+    public void setUp() throws IOException, OrtException {
+        loadOpenCv();
+        env = OrtEnvironment.getEnvironment();
+        src = new Mat(size, size, CvType.CV_8UC3);
+        Core.randu(src, 0, 256);
+
+        float[] expected;
+        try (OnnxTensor tensor = perPixelTensor()) {
+            expected = copy(tensor.getFloatBuffer());
+        }
+        try (OnnxTensor tensor = bulkArrayTensor()) {
+            check("bulkArray", expected, copy(tensor.getFloatBuffer()));
+        }
+        try (ImageTensor tensor = pooledBlobTensor()) {
+            check("pooledBlob", expected, copy(tensor.getTensor().getFloatBuffer()));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        src.release();
+    }
+
+    @Benchmark
+    public long perPixel() throws OrtException {
+        try (OnnxTensor tensor = perPixelTensor()) {
+            return tensor.getInfo().getShape()[3];
+        }
+    }
+
+    @Benchmark
+    public long bulkArray() {
+        try (OnnxTensor tensor = bulkArrayTensor()) {
+            return tensor.getInfo().getShape()[3];
+        }
+    }
+
+    @Benchmark
+    public long pooledBlob() {
+        try (ImageTensor tensor = pooledBlobTensor()) {
+            return tensor.getShape()[3];
+        }
+    }
+
+    private OnnxTensor perPixelTensor() throws OrtException {
+        Mat blob = Dnn.blobFromImage(src, SCALE, new Size(src.cols(), src.rows()), MEAN, true);
+        List<Mat> mats = new ArrayList<>();
+        Dnn.imagesFromBlob(blob, mats);
+        blob.release();
+        Mat mat = mats.get(0);
+        int width = mat.cols();
+        int height = mat.rows();
+        int channel = mat.channels();
+        float[][][][] array = new float[1][channel][height][width];
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                double[] c = mat.get(i, j);
+                for (int k = 0; k < channel; k++) {
+                    array[0][k][i][j] = (float) c[k];
+                }
+            }
+        }
+        mat.release();
+        return OnnxTensor.createTensor(env, array);
+    }
+
+    private OnnxTensor bulkArrayTensor() {
+        return ImageMat.fromCVMat(src)
+                .blobFromImageAndNoReleaseMat(SCALE, MEAN, true)
+                .to4dFloatOnnxTensorAndDoReleaseMat(true);
+    }
+
+    private ImageTensor pooledBlobTensor() {
+        return ImageMat.fromCVMat(src).blobToFloatTensorAndNoReleaseMat(SCALE, MEAN, true);
+    }
+
+    private static float[] copy(FloatBuffer buffer) {
+        float[] values = new float[buffer.remaining()];
+        buffer.get(values);
+        return values;
+    }
+
+    private static void check(String name, float[] expected, float[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            throw new IllegalStateException(name + " differs from the per-pixel conversion");
+        }
+    }
+
+    static void loadOpenCv() throws IOException {
+        String path = System.getProperty("opencv.so.path");
+        if (path == null) {
+            Properties properties = new Properties();
+            try (InputStream in = ImageTensorBenchmark.class.getClassLoader()
+                    .getResourceAsStream("native-defaults.properties")) {
+                properties.load(in);
+            }
+            String root = System.getenv("VISION_MIND_PATH");
+            path = (root == null ? "" : root) + properties.getProperty("opencv.so.path");
+        }
+        System.load(path);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageTensorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -1,6 +1,7 @@
 package com.yuqiangdede.ffe.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yuqiangdede.common.dto.output.BulkSummary;
 import com.yuqiangdede.ffe.core.domain.FaceImage;
 import com.yuqiangdede.ffe.dto.input.Input4Compare;
 import com.yuqiangdede.ffe.dto.input.Input4Del;
@@ -17,11 +18,17 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -48,6 +55,19 @@ class FaceControllerTest {
                 .andExpect(jsonPath("$.code").value("0"));
     }
 
+    @Test
+    void computeFaceVector_passesRequestedFields() throws Exception {
+        when(faceService.computeFaceVector(any(InputWithUrl.class)))
+                .thenReturn(FaceImage.build(null, List.of()));
+
+        mockMvc.perform(post("/api/v1/face/infer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"imgUrl\":\"http://example.com/face.jpg\",\"fields\":[\"embedding\",\"points\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value("0"));
+        verify(faceService).computeFaceVector(argThat(input -> List.of("embedding", "points").equals(input.getFields())));
+    }
+
     @Test
     void saveFaceVector_returnsSuccess() throws Exception {
         Input4Save input = new Input4Save("http://example.com/face.jpg", null, "id1", new float[]{0.1f});
@@ -127,6 +147,23 @@ class FaceControllerTest {
                 .andExpect(jsonPath("$.code").value("0"));
     }
 
+    @Test
+    void bulkStore_streamsServiceOutput() throws Exception {
+        when(faceService.bulkStore(any(InputStream.class), any(OutputStream.class))).thenAnswer(invocation -> {
+            String body = new String(invocation.getArgument(0, InputStream.class).readAllBytes(), StandardCharsets.UTF_8);
+            OutputStream out = invocation.getArgument(1);
+            out.write(("{\"line\":1,\"code\":\"0\"}\n" + body.lines().count() + "\n").getBytes(StandardCharsets.UTF_8));
+            return new BulkSummary(1, 1, 0, 0);
+        });
+
+        mockMvc.perform(post("/api/v1/face/bulk")
+                        .contentType("application/x-ndjson")
+                        .content("{\"imgUrl\":\"http://example.com/a.jpg\",\"groupId\":\"g\"}\n{\"imgUrl\":\"http://example.com/b.jpg\",\"groupId\":\"g\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string("{\"line\":1,\"code\":\"0\"}\n2\n"));
+    }
+
     private String writeJson(Object value) throws Exception {
         return objectMapper.writeValueAsString(value);
     }
@@ -0,0 +1,219 @@
+package com.yuqiangdede.ffe.core.base;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtSession;
+import com.yuqiangdede.ffe.config.SessionPoolConfig;
+import io.micrometer.core.instrument.Metrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OnnxSessionPoolTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void borrow_createsSessionsOnDemandAndQueuesWhenPoolIsFull() throws Exception {
+        Path model = writeReluModel(dir.resolve("relu.onnx"));
+        try (OnnxSessionPool pool = OnnxSessionPool.create("pool-test", model.toString(), config(2, null))) {
+            assertEquals(1, pool.stats().created());
+
+            OnnxSessionPool.Lease first = pool.borrow();
+            OnnxSessionPool.Lease second = pool.borrow();
+            assertEquals(2, pool.stats().created());
+            assertEquals(2, pool.stats().inUse());
+
+            CompletableFuture<OrtSession> third = CompletableFuture.supplyAsync(() -> {
+                try (OnnxSessionPool.Lease lease = pool.borrow()) {
+                    return lease.session();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(third.isDone());
+            first.close();
+            first.close();
+            assertEquals(first.session(), third.get(5, TimeUnit.SECONDS));
+            second.close();
+
+            OnnxSessionPool.Stats stats = pool.stats();
+            assertEquals(2, stats.created());
+            assertEquals(0, stats.inUse());
+            assertEquals(3, stats.borrows());
+            assertEquals(1, stats.waits());
+            assertTrue(OnnxSessionPool.allStats().containsKey(pool.id()));
+        }
+    }
+
+    @Test
+    void create_sameNameTwice_keepsBothPoolsAndOwnMeters() throws Exception {
+        Path model = writeReluModel(dir.resolve("relu.onnx"));
+        OnnxSessionPool first = OnnxSessionPool.create("reload-test", model.toString(), config(1, null));
+        OnnxSessionPool second = OnnxSessionPool.create("reload-test", model.toString(), config(1, null));
+        try {
+            assertNotEquals(first.id(), second.id());
+            // 第二个会话池不能关闭第一个仍在使用的会话池
+            try (OnnxSessionPool.Lease lease = first.borrow()) {
+                assertEquals("x", lease.session().getInputNames().iterator().next());
+            }
+            assertEquals(2, Metrics.globalRegistry.find("vision.ffe.session.created").tag("model", "reload-test").gauges().size());
+        } finally {
+            first.close();
+        }
+        assertFalse(OnnxSessionPool.allStats().containsKey(first.id()));
+        assertTrue(OnnxSessionPool.allStats().containsKey(second.id()));
+        assertNull(Metrics.globalRegistry.find("vision.ffe.session.created").tag("pool", first.id()).gauge());
+        assertNotNull(Metrics.globalRegistry.find("vision.ffe.session.created").tag("pool", second.id()).gauge());
+        assertEquals(1, second.stats().created());
+        second.close();
+        assertNull(Metrics.globalRegistry.find("vision.ffe.session.in-use").tag("model", "reload-test").gauge());
+    }
+
+    @Test
+    void create_cachesOptimizedModelAndLoadsItOnNextStart() throws Exception {
+        Path model = writeReluModel(dir.resolve("relu.onnx"));
+        Path cacheDir = dir.resolve("ort-cache");
+        SessionPoolConfig config = config(1, cacheDir.toString());
+
+        try (OnnxSessionPool pool = OnnxSessionPool.create("cache-test", model.toString(), config)) {
+            assertFalse(pool.stats().optimizedModelLoaded());
+            assertTrue(Files.isRegularFile(pool.optimizedModelPath()));
+        }
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(1, files.count(), "temporary files must be renamed or removed");
+        }
+
+        try (OnnxSessionPool pool = OnnxSessionPool.create("cache-test", model.toString(), config)) {
+            assertTrue(pool.stats().optimizedModelLoaded());
+            try (OnnxSessionPool.Lease lease = pool.borrow()) {
+                assertEquals("x", lease.session().getInputNames().iterator().next());
+            }
+        }
+    }
+
+    @Test
+    void optimizedModelPath_isNullWhenCacheDisabled() throws Exception {
+        Path model = writeReluModel(dir.resolve("relu.onnx"));
+        try (OnnxSessionPool pool = OnnxSessionPool.create("no-cache-test", model.toString(), config(1, null))) {
+            assertNull(pool.optimizedModelPath());
+        }
+    }
+
+    @Test
+    void baseOnnxInfer_detectsDynamicBatchAndRunsOnPooledSession() throws Exception {
+        Path model = writeReluModel(dir.resolve("relu.onnx"));
+        BaseOnnxInfer infer = new BaseOnnxInfer(model.toString(), config(2, null)) {
+        };
+        try {
+            assertTrue(infer.isBatchSupported());
+            assertEquals("x", infer.getInputName());
+            OrtEnvironment env = OrtEnvironment.getEnvironment();
+            try (OnnxTensor tensor = OnnxTensor.createTensor(env, new float[][]{{-1f, 0f, 2f}, {3f, -4f, 5f}});
+                 OrtSession.Result result = infer.run(tensor)) {
+                float[][] output = (float[][]) result.get(0).getValue();
+                assertArrayEquals(new float[]{0f, 0f, 2f}, output[0]);
+                assertArrayEquals(new float[]{3f, 0f, 5f}, output[1]);
+            }
+            assertEquals(0, infer.getSessionPool().stats().inUse());
+        } finally {
+            infer.close();
+        }
+    }
+
+    @Test
+    void fromProperties_prefersModelSpecificKeys() {
+        Properties properties = new Properties();
+        properties.setProperty("face.session.pool.size", "3");
+        properties.setProperty("face.session.optimization", "basic_opt");
+        properties.setProperty("face.arc.session.pool.size", "5");
+        properties.setProperty("face.arc.session.execution.mode", "parallel");
+        properties.setProperty("face.session.optimized-model.cache", "false");
+
+        SessionPoolConfig arc = SessionPoolConfig.fromProperties(properties, "arc");
+        SessionPoolConfig scrfd = SessionPoolConfig.fromProperties(properties, "scrfd");
+
+        assertEquals(5, arc.poolSize());
+        assertEquals(OrtSession.SessionOptions.ExecutionMode.PARALLEL, arc.executionMode());
+        assertEquals(3, scrfd.poolSize());
+        assertEquals(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL, scrfd.executionMode());
+        assertEquals(OrtSession.SessionOptions.OptLevel.BASIC_OPT, scrfd.optLevel());
+        assertNull(scrfd.optimizedModelDir());
+        assertTrue(SessionPoolConfig.fromProperties(new Properties(), "arc").optimizedModelDir().endsWith("vision-mind-ffe-ort"));
+    }
+
+    private static SessionPoolConfig config(int poolSize, String optimizedModelDir) {
+        return new SessionPoolConfig(poolSize, 1, 0, OrtSession.SessionOptions.OptLevel.ALL_OPT,
+                OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL, true, true, optimizedModelDir);
+    }
+
+    /**
+     * 手写一个最小的 ONNX 模型：y = Relu(x)，x、y 的形状为 [N, 3]，N 为动态 batch 维
+     */
+    private static Path writeReluModel(Path path) throws Exception {
+        byte[] node = concat(string(1, "x"), string(2, "y"), string(3, "relu"), string(4, "Relu"));
+        byte[] graph = concat(bytes(1, node), string(2, "g"), bytes(11, valueInfo("x")), bytes(12, valueInfo("y")));
+        byte[] opset = concat(string(1, ""), varint(2, 13));
+        byte[] model = concat(varint(1, 8), bytes(7, graph), bytes(8, opset));
+        return Files.write(path, model);
+    }
+
+    private static byte[] valueInfo(String name) {
+        byte[] shape = concat(bytes(1, string(2, "N")), bytes(1, varint(1, 3)));
+        byte[] tensorType = concat(varint(1, 1), bytes(2, shape));
+        return concat(string(1, name), bytes(2, bytes(1, tensorType)));
+    }
+
+    private static byte[] varint(int field, long value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, (long) field << 3);
+        writeVarint(out, value);
+        return out.toByteArray();
+    }
+
+    private static byte[] string(int field, String value) {
+        return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(int field, byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, ((long) field << 3) | 2);
+        writeVarint(out, value.length);
+        out.writeBytes(value);
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,45 @@
+package com.yuqiangdede.ffe.core.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FaceOutputTest {
+
+    @Test
+    void parse_returnsDefaultWhenNoFields() {
+        FaceOutput defaultOutput = FaceOutput.build().setEmbedding(true);
+
+        assertSame(defaultOutput, FaceOutput.parse(null, defaultOutput));
+        assertSame(defaultOutput, FaceOutput.parse(List.of(), defaultOutput));
+    }
+
+    @Test
+    void parse_enablesOnlyRequestedFieldsIgnoringCase() {
+        FaceOutput output = FaceOutput.parse(List.of("Attribute", " faceimage "), null);
+
+        assertTrue(output.isAttribute());
+        assertTrue(output.isFaceImage());
+        assertFalse(output.isImage());
+        assertFalse(output.isPoints());
+        assertFalse(output.isEmbedding());
+    }
+
+    @Test
+    void parse_rejectsUnknownField() {
+        assertThrows(IllegalArgumentException.class, () -> FaceOutput.parse(List.of("embeds"), null));
+    }
+
+    @Test
+    void needKeyPoint_onlyForPointsOrAlignedFaces() {
+        assertFalse(FaceOutput.build().setAttribute(true).setImage(true).needKeyPoint());
+        assertTrue(FaceOutput.build().setPoints(true).needKeyPoint());
+        assertTrue(FaceOutput.build().setEmbedding(true).needKeyPoint());
+        assertTrue(FaceOutput.build().setFaceImage(true).needKeyPoint());
+    }
+}
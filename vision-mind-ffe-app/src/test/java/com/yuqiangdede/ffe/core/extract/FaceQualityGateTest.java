@@ -0,0 +1,97 @@
+package com.yuqiangdede.ffe.core.extract;
+
+import com.yuqiangdede.ffe.config.FaceQualityConfig;
+import com.yuqiangdede.ffe.core.domain.FaceInfo;
+import com.yuqiangdede.ffe.core.domain.FaceOutput;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FaceQualityGateTest {
+
+    // 清晰度为 0 时不计算，测试不需要 OpenCV 本地库
+    private final FaceQualityGate gate = new FaceQualityGate(new FaceQualityConfig(true, 0.3f, 20, 45, 0));
+
+    @Test
+    void check_rejectsByScoreSizeAndAngleInOrder() {
+        assertEquals(FaceQualityGate.Reason.SCORE, gate.check(null, face(0.2f, 10, 90), 0.3f));
+        assertEquals(FaceQualityGate.Reason.SIZE, gate.check(null, face(0.9f, 10, 90), 0.3f));
+        assertEquals(FaceQualityGate.Reason.ANGLE, gate.check(null, face(0.9f, 40, 90), 0.3f));
+        assertNull(gate.check(null, face(0.9f, 40, 330), 0.3f));
+        assertNull(gate.check(null, face(0.9f, 40, 0), 0.3f));
+    }
+
+    @Test
+    void filter_usesHigherOfConfiguredAndRequestedScoreAndCountsSkippedStages() {
+        FaceInfo good = face(0.9f, 40, 0);
+        FaceInfo lowScore = face(0.5f, 40, 0);
+        FaceInfo small = face(0.9f, 12, 0);
+        FaceQualityGate.Stats before = gate.stats();
+
+        List<FaceInfo> result = gate.filter(null, List.of(good, lowScore, small),
+                FaceOutput.build().setEmbedding(true),
+                Map.of(FaceQualityGate.needFilterParamKey, true, FaceQualityGate.minScoreParamKey, 0.6f));
+
+        assertEquals(List.of(good), result);
+        FaceQualityGate.Stats after = gate.stats();
+        assertEquals(1, after.passed() - before.passed());
+        assertEquals(1, after.rejected().get(FaceQualityGate.Reason.SCORE) - before.rejected().get(FaceQualityGate.Reason.SCORE));
+        assertEquals(1, after.rejected().get(FaceQualityGate.Reason.SIZE) - before.rejected().get(FaceQualityGate.Reason.SIZE));
+        assertEquals(2, after.skipped().get(FaceQualityGate.Stage.KEYPOINT) - before.skipped().get(FaceQualityGate.Stage.KEYPOINT));
+        assertEquals(2, after.skipped().get(FaceQualityGate.Stage.EMBEDDING) - before.skipped().get(FaceQualityGate.Stage.EMBEDDING));
+        assertEquals(0, after.skipped().get(FaceQualityGate.Stage.ATTRIBUTE) - before.skipped().get(FaceQualityGate.Stage.ATTRIBUTE));
+    }
+
+    @Test
+    void filter_keepsAllFacesWhenCallerDoesNotAskForIt() {
+        List<FaceInfo> faces = List.of(face(0.9f, 12, 0), face(0.9f, 40, 90));
+
+        // 分析类接口不传 needFilterParamKey，小脸和侧脸都要返回
+        assertSame(faces, gate.filter(null, faces, FaceOutput.all(), Map.of(FaceQualityGate.minScoreParamKey, 0.6f)));
+        assertSame(faces, gate.filter(null, faces, FaceOutput.all(), null));
+    }
+
+    @Test
+    void filter_returnsInputWhenDisabled() {
+        FaceQualityGate disabled = new FaceQualityGate(new FaceQualityConfig(false, 0.9f, 100, 10, 0));
+        List<FaceInfo> faces = List.of(face(0.1f, 5, 180));
+
+        assertSame(faces, disabled.filter(null, faces, FaceOutput.all(), Map.of(FaceQualityGate.needFilterParamKey, true)));
+    }
+
+    @Test
+    void angleFromUpright_foldsToHalfCircle() {
+        assertEquals(0f, FaceQualityGate.angleFromUpright(0));
+        assertEquals(30f, FaceQualityGate.angleFromUpright(330));
+        assertEquals(180f, FaceQualityGate.angleFromUpright(180));
+        assertEquals(90f, FaceQualityGate.angleFromUpright(-90));
+    }
+
+    @Test
+    void fromProperties_readsFaceQualityKeys() {
+        Properties properties = new Properties();
+        properties.setProperty("face.quality.min-face-size", "24");
+        properties.setProperty("face.quality.max-angle", "0");
+        properties.setProperty("face.quality.min-sharpness", "80");
+
+        FaceQualityConfig config = FaceQualityConfig.fromProperties(properties);
+
+        assertEquals(24f, config.minFaceSize());
+        assertEquals(180f, config.maxAngle());
+        assertEquals(80d, config.minSharpness());
+        assertEquals(0f, config.minScore());
+        assertTrue(config.enabled());
+    }
+
+    private static FaceInfo face(float score, float size, float angle) {
+        FaceInfo.FaceBox box = FaceInfo.FaceBox.build(100, 100, 100 + size, 100 + size);
+        return FaceInfo.build(score, angle, box, FaceInfo.Points.build());
+    }
+}
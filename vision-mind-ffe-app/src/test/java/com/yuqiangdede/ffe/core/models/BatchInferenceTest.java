@@ -0,0 +1,225 @@
+package com.yuqiangdede.ffe.core.models;
+
+import ai.onnxruntime.OrtSession;
+import com.yuqiangdede.ffe.config.SessionPoolConfig;
+import com.yuqiangdede.ffe.core.domain.FaceInfo;
+import com.yuqiangdede.ffe.core.domain.ImageMat;
+import com.yuqiangdede.ffe.core.domain.ImageTensor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 多张人脸叠成一个 batch 推理时，张量内容和结果顺序必须与逐张推理一致。
+ * <p>
+ * 需要 OpenCV 本地库，默认按 native-defaults.properties 中的 opencv.so.path，也可用 {@code -Dopencv.so.path} 指定，
+ * 加载不了时跳过。
+ */
+class BatchInferenceTest {
+
+    private static final double SCALE = 1.0 / 127.5;
+    private static final Scalar MEAN = new Scalar(127.5, 127.5, 127.5);
+
+    private static boolean openCvLoaded;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void loadOpenCv() {
+        try {
+            String path = System.getProperty("opencv.so.path");
+            if (path == null) {
+                Properties properties = new Properties();
+                try (InputStream in = BatchInferenceTest.class.getClassLoader()
+                        .getResourceAsStream("native-defaults.properties")) {
+                    properties.load(in);
+                }
+                String root = System.getenv("VISION_MIND_PATH");
+                path = (root == null ? "" : root) + properties.getProperty("opencv.so.path");
+            }
+            System.load(path);
+            openCvLoaded = true;
+        } catch (Throwable e) {
+            openCvLoaded = false;
+        }
+    }
+
+    @Test
+    void stackedBlob_equalsSingleImageBlobs() {
+        assumeTrue(openCvLoaded, "OpenCV native library not available");
+        List<Mat> sources = List.of(gradient(24, 16, 0), gradient(24, 16, 40), gradient(24, 16, 90));
+
+        List<float[]> singles = new ArrayList<>();
+        for (Mat source : sources) {
+            try (ImageTensor tensor = ImageMat.fromCVMat(source.clone()).blobToFloatTensorAndDoReleaseMat(SCALE, MEAN, true)) {
+                assertArrayEquals(new long[]{1, 3, 16, 24}, tensor.getShape());
+                singles.add(values(tensor));
+            }
+        }
+        List<ImageMat> images = new ArrayList<>();
+        for (Mat source : sources) {
+            images.add(ImageMat.fromCVMat(source.clone()));
+        }
+
+        try (ImageTensor batch = ImageMat.blobToFloatTensorAndDoReleaseMat(images, SCALE, MEAN, true)) {
+            assertArrayEquals(new long[]{3, 3, 16, 24}, batch.getShape());
+            float[] stacked = values(batch);
+            int size = 3 * 16 * 24;
+            for (int i = 0; i < sources.size(); i++) {
+                assertArrayEquals(singles.get(i), Arrays.copyOfRange(stacked, i * size, (i + 1) * size), "image " + i);
+            }
+        }
+    }
+
+    @Test
+    void arcFaceBatch_mapsEachEmbeddingBackToItsImage() throws Exception {
+        assumeTrue(openCvLoaded, "OpenCV native library not available");
+        Path model = writeChannelMeanModel(dir.resolve("mean.onnx"));
+        InsightArcFaceRecognition recognition = new InsightArcFaceRecognition(model.toString(), config());
+        try {
+            assertTrue(recognition.isBatchSupported());
+            // BGR 纯色图，尺寸各不相同，都会被缩放到 112x112
+            double[][] colors = {{10, 20, 30}, {200, 100, 50}, {0, 255, 128}};
+            int[] sizes = {112, 150, 90};
+            Map<String, Object> params = Map.of(InsightArcFaceRecognition.arcFaceNeedImageParamKey, false);
+
+            List<ImageMat> faces = new ArrayList<>();
+            for (int i = 0; i < colors.length; i++) {
+                faces.add(ImageMat.fromCVMat(new Mat(sizes[i], sizes[i], CvType.CV_8UC3, new Scalar(colors[i]))));
+            }
+            List<FaceInfo.Embedding> batched = recognition.inference(faces, params);
+
+            assertEquals(colors.length, batched.size());
+            for (int i = 0; i < colors.length; i++) {
+                // swapRB 之后通道顺序为 R、G、B，每个通道的均值即 (像素值 - 127.5) / 127.5
+                float[] expected = {
+                        (float) ((colors[i][2] - 127.5) / 127.5),
+                        (float) ((colors[i][1] - 127.5) / 127.5),
+                        (float) ((colors[i][0] - 127.5) / 127.5)};
+                assertArrayEquals(expected, batched.get(i).getEmbeds(), 1e-4f, "face " + i);
+                assertArrayEquals(recognition.inference(faces.get(i), params).getEmbeds(), batched.get(i).getEmbeds(), 1e-5f);
+                assertNull(batched.get(i).getImage());
+            }
+            for (ImageMat face : faces) {
+                face.release();
+            }
+        } finally {
+            recognition.close();
+        }
+    }
+
+    private static SessionPoolConfig config() {
+        return new SessionPoolConfig(1, 1, 0, OrtSession.SessionOptions.OptLevel.ALL_OPT,
+                OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL, true, true, null);
+    }
+
+    /**
+     * 三个通道取值各不相同的渐变图，offset 区分不同图片
+     */
+    private static Mat gradient(int width, int height, int offset) {
+        Mat mat = new Mat(height, width, CvType.CV_8UC3);
+        byte[] data = new byte[width * height * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = (y * width + x) * 3;
+                data[i] = (byte) (offset + x * 5);
+                data[i + 1] = (byte) (offset + 80 + y * 7);
+                data[i + 2] = (byte) (250 - offset - x - y);
+            }
+        }
+        mat.put(0, 0, data);
+        return mat;
+    }
+
+    private static float[] values(ImageTensor tensor) {
+        FloatBuffer buffer = tensor.getTensor().getFloatBuffer();
+        float[] values = new float[buffer.remaining()];
+        buffer.get(values);
+        return values;
+    }
+
+    /**
+     * 手写一个最小的 ONNX 模型：y = ReduceMean(x, axes=[2, 3], keepdims=0)，x 为 [N, 3, 112, 112]，y 为 [N, 3]，
+     * 即每张人脸输出各通道的均值，结果与输入一一对应
+     */
+    private static Path writeChannelMeanModel(Path path) throws Exception {
+        byte[] axes = concat(string(1, "axes"), varint(8, 2), varint(8, 3), varint(20, 7));
+        byte[] keepDims = concat(string(1, "keepdims"), varint(3, 0), varint(20, 2));
+        byte[] node = concat(string(1, "x"), string(2, "y"), string(3, "mean"), string(4, "ReduceMean"),
+                bytes(5, axes), bytes(5, keepDims));
+        byte[] graph = concat(bytes(1, node), string(2, "g"),
+                bytes(11, valueInfo("x", 3, 112, 112)), bytes(12, valueInfo("y", 3)));
+        byte[] opset = concat(string(1, ""), varint(2, 13));
+        byte[] model = concat(varint(1, 8), bytes(7, graph), bytes(8, opset));
+        return Files.write(path, model);
+    }
+
+    /**
+     * 第一维为动态 batch 维 N，其余为固定维度
+     */
+    private static byte[] valueInfo(String name, long... dims) {
+        byte[] shape = bytes(1, string(2, "N"));
+        for (long dim : dims) {
+            shape = concat(shape, bytes(1, varint(1, dim)));
+        }
+        byte[] tensorType = concat(varint(1, 1), bytes(2, shape));
+        return concat(string(1, name), bytes(2, bytes(1, tensorType)));
+    }
+
+    private static byte[] varint(int field, long value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, (long) field << 3);
+        writeVarint(out, value);
+        return out.toByteArray();
+    }
+
+    private static byte[] string(int field, String value) {
+        return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(int field, byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, ((long) field << 3) | 2);
+        writeVarint(out, value.length);
+        out.writeBytes(value);
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
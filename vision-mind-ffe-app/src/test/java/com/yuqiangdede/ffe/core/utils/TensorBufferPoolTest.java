@@ -0,0 +1,59 @@
+package com.yuqiangdede.ffe.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TensorBufferPoolTest {
+
+    @Test
+    void acquire_roundsCapacityUpToPowerOfTwoAndLimitsToRequestedSize() {
+        ByteBuffer buffer = TensorBufferPool.acquire(3 * 112 * 112);
+
+        assertTrue(buffer.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), buffer.order());
+        assertEquals(65536 * Float.BYTES, buffer.capacity());
+        assertEquals(0, buffer.position());
+        assertEquals(3 * 112 * 112 * Float.BYTES, buffer.limit());
+        TensorBufferPool.release(buffer);
+    }
+
+    @Test
+    void release_makesBufferAvailableForSameBucket() {
+        // 96x96x3 与 100x100x3 落在同一个 2^15 的桶里
+        ByteBuffer first = TensorBufferPool.acquire(3 * 96 * 96);
+        TensorBufferPool.release(first);
+
+        ByteBuffer second = TensorBufferPool.acquire(3 * 100 * 100);
+        assertSame(first, second);
+        assertEquals(3 * 100 * 100 * Float.BYTES, second.limit());
+
+        ByteBuffer third = TensorBufferPool.acquire(3 * 96 * 96);
+        assertNotSame(second, third);
+        TensorBufferPool.release(second);
+        TensorBufferPool.release(third);
+    }
+
+    @Test
+    void release_ignoresForeignBuffers() {
+        TensorBufferPool.release(ByteBuffer.allocateDirect(12345));
+        TensorBufferPool.release(null);
+
+        assertThrows(IllegalArgumentException.class, () -> TensorBufferPool.acquire(0));
+    }
+
+    @Test
+    void bucketCapacity_isNextPowerOfTwo() {
+        assertEquals(1, TensorBufferPool.bucketCapacity(1));
+        assertEquals(1024, TensorBufferPool.bucketCapacity(1024));
+        assertEquals(2048, TensorBufferPool.bucketCapacity(1025));
+        assertEquals(2097152, TensorBufferPool.bucketCapacity(3 * 640 * 640));
+    }
+}
@@ -3,7 +3,7 @@ package com.yuqiangdede.lpr.service;
 import ai.onnxruntime.OrtException;
 import com.yuqiangdede.common.dto.Point;
 import com.yuqiangdede.common.dto.output.Box;
-import com.yuqiangdede.common.util.ImageUtil;
+import com.yuqiangdede.common.util.ImageContext;
 import com.yuqiangdede.lpr.config.LprProperties;
 import com.yuqiangdede.lpr.controller.dto.PlateRecognitionResult;
 import com.yuqiangdede.ocr.dto.input.OcrDetectionRequest;
@@ -38,47 +38,54 @@ public class LprService {
     private final OcrService ocrService;
 
     public AnalysisResult analyze(DetectionRequestWithArea request) throws IOException, OrtException {
-        BufferedImage original = ImageUtil.urlToImage(request.getImgUrl());
-        List<Box> boxes = imgAnalysisService.detectLP(request);
-        if (boxes.isEmpty()) {
-            return new AnalysisResult(original, Collections.emptyList(), Collections.emptyList());
-        }
-        List<PlateRecognitionResult> results = new ArrayList<>();
-        List<BufferedImage> plateImages = new ArrayList<>();
-        for (Box box : boxes) {
-            Optional<BufferedImage> normalized = normalizePlate(original, box);
-            if (normalized.isEmpty()) {
-                log.warn("车牌区域 {} 无法裁剪，跳过", box);
-                continue;
+        try (ImageContext context = ImageContext.load(request.getImgUrl())) {
+            BufferedImage original = context.getImage();
+            List<Box> boxes = imgAnalysisService.detectLP(request, context);
+            if (boxes.isEmpty()) {
+                return new AnalysisResult(original, Collections.emptyList(), Collections.emptyList());
+            }
+            List<PlateRecognitionResult> results = new ArrayList<>();
+            List<BufferedImage> plateImages = new ArrayList<>();
+            for (Box box : boxes) {
+                Optional<BufferedImage> normalized = normalizePlate(original, box);
+                if (normalized.isEmpty()) {
+                    log.warn("车牌区域 {} 无法裁剪，跳过", box);
+                    continue;
+                }
+                BufferedImage plate = normalized.get();
+                String text = recognizer.recognize(plate);
+                results.add(new PlateRecognitionResult(box, text));
+                plateImages.add(plate);
             }
-            BufferedImage plate = normalized.get();
-            String text = recognizer.recognize(plate);
-            results.add(new PlateRecognitionResult(box, text));
-            plateImages.add(plate);
+            return new AnalysisResult(original, results, plateImages);
         }
-        return new AnalysisResult(original, results, plateImages);
     }
 
+    /**
+     * 车牌检测与整图 OCR 共用同一次下载解码的图片。
+     */
     public AnalysisResult analyzeWithOcr(DetectionRequestWithArea request) throws IOException, OrtException {
-        BufferedImage original = ImageUtil.urlToImage(request.getImgUrl());
-        List<Box> boxes = imgAnalysisService.detectLP(request);
-        if (boxes.isEmpty()) {
-            return new AnalysisResult(original, Collections.emptyList(), Collections.emptyList());
-        }
+        try (ImageContext context = ImageContext.load(request.getImgUrl())) {
+            BufferedImage original = context.getImage();
+            List<Box> boxes = imgAnalysisService.detectLP(request, context);
+            if (boxes.isEmpty()) {
+                return new AnalysisResult(original, Collections.emptyList(), Collections.emptyList());
+            }
 
-        OcrDetectionRequest ocrRequest = new OcrDetectionRequest();
-        ocrRequest.setImgUrl(request.getImgUrl());
-        List<OcrDetectionResult> detections = ocrService.detect(ocrRequest);
+            OcrDetectionRequest ocrRequest = new OcrDetectionRequest();
+            ocrRequest.setImgUrl(request.getImgUrl());
+            List<OcrDetectionResult> detections = ocrService.detect(ocrRequest, context);
 
-        List<PlateRecognitionResult> results = new ArrayList<>();
-        List<BufferedImage> plateImages = new ArrayList<>();
-        for (Box box : boxes) {
-            Optional<BufferedImage> normalized = normalizePlate(original, box);
-            normalized.ifPresent(plateImages::add);
-            String text = selectOcrText(box, detections).map(OcrDetectionResult::getText).orElse("");
-            results.add(new PlateRecognitionResult(box, text));
+            List<PlateRecognitionResult> results = new ArrayList<>();
+            List<BufferedImage> plateImages = new ArrayList<>();
+            for (Box box : boxes) {
+                Optional<BufferedImage> normalized = normalizePlate(original, box);
+                normalized.ifPresent(plateImages::add);
+                String text = selectOcrText(box, detections).map(OcrDetectionResult::getText).orElse("");
+                results.add(new PlateRecognitionResult(box, text));
+            }
+            return new AnalysisResult(original, results, plateImages);
         }
-        return new AnalysisResult(original, results, plateImages);
     }
 
     public BufferedImage overlay(AnalysisResult analysis) {
@@ -3,6 +3,7 @@ package com.yuqiangdede.ocr.service;
 import ai.onnxruntime.OrtException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.yuqiangdede.common.dto.Point;
+import com.yuqiangdede.common.util.ImageContext;
 import com.yuqiangdede.common.util.ImageUtil;
 import com.yuqiangdede.common.util.JsonUtils;
 import com.yuqiangdede.common.util.RuntimeEnvironment;
@@ -94,6 +95,15 @@ public class OcrService {
         return inferenceResult.detections();
     }
 
+    /**
+     * Same as {@link #detect(OcrDetectionRequest)}, but reads pixels from an image the caller has already
+     * loaded for this request instead of downloading {@code imgUrl} again.
+     */
+    public List<OcrDetectionResult> detect(OcrDetectionRequest request, ImageContext image) throws IOException, OrtException {
+        validate(request);
+        return recognise(request, image.getMat(), System.currentTimeMillis());
+    }
+
     public String detectWithLLM(OcrDetectionRequest request) throws IOException, OrtException {
         InferenceResult inferenceResult = runInference(request);
         return ocrPrompt.fineTuning(inferenceResult.detections());
@@ -123,12 +133,7 @@ public class OcrService {
      * Runs the full OCR pipeline for a single request: download image, infer text, convert results.
      */
     private InferenceResult runInference(OcrDetectionRequest request) throws IOException, OrtException {
-        if (request == null) {
-            throw new IllegalArgumentException("request must not be null");
-        }
-        if (ObjectUtils.isEmpty(request.getImgUrl())) {
-            throw new IllegalArgumentException("imgUrl is null or empty");
-        }
+        validate(request);
 
         long start = System.currentTimeMillis();
         // Materialise the source as both OpenCV matrix and buffered image for later reuse.
@@ -136,23 +141,36 @@ public class OcrService {
         BufferedImage image = ImageUtil.matToBufferedImage(mat);
 
         try {
-            // Select the appropriate detector variant and execute ONNX inference.
-            PaddleOcrEngine engine = selectEngine(request.getDetectionLevel());
-            List<PaddleOcrEngine.OcrResult> rawResults = engine.ocr(mat);
-            // Translate engine output into DTOs, removing entries that cannot form polygons.
-            List<OcrDetectionResult> filtered = convertDetections(rawResults);
-            log.info("OCR inference completed: url={}, level={}, totalDetections={}, filteredDetections={}, cost={}ms",
-                    request.getImgUrl(),
-                    normaliseDetectionLevel(request.getDetectionLevel()),
-                    rawResults.size(),
-                    filtered.size(),
-                    System.currentTimeMillis() - start);
-            return new InferenceResult(image, filtered);
+            return new InferenceResult(image, recognise(request, mat, start));
         } finally {
             mat.release();
         }
     }
 
+    private void validate(OcrDetectionRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("request must not be null");
+        }
+        if (ObjectUtils.isEmpty(request.getImgUrl())) {
+            throw new IllegalArgumentException("imgUrl is null or empty");
+        }
+    }
+
+    private List<OcrDetectionResult> recognise(OcrDetectionRequest request, Mat mat, long start) throws OrtException {
+        // Select the appropriate detector variant and execute ONNX inference.
+        PaddleOcrEngine engine = selectEngine(request.getDetectionLevel());
+        List<PaddleOcrEngine.OcrResult> rawResults = engine.ocr(mat);
+        // Translate engine output into DTOs, removing entries that cannot form polygons.
+        List<OcrDetectionResult> filtered = convertDetections(rawResults);
+        log.info("OCR inference completed: url={}, level={}, totalDetections={}, filteredDetections={}, cost={}ms",
+                request.getImgUrl(),
+                normaliseDetectionLevel(request.getDetectionLevel()),
+                rawResults.size(),
+                filtered.size(),
+                System.currentTimeMillis() - start);
+        return filtered;
+    }
+
     /**
      * Converts raw OCR engine results into public DTOs while filtering invalid detections.
      */
@@ -13,15 +13,36 @@ public class OnnxSessionFactory {
     }
 
     public OrtSession createSession(String modelPath, String provider, int threads) throws OrtException {
-        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
-        if (threads > 0) {
-            options.setIntraOpNumThreads(threads);
-            options.setInterOpNumThreads(Math.max(1, threads / 2));
-        }
-        if ("cpu".equalsIgnoreCase(provider) || provider == null || provider.isBlank()) {
-            options.addCPU(true);
+        return createSession(modelPath, provider, threads, Math.max(1, threads / 2),
+                OrtSession.SessionOptions.OptLevel.ALL_OPT, true);
+    }
+
+    /**
+     * Creates a session with explicit thread, graph optimisation and memory arena settings.
+     *
+     * @param intraOpThreads threads used inside a single operator, {@code <= 0} keeps the runtime default
+     * @param interOpThreads threads used across independent operators, {@code <= 0} keeps the runtime default
+     * @param optLevel       graph optimisation level applied when the model is loaded
+     * @param memoryArena    whether the CPU allocator keeps a growing arena between runs
+     */
+    public OrtSession createSession(String modelPath, String provider, int intraOpThreads, int interOpThreads,
+                                    OrtSession.SessionOptions.OptLevel optLevel, boolean memoryArena) throws OrtException {
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            if (intraOpThreads > 0) {
+                options.setIntraOpNumThreads(intraOpThreads);
+            }
+            if (interOpThreads > 0) {
+                options.setInterOpNumThreads(interOpThreads);
+            }
+            if (optLevel != null) {
+                options.setOptimizationLevel(optLevel);
+            }
+            options.setCPUArenaAllocator(memoryArena);
+            if ("cpu".equalsIgnoreCase(provider) || provider == null || provider.isBlank()) {
+                options.addCPU(memoryArena);
+            }
+            return environment.createSession(modelPath, options);
         }
-        return environment.createSession(modelPath, options);
     }
 
     public OrtEnvironment getEnvironment() {
@@ -1,6 +1,14 @@
 package com.yuqiangdede.reid.config;
 
+import com.yuqiangdede.common.bulk.BulkConfig;
+import com.yuqiangdede.common.chroma.ChromaPersistenceConfig;
+import com.yuqiangdede.common.chroma.HnswConfig;
+import com.yuqiangdede.common.chroma.QuantizationConfig;
 import com.yuqiangdede.common.util.RuntimeEnvironment;
+import com.yuqiangdede.common.vector.ElasticsearchConfig;
+import com.yuqiangdede.common.vector.ElasticsearchWriteConfig;
+import com.yuqiangdede.common.vector.LuceneWriteConfig;
+import com.yuqiangdede.common.vector.VectorStoreConfig;
 import com.yuqiangdede.common.vector.VectorStoreMode;
 import lombok.extern.slf4j.Slf4j;
 
@@ -14,12 +22,23 @@ public class ReidConstant {
     public static final String LUCENE_PATH;
     public static final String ONNX_PATH;
     public static final VectorStoreMode VECTOR_STORE_MODE;
+    public static final LuceneWriteConfig LUCENE_WRITE_CONFIG;
+    public static final ChromaPersistenceConfig CHROMA_PERSISTENCE_CONFIG;
+    public static final HnswConfig HNSW_CONFIG;
+    public static final QuantizationConfig QUANTIZATION_CONFIG;
+    public static final BulkConfig BULK_CONFIG;
 
     public static final String ES_URIS;
     public static final String ES_USERNAME;
     public static final String ES_PASSWORD;
     public static final String ES_API_KEY;
     public static final String ES_REID_INDEX;
+    public static final ElasticsearchWriteConfig ES_WRITE_CONFIG;
+
+    /**
+     * 向量库的模式及各后端的配置，传给 VectorStoreUtil.init
+     */
+    public static final VectorStoreConfig VECTOR_STORE_CONFIG;
 
     static {
         Properties properties = new Properties();
@@ -43,11 +62,27 @@ public class ReidConstant {
             ONNX_PATH = envPath + properties.getProperty("reid.onnx.path");
 
             VECTOR_STORE_MODE = VectorStoreMode.fromProperty(properties.getProperty("vector.store.mode"));
+            LUCENE_WRITE_CONFIG = LuceneWriteConfig.fromProperties(properties);
+            String memoryPersistPath = properties.getProperty("memory.persist.path", "").trim();
+            CHROMA_PERSISTENCE_CONFIG = ChromaPersistenceConfig.fromProperties(properties,
+                    memoryPersistPath.isEmpty() ? null : envPath + memoryPersistPath);
+            HNSW_CONFIG = HnswConfig.fromProperties(properties);
+            QUANTIZATION_CONFIG = QuantizationConfig.fromProperties(properties);
+            BULK_CONFIG = BulkConfig.fromProperties(properties);
             ES_URIS = getOrDefault(properties, "es.uris", "http://127.0.0.1:9200");
             ES_USERNAME = trimToNull(properties.getProperty("es.username"));
             ES_PASSWORD = trimToNull(properties.getProperty("es.password"));
             ES_API_KEY = trimToNull(properties.getProperty("es.api-key"));
             ES_REID_INDEX = getOrDefault(properties, "es.index.reid", "vision_mind_reid");
+            ES_WRITE_CONFIG = ElasticsearchWriteConfig.fromProperties(properties);
+            VECTOR_STORE_CONFIG = VectorStoreConfig.builder(VECTOR_STORE_MODE)
+                    .lucene(LUCENE_PATH, LUCENE_WRITE_CONFIG)
+                    .persistence(CHROMA_PERSISTENCE_CONFIG)
+                    .hnsw(HNSW_CONFIG)
+                    .quantization(QUANTIZATION_CONFIG)
+                    .elasticsearch(new ElasticsearchConfig(ES_URIS, ES_USERNAME, ES_PASSWORD, ES_API_KEY, ES_REID_INDEX,
+                            ES_WRITE_CONFIG))
+                    .build();
 
         } catch (IOException e) {
             throw new RuntimeException("Failed to read configuration file", e);
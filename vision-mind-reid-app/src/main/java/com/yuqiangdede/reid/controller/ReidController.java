@@ -1,14 +1,20 @@
 package com.yuqiangdede.reid.controller;
 
+import com.yuqiangdede.common.dto.output.BulkSummary;
 import com.yuqiangdede.common.dto.output.HttpResult;
+import com.yuqiangdede.common.util.JsonUtils;
 import com.yuqiangdede.reid.output.Feature;
 import com.yuqiangdede.reid.output.Human;
 import com.yuqiangdede.reid.service.ReidService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.util.ObjectUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -85,6 +91,29 @@ public class ReidController {
         }
     }
 
+    /**
+     * 批量入库，请求体和响应体都是 NDJSON（每行一个 JSON），边读边处理边返回，请求和响应都不会整体缓存在内存中
+     *
+     * @param request  每行一个 {@link com.yuqiangdede.reid.input.Input4Bulk}
+     * @param response 按输入顺序每行一个处理结果，最后一行是 {@link BulkSummary}
+     */
+    @PostMapping(value = {"/v1/reid/bulk", "/v1/reid/store/bulk"}, produces = "application/x-ndjson", consumes = "application/x-ndjson")
+    public void bulkStore(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long start_time = System.currentTimeMillis();
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try {
+            BulkSummary summary = reidService.bulkStore(request.getInputStream(), response.getOutputStream());
+            log.info("bulkStore : {}. Cost time:{} ms.", summary, (System.currentTimeMillis() - start_time));
+        } catch (Exception e) {
+            log.error("bulkStore error", e);
+            if (!response.isCommitted()) {
+                String error = JsonUtils.object2Json(new HttpResult<>(false, e.getMessage())) + "\n";
+                response.getOutputStream().write(error.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
 //    @PostMapping(value = "/v1/reid/store/multi", produces = "application/json", consumes = "application/json")
 //    public HttpResult storeMulti(@RequestBody Map input) {
 //        long start_time = System.currentTimeMillis();
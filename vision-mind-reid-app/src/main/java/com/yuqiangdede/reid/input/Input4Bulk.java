@@ -0,0 +1,61 @@
+package com.yuqiangdede.reid.input;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 批量入库（NDJSON）中的一行：带 embeds 时直接入库，否则按 imgUrl 下载图片并提取特征后入库
+ */
+@Setter
+@Getter
+public class Input4Bulk {
+
+    /**
+     * 图片url
+     */
+    private final String imgUrl;
+
+    private final String cameraId;
+
+    /**
+     * 人员ID，为空时使用图片ID
+     */
+    private final String humanId;
+
+    /**
+     * 图片ID，为空时自动生成
+     */
+    private final String uuid;
+
+    /**
+     * 预先计算好的特征向量
+     */
+    private final float[] embeds;
+
+    @JsonCreator
+    public Input4Bulk(
+            @JsonProperty("imgUrl") String imgUrl,
+            @JsonProperty("cameraId") String cameraId,
+            @JsonProperty("humanId") String humanId,
+            @JsonProperty("uuid") String uuid,
+            @JsonProperty("embeds") float[] embeds) {
+        this.imgUrl = imgUrl;
+        this.cameraId = cameraId;
+        this.humanId = humanId;
+        this.uuid = uuid;
+        this.embeds = embeds;
+    }
+
+    @Override
+    public String toString() {
+        return "Input4Bulk{" +
+                "imgUrl='" + imgUrl + '\'' +
+                ", cameraId='" + cameraId + '\'' +
+                ", humanId='" + humanId + '\'' +
+                ", uuid='" + uuid + '\'' +
+                ", embeds=" + (embeds == null ? "null" : embeds.length + "d") +
+                '}';
+    }
+}
@@ -1,12 +1,15 @@
 package com.yuqiangdede.reid.service;
 
 import ai.onnxruntime.OrtException;
+import com.yuqiangdede.common.bulk.NdjsonBulkPipeline;
 import com.yuqiangdede.common.dto.output.Box;
+import com.yuqiangdede.common.dto.output.BulkSummary;
+import com.yuqiangdede.common.util.ImageContext;
 import com.yuqiangdede.common.util.ImageUtil;
 import com.yuqiangdede.common.util.RuntimeEnvironment;
 import com.yuqiangdede.common.util.VectorUtil;
-import com.yuqiangdede.common.vector.ElasticsearchConfig;
 import com.yuqiangdede.reid.config.ReidConstant;
+import com.yuqiangdede.reid.input.Input4Bulk;
 import com.yuqiangdede.reid.output.Feature;
 import com.yuqiangdede.reid.output.Human;
 import com.yuqiangdede.reid.util.ReidVectorStoreUtil;
@@ -18,9 +21,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opencv.core.Mat;
 import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -43,19 +49,15 @@ public class ReidService {
             }
 
             try {
-                ElasticsearchConfig esConfig = new ElasticsearchConfig(
-                        ReidConstant.ES_URIS,
-                        ReidConstant.ES_USERNAME,
-                        ReidConstant.ES_PASSWORD,
-                        ReidConstant.ES_API_KEY,
-                        ReidConstant.ES_REID_INDEX);
-                ReidVectorStoreUtil.init(ReidConstant.LUCENE_PATH, ReidConstant.VECTOR_STORE_MODE, esConfig);
+                ReidVectorStoreUtil.init(ReidConstant.VECTOR_STORE_CONFIG);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         }
     }
 
+    private static final NdjsonBulkPipeline bulkPipeline = new NdjsonBulkPipeline(ReidConstant.BULK_CONFIG, "reid-bulk");
+
     private static boolean shouldSkipNativeInit() {
         return RuntimeEnvironment.shouldSkipNativeLoad();
     }
@@ -85,47 +87,64 @@ public class ReidService {
     }
 
     public List<Feature> featureMulti(String url) throws Exception {
-        BufferedImage image = ImageUtil.urlToImage(url);
-
-        DetectionRequestWithArea detectionRequest = new DetectionRequestWithArea();
-        detectionRequest.setImgUrl(url);
-        detectionRequest.setThreshold(0.5f);
-        detectionRequest.setTypes("0");
-
-        List<Box> boxes = imgAnalysisService.detectArea(detectionRequest);
-        List<Feature> features = new ArrayList<>();
-        for (Box box : boxes) {
-            BufferedImage subImg = ImageUtil.cropExpand(image, box, 0.1f);
-            Mat mat = ImageUtil.imgToMat(subImg);
-            Feature feature = ReidUtil.featureSingle(mat);
-            feature.setUuid(UUID.randomUUID().toString());
-            features.add(feature);
+        try (ImageContext context = ImageContext.load(url)) {
+            DetectionRequestWithArea detectionRequest = new DetectionRequestWithArea();
+            detectionRequest.setImgUrl(url);
+            detectionRequest.setThreshold(0.5f);
+            detectionRequest.setTypes("0");
+
+            List<Box> boxes = imgAnalysisService.detectArea(detectionRequest, context);
+            BufferedImage image = context.getImage();
+            List<Feature> features = new ArrayList<>();
+            for (Box box : boxes) {
+                BufferedImage subImg = ImageUtil.cropExpand(image, box, 0.1f);
+                Mat mat = ImageUtil.imgToMat(subImg);
+                Feature feature = ReidUtil.featureSingle(mat);
+                feature.setUuid(UUID.randomUUID().toString());
+                features.add(feature);
+            }
+            return features;
         }
-        return features;
     }
 
     public Feature storeSingle(String imgUrl, String cameraId, String humanId) throws IOException, OrtException {
         Mat mat = ImageUtil.urlToMat(imgUrl);
         Feature feature = ReidUtil.featureSingle(mat);
         feature.setUuid(UUID.randomUUID().toString());
-        ReidVectorStoreUtil.add(imgUrl, cameraId, humanId, feature);
+        ReidVectorStoreUtil.awaitVisible(ReidVectorStoreUtil.add(imgUrl, cameraId, humanId, feature));
         return feature;
     }
 
+    /**
+     * 批量入库：请求体每行一个 {@link Input4Bulk}，带 embeds 的行直接入库，其余行下载图片、提取特征后入库。
+     * 下载、提取在有界的线程池中并行，入库按批写入，每行的结果按输入顺序逐行写回，最后一行是汇总。
+     *
+     * @param in  NDJSON 请求体
+     * @param out NDJSON 响应体，每行的 data 为这一行入库的图片ID
+     * @return 汇总信息
+     * @throws IOException 读取请求体或写回结果失败时抛出
+     */
+    public BulkSummary bulkStore(InputStream in, OutputStream out) throws IOException {
+        return bulkPipeline.run(in, out, Input4Bulk.class, new BulkHandler());
+    }
+
     public List<Human> search(String imgUrl, String cameraId, Integer topN, float threshold) throws IOException, OrtException {
         Mat mat = ImageUtil.urlToMat(imgUrl);
         Feature feature = ReidUtil.featureSingle(mat);
         return ReidVectorStoreUtil.searchByVector(feature.getEmbeds(), cameraId, topN, threshold);
     }
 
+    /**
+     * 先检索，未命中则入库为新的人。图片只下载解码一次，检索与入库共用同一份特征。
+     */
     public Human searchOrStore(String imgUrl, float threshold) throws IOException, OrtException {
-        List<Human> humans = this.search(imgUrl, null, 1, threshold);
+        Feature feature = featureOnce(imgUrl);
+        List<Human> humans = ReidVectorStoreUtil.searchByVector(feature.getEmbeds(), null, 1, threshold);
 
         if (humans.isEmpty()) {
-            Mat mat = ImageUtil.urlToMat(imgUrl);
-            Feature feature = ReidUtil.featureSingle(mat);
             feature.setUuid(UUID.randomUUID().toString());
-            ReidVectorStoreUtil.add(imgUrl, null, null, feature);
+            // 下一次检索要能命中刚入库的人，否则同一个人会被当成新的人重复入库
+            ReidVectorStoreUtil.awaitVisible(ReidVectorStoreUtil.add(imgUrl, null, null, feature));
             return new Human(feature.getUuid(), feature.getUuid(), imgUrl, 1, null, "new");
         } else {
             return humans.get(0);
@@ -133,24 +152,65 @@ public class ReidService {
 
     }
 
+    /**
+     * 先检索，命中则以命中的 humanId 入库，未命中则入库为新的人。图片只下载解码一次。
+     */
     public Human associateStore(String imgUrl, float threshold) throws IOException, OrtException {
-        List<Human> humans = this.search(imgUrl, null, 1, threshold);
+        Feature feature = featureOnce(imgUrl);
+        List<Human> humans = ReidVectorStoreUtil.searchByVector(feature.getEmbeds(), null, 1, threshold);
+        feature.setUuid(UUID.randomUUID().toString());
 
         if (humans.isEmpty()) {
-            Mat mat = ImageUtil.urlToMat(imgUrl);
-            Feature feature = ReidUtil.featureSingle(mat);
-            feature.setUuid(UUID.randomUUID().toString());
-            ReidVectorStoreUtil.add(imgUrl, null, null, feature);
+            ReidVectorStoreUtil.awaitVisible(ReidVectorStoreUtil.add(imgUrl, null, null, feature));
             return new Human(feature.getUuid(), feature.getUuid(), imgUrl, 1, null, "new");
         } else {
-            Mat mat = ImageUtil.urlToMat(imgUrl);
-            Feature feature = ReidUtil.featureSingle(mat);
-            feature.setUuid(UUID.randomUUID().toString());
-            ReidVectorStoreUtil.add(imgUrl, null, humans.get(0).getHumanId(), feature);
+            ReidVectorStoreUtil.awaitVisible(ReidVectorStoreUtil.add(imgUrl, null, humans.get(0).getHumanId(), feature));
 
             return humans.get(0);
         }
     }
-}
 
+    private Feature featureOnce(String imgUrl) throws IOException, OrtException {
+        try (ImageContext context = ImageContext.load(imgUrl)) {
+            return ReidUtil.featureSingle(context.getMat());
+        }
+    }
+
+    private record BulkImage(Input4Bulk input, BufferedImage image) {
+    }
+
+    private static final class BulkHandler implements NdjsonBulkPipeline.Handler<Input4Bulk, BulkImage, ReidVectorStoreUtil.Entry> {
+
+        @Override
+        public BulkImage fetch(Input4Bulk input) throws IOException {
+            if (ObjectUtils.isEmpty(input.getImgUrl())) {
+                throw new IllegalArgumentException("imgUrl is null or empty");
+            }
+            return new BulkImage(input, input.getEmbeds() != null ? null : ImageUtil.urlToImage(input.getImgUrl()));
+        }
+
+        @Override
+        public ReidVectorStoreUtil.Entry extract(BulkImage fetched) throws IOException, OrtException {
+            Input4Bulk input = fetched.input();
+            String uuid = ObjectUtils.isEmpty(input.getUuid()) ? UUID.randomUUID().toString() : input.getUuid();
+            Feature feature;
+            if (fetched.image() == null) {
+                feature = new Feature(uuid, input.getEmbeds());
+            } else {
+                feature = ReidUtil.featureSingle(ImageUtil.imgToMat(fetched.image()));
+                feature.setUuid(uuid);
+            }
+            return new ReidVectorStoreUtil.Entry(input.getImgUrl(), input.getCameraId(), input.getHumanId(), feature);
+        }
+
+        @Override
+        public void store(List<ReidVectorStoreUtil.Entry> batch) {
+            ReidVectorStoreUtil.addAll(batch);
+        }
 
+        @Override
+        public Object result(ReidVectorStoreUtil.Entry stored) {
+            return stored.feature().getUuid();
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package com.yuqiangdede.reid.util;
 
+import com.yuqiangdede.common.chroma.ChromaPersistenceConfig;
 import com.yuqiangdede.common.chroma.ChromaStore;
+import com.yuqiangdede.common.chroma.DurableChromaStore;
 import com.yuqiangdede.common.chroma.EmbeddingRecord;
+import com.yuqiangdede.common.chroma.HnswChromaStore;
 import com.yuqiangdede.common.chroma.InMemoryChromaStore;
+import com.yuqiangdede.common.chroma.QuantizationConfig;
 import com.yuqiangdede.common.chroma.SearchResult;
 import com.yuqiangdede.common.util.RandomProjectionUtils;
 import com.yuqiangdede.common.util.VectorUtil;
+import com.yuqiangdede.common.vector.ElasticsearchBulkWriter;
 import com.yuqiangdede.common.vector.ElasticsearchClientFactory;
 import com.yuqiangdede.common.vector.ElasticsearchConfig;
+import com.yuqiangdede.common.vector.LuceneVectorIndex;
+import com.yuqiangdede.common.vector.LuceneWriteConfig;
+import com.yuqiangdede.common.vector.VectorStoreConfig;
 import com.yuqiangdede.common.vector.VectorStoreMode;
 import com.yuqiangdede.reid.output.Feature;
 import com.yuqiangdede.reid.output.Human;
@@ -17,25 +25,12 @@ import org.apache.lucene.document.KnnFloatVectorField;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause;
-import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.KnnFloatVectorQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.SearcherFactory;
-import org.apache.lucene.search.SearcherManager;
-import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.FSDirectory;
-import org.elasticsearch.action.delete.DeleteRequest;
-import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
-import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.CreateIndexRequest;
@@ -52,12 +47,13 @@ import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 
 import java.io.IOException;
-import java.nio.file.Paths;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Vector storage helper for ReID supporting Lucene persistence, an in-memory store, or Elasticsearch.
@@ -68,13 +64,12 @@ public final class ReidVectorStoreUtil {
     private static final Object ES_LOCK = new Object();
 
     private static volatile VectorStoreMode mode = VectorStoreMode.MEMORY;
-    private static SearcherManager searcherManager;
-    private static IndexWriter writer;
-    private static FSDirectory directory;
+    private static volatile LuceneVectorIndex luceneIndex;
     private static ChromaStore inMemoryStore;
 
     @SuppressWarnings({"deprecation"})
     private static RestHighLevelClient esClient;
+    private static ElasticsearchBulkWriter esWriter;
     private static ElasticsearchConfig esConfig;
     private static boolean esIndexReady;
 
@@ -82,32 +77,43 @@ public final class ReidVectorStoreUtil {
     }
 
     /**
-     * Initialise storage layer.
+     * One stored feature of {@link #addAll}.
+     */
+    public record Entry(String imgUrl, String cameraId, String humanId, Feature feature) {
+        public Entry {
+            Objects.requireNonNull(feature, "feature");
+        }
+    }
+
+    /**
+     * Initialise storage layer, closing the one opened before.
      *
-     * @param indexPath   location for Lucene indices
-     * @param storeMode   selected vector store mode
-     * @param config      Elasticsearch configuration (required when mode is ELASTICSEARCH)
+     * @param config selected mode and the settings of its backend
      */
-    public static void init(String indexPath, VectorStoreMode storeMode, ElasticsearchConfig config) throws Exception {
+    public static void init(VectorStoreConfig config) throws Exception {
         close();
-        mode = storeMode == null ? VectorStoreMode.LUCENE : storeMode;
+        mode = config.getMode();
         switch (mode) {
-            case LUCENE -> initLucene(indexPath);
-            case MEMORY -> inMemoryStore = new InMemoryChromaStore();
-            case ELASTICSEARCH -> initElasticsearch(config);
+            case LUCENE -> initLucene(config.getLucenePath(), config.getLuceneWrite());
+            case MEMORY -> initMemory(config.getPersistence(), config.getQuantization());
+            case HNSW -> inMemoryStore = new HnswChromaStore(config.getHnsw());
+            case ELASTICSEARCH -> initElasticsearch(config.getElasticsearch());
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
         }
     }
 
-    private static void initLucene(String indexPath) throws IOException {
+    private static void initLucene(String indexPath, LuceneWriteConfig writeConfig) throws IOException {
         synchronized (LUCENE_LOCK) {
-            directory = FSDirectory.open(Paths.get(indexPath));
-            IndexWriterConfig config = new IndexWriterConfig();
-            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-            writer = new IndexWriter(directory, config);
-            searcherManager = new SearcherManager(writer, new SearcherFactory());
-            writer.commit();
-            searcherManager.maybeRefresh();
+            luceneIndex = LuceneVectorIndex.open(indexPath, writeConfig);
+        }
+    }
+
+    private static void initMemory(ChromaPersistenceConfig persistConfig, QuantizationConfig quantization)
+            throws IOException {
+        if (persistConfig != null && persistConfig.isEnabled()) {
+            inMemoryStore = DurableChromaStore.open(persistConfig, quantization);
+        } else {
+            inMemoryStore = new InMemoryChromaStore(quantization);
         }
     }
 
@@ -121,25 +127,25 @@ public final class ReidVectorStoreUtil {
                 config.getUsername(),
                 config.getPassword(),
                 config.getApiKey());
+        esWriter = new ElasticsearchBulkWriter(esClient, config.getIndex(), config.getWriteConfig(), "reid-es-bulk");
         esIndexReady = false;
     }
 
     public static void close() throws Exception {
         synchronized (LUCENE_LOCK) {
-            if (searcherManager != null) {
-                searcherManager.close();
-                searcherManager = null;
-            }
-            if (writer != null) {
-                writer.close();
-                writer = null;
-            }
-            if (directory != null) {
-                directory.close();
-                directory = null;
+            if (luceneIndex != null) {
+                luceneIndex.close();
+                luceneIndex = null;
             }
         }
-        inMemoryStore = null;
+        if (inMemoryStore != null) {
+            inMemoryStore.close();
+            inMemoryStore = null;
+        }
+        if (esWriter != null) {
+            esWriter.close();
+            esWriter = null;
+        }
         if (esClient != null) {
             esClient.close();
             esClient = null;
@@ -148,30 +154,90 @@ public final class ReidVectorStoreUtil {
         esIndexReady = false;
     }
 
-    public static void add(String imgUrl, String cameraId, String humanId, Feature feature) {
+    /**
+     * @return Lucene write generation for {@link #awaitVisible(long)}; 0 for the other modes, whose writes are
+     * visible on return (Elasticsearch with {@code es.refresh.mode=interval}: within {@code es.refresh.interval})
+     */
+    public static long add(String imgUrl, String cameraId, String humanId, Feature feature) {
         Objects.requireNonNull(feature, "feature");
         switch (mode) {
-            case LUCENE -> addToLucene(imgUrl, cameraId, humanId, feature);
-            case MEMORY -> addToMemory(imgUrl, cameraId, humanId, feature);
+            case LUCENE -> {
+                return addToLucene(imgUrl, cameraId, humanId, feature);
+            }
+            case MEMORY, HNSW -> addToMemory(imgUrl, cameraId, humanId, feature);
             case ELASTICSEARCH -> addToElasticsearch(imgUrl, cameraId, humanId, feature);
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
         }
+        return 0L;
+    }
+
+    /**
+     * Writes several features with one store call: a single translog or write-ahead log fsync for Lucene and the
+     * persistent in-memory store, queued together on the shared {@code _bulk} writer for Elasticsearch.
+     *
+     * @return as {@link #add}
+     */
+    public static long addAll(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return 0L;
+        }
+        switch (mode) {
+            case LUCENE -> {
+                float[][] embeds = new float[entries.size()][];
+                for (int i = 0; i < embeds.length; i++) {
+                    embeds[i] = entries.get(i).feature().getEmbeds();
+                }
+                float[][] projected = projectAllForLucene(embeds);
+                List<Document> docs = new ArrayList<>(entries.size());
+                for (int i = 0; i < projected.length; i++) {
+                    Entry entry = entries.get(i);
+                    docs.add(luceneDocument(entry.imgUrl(), entry.cameraId(), entry.humanId(), entry.feature(),
+                            projected[i]));
+                }
+                try {
+                    return requireLucene().addAll(docs);
+                } catch (IOException e) {
+                    throw new RuntimeException("Lucene write failed", e);
+                }
+            }
+            case MEMORY, HNSW -> {
+                List<EmbeddingRecord> records = new ArrayList<>(entries.size());
+                for (Entry entry : entries) {
+                    records.add(memoryRecord(entry.imgUrl(), entry.cameraId(), entry.humanId(), entry.feature()));
+                }
+                requireMemory().upsertAll(records);
+            }
+            case ELASTICSEARCH -> addAllToElasticsearch(entries);
+            default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
+        }
+        return 0L;
+    }
+
+    /**
+     * Blocks until a Lucene write is visible to {@link #searchByVector}; Lucene writes are otherwise searchable
+     * within {@code lucene.refresh.max-stale-ms}.
+     */
+    public static void awaitVisible(long generation) throws InterruptedIOException {
+        LuceneVectorIndex index = luceneIndex;
+        if (mode == VectorStoreMode.LUCENE && index != null && generation > 0) {
+            try {
+                index.awaitVisible(generation);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a Lucene write to become visible");
+            }
+        }
     }
 
     public static void delete(String id) throws IOException {
         switch (mode) {
             case LUCENE -> {
-                synchronized (LUCENE_LOCK) {
-                    if (writer != null) {
-                        writer.deleteDocuments(new Term("image_id", id));
-                        writer.commit();
-                        if (searcherManager != null) {
-                            searcherManager.maybeRefresh();
-                        }
-                    }
+                LuceneVectorIndex index = luceneIndex;
+                if (index != null) {
+                    index.delete(new Term("image_id", id));
                 }
             }
-            case MEMORY -> {
+            case MEMORY, HNSW -> {
                 if (inMemoryStore != null) {
                     inMemoryStore.delete(id);
                 }
@@ -184,17 +250,12 @@ public final class ReidVectorStoreUtil {
     public static void deleteAll() throws IOException {
         switch (mode) {
             case LUCENE -> {
-                synchronized (LUCENE_LOCK) {
-                    if (writer != null) {
-                        writer.deleteAll();
-                        writer.commit();
-                        if (searcherManager != null) {
-                            searcherManager.maybeRefresh();
-                        }
-                    }
+                LuceneVectorIndex index = luceneIndex;
+                if (index != null) {
+                    index.deleteAll();
                 }
             }
-            case MEMORY -> {
+            case MEMORY, HNSW -> {
                 if (inMemoryStore != null) {
                     inMemoryStore.clear();
                 }
@@ -205,14 +266,35 @@ public final class ReidVectorStoreUtil {
     }
 
     public static List<Human> searchByVector(float[] vec, String cameraId, Integer topN, float confThreshold) {
+        return searchByVectors(new float[][]{vec}, cameraId, topN, confThreshold).get(0);
+    }
+
+    /**
+     * 多个特征一次检索：内存模式一遍扫描矩阵对所有查询打分，Lucene 模式在同一个 searcher 上并发执行，
+     * Elasticsearch 模式合并为一次 {@code _msearch}。
+     *
+     * @return 与 {@code vecs} 一一对应的命中列表
+     */
+    public static List<List<Human>> searchByVectors(float[][] vecs, String cameraId, Integer topN, float confThreshold) {
+        if (vecs.length == 0) {
+            return List.of();
+        }
         return switch (mode) {
-            case LUCENE -> searchWithLucene(projectForLucene(vec), cameraId, topN, confThreshold);
-            case MEMORY -> searchInMemory(vec, cameraId, topN, confThreshold);
-            case ELASTICSEARCH -> searchWithElasticsearch(vec, cameraId, topN, confThreshold);
+            case LUCENE -> searchWithLucene(projectAllForLucene(vecs), cameraId, topN, confThreshold);
+            case MEMORY, HNSW -> searchInMemory(vecs, cameraId, topN, confThreshold);
+            case ELASTICSEARCH -> searchWithElasticsearch(vecs, cameraId, topN, confThreshold);
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
         };
     }
 
+    private static List<List<Human>> emptyResults(int queries) {
+        List<List<Human>> results = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            results.add(List.of());
+        }
+        return results;
+    }
+
     private static float[] projectForLucene(float[] source) {
         if (source == null) {
             throw new IllegalArgumentException("Vector source must not be null");
@@ -226,9 +308,47 @@ public final class ReidVectorStoreUtil {
         throw new IllegalArgumentException("Unsupported vector length: " + source.length);
     }
 
-    private static void addToLucene(String imgUrl, String cameraId, String humanId, Feature feature) {
+    /**
+     * 批量版 {@link #projectForLucene}，需要降维的向量合并为一次矩阵乘，投影矩阵只按批读一遍
+     */
+    private static float[][] projectAllForLucene(float[][] sources) {
+        float[][] projected = new float[sources.length][];
+        int[] pending = new int[sources.length];
+        int pendingCount = 0;
+        for (int i = 0; i < sources.length; i++) {
+            float[] source = sources[i];
+            if (source != null && source.length > 1024) {
+                pending[pendingCount++] = i;
+            } else {
+                projected[i] = projectForLucene(source);
+            }
+        }
+        if (pendingCount > 0) {
+            float[][] inputs = new float[pendingCount][];
+            for (int k = 0; k < pendingCount; k++) {
+                inputs[k] = sources[pending[k]];
+            }
+            float[][] outputs = RandomProjectionUtils.transform(inputs);
+            for (int k = 0; k < pendingCount; k++) {
+                projected[pending[k]] = VectorUtil.normalizeVector(outputs[k]);
+            }
+        }
+        return projected;
+    }
+
+    private static long addToLucene(String imgUrl, String cameraId, String humanId, Feature feature) {
+        Document doc = luceneDocument(imgUrl, cameraId, humanId, feature, projectForLucene(feature.getEmbeds()));
+        try {
+            return requireLucene().add(doc);
+        } catch (IOException e) {
+            throw new RuntimeException("Lucene write failed", e);
+        }
+    }
+
+    private static Document luceneDocument(String imgUrl, String cameraId, String humanId, Feature feature,
+                                           float[] projected) {
         Document doc = new Document();
-        doc.add(new KnnFloatVectorField(VECTOR_FIELD, projectForLucene(feature.getEmbeds())));
+        doc.add(new KnnFloatVectorField(VECTOR_FIELD, projected));
         doc.add(new StringField("image_id", feature.getUuid(), Field.Store.YES));
         if (imgUrl != null) {
             doc.add(new StoredField("img_url", imgUrl));
@@ -241,27 +361,22 @@ public final class ReidVectorStoreUtil {
         long now = System.currentTimeMillis();
         doc.add(new LongPoint("timestamp", now));
         doc.add(new StoredField("timestamp", now));
+        return doc;
+    }
 
-        try {
-            synchronized (LUCENE_LOCK) {
-                if (writer == null) {
-                    throw new IllegalStateException("Lucene index writer is not initialised.");
-                }
-                writer.addDocument(doc);
-                writer.commit();
-                if (searcherManager != null) {
-                    searcherManager.maybeRefresh();
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Lucene write failed", e);
+    private static LuceneVectorIndex requireLucene() {
+        LuceneVectorIndex index = luceneIndex;
+        if (index == null) {
+            throw new IllegalStateException("Lucene index writer is not initialised.");
         }
+        return index;
     }
 
     private static void addToMemory(String imgUrl, String cameraId, String humanId, Feature feature) {
-        if (inMemoryStore == null) {
-            throw new IllegalStateException("In-memory vector store is not initialised");
-        }
+        requireMemory().upsert(memoryRecord(imgUrl, cameraId, humanId, feature));
+    }
+
+    private static EmbeddingRecord memoryRecord(String imgUrl, String cameraId, String humanId, Feature feature) {
         Map<String, String> metadata = new HashMap<>();
         if (cameraId != null) {
             metadata.put("camera_id", cameraId);
@@ -275,48 +390,66 @@ public final class ReidVectorStoreUtil {
             payload.put("img_url", imgUrl);
         }
 
-        EmbeddingRecord record = new EmbeddingRecord(
+        return new EmbeddingRecord(
                 feature.getUuid(),
                 VectorUtil.normalizeVector(feature.getEmbeds()),
                 metadata,
                 payload,
                 System.currentTimeMillis());
-        inMemoryStore.upsert(record);
+    }
+
+    private static ChromaStore requireMemory() {
+        ChromaStore store = inMemoryStore;
+        if (store == null) {
+            throw new IllegalStateException("In-memory vector store is not initialised");
+        }
+        return store;
     }
 
     private static void addToElasticsearch(String imgUrl, String cameraId, String humanId, Feature feature) {
         try {
             ensureEsReady(feature.getEmbeds().length);
-            String resolvedHumanId = humanId != null ? humanId : feature.getUuid();
-            Map<String, Object> document = new HashMap<>();
-            document.put("image_id", feature.getUuid());
-            document.put("human_id", resolvedHumanId);
-            if (cameraId != null) {
-                document.put("camera_id", cameraId);
-            }
-            if (imgUrl != null) {
-                document.put("img_url", imgUrl);
-            }
-            document.put("timestamp", System.currentTimeMillis());
-            document.put(VECTOR_FIELD, floatArrayToList(VectorUtil.normalizeVector(feature.getEmbeds())));
-
-            IndexRequest request = new IndexRequest(esConfig.getIndex())
-                    .id(feature.getUuid())
-                    .source(document)
-                    .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
-            esClient.index(request, RequestOptions.DEFAULT);
+            esWriter.await(List.of(submitToElasticsearch(imgUrl, cameraId, humanId, feature)));
         } catch (IOException e) {
             throw new RuntimeException("Failed to persist vector to Elasticsearch", e);
         }
     }
 
+    private static void addAllToElasticsearch(List<Entry> entries) {
+        try {
+            ensureEsReady(entries.get(0).feature().getEmbeds().length);
+            List<CompletableFuture<Void>> writes = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                writes.add(submitToElasticsearch(entry.imgUrl(), entry.cameraId(), entry.humanId(), entry.feature()));
+            }
+            esWriter.await(writes);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to persist vectors to Elasticsearch", e);
+        }
+    }
+
+    private static CompletableFuture<Void> submitToElasticsearch(String imgUrl, String cameraId, String humanId,
+                                                                 Feature feature) throws IOException {
+        String resolvedHumanId = humanId != null ? humanId : feature.getUuid();
+        Map<String, Object> document = new HashMap<>();
+        document.put("image_id", feature.getUuid());
+        document.put("human_id", resolvedHumanId);
+        if (cameraId != null) {
+            document.put("camera_id", cameraId);
+        }
+        if (imgUrl != null) {
+            document.put("img_url", imgUrl);
+        }
+        document.put("timestamp", System.currentTimeMillis());
+        return esWriter.submit(feature.getUuid(), document, VECTOR_FIELD,
+                VectorUtil.normalizeVector(feature.getEmbeds()));
+    }
+
     private static void deleteFromElasticsearch(String id) throws IOException {
         if (esClient == null || esConfig == null) {
             return;
         }
-        DeleteRequest request = new DeleteRequest(esConfig.getIndex(), id)
-                .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
-        esClient.delete(request, RequestOptions.DEFAULT);
+        esWriter.await(List.of(esWriter.delete(id)));
     }
 
     private static void deleteAllFromElasticsearch() throws IOException {
@@ -325,34 +458,28 @@ public final class ReidVectorStoreUtil {
         }
         DeleteByQueryRequest request = new DeleteByQueryRequest(esConfig.getIndex());
         request.setQuery(QueryBuilders.matchAllQuery());
-        request.setRefresh(true);
+        request.setRefresh(esConfig.getWriteConfig().refreshAfterDeleteByQuery());
         esClient.deleteByQuery(request, RequestOptions.DEFAULT);
         esIndexReady = false;
     }
 
-    private static List<Human> searchWithLucene(float[] vec, String cameraId, Integer topN, float confThreshold) {
-        List<Human> results = new ArrayList<>();
+    private static List<List<Human>> searchWithLucene(float[][] vecs, String cameraId, Integer topN, float confThreshold) {
+        LuceneVectorIndex index = luceneIndex;
+        int limit = topN == null ? 10 : topN;
+        if (index == null || limit <= 0) {
+            return emptyResults(vecs.length);
+        }
+        Map<String, String> filter = new HashMap<>();
+        if (cameraId != null) {
+            filter.put("camera_id", cameraId);
+        }
+        List<Query> queries = new ArrayList<>(vecs.length);
+        for (float[] vec : vecs) {
+            queries.add(LuceneVectorIndex.knnQuery(VECTOR_FIELD, vec, limit, filter));
+        }
         try {
-            SearcherManager manager;
-            synchronized (LUCENE_LOCK) {
-                manager = searcherManager;
-            }
-            if (manager == null) {
-                return results;
-            }
-            int limit = topN == null ? 10 : topN;
-            if (limit <= 0) {
-                return results;
-            }
-            IndexSearcher searcher = manager.acquire();
-            try {
-                Query knnQuery = new KnnFloatVectorQuery(VECTOR_FIELD, vec, limit);
-                BooleanQuery.Builder builder = new BooleanQuery.Builder();
-                builder.add(knnQuery, BooleanClause.Occur.MUST);
-                if (cameraId != null) {
-                    builder.add(new TermQuery(new Term("camera_id", cameraId)), BooleanClause.Occur.FILTER);
-                }
-                TopDocs topDocs = searcher.search(builder.build(), limit);
+            return index.searchBatch(queries, limit, (searcher, topDocs) -> {
+                List<Human> results = new ArrayList<>();
                 for (ScoreDoc sd : topDocs.scoreDocs) {
                     if (sd.score < confThreshold) {
                         continue;
@@ -368,102 +495,120 @@ public final class ReidVectorStoreUtil {
                     );
                     results.add(hit);
                 }
-            } finally {
-                manager.release(searcher);
-            }
+                return results;
+            });
         } catch (IOException e) {
             throw new RuntimeException("Lucene search failed", e);
         }
-        return results;
     }
 
-    private static List<Human> searchInMemory(float[] vec, String cameraId, Integer topN, float confThreshold) {
+    private static List<List<Human>> searchInMemory(float[][] vecs, String cameraId, Integer topN, float confThreshold) {
         if (inMemoryStore == null) {
-            return List.of();
+            return emptyResults(vecs.length);
         }
         Map<String, String> filter = new HashMap<>();
         if (cameraId != null) {
             filter.put("camera_id", cameraId);
         }
-        List<SearchResult> hits = inMemoryStore.similaritySearch(
-                VectorUtil.normalizeVector(vec),
+        float[][] normalized = new float[vecs.length][];
+        for (int i = 0; i < vecs.length; i++) {
+            normalized[i] = VectorUtil.normalizeVector(vecs[i]);
+        }
+        List<List<SearchResult>> batch = inMemoryStore.similaritySearchBatch(
+                normalized,
                 topN == null ? 10 : topN,
                 filter,
                 confThreshold);
-        List<Human> humans = new ArrayList<>(hits.size());
-        for (SearchResult hit : hits) {
-            EmbeddingRecord record = hit.getRecord();
-            String humanId = record.getMetadata().getOrDefault("human_id", record.getId());
-            String imageId = record.getMetadata().getOrDefault("image_id", record.getId());
-            Object imgUrlObj = record.getPayload().get("img_url");
-            String imgUrl = imgUrlObj instanceof String ? (String) imgUrlObj : null;
-            String cameraValue = record.getMetadata().get("camera_id");
-            humans.add(new Human(
-                    humanId,
-                    imageId,
-                    imgUrl,
-                    (float) hit.getScore(),
-                    cameraValue,
-                    "exist"));
-        }
-        return humans;
-    }
-
-    private static List<Human> searchWithElasticsearch(float[] vec, String cameraId, Integer topN, float confThreshold) {
-        if (esClient == null || esConfig == null) {
-            return List.of();
+        List<List<Human>> all = new ArrayList<>(batch.size());
+        for (List<SearchResult> hits : batch) {
+            List<Human> humans = new ArrayList<>(hits.size());
+            for (SearchResult hit : hits) {
+                EmbeddingRecord record = hit.getRecord();
+                String humanId = record.getMetadata().getOrDefault("human_id", record.getId());
+                String imageId = record.getMetadata().getOrDefault("image_id", record.getId());
+                Object imgUrlObj = record.getPayload().get("img_url");
+                String imgUrl = imgUrlObj instanceof String ? (String) imgUrlObj : null;
+                String cameraValue = record.getMetadata().get("camera_id");
+                humans.add(new Human(
+                        humanId,
+                        imageId,
+                        imgUrl,
+                        (float) hit.getScore(),
+                        cameraValue,
+                        "exist"));
+            }
+            all.add(humans);
+        }
+        return all;
+    }
+
+    private static List<List<Human>> searchWithElasticsearch(float[][] vecs, String cameraId, Integer topN, float confThreshold) {
+        int limit = topN == null ? 10 : topN;
+        if (esClient == null || esConfig == null || limit <= 0) {
+            return emptyResults(vecs.length);
         }
         try {
-            ensureEsReady(vec.length);
-            int limit = topN == null ? 10 : topN;
-            if (limit <= 0) {
-                return List.of();
-            }
-            SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
-            sourceBuilder.size(limit);
-
-            Map<String, Object> params = new HashMap<>();
-            params.put("query_vector", floatArrayToList(VectorUtil.normalizeVector(vec)));
-            Script script = new Script(ScriptType.INLINE, "painless",
-                    "double cosine = cosineSimilarity(params.query_vector, '" + VECTOR_FIELD + "'); return (cosine + 1.0) / 2.0;",
-                    params);
-            QueryBuilder baseQuery;
-            if (cameraId != null) {
-                BoolQueryBuilder bool = QueryBuilders.boolQuery().filter(QueryBuilders.termQuery("camera_id", cameraId));
-                baseQuery = bool.hasClauses() ? bool : QueryBuilders.matchAllQuery();
-            } else {
-                baseQuery = QueryBuilders.matchAllQuery();
-            }
-            ScriptScoreFunctionBuilder scriptFunction = new ScriptScoreFunctionBuilder(script);
-            FunctionScoreQueryBuilder query = QueryBuilders.functionScoreQuery(baseQuery, scriptFunction);
-            if (confThreshold > 0) {
-                sourceBuilder.minScore(confThreshold);
+            ensureEsReady(vecs[0].length);
+            MultiSearchRequest multiSearch = new MultiSearchRequest();
+            for (float[] vec : vecs) {
+                multiSearch.add(esSearchRequest(vec, cameraId, limit, confThreshold));
             }
-            sourceBuilder.query(query);
-
-            SearchRequest request = new SearchRequest(esConfig.getIndex());
-            request.source(sourceBuilder);
-            SearchResponse response = esClient.search(request, RequestOptions.DEFAULT);
-            List<Human> results = new ArrayList<>();
-            for (SearchHit hit : response.getHits().getHits()) {
-                float score = hit.getScore();
-                if (score < confThreshold) {
-                    continue;
+            MultiSearchResponse responses = esClient.msearch(multiSearch, RequestOptions.DEFAULT);
+            List<List<Human>> all = new ArrayList<>(vecs.length);
+            for (MultiSearchResponse.Item item : responses.getResponses()) {
+                if (item.isFailure()) {
+                    throw new IOException("Elasticsearch search failed", item.getFailure());
                 }
-                Map<String, Object> source = hit.getSourceAsMap();
-                String humanId = (String) source.getOrDefault("human_id", hit.getId());
-                String imageId = (String) source.getOrDefault("image_id", hit.getId());
-                Object imgUrlObj = source.get("img_url");
-                String imgUrl = imgUrlObj instanceof String ? (String) imgUrlObj : null;
-                String camera = (String) source.get("camera_id");
-                results.add(new Human(humanId, imageId, imgUrl, score, camera, "exist"));
+                List<Human> results = new ArrayList<>();
+                for (SearchHit hit : item.getResponse().getHits().getHits()) {
+                    float score = hit.getScore();
+                    if (score < confThreshold) {
+                        continue;
+                    }
+                    Map<String, Object> source = hit.getSourceAsMap();
+                    String humanId = (String) source.getOrDefault("human_id", hit.getId());
+                    String imageId = (String) source.getOrDefault("image_id", hit.getId());
+                    Object imgUrlObj = source.get("img_url");
+                    String imgUrl = imgUrlObj instanceof String ? (String) imgUrlObj : null;
+                    String camera = (String) source.get("camera_id");
+                    results.add(new Human(humanId, imageId, imgUrl, score, camera, "exist"));
+                }
+                all.add(results);
             }
-            return results;
+            return all;
         } catch (IOException e) {
             throw new RuntimeException("Elasticsearch search failed", e);
         }
     }
 
+    private static SearchRequest esSearchRequest(float[] vec, String cameraId, int limit, float confThreshold) {
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        sourceBuilder.size(limit);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("query_vector", floatArrayToList(VectorUtil.normalizeVector(vec)));
+        Script script = new Script(ScriptType.INLINE, "painless",
+                "double cosine = cosineSimilarity(params.query_vector, '" + VECTOR_FIELD + "'); return (cosine + 1.0) / 2.0;",
+                params);
+        QueryBuilder baseQuery;
+        if (cameraId != null) {
+            BoolQueryBuilder bool = QueryBuilders.boolQuery().filter(QueryBuilders.termQuery("camera_id", cameraId));
+            baseQuery = bool.hasClauses() ? bool : QueryBuilders.matchAllQuery();
+        } else {
+            baseQuery = QueryBuilders.matchAllQuery();
+        }
+        ScriptScoreFunctionBuilder scriptFunction = new ScriptScoreFunctionBuilder(script);
+        FunctionScoreQueryBuilder query = QueryBuilders.functionScoreQuery(baseQuery, scriptFunction);
+        if (confThreshold > 0) {
+            sourceBuilder.minScore(confThreshold);
+        }
+        sourceBuilder.query(query);
+
+        SearchRequest request = new SearchRequest(esConfig.getIndex());
+        request.source(sourceBuilder);
+        return request;
+    }
+
     private static void ensureEsReady(int dims) throws IOException {
         if (esClient == null || esConfig == null) {
             throw new IllegalStateException("Elasticsearch is not initialised");
@@ -495,6 +640,10 @@ public final class ReidVectorStoreUtil {
 
                 Map<String, Object> mappings = Map.of("properties", properties);
                 create.mapping(mappings);
+                Map<String, Object> settings = esConfig.getWriteConfig().indexSettings();
+                if (!settings.isEmpty()) {
+                    create.settings(settings);
+                }
                 esClient.indices().create(create, RequestOptions.DEFAULT);
             }
             esIndexReady = true;
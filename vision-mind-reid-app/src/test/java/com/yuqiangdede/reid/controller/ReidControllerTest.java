@@ -11,6 +11,9 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +23,7 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -129,6 +133,20 @@ class ReidControllerTest {
                 .andExpect(jsonPath("$.code").value("0"));
     }
 
+    @Test
+    void bulkStore_reportsFailureBeforeAnyOutput() throws Exception {
+        when(reidService.bulkStore(any(InputStream.class), any(OutputStream.class)))
+                .thenThrow(new IOException("stream closed"));
+
+        mockMvc.perform(post("/api/v1/reid/bulk")
+                        .contentType("application/x-ndjson")
+                        .content("{\"imgUrl\":\"http://example.com/a.jpg\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(jsonPath("$.code").value("-1"))
+                .andExpect(jsonPath("$.msg").value("stream closed"));
+    }
+
     private String writeJson(Object value) throws Exception {
         return objectMapper.writeValueAsString(value);
     }
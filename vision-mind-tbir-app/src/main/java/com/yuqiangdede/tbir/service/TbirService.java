@@ -2,8 +2,8 @@ package com.yuqiangdede.tbir.service;
 
 import ai.onnxruntime.OrtException;
 import com.yuqiangdede.common.dto.output.Box;
+import com.yuqiangdede.common.util.ImageContext;
 import com.yuqiangdede.common.util.ImageUtil;
-import com.yuqiangdede.common.vector.ElasticsearchConfig;
 import com.yuqiangdede.tbir.config.Constant;
 import com.yuqiangdede.tbir.dto.AugmentedImage;
 import com.yuqiangdede.tbir.dto.ImageEmbedding;
@@ -38,13 +38,7 @@ public class TbirService {
 
     static {
         try {
-            ElasticsearchConfig esConfig = new ElasticsearchConfig(
-                    Constant.ES_URIS,
-                    Constant.ES_USERNAME,
-                    Constant.ES_PASSWORD,
-                    Constant.ES_API_KEY,
-                    Constant.ES_TBIR_INDEX);
-            TbirVectorStoreUtil.init(Constant.LUCENE_PATH, Constant.VECTOR_STORE_MODE, esConfig);
+            TbirVectorStoreUtil.init(Constant.VECTOR_STORE_CONFIG);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -59,8 +53,14 @@ public class TbirService {
      * @return result containing the resolved image id
      */
     public ImageSaveResult saveImg(SaveImageRequest input) throws IOException, OrtException {
-        // Step 0: download the source image and decide which identifier to persist.
-        BufferedImage image = ImageUtil.urlToImage(input.getImgUrl());
+        // Step 0: download the source image once; YOLO, SAM and the crops below all share it.
+        try (ImageContext context = ImageContext.load(input.getImgUrl())) {
+            return saveDecoded(input, context);
+        }
+    }
+
+    private ImageSaveResult saveDecoded(SaveImageRequest input, ImageContext context) throws IOException, OrtException {
+        BufferedImage image = context.getImage();
         String imgId = input.getImgId() == null ? UUID.randomUUID().toString() : input.getImgId();
 
         long startTime = System.currentTimeMillis();
@@ -68,10 +68,10 @@ public class TbirService {
         if (OPEN_DETECT) {
             List<Box> detectedBoxes = new ArrayList<>();
             if (DETECT_TYPES.contains("yolo")) {
-                collectDetections(detectedBoxes, () -> imgAnalysisService.detectArea(input));
+                collectDetections(detectedBoxes, () -> imgAnalysisService.detectArea(input, context));
             }
             if (DETECT_TYPES.contains("sam")) {
-                collectDetections(detectedBoxes, () -> imgAnalysisService.sam(input));
+                collectDetections(detectedBoxes, () -> imgAnalysisService.sam(input, context));
             }
             for (Box box : detectedBoxes) {
                 // Only keep boxes that fall within the configured size limits.
@@ -105,10 +105,13 @@ public class TbirService {
      * Each embedding is stored with the logical image identifier and request metadata so that
      * subsequent searches can recover the original context.
      */
-    private void persistToLucene(String imgId, List<ImageEmbedding> vectors, SaveImageRequest input) {
+    private void persistToLucene(String imgId, List<ImageEmbedding> vectors, SaveImageRequest input) throws IOException {
+        long generation = 0L;
         for (ImageEmbedding emb : vectors) {
-            TbirVectorStoreUtil.add(imgId, emb, input);
+            generation = TbirVectorStoreUtil.add(imgId, emb, input);
         }
+        // Lucene publishes writes asynchronously; make the image searchable before saveImg returns.
+        TbirVectorStoreUtil.awaitVisible(generation);
     }
 
     /**
@@ -205,11 +208,10 @@ public class TbirService {
         List<float[]> vectors = clipEmbedder.embedTexts(expandedPrompts);
         log.info("searchByText embedTexts: Cost time:{} ms.", (System.currentTimeMillis() - startTime));
 
-        // Step 3: query the vector store for every embedding.
+        // Step 3: query the vector store with all embeddings in one batch.
         startTime = System.currentTimeMillis();
         List<LuceHit> allHits = new ArrayList<>();
-        for (float[] vec : vectors) {
-            List<LuceHit> hits = TbirVectorStoreUtil.searchByVector(vec, cameraId, groupId, topN);
+        for (List<LuceHit> hits : TbirVectorStoreUtil.searchByVectors(vectors.toArray(new float[0][]), cameraId, groupId, topN)) {
             allHits.addAll(hits);
         }
         log.info("searchByText searchByVector: Cost time:{} ms.", (System.currentTimeMillis() - startTime));
@@ -1,7 +1,7 @@
 package com.yuqiangdede.tbir.util;
 
 import java.io.IOException;
-import java.nio.file.Paths;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -11,7 +11,6 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -19,41 +18,44 @@ import org.apache.lucene.document.KnnFloatVectorField;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.StoredFields;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.KnnFloatVectorQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.FSDirectory;
 
+import com.yuqiangdede.common.chroma.ChromaPersistenceConfig;
 import com.yuqiangdede.common.chroma.ChromaStore;
+import com.yuqiangdede.common.chroma.DurableChromaStore;
 import com.yuqiangdede.common.chroma.EmbeddingRecord;
+import com.yuqiangdede.common.chroma.HnswChromaStore;
 import com.yuqiangdede.common.chroma.InMemoryChromaStore;
+import com.yuqiangdede.common.chroma.QuantizationConfig;
 import com.yuqiangdede.common.chroma.SearchResult;
 import com.yuqiangdede.common.dto.output.Box;
 import com.yuqiangdede.common.util.JsonUtils;
 import com.yuqiangdede.common.util.VectorUtil;
+import com.yuqiangdede.common.vector.ElasticsearchBulkWriter;
 import com.yuqiangdede.common.vector.ElasticsearchClientFactory;
 import com.yuqiangdede.common.vector.ElasticsearchConfig;
+import com.yuqiangdede.common.vector.LuceneVectorIndex;
+import com.yuqiangdede.common.vector.LuceneWriteConfig;
+import com.yuqiangdede.common.vector.VectorStoreConfig;
 import com.yuqiangdede.common.vector.VectorStoreMode;
 import static com.yuqiangdede.tbir.config.Constant.OPEN_DETECT;
 import com.yuqiangdede.tbir.dto.ImageEmbedding;
 import com.yuqiangdede.tbir.dto.LuceHit;
 import com.yuqiangdede.tbir.dto.input.SaveImageRequest;
 
-import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.CreateIndexRequest;
@@ -78,43 +80,47 @@ public final class TbirVectorStoreUtil {
     private static final Object ES_LOCK = new Object();
 
     private static volatile VectorStoreMode mode = VectorStoreMode.MEMORY;
-    private static SearcherManager searcherManager;
-    private static IndexWriter writer;
-    private static FSDirectory directory;
+    private static volatile LuceneVectorIndex luceneIndex;
     private static ChromaStore inMemoryStore;
-    private static final Map<String, Set<String>> memoryIndex = new ConcurrentHashMap<>();
 
     @SuppressWarnings({"deprecation"})
     private static RestHighLevelClient esClient;
+    private static ElasticsearchBulkWriter esWriter;
     private static ElasticsearchConfig esConfig;
     private static boolean esIndexReady;
 
     private TbirVectorStoreUtil() {
     }
 
-    public static void init(String indexPath, VectorStoreMode storeMode, ElasticsearchConfig config) throws IOException {
+    /**
+     * Initialise storage layer, closing the one opened before.
+     *
+     * @param config selected mode and the settings of its backend
+     */
+    public static void init(VectorStoreConfig config) throws IOException {
         close();
-        mode = storeMode == null ? VectorStoreMode.LUCENE : storeMode;
+        mode = config.getMode();
         switch (mode) {
-            case LUCENE -> initLucene(indexPath);
-            case MEMORY -> {
-                inMemoryStore = new InMemoryChromaStore();
-                memoryIndex.clear();
-            }
-            case ELASTICSEARCH -> initElasticsearch(config);
+            case LUCENE -> initLucene(config.getLucenePath(), config.getLuceneWrite());
+            case MEMORY -> initMemory(config.getPersistence(), config.getQuantization());
+            case HNSW -> inMemoryStore = new HnswChromaStore(config.getHnsw());
+            case ELASTICSEARCH -> initElasticsearch(config.getElasticsearch());
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
         }
     }
 
-    private static void initLucene(String indexPath) throws IOException {
+    private static void initLucene(String indexPath, LuceneWriteConfig writeConfig) throws IOException {
         synchronized (LUCENE_LOCK) {
-            directory = FSDirectory.open(Paths.get(indexPath));
-            IndexWriterConfig config = new IndexWriterConfig();
-            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-            writer = new IndexWriter(directory, config);
-            searcherManager = new SearcherManager(writer, new SearcherFactory());
-            writer.commit();
-            searcherManager.maybeRefresh();
+            luceneIndex = LuceneVectorIndex.open(indexPath, writeConfig);
+        }
+    }
+
+    private static void initMemory(ChromaPersistenceConfig persistConfig, QuantizationConfig quantization)
+            throws IOException {
+        if (persistConfig != null && persistConfig.isEnabled()) {
+            inMemoryStore = DurableChromaStore.open(persistConfig, quantization);
+        } else {
+            inMemoryStore = new InMemoryChromaStore(quantization);
         }
     }
 
@@ -128,26 +134,25 @@ public final class TbirVectorStoreUtil {
                 config.getUsername(),
                 config.getPassword(),
                 config.getApiKey());
+        esWriter = new ElasticsearchBulkWriter(esClient, config.getIndex(), config.getWriteConfig(), "tbir-es-bulk");
         esIndexReady = false;
     }
 
     public static void close() throws IOException {
         synchronized (LUCENE_LOCK) {
-            if (searcherManager != null) {
-                searcherManager.close();
-                searcherManager = null;
-            }
-            if (writer != null) {
-                writer.close();
-                writer = null;
-            }
-            if (directory != null) {
-                directory.close();
-                directory = null;
+            if (luceneIndex != null) {
+                luceneIndex.close();
+                luceneIndex = null;
             }
         }
-        inMemoryStore = null;
-        memoryIndex.clear();
+        if (inMemoryStore != null) {
+            inMemoryStore.close();
+            inMemoryStore = null;
+        }
+        if (esWriter != null) {
+            esWriter.close();
+            esWriter = null;
+        }
         if (esClient != null) {
             esClient.close();
             esClient = null;
@@ -156,38 +161,53 @@ public final class TbirVectorStoreUtil {
         esIndexReady = false;
     }
 
-    public static void add(String imageId, ImageEmbedding emb, SaveImageRequest input) {
+    /**
+     * @return Lucene write generation for {@link #awaitVisible(long)}; 0 for the other modes, whose writes are
+     * visible on return (Elasticsearch with {@code es.refresh.mode=interval}: within {@code es.refresh.interval})
+     */
+    public static long add(String imageId, ImageEmbedding emb, SaveImageRequest input) {
         Objects.requireNonNull(imageId, "imageId");
         Objects.requireNonNull(emb, "emb");
         Objects.requireNonNull(input, "input");
         switch (mode) {
-            case LUCENE -> addToLucene(imageId, emb, input);
-            case MEMORY -> addToMemory(imageId, emb, input);
+            case LUCENE -> {
+                return addToLucene(imageId, emb, input);
+            }
+            case MEMORY, HNSW -> addToMemory(imageId, emb, input);
             case ELASTICSEARCH -> addToElasticsearch(imageId, emb, input);
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
         }
+        return 0L;
+    }
+
+    /**
+     * Blocks until a Lucene write is visible to searches; Lucene writes are otherwise searchable within
+     * {@code lucene.refresh.max-stale-ms}.
+     */
+    public static void awaitVisible(long generation) throws InterruptedIOException {
+        LuceneVectorIndex index = luceneIndex;
+        if (mode == VectorStoreMode.LUCENE && index != null && generation > 0) {
+            try {
+                index.awaitVisible(generation);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a Lucene write to become visible");
+            }
+        }
     }
 
     public static void delete(String id) throws IOException {
         switch (mode) {
             case LUCENE -> {
-                synchronized (LUCENE_LOCK) {
-                    if (writer != null) {
-                        writer.deleteDocuments(new Term("image_id", id));
-                        writer.commit();
-                        if (searcherManager != null) {
-                            searcherManager.maybeRefresh();
-                        }
-                    }
+                LuceneVectorIndex index = luceneIndex;
+                if (index != null) {
+                    index.delete(new Term("image_id", id));
                 }
             }
-            case MEMORY -> {
+            case MEMORY, HNSW -> {
                 if (inMemoryStore != null) {
-                    Set<String> docIds = memoryIndex.remove(id);
-                    if (docIds != null) {
-                        for (String docId : docIds) {
-                            inMemoryStore.delete(docId);
-                        }
+                    for (EmbeddingRecord record : inMemoryStore.find(Map.of("image_id", id))) {
+                        inMemoryStore.delete(record.getId());
                     }
                 }
             }
@@ -199,21 +219,15 @@ public final class TbirVectorStoreUtil {
     public static void deleteAll() throws IOException {
         switch (mode) {
             case LUCENE -> {
-                synchronized (LUCENE_LOCK) {
-                    if (writer != null) {
-                        writer.deleteAll();
-                        writer.commit();
-                        if (searcherManager != null) {
-                            searcherManager.maybeRefresh();
-                        }
-                    }
+                LuceneVectorIndex index = luceneIndex;
+                if (index != null) {
+                    index.deleteAll();
                 }
             }
-            case MEMORY -> {
+            case MEMORY, HNSW -> {
                 if (inMemoryStore != null) {
                     inMemoryStore.clear();
                 }
-                memoryIndex.clear();
             }
             case ELASTICSEARCH -> deleteAllFromElasticsearch();
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
@@ -221,24 +235,59 @@ public final class TbirVectorStoreUtil {
     }
 
     public static List<LuceHit> searchByVector(float[] vec, String cameraId, String groupId, Integer topN) {
+        return searchByVectors(new float[][]{vec}, cameraId, groupId, topN).get(0);
+    }
+
+    /**
+     * 多个向量一次检索：内存模式一遍扫描矩阵对所有查询打分，Lucene 模式在同一个 searcher 上并发执行，
+     * Elasticsearch 模式合并为一次 {@code _msearch}。
+     *
+     * @return 与 {@code vecs} 一一对应的命中列表
+     */
+    public static List<List<LuceHit>> searchByVectors(float[][] vecs, String cameraId, String groupId, Integer topN) {
+        if (vecs.length == 0) {
+            return List.of();
+        }
         return switch (mode) {
-            case LUCENE -> searchWithLucene(vec, cameraId, groupId, topN);
-            case MEMORY -> searchInMemory(vec, cameraId, groupId, topN);
-            case ELASTICSEARCH -> searchWithElasticsearch(vec, cameraId, groupId, topN);
+            case LUCENE -> searchWithLucene(vecs, cameraId, groupId, topN);
+            case MEMORY, HNSW -> searchInMemory(vecs, cameraId, groupId, topN);
+            case ELASTICSEARCH -> searchWithElasticsearch(vecs, cameraId, groupId, topN);
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
         };
     }
 
+    private static List<List<LuceHit>> emptyResults(int queries) {
+        List<List<LuceHit>> results = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            results.add(List.of());
+        }
+        return results;
+    }
+
+    private static Map<String, String> searchFilter(String cameraId, String groupId) {
+        Map<String, String> filter = new HashMap<>();
+        if (!OPEN_DETECT) {
+            filter.put("main", "1");
+        }
+        if (cameraId != null) {
+            filter.put("camera_id", cameraId);
+        }
+        if (groupId != null) {
+            filter.put("group_id", groupId);
+        }
+        return filter;
+    }
+
     public static List<LuceHit> searchById(String imgId) {
         return switch (mode) {
             case LUCENE -> searchByIdWithLucene(imgId);
-            case MEMORY -> searchByIdInMemory(imgId);
+            case MEMORY, HNSW -> searchByIdInMemory(imgId);
             case ELASTICSEARCH -> searchByIdWithElasticsearch(imgId);
             default -> throw new IllegalStateException("Unsupported vector store mode: " + mode);
         };
     }
 
-    private static void addToLucene(String imageId, ImageEmbedding emb, SaveImageRequest input) {
+    private static long addToLucene(String imageId, ImageEmbedding emb, SaveImageRequest input) {
         Document doc = new Document();
         doc.add(new KnnFloatVectorField(VECTOR_FIELD, emb.getVector()));
         doc.add(new StringField("image_id", imageId, Field.Store.YES));
@@ -266,12 +315,12 @@ public final class TbirVectorStoreUtil {
         long now = System.currentTimeMillis();
         doc.add(new LongPoint("timestamp", now));
         doc.add(new StoredField("timestamp", now));
+        LuceneVectorIndex index = luceneIndex;
+        if (index == null) {
+            throw new IllegalStateException("Lucene index writer is not initialised.");
+        }
         try {
-            synchronized (LUCENE_LOCK) {
-                writer.addDocument(doc);
-                writer.commit();
-                searcherManager.maybeRefresh();
-            }
+            return index.add(doc);
         } catch (IOException e) {
             throw new RuntimeException("Lucene write failed", e);
         }
@@ -293,7 +342,11 @@ public final class TbirVectorStoreUtil {
         }
         Map<String, Object> payload = new HashMap<>();
         payload.put("img_url", input.getImgUrl());
-        payload.put("box", emb.getSourceBox());
+        Box sourceBox = emb.getSourceBox();
+        if (sourceBox != null) {
+            // 以基本类型保存，内存库持久化时可直接编码
+            payload.put("box", new float[]{sourceBox.getX1(), sourceBox.getY1(), sourceBox.getX2(), sourceBox.getY2()});
+        }
         payload.put("meta", input.getMeta());
         EmbeddingRecord record = new EmbeddingRecord(
                 docId,
@@ -302,8 +355,6 @@ public final class TbirVectorStoreUtil {
                 payload,
                 System.currentTimeMillis());
         inMemoryStore.upsert(record);
-        memoryIndex.computeIfAbsent(imageId, e -> Collections.newSetFromMap(new ConcurrentHashMap<>()))
-                .add(docId);
     }
 
     private static void addToElasticsearch(String imageId, ImageEmbedding emb, SaveImageRequest input) {
@@ -336,151 +387,128 @@ public final class TbirVectorStoreUtil {
                 document.put("meta_json", JsonUtils.map2Json(input.getMeta()));
             }
             document.put("timestamp", System.currentTimeMillis());
-            document.put(VECTOR_FIELD, floatArrayToList(VectorUtil.normalizeVector(emb.getVector())));
-
-            IndexRequest request = new IndexRequest(esConfig.getIndex())
-                    .id(docId)
-                    .source(document)
-                    .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
-            esClient.index(request, RequestOptions.DEFAULT);
+            esWriter.await(List.of(esWriter.submit(docId, document, VECTOR_FIELD,
+                    VectorUtil.normalizeVector(emb.getVector()))));
         } catch (IOException e) {
             throw new RuntimeException("Failed to persist vector to Elasticsearch", e);
         }
     }
 
-    private static List<LuceHit> searchWithLucene(float[] vec, String cameraId, String groupId, Integer topN) {
-        List<LuceHit> results = new ArrayList<>();
+    private static List<List<LuceHit>> searchWithLucene(float[][] vecs, String cameraId, String groupId, Integer topN) {
+        LuceneVectorIndex index = luceneIndex;
+        int limit = topN == null ? 10 : topN;
+        if (index == null || limit <= 0) {
+            return emptyResults(vecs.length);
+        }
+        Map<String, String> filter = searchFilter(cameraId, groupId);
+        List<Query> queries = new ArrayList<>(vecs.length);
+        for (float[] vec : vecs) {
+            queries.add(LuceneVectorIndex.knnQuery(VECTOR_FIELD, vec, limit, filter));
+        }
+        Set<String> requiredFields = new HashSet<>();
+        Collections.addAll(requiredFields,
+                "main", "box_x1", "box_y1", "box_x2", "box_y2",
+                "image_id", "img_url", "camera_id", "group_id", "meta_json");
         try {
-            SearcherManager manager;
-            synchronized (LUCENE_LOCK) {
-                manager = searcherManager;
-            }
-            if (manager == null) {
-                return results;
-            }
-            int limit = topN == null ? 10 : topN;
-            if (limit <= 0) {
-                return results;
-            }
-            IndexSearcher searcher = manager.acquire();
-            try {
-                Query knnQuery = new KnnFloatVectorQuery(VECTOR_FIELD, vec, limit);
-                BooleanQuery.Builder builder = new BooleanQuery.Builder();
-                builder.add(knnQuery, BooleanClause.Occur.MUST);
-                if (!OPEN_DETECT) {
-                    builder.add(new TermQuery(new Term("main", "1")), BooleanClause.Occur.FILTER);
-                }
-                if (cameraId != null) {
-                    builder.add(new TermQuery(new Term("camera_id", cameraId)), BooleanClause.Occur.FILTER);
-                }
-                if (groupId != null) {
-                    builder.add(new TermQuery(new Term("group_id", groupId)), BooleanClause.Occur.FILTER);
-                }
-                TopDocs topDocs = searcher.search(builder.build(), limit);
+            return index.searchBatch(queries, limit, (searcher, topDocs) -> {
+                List<LuceHit> results = new ArrayList<>();
                 StoredFields storedFields = searcher.storedFields();
-                Set<String> requiredFields = new HashSet<>();
-                Collections.addAll(requiredFields,
-                        "main", "box_x1", "box_y1", "box_x2", "box_y2",
-                        "image_id", "img_url", "camera_id", "group_id", "meta_json");
                 for (ScoreDoc sd : topDocs.scoreDocs) {
                     Document doc = storedFields.document(sd.doc, requiredFields);
                     results.add(buildHitFromDocument(doc, sd.score));
                 }
-            } finally {
-                manager.release(searcher);
-            }
+                return results;
+            });
         } catch (IOException e) {
             throw new RuntimeException("Lucene search failed", e);
         }
-        return results;
     }
 
-    private static List<LuceHit> searchInMemory(float[] vec, String cameraId, String groupId, Integer topN) {
-        if (inMemoryStore == null) {
-            return List.of();
-        }
+    private static List<List<LuceHit>> searchInMemory(float[][] vecs, String cameraId, String groupId, Integer topN) {
         int limit = topN == null ? 10 : topN;
-        if (limit <= 0) {
-            return List.of();
-        }
-        Map<String, String> filter = new HashMap<>();
-        if (!OPEN_DETECT) {
-            filter.put("main", "1");
-        }
-        if (cameraId != null) {
-            filter.put("camera_id", cameraId);
+        if (inMemoryStore == null || limit <= 0) {
+            return emptyResults(vecs.length);
         }
-        if (groupId != null) {
-            filter.put("group_id", groupId);
+        float[][] normalized = new float[vecs.length][];
+        for (int i = 0; i < vecs.length; i++) {
+            normalized[i] = VectorUtil.normalizeVector(vecs[i]);
         }
-        List<SearchResult> hits = inMemoryStore.similaritySearch(
-                VectorUtil.normalizeVector(vec),
+        List<List<SearchResult>> batch = inMemoryStore.similaritySearchBatch(
+                normalized,
                 limit,
-                filter,
+                searchFilter(cameraId, groupId),
                 -Double.MAX_VALUE);
-        List<LuceHit> results = new ArrayList<>(hits.size());
-        for (SearchResult hit : hits) {
-            results.add(buildHitFromRecord(hit.getRecord(), (float) hit.getScore()));
+        List<List<LuceHit>> all = new ArrayList<>(batch.size());
+        for (List<SearchResult> hits : batch) {
+            List<LuceHit> results = new ArrayList<>(hits.size());
+            for (SearchResult hit : hits) {
+                results.add(buildHitFromRecord(hit.getRecord(), (float) hit.getScore()));
+            }
+            all.add(results);
         }
-        return results;
+        return all;
     }
 
-    private static List<LuceHit> searchWithElasticsearch(float[] vec, String cameraId, String groupId, Integer topN) {
-        if (esClient == null || esConfig == null) {
-            return List.of();
+    private static List<List<LuceHit>> searchWithElasticsearch(float[][] vecs, String cameraId, String groupId, Integer topN) {
+        int limit = topN == null ? 10 : topN;
+        if (esClient == null || esConfig == null || limit <= 0) {
+            return emptyResults(vecs.length);
         }
         try {
-            ensureEsReady(vec.length);
-            int limit = topN == null ? 10 : topN;
-            if (limit <= 0) {
-                return List.of();
+            ensureEsReady(vecs[0].length);
+            MultiSearchRequest multiSearch = new MultiSearchRequest();
+            for (float[] vec : vecs) {
+                multiSearch.add(esSearchRequest(vec, cameraId, groupId, limit));
             }
-            SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
-            sourceBuilder.size(limit);
-            Map<String, Object> params = new HashMap<>();
-            params.put("query_vector", floatArrayToList(VectorUtil.normalizeVector(vec)));
-            Script script = new Script(ScriptType.INLINE, "painless",
-                    "double cosine = cosineSimilarity(params.query_vector, '" + VECTOR_FIELD + "'); return (cosine + 1.0) / 2.0;",
-                    params);
-
-            BoolQueryBuilder filter = QueryBuilders.boolQuery();
-            if (!OPEN_DETECT) {
-                filter.filter(QueryBuilders.termQuery("main", "1"));
-            }
-            if (cameraId != null) {
-                filter.filter(QueryBuilders.termQuery("camera_id", cameraId));
-            }
-            if (groupId != null) {
-                filter.filter(QueryBuilders.termQuery("group_id", groupId));
-            }
-            QueryBuilder baseQuery = filter.hasClauses() ? filter : QueryBuilders.matchAllQuery();
-            ScriptScoreFunctionBuilder scriptFunction = new ScriptScoreFunctionBuilder(script);
-            FunctionScoreQueryBuilder query = QueryBuilders.functionScoreQuery(baseQuery, scriptFunction);
-            sourceBuilder.query(query);
-
-            SearchRequest request = new SearchRequest(esConfig.getIndex());
-            request.source(sourceBuilder);
-            SearchResponse response = esClient.search(request, RequestOptions.DEFAULT);
-            List<LuceHit> results = new ArrayList<>();
-            for (SearchHit hit : response.getHits().getHits()) {
-                results.add(buildHitFromSource(hit.getSourceAsMap(), hit.getScore()));
+            MultiSearchResponse responses = esClient.msearch(multiSearch, RequestOptions.DEFAULT);
+            List<List<LuceHit>> all = new ArrayList<>(vecs.length);
+            for (MultiSearchResponse.Item item : responses.getResponses()) {
+                if (item.isFailure()) {
+                    throw new IOException("Elasticsearch search failed", item.getFailure());
+                }
+                List<LuceHit> results = new ArrayList<>();
+                for (SearchHit hit : item.getResponse().getHits().getHits()) {
+                    results.add(buildHitFromSource(hit.getSourceAsMap(), hit.getScore()));
+                }
+                all.add(results);
             }
-            return results;
+            return all;
         } catch (IOException e) {
             throw new RuntimeException("Elasticsearch search failed", e);
         }
     }
 
+    private static SearchRequest esSearchRequest(float[] vec, String cameraId, String groupId, int limit) {
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        sourceBuilder.size(limit);
+        Map<String, Object> params = new HashMap<>();
+        params.put("query_vector", floatArrayToList(VectorUtil.normalizeVector(vec)));
+        Script script = new Script(ScriptType.INLINE, "painless",
+                "double cosine = cosineSimilarity(params.query_vector, '" + VECTOR_FIELD + "'); return (cosine + 1.0) / 2.0;",
+                params);
+
+        BoolQueryBuilder filter = QueryBuilders.boolQuery();
+        for (Map.Entry<String, String> term : searchFilter(cameraId, groupId).entrySet()) {
+            filter.filter(QueryBuilders.termQuery(term.getKey(), term.getValue()));
+        }
+        QueryBuilder baseQuery = filter.hasClauses() ? filter : QueryBuilders.matchAllQuery();
+        ScriptScoreFunctionBuilder scriptFunction = new ScriptScoreFunctionBuilder(script);
+        FunctionScoreQueryBuilder query = QueryBuilders.functionScoreQuery(baseQuery, scriptFunction);
+        sourceBuilder.query(query);
+
+        SearchRequest request = new SearchRequest(esConfig.getIndex());
+        request.source(sourceBuilder);
+        return request;
+    }
+
     private static List<LuceHit> searchByIdWithLucene(String imgId) {
         List<LuceHit> results = new ArrayList<>();
         try {
-            SearcherManager manager;
-            synchronized (LUCENE_LOCK) {
-                manager = searcherManager;
-            }
-            if (manager == null) {
+            LuceneVectorIndex index = luceneIndex;
+            if (index == null) {
                 return results;
             }
+            SearcherManager manager = index.searcherManager();
             IndexSearcher searcher = manager.acquire();
             try {
                 BooleanQuery.Builder builder = new BooleanQuery.Builder();
@@ -545,7 +573,7 @@ public final class TbirVectorStoreUtil {
         }
         DeleteByQueryRequest request = new DeleteByQueryRequest(esConfig.getIndex());
         request.setQuery(QueryBuilders.termQuery("image_id", imageId));
-        request.setRefresh(true);
+        request.setRefresh(esConfig.getWriteConfig().refreshAfterDeleteByQuery());
         esClient.deleteByQuery(request, RequestOptions.DEFAULT);
     }
 
@@ -555,7 +583,7 @@ public final class TbirVectorStoreUtil {
         }
         DeleteByQueryRequest request = new DeleteByQueryRequest(esConfig.getIndex());
         request.setQuery(QueryBuilders.matchAllQuery());
-        request.setRefresh(true);
+        request.setRefresh(esConfig.getWriteConfig().refreshAfterDeleteByQuery());
         esClient.deleteByQuery(request, RequestOptions.DEFAULT);
         esIndexReady = false;
     }
@@ -597,6 +625,10 @@ public final class TbirVectorStoreUtil {
 
                 Map<String, Object> mappings = Map.of("properties", properties);
                 create.mapping(mappings);
+                Map<String, Object> settings = esConfig.getWriteConfig().indexSettings();
+                if (!settings.isEmpty()) {
+                    create.settings(settings);
+                }
                 esClient.indices().create(create, RequestOptions.DEFAULT);
             }
             esIndexReady = true;
@@ -680,6 +712,8 @@ public final class TbirVectorStoreUtil {
         Object boxObj = payload.get("box");
         if (boxObj instanceof Box b) {
             box = b;
+        } else if (boxObj instanceof float[] corners && corners.length == 4) {
+            box = new Box(corners[0], corners[1], corners[2], corners[3], 0, "", 0);
         }
         Map<String, String> meta = Collections.emptyMap();
         Object metaObj = payload.get("meta");
@@ -1,6 +1,13 @@
 package com.yuqiangdede.tbir.config;
 
+import com.yuqiangdede.common.chroma.ChromaPersistenceConfig;
+import com.yuqiangdede.common.chroma.HnswConfig;
+import com.yuqiangdede.common.chroma.QuantizationConfig;
 import com.yuqiangdede.common.util.RuntimeEnvironment;
+import com.yuqiangdede.common.vector.ElasticsearchConfig;
+import com.yuqiangdede.common.vector.ElasticsearchWriteConfig;
+import com.yuqiangdede.common.vector.LuceneWriteConfig;
+import com.yuqiangdede.common.vector.VectorStoreConfig;
 import com.yuqiangdede.common.vector.VectorStoreMode;
 import lombok.extern.slf4j.Slf4j;
 
@@ -32,12 +39,22 @@ public class Constant {
 
     public static final String LUCENE_PATH;
     public static final VectorStoreMode VECTOR_STORE_MODE;
+    public static final LuceneWriteConfig LUCENE_WRITE_CONFIG;
+    public static final ChromaPersistenceConfig CHROMA_PERSISTENCE_CONFIG;
+    public static final HnswConfig HNSW_CONFIG;
+    public static final QuantizationConfig QUANTIZATION_CONFIG;
 
     public static final String ES_URIS;
     public static final String ES_USERNAME;
     public static final String ES_PASSWORD;
     public static final String ES_API_KEY;
     public static final String ES_TBIR_INDEX;
+    public static final ElasticsearchWriteConfig ES_WRITE_CONFIG;
+
+    /**
+     * 向量库的模式及各后端的配置，传给 VectorStoreUtil.init
+     */
+    public static final VectorStoreConfig VECTOR_STORE_CONFIG;
 
     public static final Boolean OPEN_DETECT;
 
@@ -84,11 +101,25 @@ public class Constant {
 
             LUCENE_PATH = resolvePath(envPath, properties.getProperty("lucene.path"));
             VECTOR_STORE_MODE = VectorStoreMode.fromProperty(properties.getProperty("vector.store.mode"));
+            LUCENE_WRITE_CONFIG = LuceneWriteConfig.fromProperties(properties);
+            CHROMA_PERSISTENCE_CONFIG = ChromaPersistenceConfig.fromProperties(properties,
+                    resolvePath(envPath, properties.getProperty("memory.persist.path", "")));
+            HNSW_CONFIG = HnswConfig.fromProperties(properties);
+            QUANTIZATION_CONFIG = QuantizationConfig.fromProperties(properties);
             ES_URIS = getOrDefault(properties, "es.uris", "http://127.0.0.1:9200");
             ES_USERNAME = trimToNull(properties.getProperty("es.username"));
             ES_PASSWORD = trimToNull(properties.getProperty("es.password"));
             ES_API_KEY = trimToNull(properties.getProperty("es.api-key"));
             ES_TBIR_INDEX = getOrDefault(properties, "es.index.tbir", "vision_mind_tbir");
+            ES_WRITE_CONFIG = ElasticsearchWriteConfig.fromProperties(properties);
+            VECTOR_STORE_CONFIG = VectorStoreConfig.builder(VECTOR_STORE_MODE)
+                    .lucene(LUCENE_PATH, LUCENE_WRITE_CONFIG)
+                    .persistence(CHROMA_PERSISTENCE_CONFIG)
+                    .hnsw(HNSW_CONFIG)
+                    .quantization(QUANTIZATION_CONFIG)
+                    .elasticsearch(new ElasticsearchConfig(ES_URIS, ES_USERNAME, ES_PASSWORD, ES_API_KEY, ES_TBIR_INDEX,
+                            ES_WRITE_CONFIG))
+                    .build();
 
             OPEN_DETECT = Boolean.valueOf(properties.getProperty("open.detect"));
             DETECT_TYPES = Arrays.stream(properties.getProperty("detect.types", "").split(","))
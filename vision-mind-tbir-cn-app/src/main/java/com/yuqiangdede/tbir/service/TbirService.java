@@ -2,9 +2,9 @@ package com.yuqiangdede.tbir.service;
 
 import ai.onnxruntime.OrtException;
 import com.yuqiangdede.common.dto.output.Box;
+import com.yuqiangdede.common.util.ImageContext;
 import com.yuqiangdede.common.util.ImageUtil;
 import com.yuqiangdede.common.util.VectorUtil;
-import com.yuqiangdede.common.vector.ElasticsearchConfig;
 import com.yuqiangdede.tbir.config.Constant;
 import com.yuqiangdede.tbir.dto.AugmentedImage;
 import com.yuqiangdede.tbir.dto.ImageEmbedding;
@@ -39,13 +39,7 @@ public class TbirService {
 
     static {
         try {
-            ElasticsearchConfig esConfig = new ElasticsearchConfig(
-                    Constant.ES_URIS,
-                    Constant.ES_USERNAME,
-                    Constant.ES_PASSWORD,
-                    Constant.ES_API_KEY,
-                    Constant.ES_TBIR_INDEX);
-            TbirVectorStoreUtil.init(Constant.LUCENE_PATH, Constant.VECTOR_STORE_MODE, esConfig);
+            TbirVectorStoreUtil.init(Constant.VECTOR_STORE_CONFIG);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -88,8 +82,14 @@ public class TbirService {
     }
 
     private ImageSaveResult saveOne(SaveImageRequest input) throws IOException, OrtException {
-        // Step 0: download the source image and decide which identifier to persist.
-        BufferedImage image = ImageUtil.urlToImage(input.getImgUrl());
+        // Step 0: download the source image once; YOLO, SAM and the crops below all share it.
+        try (ImageContext context = ImageContext.load(input.getImgUrl())) {
+            return saveDecoded(input, context);
+        }
+    }
+
+    private ImageSaveResult saveDecoded(SaveImageRequest input, ImageContext context) throws IOException, OrtException {
+        BufferedImage image = context.getImage();
         String imgId = input.getImgId() == null ? UUID.randomUUID().toString() : input.getImgId();
 
         long totalStart = System.currentTimeMillis();
@@ -101,12 +101,12 @@ public class TbirService {
             List<Box> detectedBoxes = new ArrayList<>();
             if (DETECT_TYPES.contains("yolo")) {
                 long yoloStart = System.currentTimeMillis();
-                collectDetections(detectedBoxes, () -> imgAnalysisService.detectArea(input));
+                collectDetections(detectedBoxes, () -> imgAnalysisService.detectArea(input, context));
                 yoloCostMs = System.currentTimeMillis() - yoloStart;
             }
             if (DETECT_TYPES.contains("sam")) {
                 long samStart = System.currentTimeMillis();
-                collectDetections(detectedBoxes, () -> imgAnalysisService.sam(input));
+                collectDetections(detectedBoxes, () -> imgAnalysisService.sam(input, context));
                 samCostMs = System.currentTimeMillis() - samStart;
             }
             for (Box box : detectedBoxes) {
@@ -144,10 +144,13 @@ public class TbirService {
      * Each embedding is stored with the logical image identifier and request metadata so that
      * subsequent searches can recover the original context.
      */
-    private void persistToLucene(String imgId, List<ImageEmbedding> vectors, SaveImageRequest input) {
+    private void persistToLucene(String imgId, List<ImageEmbedding> vectors, SaveImageRequest input) throws IOException {
+        long generation = 0L;
         for (ImageEmbedding emb : vectors) {
-            TbirVectorStoreUtil.add(imgId, emb, input);
+            generation = TbirVectorStoreUtil.add(imgId, emb, input);
         }
+        // Lucene publishes writes asynchronously; make the image searchable before saveImg returns.
+        TbirVectorStoreUtil.awaitVisible(generation);
     }
 
     private static List<String> resolveImageUrls(SaveImageRequest input) {
@@ -269,11 +272,10 @@ public class TbirService {
         List<float[]> vectors = Collections.singletonList(clipEmbedder.embedText(query));
         log.info("searchByText embedTexts: Cost time:{} ms.", (System.currentTimeMillis() - startTime));
 
-        // Step 3: query the vector store for every embedding.
+        // Step 3: query the vector store with all embeddings in one batch.
         startTime = System.currentTimeMillis();
         List<LuceHit> allHits = new ArrayList<>();
-        for (float[] vec : vectors) {
-            List<LuceHit> hits = TbirVectorStoreUtil.searchByVector(vec, cameraId, groupId, topN);
+        for (List<LuceHit> hits : TbirVectorStoreUtil.searchByVectors(vectors.toArray(new float[0][]), cameraId, groupId, topN)) {
             allHits.addAll(hits);
         }
         log.info("searchByText searchByVector: Cost time:{} ms.", (System.currentTimeMillis() - startTime));
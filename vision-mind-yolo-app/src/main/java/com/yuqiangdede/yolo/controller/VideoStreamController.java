@@ -0,0 +1,99 @@
+package com.yuqiangdede.yolo.controller;
+
+import com.yuqiangdede.common.dto.output.HttpResult;
+import com.yuqiangdede.yolo.dto.input.StreamInput;
+import com.yuqiangdede.yolo.dto.output.StreamInfo;
+import com.yuqiangdede.yolo.dto.output.VideoFrameDetectionResult;
+import com.yuqiangdede.yolo.service.StreamAnalysisService;
+import com.yuqiangdede.yolo.service.StreamListener;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+@RestController
+@Slf4j
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class VideoStreamController {
+
+    private final StreamAnalysisService streamAnalysisService;
+
+    /**
+     * 启动一路实时流分析，结果通过 /v1/video/stream/{streamId}/events 以 SSE 推送。
+     */
+    @PostMapping(value = "/v1/video/stream/start", produces = "application/json", consumes = "application/json")
+    public HttpResult<StreamInfo> start(@RequestBody StreamInput streamInput) {
+        if (streamInput == null || !StringUtils.hasText(streamInput.getRtspUrl())) {
+            return new HttpResult<>(false, "rtspUrl is null or empty");
+        }
+        try {
+            StreamInfo info = streamAnalysisService.start(streamInput);
+            log.info("Stream start: input={}, streamId={}", streamInput, info.getStreamId());
+            return new HttpResult<>(true, info);
+        } catch (RuntimeException e) {
+            log.error("stream start error", e);
+            return new HttpResult<>(false, e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/v1/video/stream/{streamId}/stop", produces = "application/json")
+    public HttpResult<StreamInfo> stop(@PathVariable String streamId) {
+        try {
+            return new HttpResult<>(true, streamAnalysisService.stop(streamId));
+        } catch (RuntimeException e) {
+            log.error("stream stop error", e);
+            return new HttpResult<>(false, e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/v1/video/streams", produces = "application/json")
+    public HttpResult<List<StreamInfo>> list() {
+        return new HttpResult<>(true, streamAnalysisService.list());
+    }
+
+    /**
+     * 订阅检测结果：每帧一个 detection 事件，流停止后连接关闭；流不存在时返回一个 error 事件。
+     */
+    @GetMapping(value = "/v1/video/stream/{streamId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable String streamId) throws IOException {
+        SseEmitter emitter = new SseEmitter(0L);
+        Runnable unsubscribe;
+        try {
+            unsubscribe = streamAnalysisService.subscribe(streamId, new StreamListener() {
+                @Override
+                public void onResult(VideoFrameDetectionResult result) {
+                    try {
+                        emitter.send(SseEmitter.event().name("detection").data(result, MediaType.APPLICATION_JSON));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void onClose() {
+                    emitter.complete();
+                }
+            });
+        } catch (RuntimeException e) {
+            emitter.send(SseEmitter.event().name("error").data(e.getMessage()));
+            emitter.complete();
+            return emitter;
+        }
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(t -> unsubscribe.run());
+        return emitter;
+    }
+}
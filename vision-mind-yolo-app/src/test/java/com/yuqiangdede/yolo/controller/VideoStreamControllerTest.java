@@ -0,0 +1,90 @@
+package com.yuqiangdede.yolo.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yuqiangdede.yolo.dto.input.StreamInput;
+import com.yuqiangdede.yolo.dto.output.StreamInfo;
+import com.yuqiangdede.yolo.service.StreamAnalysisService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(VideoStreamController.class)
+class VideoStreamControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @MockitoBean
+    private StreamAnalysisService streamAnalysisService;
+
+    @Test
+    void start_returnsStreamInfo() throws Exception {
+        when(streamAnalysisService.start(any(StreamInput.class))).thenReturn(info("cam-1", "STARTING"));
+
+        StreamInput request = new StreamInput();
+        request.setStreamId("cam-1");
+        request.setRtspUrl("rtsp://example.com/live");
+
+        mockMvc.perform(post("/api/v1/video/stream/start")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value("0"))
+                .andExpect(jsonPath("$.data.streamId").value("cam-1"))
+                .andExpect(jsonPath("$.data.status").value("STARTING"));
+    }
+
+    @Test
+    void start_missingRtspUrl_returnsError() throws Exception {
+        mockMvc.perform(post("/api/v1/video/stream/start")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new StreamInput())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value("-1"))
+                .andExpect(jsonPath("$.msg").value("rtspUrl is null or empty"));
+        verifyNoInteractions(streamAnalysisService);
+    }
+
+    @Test
+    void stop_unknownStream_returnsError() throws Exception {
+        when(streamAnalysisService.stop("missing"))
+                .thenThrow(new IllegalArgumentException("Stream not found: missing"));
+
+        mockMvc.perform(post("/api/v1/video/stream/missing/stop"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value("-1"))
+                .andExpect(jsonPath("$.msg").value("Stream not found: missing"));
+    }
+
+    @Test
+    void list_returnsRunningStreams() throws Exception {
+        when(streamAnalysisService.list()).thenReturn(List.of(info("cam-1", "RUNNING"), info("cam-2", "RECONNECTING")));
+
+        mockMvc.perform(get("/api/v1/video/streams"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value("0"))
+                .andExpect(jsonPath("$.data[0].streamId").value("cam-1"))
+                .andExpect(jsonPath("$.data[1].status").value("RECONNECTING"))
+                .andExpect(jsonPath("$.data[0].targetFps").value(5.0));
+    }
+
+    private StreamInfo info(String id, String status) {
+        return new StreamInfo(id, "rtsp://example.com/" + id, status, 1, 5.0, 5.0, 0L,
+                0L, 0L, 0L, 0L, 0L, 0.0, 0.0, 0, null);
+    }
+}
@@ -1,5 +1,6 @@
 package com.yuqiangdede.yolo.config;
 
+import ai.onnxruntime.OrtSession;
 import com.yuqiangdede.common.util.RuntimeEnvironment;
 import lombok.extern.slf4j.Slf4j;
 
@@ -7,6 +8,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 
 @Slf4j
@@ -49,15 +51,33 @@ public class Constant {
     public static final boolean YOLO_OBB_NMS_ENABLED;
     public static final boolean YOLO_TEXT_NMS_ENABLED;
     public static final boolean YOLO_SAM_NMS_ENABLED;
+    public static final boolean YOLO_SAM_WARMUP;
     public static final Boolean USE_GPU;
 
+    // Micro-batching for detection requests
+    public static final boolean YOLO_BATCH_ENABLED;
+    public static final int YOLO_BATCH_MAX_SIZE;
+    public static final long YOLO_BATCH_MAX_WAIT_MS;
+    public static final long YOLO_BATCH_TIMEOUT_MS;
+
+    public static final int STREAM_INFER_THREADS;
+    public static final int STREAM_MAX_COUNT;
+    public static final long STREAM_RECONNECT_DELAY_MS;
+    public static final double STREAM_TARGET_FPS;
+    public static final long STREAM_MONITOR_INTERVAL_MS;
+    public static final double STREAM_DEGRADE_MIN_SCALE;
+    public static final double STREAM_DEGRADE_DROP_THRESHOLD;
+    public static final int STREAM_PUBLISH_QUEUE_SIZE;
+
+
+    private static final Properties PROPERTIES = new Properties();
 
     public static List<Integer> YOLO_TYPES = new ArrayList<>();
     public static List<Integer> YOLO_OBB_TYPES = new ArrayList<>();
 
 
     static {
-        Properties properties = new Properties();
+        Properties properties = PROPERTIES;
         try {
             loadProperties(properties, "native-defaults.properties", false);
             loadProperties(properties, "yolo-core.properties", true);
@@ -102,10 +122,23 @@ public class Constant {
             YOLO_OBB_NMS_ENABLED = Boolean.parseBoolean(properties.getProperty("yolo.obb.onnx.nms.enabled"));
             YOLO_TEXT_NMS_ENABLED = Boolean.parseBoolean(properties.getProperty("yolo.text.onnx.nms.enabled"));
             YOLO_SAM_NMS_ENABLED = Boolean.parseBoolean(properties.getProperty("yolo.sam.onnx.nms.enabled"));
+            YOLO_SAM_WARMUP = Boolean.parseBoolean(properties.getProperty("yolo.sam.warmup", "false"));
             SAM_CONF = Float.parseFloat(properties.getProperty("sam.nms.Threshold"));
             DETECT_RATIO = Float.parseFloat(properties.getProperty("detect.ratio"));
             BLOCK_RATIO = Float.parseFloat(properties.getProperty("block.ratio"));
             USE_GPU = Boolean.valueOf(properties.getProperty("use.gpu"));
+            YOLO_BATCH_ENABLED = Boolean.parseBoolean(properties.getProperty("yolo.det.batch.enabled", "false"));
+            YOLO_BATCH_MAX_SIZE = Integer.parseInt(properties.getProperty("yolo.det.batch.max.size", "8"));
+            YOLO_BATCH_MAX_WAIT_MS = Long.parseLong(properties.getProperty("yolo.det.batch.max.wait.ms", "5"));
+            YOLO_BATCH_TIMEOUT_MS = Long.parseLong(properties.getProperty("yolo.det.batch.timeout.ms", "30000"));
+            STREAM_INFER_THREADS = Integer.parseInt(properties.getProperty("stream.infer.threads", "2"));
+            STREAM_MAX_COUNT = Integer.parseInt(properties.getProperty("stream.max.count", "256"));
+            STREAM_RECONNECT_DELAY_MS = Long.parseLong(properties.getProperty("stream.reconnect.delay.ms", "3000"));
+            STREAM_TARGET_FPS = Double.parseDouble(properties.getProperty("stream.target.fps", "5"));
+            STREAM_MONITOR_INTERVAL_MS = Long.parseLong(properties.getProperty("stream.monitor.interval.ms", "1000"));
+            STREAM_DEGRADE_MIN_SCALE = Double.parseDouble(properties.getProperty("stream.degrade.min.scale", "0.2"));
+            STREAM_DEGRADE_DROP_THRESHOLD = Double.parseDouble(properties.getProperty("stream.degrade.drop.threshold", "0.1"));
+            STREAM_PUBLISH_QUEUE_SIZE = Integer.parseInt(properties.getProperty("stream.publish.queue.size", "16"));
 
             log.info("NMS enable flags: yolo={}, face={}, lp={}, pose={}, seg={}, obb={}, text={}, sam={}",
                     YOLO_NMS_ENABLED, YOLO_FACE_NMS_ENABLED, YOLO_LP_NMS_ENABLED, YOLO_POSE_NMS_ENABLED,
@@ -141,6 +174,29 @@ public class Constant {
         }
     }
 
+    /**
+     * 读取指定模型的会话池配置，{@code yolo.<model>.session.*} 未配置的项回落到 {@code yolo.session.*}。
+     *
+     * @param model 模型简称，如 det、face、lp、pose、seg、obb、text、free、sam
+     * @return 会话池配置
+     */
+    public static SessionPoolConfig sessionPoolConfig(String model) {
+        return new SessionPoolConfig(
+                Integer.parseInt(sessionProperty(model, "pool.size", "1")),
+                Integer.parseInt(sessionProperty(model, "intra.threads", "0")),
+                Integer.parseInt(sessionProperty(model, "inter.threads", "0")),
+                OrtSession.SessionOptions.OptLevel.valueOf(sessionProperty(model, "optimization", "ALL_OPT").toUpperCase(Locale.ROOT)),
+                Boolean.parseBoolean(sessionProperty(model, "memory.arena", "true")));
+    }
+
+    private static String sessionProperty(String model, String key, String defaultValue) {
+        String value = PROPERTIES.getProperty("yolo." + model + ".session." + key);
+        if (value == null || value.isBlank()) {
+            value = PROPERTIES.getProperty("yolo.session." + key, defaultValue);
+        }
+        return value.trim();
+    }
+
     private static void loadProperties(Properties target, String resourceName, boolean required) throws IOException {
         try (InputStream stream = Constant.class.getClassLoader().getResourceAsStream(resourceName)) {
             if (stream == null) {
@@ -0,0 +1,33 @@
+package com.yuqiangdede.yolo.config;
+
+import ai.onnxruntime.OrtSession;
+
+/**
+ * 单个模型的 ONNX 会话池配置。
+ *
+ * @param poolSize       池中最多创建的会话数，按需创建
+ * @param intraOpThreads 单个算子内部的线程数，0 表示按 CPU 核数平分给池中的会话
+ * @param interOpThreads 算子之间并行的线程数，0 表示使用 onnxruntime 默认值
+ * @param optLevel       图优化级别
+ * @param memoryArena    是否启用 CPU 内存 arena
+ */
+public record SessionPoolConfig(int poolSize,
+                                int intraOpThreads,
+                                int interOpThreads,
+                                OrtSession.SessionOptions.OptLevel optLevel,
+                                boolean memoryArena) {
+
+    public SessionPoolConfig {
+        poolSize = Math.max(1, poolSize);
+    }
+
+    /**
+     * @return 实际使用的 intra-op 线程数；未配置时让池中所有会话合计约占满 CPU 核数
+     */
+    public int effectiveIntraOpThreads() {
+        if (intraOpThreads > 0) {
+            return intraOpThreads;
+        }
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / poolSize);
+    }
+}
@@ -0,0 +1,56 @@
+package com.yuqiangdede.yolo.dto.input;
+
+
+import com.yuqiangdede.common.dto.Point;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamInput {
+
+    /**
+     * 流ID，可选，不传时自动生成。
+     */
+    private String streamId;
+
+    /**
+     * 视频流地址（RTSP/HTTP/本地文件路径均可）。
+     */
+    private String rtspUrl;
+
+    /**
+     * 抽帧间隔，每 N 帧取一帧送检，默认取配置 frame.interval。
+     */
+    private Integer frameInterval;
+
+    /**
+     * 目标推理帧率，多路流共享推理线程时按该值加权分配，默认取配置 stream.target.fps。
+     */
+    private Double targetFps;
+
+    /**
+     * 置信度阈值，可选。
+     */
+    private Float conf;
+
+    /**
+     * 类型过滤，可选。
+     */
+    private String types;
+
+    /**
+     * 检测区域，可选。
+     */
+    private ArrayList<ArrayList<Point>> detectionFrames;
+
+    /**
+     * 屏蔽区域，可选。
+     */
+    private ArrayList<ArrayList<Point>> blockingFrames;
+
+}
@@ -0,0 +1,91 @@
+package com.yuqiangdede.yolo.dto.output;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamInfo {
+
+    /**
+     * 流ID。
+     */
+    private String streamId;
+
+    /**
+     * 视频流地址。
+     */
+    private String rtspUrl;
+
+    /**
+     * 当前状态：STARTING / RUNNING / RECONNECTING / STOPPED。
+     */
+    private String status;
+
+    /**
+     * 抽帧间隔。
+     */
+    private int frameInterval;
+
+    /**
+     * 目标帧率。
+     */
+    private double targetFps;
+
+    /**
+     * 降级后的有效帧率，推理饱和时低于目标帧率。
+     */
+    private double effectiveFps;
+
+    /**
+     * 启动时间（毫秒时间戳）。
+     */
+    private long startTime;
+
+    /**
+     * 已读取帧数。
+     */
+    private long grabbedFrames;
+
+    /**
+     * 按抽帧间隔跳过的帧数。
+     */
+    private long skippedFrames;
+
+    /**
+     * 未到目标帧率的下一个时间点、被更新帧覆盖的帧数（正常限速）。
+     */
+    private long throttledFrames;
+
+    /**
+     * 已完成推理的帧数。
+     */
+    private long analyzedFrames;
+
+    /**
+     * 已到期但推理线程来不及处理、被更新帧覆盖丢弃的帧数。
+     */
+    private long droppedFrames;
+
+    /**
+     * 最近一个统计周期的实际推理帧率。
+     */
+    private double achievedFps;
+
+    /**
+     * 最近一个统计周期的丢帧率：dropped / (analyzed + dropped)。
+     */
+    private double dropRate;
+
+    /**
+     * 当前订阅者数量。
+     */
+    private int subscribers;
+
+    /**
+     * 最近一次错误信息。
+     */
+    private String lastError;
+}
@@ -1,7 +1,14 @@
 package com.yuqiangdede.yolo.dto.output;
 
-import java.util.List;
+import com.yuqiangdede.yolo.util.yolo.DetectionBuffer;
+
 import java.util.Map;
 
-public record YoloDetectionResult(List<List<Float>> boxes, Map<Integer, String> classNames) {
-}
\ No newline at end of file
+/**
+ * YOLO 检测结果
+ *
+ * @param detections 检测框，按列存储的原始类型缓冲区
+ * @param classNames 类别编号到名称的映射
+ */
+public record YoloDetectionResult(DetectionBuffer detections, Map<Integer, String> classNames) {
+}
@@ -9,6 +9,7 @@ import com.yuqiangdede.common.dto.output.Box;
 
 import com.yuqiangdede.common.dto.output.BoxWithKeypoints;
 import com.yuqiangdede.common.util.GeometryUtils;
+import com.yuqiangdede.common.util.ImageContext;
 import com.yuqiangdede.common.util.ImageUtil;
 import com.yuqiangdede.common.util.RuntimeEnvironment;
 import com.yuqiangdede.platform.common.config.VisionMindProperties;
@@ -20,6 +21,7 @@ import com.yuqiangdede.yolo.dto.output.SegDetection;
 import com.yuqiangdede.yolo.util.yolo.YoloFastSAMUtil;
 import com.yuqiangdede.yolo.dto.output.YoloDetectionResult;
 import com.yuqiangdede.yolo.dto.output.YoloPoseDetectionResult;
+import com.yuqiangdede.yolo.util.yolo.DetectionBuffer;
 import com.yuqiangdede.yolo.util.yolo.YoloFaceLpUtil;
 import com.yuqiangdede.yolo.util.yolo.YoloV26DetUtil;
 import com.yuqiangdede.yolo.util.yolo.YoloV26DetectTextUtil;
@@ -29,6 +31,7 @@ import com.yuqiangdede.yolo.util.yolo.YoloV26SegUtil;
 import com.yuqiangdede.yolo.config.Constant;
 
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.opencv.core.Mat;
 import org.springframework.stereotype.Service;
@@ -59,8 +62,33 @@ public class ImgAnalysisService {
         }
     }
 
+    /**
+     * 启动时预热 FastSAM 会话；失败不影响启动，首次请求时会再次尝试加载。
+     */
+    @PostConstruct
+    void warmUp() {
+        if (!Constant.YOLO_SAM_WARMUP || RuntimeEnvironment.shouldSkipNativeLoad()) {
+            return;
+        }
+        try {
+            YoloFastSAMUtil.warmUp();
+        } catch (OrtException | RuntimeException e) {
+            log.warn("FastSAM warm-up failed, the session will be loaded on first request", e);
+        }
+    }
+
     public List<Box> detectArea(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        Mat mat = ImageUtil.urlToMat(imgAreaInput.getImgUrl());
+        try (ImageContext image = ImageContext.load(imgAreaInput.getImgUrl())) {
+            return detectArea(imgAreaInput, image);
+        }
+    }
+
+    /**
+     * 与 {@link #detectArea(DetectionRequestWithArea)} 相同，但复用调用方已加载的 {@link ImageContext}，
+     * 同一请求里的多次检测只下载、解码一次图片。下同。
+     */
+    public List<Box> detectArea(DetectionRequestWithArea imgAreaInput, ImageContext image) throws IOException, OrtException {
+        Mat mat = image.getMat();
 
         List<Box> boxs = analysis(mat, imgAreaInput.getThreshold(), imgAreaInput.getTypes());
         return filterByFrames(boxs, imgAreaInput.getDetectionFrames(), imgAreaInput.getBlockingFrames(),
@@ -68,14 +96,15 @@ public class ImgAnalysisService {
     }
 
     public BufferedImage detectAreaI(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        BufferedImage image = ImageUtil.urlToImage(imgAreaInput.getImgUrl());
-
-        List<Box> boxs = this.detectArea(imgAreaInput);
-
-        ImageUtil.drawImageWithBox(image, boxs);
-        ImageUtil.drawImageWithFrames(image, imgAreaInput.getDetectionFrames(), Color.BLUE);
-        ImageUtil.drawImageWithFrames(image, imgAreaInput.getBlockingFrames(), Color.DARK_GRAY);
-        return image;
+        try (ImageContext context = ImageContext.load(imgAreaInput.getImgUrl())) {
+            List<Box> boxs = detectArea(imgAreaInput, context);
+            BufferedImage image = context.getImage();
+
+            ImageUtil.drawImageWithBox(image, boxs);
+            ImageUtil.drawImageWithFrames(image, imgAreaInput.getDetectionFrames(), Color.BLUE);
+            ImageUtil.drawImageWithFrames(image, imgAreaInput.getBlockingFrames(), Color.DARK_GRAY);
+            return image;
+        }
     }
 
     /**
@@ -94,7 +123,13 @@ public class ImgAnalysisService {
     }
 
     public List<Box> detectTextArea(TextPromptRequestWithArea imgAreaInput) throws IOException, OrtException {
-        Mat mat = ImageUtil.urlToMat(imgAreaInput.getImgUrl());
+        try (ImageContext image = ImageContext.load(imgAreaInput.getImgUrl())) {
+            return detectTextArea(imgAreaInput, image);
+        }
+    }
+
+    public List<Box> detectTextArea(TextPromptRequestWithArea imgAreaInput, ImageContext image) throws IOException, OrtException {
+        Mat mat = image.getMat();
 
         List<Box> boxs = analysisText(mat, imgAreaInput.getThreshold());
         return filterByFrames(boxs, imgAreaInput.getDetectionFrames(), imgAreaInput.getBlockingFrames(),
@@ -102,29 +137,29 @@ public class ImgAnalysisService {
     }
 
     public BufferedImage detectTextAreaI(TextPromptRequestWithArea imgAreaInput) throws IOException, OrtException {
-        BufferedImage image = ImageUtil.urlToImage(imgAreaInput.getImgUrl());
-
-        List<Box> boxs = this.detectTextArea(imgAreaInput);
-
-        ImageUtil.drawImageWithBox(image, boxs);
-        ImageUtil.drawImageWithFrames(image, imgAreaInput.getDetectionFrames(), Color.BLUE);
-        ImageUtil.drawImageWithFrames(image, imgAreaInput.getBlockingFrames(), Color.DARK_GRAY);
-        return image;
+        try (ImageContext context = ImageContext.load(imgAreaInput.getImgUrl())) {
+            List<Box> boxs = detectTextArea(imgAreaInput, context);
+            BufferedImage image = context.getImage();
+
+            ImageUtil.drawImageWithBox(image, boxs);
+            ImageUtil.drawImageWithFrames(image, imgAreaInput.getDetectionFrames(), Color.BLUE);
+            ImageUtil.drawImageWithFrames(image, imgAreaInput.getBlockingFrames(), Color.DARK_GRAY);
+            return image;
+        }
     }
 
 
     private List<Box> analysis(Mat mat, Float conf, String types) {
         YoloDetectionResult detection = YoloV26DetUtil.predictor(mat, conf);
 
-        List<List<Float>> bs = detection.boxes();
+        DetectionBuffer bs = detection.detections();
         Map<Integer, String> classNames = detection.classNames();
         List<Integer> typeList = parseTypes(types, Constant.YOLO_TYPES);
 
         List<Box> boxes = new ArrayList<>();
-        for (List<Float> bx : bs) {
-            Box box = new Box(bx.get(0), bx.get(1), bx.get(2), bx.get(3), bx.get(4), bx.get(5), classNames);
-            if (typeList.contains(box.getType())) {
-                boxes.add(box);
+        for (int i = 0; i < bs.size(); i++) {
+            if (typeList.contains(bs.cls(i))) {
+                boxes.add(toBox(bs, i, classNames));
             }
         }
 
@@ -133,11 +168,17 @@ public class ImgAnalysisService {
 
     private List<Box> analysisText(Mat mat, Float conf) {
         YoloDetectionResult detection = YoloV26DetectTextUtil.predictor(mat, conf);
-        return buildBoxes(detection.boxes(), detection.classNames());
+        return buildBoxes(detection.detections(), detection.classNames());
     }
 
     public List<BoxWithKeypoints> poseArea(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        Mat mat = ImageUtil.urlToMat(imgAreaInput.getImgUrl());
+        try (ImageContext image = ImageContext.load(imgAreaInput.getImgUrl())) {
+            return poseArea(imgAreaInput, image);
+        }
+    }
+
+    public List<BoxWithKeypoints> poseArea(DetectionRequestWithArea imgAreaInput, ImageContext image) throws IOException, OrtException {
+        Mat mat = image.getMat();
 
         List<BoxWithKeypoints> boxs = analysisPose(mat, imgAreaInput.getThreshold());
         return filterByFrames(boxs, imgAreaInput.getDetectionFrames(), imgAreaInput.getBlockingFrames(),
@@ -145,14 +186,15 @@ public class ImgAnalysisService {
     }
 
     public BufferedImage poseAreaI(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        BufferedImage image = ImageUtil.urlToImage(imgAreaInput.getImgUrl());
-
-        List<BoxWithKeypoints> boxs = this.poseArea(imgAreaInput);
-
-        ImageUtil.drawImageWithKeypoints(image, boxs);
-        ImageUtil.drawImageWithFrames(image, imgAreaInput.getDetectionFrames(), Color.BLUE);
-        ImageUtil.drawImageWithFrames(image, imgAreaInput.getBlockingFrames(), Color.DARK_GRAY);
-        return image;
+        try (ImageContext context = ImageContext.load(imgAreaInput.getImgUrl())) {
+            List<BoxWithKeypoints> boxs = poseArea(imgAreaInput, context);
+            BufferedImage image = context.getImage();
+
+            ImageUtil.drawImageWithKeypoints(image, boxs);
+            ImageUtil.drawImageWithFrames(image, imgAreaInput.getDetectionFrames(), Color.BLUE);
+            ImageUtil.drawImageWithFrames(image, imgAreaInput.getBlockingFrames(), Color.DARK_GRAY);
+            return image;
+        }
     }
 
     private List<BoxWithKeypoints> analysisPose(Mat mat, Float conf) {
@@ -172,7 +214,13 @@ public class ImgAnalysisService {
     }
 
     public List<Box> detectFace(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        Mat mat = ImageUtil.urlToMat(imgAreaInput.getImgUrl());
+        try (ImageContext image = ImageContext.load(imgAreaInput.getImgUrl())) {
+            return detectFace(imgAreaInput, image);
+        }
+    }
+
+    public List<Box> detectFace(DetectionRequestWithArea imgAreaInput, ImageContext image) throws IOException, OrtException {
+        Mat mat = image.getMat();
 
         List<Box> boxs = analysisFace(mat, imgAreaInput.getThreshold());
         return filterByFrames(boxs, imgAreaInput.getDetectionFrames(), imgAreaInput.getBlockingFrames(),
@@ -180,23 +228,30 @@ public class ImgAnalysisService {
     }
 
     public BufferedImage detectFaceI(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        BufferedImage image = ImageUtil.urlToImage(imgAreaInput.getImgUrl());
-
-        List<Box> boxs = this.detectFace(imgAreaInput);
-
-        ImageUtil.drawImageWithBox(image, boxs);
-        ImageUtil.drawImageWithFrames(image, imgAreaInput.getDetectionFrames(), Color.BLUE);
-        ImageUtil.drawImageWithFrames(image, imgAreaInput.getBlockingFrames(), Color.DARK_GRAY);
-        return image;
+        try (ImageContext context = ImageContext.load(imgAreaInput.getImgUrl())) {
+            List<Box> boxs = detectFace(imgAreaInput, context);
+            BufferedImage image = context.getImage();
+
+            ImageUtil.drawImageWithBox(image, boxs);
+            ImageUtil.drawImageWithFrames(image, imgAreaInput.getDetectionFrames(), Color.BLUE);
+            ImageUtil.drawImageWithFrames(image, imgAreaInput.getBlockingFrames(), Color.DARK_GRAY);
+            return image;
+        }
     }
 
     private List<Box> analysisFace(Mat mat, Float conf) {
         YoloDetectionResult detection = YoloFaceLpUtil.predictorFace(mat, conf);
-        return buildBoxes(detection.boxes(), detection.classNames());
+        return buildBoxes(detection.detections(), detection.classNames());
     }
 
     public List<Box> detectLP(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        Mat mat = ImageUtil.urlToMat(imgAreaInput.getImgUrl());
+        try (ImageContext image = ImageContext.load(imgAreaInput.getImgUrl())) {
+            return detectLP(imgAreaInput, image);
+        }
+    }
+
+    public List<Box> detectLP(DetectionRequestWithArea imgAreaInput, ImageContext image) throws IOException, OrtException {
+        Mat mat = image.getMat();
 
         List<Box> boxs = analysisLicensePlate(mat, imgAreaInput.getThreshold());
         return filterByFrames(boxs, imgAreaInput.getDetectionFrames(), imgAreaInput.getBlockingFrames(),
@@ -204,67 +259,95 @@ public class ImgAnalysisService {
     }
 
     public BufferedImage detectLPI(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        BufferedImage image = ImageUtil.urlToImage(imgAreaInput.getImgUrl());
-
-        List<Box> boxs = this.detectLP(imgAreaInput);
-
-        ImageUtil.drawImageWithBox(image, boxs);
-        ImageUtil.drawImageWithFrames(image, imgAreaInput.getDetectionFrames(), Color.BLUE);
-        ImageUtil.drawImageWithFrames(image, imgAreaInput.getBlockingFrames(), Color.DARK_GRAY);
-        return image;
+        try (ImageContext context = ImageContext.load(imgAreaInput.getImgUrl())) {
+            List<Box> boxs = detectLP(imgAreaInput, context);
+            BufferedImage image = context.getImage();
+
+            ImageUtil.drawImageWithBox(image, boxs);
+            ImageUtil.drawImageWithFrames(image, imgAreaInput.getDetectionFrames(), Color.BLUE);
+            ImageUtil.drawImageWithFrames(image, imgAreaInput.getBlockingFrames(), Color.DARK_GRAY);
+            return image;
+        }
     }
 
     private List<Box> analysisLicensePlate(Mat mat, Float conf) {
         YoloDetectionResult detection = YoloFaceLpUtil.predictorLicensePlate(mat, conf);
-        return buildBoxes(detection.boxes(), detection.classNames());
+        return buildBoxes(detection.detections(), detection.classNames());
     }
 
     public List<Box> sam(DetectionRequest imgAreaInput) throws IOException, OrtException {
-        Mat mat = ImageUtil.urlToMat(imgAreaInput.getImgUrl());
+        try (ImageContext image = ImageContext.load(imgAreaInput.getImgUrl())) {
+            return sam(imgAreaInput, image);
+        }
+    }
+
+    public List<Box> sam(DetectionRequest imgAreaInput, ImageContext image) throws IOException, OrtException {
+        Mat mat = image.getMat();
         return YoloFastSAMUtil.predictor(mat);
     }
 
     public BufferedImage samI(DetectionRequest imgAreaInput) throws IOException, OrtException {
-        BufferedImage image = ImageUtil.urlToImage(imgAreaInput.getImgUrl());
+        try (ImageContext context = ImageContext.load(imgAreaInput.getImgUrl())) {
+            List<Box> boxs = sam(imgAreaInput, context);
+            BufferedImage image = context.getImage();
 
-        List<Box> boxs = this.sam(imgAreaInput);
-
-        ImageUtil.drawImageWithBox(image, boxs);
-        return image;
+            ImageUtil.drawImageWithBox(image, boxs);
+            return image;
+        }
     }
 
     public List<ObbDetection> obbArea(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        Mat mat = ImageUtil.urlToMat(imgAreaInput.getImgUrl());
+        try (ImageContext image = ImageContext.load(imgAreaInput.getImgUrl())) {
+            return obbArea(imgAreaInput, image);
+        }
+    }
+
+    public List<ObbDetection> obbArea(DetectionRequestWithArea imgAreaInput, ImageContext image) throws IOException, OrtException {
+        Mat mat = image.getMat();
         List<ObbDetection> detections = YoloV26ObbUtil.predictor(mat, imgAreaInput.getThreshold());
         return filterObbTypes(detections, imgAreaInput.getTypes());
     }
 
     public BufferedImage obbAreaI(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        BufferedImage image = ImageUtil.urlToImage(imgAreaInput.getImgUrl());
-        List<ObbDetection> detections = obbArea(imgAreaInput);
-        ArrayList<ArrayList<Point>> frames = new ArrayList<>();
-        List<String> labels = new ArrayList<>();
-        for (ObbDetection detection : detections) {
-            if (detection.getPoints() == null || detection.getPoints().isEmpty()) {
-                continue;
+        try (ImageContext context = ImageContext.load(imgAreaInput.getImgUrl())) {
+            List<ObbDetection> detections = obbArea(imgAreaInput, context);
+            BufferedImage image = context.getImage();
+            ArrayList<ArrayList<Point>> frames = new ArrayList<>();
+            List<String> labels = new ArrayList<>();
+            for (ObbDetection detection : detections) {
+                if (detection.getPoints() == null || detection.getPoints().isEmpty()) {
+                    continue;
+                }
+                frames.add(new ArrayList<>(detection.getPoints()));
+                String label = String.format("%s%s",
+                        detection.getClassName() != null ? detection.getClassName() : "",
+                        detection.getScore() > 0 ? String.format(" %.2f", detection.getScore()) : "");
+                labels.add(label);
             }
-            frames.add(new ArrayList<>(detection.getPoints()));
-            String label = String.format("%s%s",
-                    detection.getClassName() != null ? detection.getClassName() : "",
-                    detection.getScore() > 0 ? String.format(" %.2f", detection.getScore()) : "");
-            labels.add(label);
+            ImageUtil.drawImageWithFramesAndLabels(image, frames, labels, Color.BLUE);
+            return image;
         }
-        ImageUtil.drawImageWithFramesAndLabels(image, frames, labels, Color.BLUE);
-        return image;
     }
  
     public List<SegDetection> segArea(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        Mat mat = ImageUtil.urlToMat(imgAreaInput.getImgUrl());
+        try (ImageContext image = ImageContext.load(imgAreaInput.getImgUrl())) {
+            return segArea(imgAreaInput, image);
+        }
+    }
+
+    public List<SegDetection> segArea(DetectionRequestWithArea imgAreaInput, ImageContext image) throws IOException, OrtException {
+        Mat mat = image.getMat();
         return YoloV26SegUtil.predictor(mat, imgAreaInput.getThreshold());
     }
 
     public List<SegDetection> detectFree(DetectionRequest imgInput) throws IOException, OrtException {
-        Mat mat = ImageUtil.urlToMat(imgInput.getImgUrl());
+        try (ImageContext image = ImageContext.load(imgInput.getImgUrl())) {
+            return detectFree(imgInput, image);
+        }
+    }
+
+    public List<SegDetection> detectFree(DetectionRequest imgInput, ImageContext image) throws IOException, OrtException {
+        Mat mat = image.getMat();
         float threshold = imgInput.getThreshold() == null ? Constant.CONF_THRESHOLD : imgInput.getThreshold();
         List<SegDetection> segs = YoloV26SegUtil.predictorFree(mat, threshold);
         List<SegDetection> filtered = new ArrayList<>();
@@ -278,25 +361,27 @@ public class ImgAnalysisService {
     }
 
     public BufferedImage detectFreeI(DetectionRequest imgInput) throws IOException, OrtException {
-        List<SegDetection> segs = detectFree(imgInput);
-        BufferedImage img = ImageUtil.urlToImage(imgInput.getImgUrl());
-        List<Box> boxes = new ArrayList<>();
-        for (SegDetection seg : segs) {
-            if (seg == null || seg.getBox() == null) {
-                continue;
+        try (ImageContext context = ImageContext.load(imgInput.getImgUrl())) {
+            List<SegDetection> segs = detectFree(imgInput, context);
+            BufferedImage img = context.getImage();
+            List<Box> boxes = new ArrayList<>();
+            for (SegDetection seg : segs) {
+                if (seg == null || seg.getBox() == null) {
+                    continue;
+                }
+                float x1 = seg.getBox().x;
+                float y1 = seg.getBox().y;
+                float x2 = seg.getBox().x + seg.getBox().width;
+                float y2 = seg.getBox().y + seg.getBox().height;
+                Box box = new Box(x1, y1, x2, y2);
+                box.setConf(seg.getScore());
+                box.setType(seg.getClassId());
+                box.setTypeName(seg.getClassName());
+                boxes.add(box);
             }
-            float x1 = seg.getBox().x;
-            float y1 = seg.getBox().y;
-            float x2 = seg.getBox().x + seg.getBox().width;
-            float y2 = seg.getBox().y + seg.getBox().height;
-            Box box = new Box(x1, y1, x2, y2);
-            box.setConf(seg.getScore());
-            box.setType(seg.getClassId());
-            box.setTypeName(seg.getClassName());
-            boxes.add(box);
+            ImageUtil.drawImageWithBoxStackedLabels(img, boxes);
+            return img;
         }
-        ImageUtil.drawImageWithBoxStackedLabels(img, boxes);
-        return img;
     }
 
     private List<ObbDetection> filterObbTypes(List<ObbDetection> detections, String types) {
@@ -323,14 +408,18 @@ public class ImgAnalysisService {
         return filtered;
     }
 
-    private List<Box> buildBoxes(List<List<Float>> bs, Map<Integer, String> classNames) {
-        List<Box> boxes = new ArrayList<>();
-        for (List<Float> bx : bs) {
-            boxes.add(new Box(bx.get(0), bx.get(1), bx.get(2), bx.get(3), bx.get(4), bx.get(5), classNames));
+    private List<Box> buildBoxes(DetectionBuffer bs, Map<Integer, String> classNames) {
+        List<Box> boxes = new ArrayList<>(bs.size());
+        for (int i = 0; i < bs.size(); i++) {
+            boxes.add(toBox(bs, i, classNames));
         }
         return boxes;
     }
 
+    private static Box toBox(DetectionBuffer bs, int i, Map<Integer, String> classNames) {
+        return new Box(bs.x1(i), bs.y1(i), bs.x2(i), bs.y2(i), bs.score(i), (float) bs.cls(i), classNames);
+    }
+
     private List<Integer> parseTypes(String types, List<Integer> defaultTypes) {
         if (types == null || types.isEmpty()) {
             return defaultTypes;
@@ -382,13 +471,15 @@ public class ImgAnalysisService {
     }
 
     public BufferedImage segAreaI(DetectionRequestWithArea imgAreaInput) throws IOException, OrtException {
-        List<SegDetection> segs = segArea(imgAreaInput);
-        BufferedImage img = ImageUtil.urlToImage(imgAreaInput.getImgUrl());
-        List<List<Point>> pointList = new ArrayList<>();
-        for (SegDetection seg : segs) {
-            pointList.addAll(seg.getPoints());
+        try (ImageContext context = ImageContext.load(imgAreaInput.getImgUrl())) {
+            List<SegDetection> segs = segArea(imgAreaInput, context);
+            BufferedImage img = context.getImage();
+            List<List<Point>> pointList = new ArrayList<>();
+            for (SegDetection seg : segs) {
+                pointList.addAll(seg.getPoints());
+            }
+            ImageUtil.drawImageWithListPoint(img, pointList);
+            return img;
         }
-        ImageUtil.drawImageWithListPoint(img, pointList);
-        return img;
     }
 }
@@ -0,0 +1,270 @@
+package com.yuqiangdede.yolo.service;
+
+import com.yuqiangdede.common.dto.output.Box;
+import com.yuqiangdede.yolo.config.Constant;
+import com.yuqiangdede.yolo.dto.input.StreamInput;
+import com.yuqiangdede.yolo.dto.output.StreamInfo;
+import com.yuqiangdede.yolo.dto.output.VideoFrameDetectionResult;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 实时流分析：拉流、推理、发布三段解耦。
+ * <ul>
+ *     <li>每路流一个拉流线程，只保留最新一帧，推理跟不上时旧帧直接丢弃，解码不会被推理阻塞；</li>
+ *     <li>所有流共享固定数量的推理线程，由 {@link StreamScheduler} 按每路流的目标帧率做最早截止优先调度，
+ *     推理饱和时统一降低有效帧率；每路流最多一帧待推理，天然有界；</li>
+ *     <li>推理结果放入每个订阅者自己的有界队列，由发布线程发送（HTTP 层用 SSE 转发），队列满时丢弃最旧的结果；
+ *     推理线程只入队，慢的订阅者不会拖住共享的推理线程。</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+public class StreamAnalysisService {
+
+    private final ImgAnalysisService imgAnalysisService;
+    private final VideoCaptureFactory videoCaptureFactory;
+
+    private final Map<String, VideoStream> streams = new ConcurrentHashMap<>();
+    private final StreamScheduler scheduler;
+    private final ExecutorService publishExecutor;
+
+    public StreamAnalysisService(ImgAnalysisService imgAnalysisService, VideoCaptureFactory videoCaptureFactory) {
+        this.imgAnalysisService = imgAnalysisService;
+        this.videoCaptureFactory = videoCaptureFactory;
+        this.scheduler = new StreamScheduler(
+                Constant.STREAM_INFER_THREADS,
+                Constant.STREAM_MONITOR_INTERVAL_MS,
+                Constant.STREAM_DEGRADE_MIN_SCALE,
+                Constant.STREAM_DEGRADE_DROP_THRESHOLD,
+                this::infer);
+        AtomicInteger publishThreads = new AtomicInteger();
+        // 发送任务数不超过订阅者数，卡住的订阅者只占用自己的线程，空闲线程 60 秒后回收
+        this.publishExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stream-publish-" + publishThreads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 启动一路流的分析，立即返回，拉流在后台线程中进行
+     */
+    public StreamInfo start(StreamInput input) {
+        if (input == null || !StringUtils.hasText(input.getRtspUrl())) {
+            throw new IllegalArgumentException("rtspUrl is null or empty");
+        }
+        String id = StringUtils.hasText(input.getStreamId())
+                ? input.getStreamId()
+                : UUID.randomUUID().toString().replace("-", "");
+        VideoStream stream;
+        synchronized (streams) {
+            if (streams.containsKey(id)) {
+                throw new IllegalStateException("Stream already exists: " + id);
+            }
+            if (streams.size() >= Constant.STREAM_MAX_COUNT) {
+                throw new IllegalStateException("Too many streams, max=" + Constant.STREAM_MAX_COUNT);
+            }
+            stream = new VideoStream(id, input, resolveFrameInterval(input.getFrameInterval()),
+                    resolveTargetFps(input.getTargetFps()), this::createFrameBuffer);
+            streams.put(id, stream);
+        }
+        stream.registerMeters();
+        scheduler.register(stream);
+        Thread grabber = new Thread(() -> grabLoop(stream), "stream-grab-" + id);
+        grabber.setDaemon(true);
+        stream.grabber(grabber);
+        grabber.start();
+        log.info("Stream started: id={}, url={}, frameInterval={}, targetFps={}",
+                id, input.getRtspUrl(), stream.frameInterval(), stream.targetFps());
+        return stream.info();
+    }
+
+    /**
+     * 停止一路流，拉流线程读完当前帧后释放 VideoCapture
+     */
+    public StreamInfo stop(String streamId) {
+        VideoStream stream = streams.remove(streamId);
+        if (stream == null) {
+            throw new IllegalArgumentException("Stream not found: " + streamId);
+        }
+        stopStream(stream);
+        log.info("Stream stopped: id={}", streamId);
+        return stream.info();
+    }
+
+    public List<StreamInfo> list() {
+        return streams.values().stream()
+                .map(VideoStream::info)
+                .toList();
+    }
+
+    /**
+     * 订阅一路流的检测结果
+     *
+     * @return 取消订阅
+     */
+    public Runnable subscribe(String streamId, StreamListener listener) {
+        VideoStream stream = streams.get(streamId);
+        if (stream == null) {
+            throw new IllegalArgumentException("Stream not found: " + streamId);
+        }
+        return stream.subscribe(new StreamSubscription(streamId, listener, Constant.STREAM_PUBLISH_QUEUE_SIZE, publishExecutor));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (VideoStream stream : List.copyOf(streams.values())) {
+            if (streams.remove(stream.id(), stream)) {
+                stopStream(stream);
+            }
+        }
+        scheduler.close();
+        publishExecutor.shutdown();
+    }
+
+    private void stopStream(VideoStream stream) {
+        scheduler.unregister(stream);
+        stream.stop();
+        Thread grabber = stream.grabber();
+        if (grabber != null) {
+            // 打断重连等待，正在阻塞的 read 返回后线程自行退出
+            grabber.interrupt();
+        }
+    }
+
+    Mat createFrameBuffer() {
+        return new Mat();
+    }
+
+    long reconnectDelayMs() {
+        return Constant.STREAM_RECONNECT_DELAY_MS;
+    }
+
+    private void grabLoop(VideoStream stream) {
+        String source = stream.input().getRtspUrl();
+        VideoCapture capture = null;
+        try {
+            while (stream.isRunning()) {
+                if (capture == null) {
+                    capture = videoCaptureFactory.create();
+                    if (!capture.open(source)) {
+                        capture.release();
+                        capture = null;
+                        stream.lastError("Failed to open video: " + source);
+                        stream.status(VideoStream.Status.RECONNECTING);
+                        log.warn("Stream {} open failed, retry in {}ms", stream.id(), reconnectDelayMs());
+                        sleepQuietly(reconnectDelayMs());
+                        continue;
+                    }
+                    stream.status(VideoStream.Status.RUNNING);
+                }
+                Mat frame = stream.grabBuffer();
+                if (!capture.read(frame)) {
+                    capture.release();
+                    capture = null;
+                    stream.lastError("Video read failed: " + source);
+                    stream.status(VideoStream.Status.RECONNECTING);
+                    log.warn("Stream {} read failed, reconnect in {}ms", stream.id(), reconnectDelayMs());
+                    sleepQuietly(reconnectDelayMs());
+                    continue;
+                }
+                if (frame.empty()) {
+                    continue;
+                }
+                int frameIndex = (int) stream.onGrabbed();
+                if (!shouldAnalyze(frameIndex, stream.frameInterval())) {
+                    stream.onSkipped();
+                    continue;
+                }
+                if (stream.publishLatest(frameIndex, safeTimestamp(capture.get(Videoio.CAP_PROP_POS_MSEC)))) {
+                    scheduler.onFrameReady();
+                }
+            }
+        } catch (RuntimeException e) {
+            stream.lastError(e.getMessage());
+            log.error("Stream {} grabber stopped", stream.id(), e);
+        } finally {
+            if (capture != null) {
+                capture.release();
+            }
+            stream.releaseBuffers();
+            if (streams.remove(stream.id(), stream)) {
+                scheduler.unregister(stream);
+                stream.stop();
+            }
+        }
+    }
+
+    private void infer(VideoStream stream) {
+        try {
+            if (!stream.takeLatest()) {
+                return;
+            }
+            StreamInput input = stream.input();
+            long start = System.currentTimeMillis();
+            List<Box> boxes = imgAnalysisService.detectMat(
+                    stream.workBuffer(),
+                    input.getConf(),
+                    input.getTypes(),
+                    input.getDetectionFrames(),
+                    input.getBlockingFrames()
+            );
+            long cost = System.currentTimeMillis() - start;
+            stream.onAnalyzed();
+            stream.publish(new VideoFrameDetectionResult(stream.workingIndex(), stream.workingTimestamp(), cost, boxes));
+        } catch (RuntimeException e) {
+            stream.lastError(e.getMessage());
+            log.warn("Stream {} inference failed: {}", stream.id(), e.getMessage());
+        }
+    }
+
+    private int resolveFrameInterval(Integer frameInterval) {
+        if (frameInterval == null || frameInterval <= 0) {
+            return Constant.FRAME_INTERVAL == null || Constant.FRAME_INTERVAL <= 0 ? 1 : Constant.FRAME_INTERVAL;
+        }
+        return frameInterval;
+    }
+
+    private double resolveTargetFps(Double targetFps) {
+        if (targetFps == null || targetFps <= 0) {
+            return Constant.STREAM_TARGET_FPS > 0 ? Constant.STREAM_TARGET_FPS : 5;
+        }
+        return targetFps;
+    }
+
+    private boolean shouldAnalyze(int frame, int frameInterval) {
+        if (frameInterval <= 1) {
+            return true;
+        }
+        return frame % frameInterval == 0;
+    }
+
+    private long safeTimestamp(double timestamp) {
+        if (Double.isNaN(timestamp) || timestamp < 0) {
+            return 0L;
+        }
+        return (long) timestamp;
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.yuqiangdede.yolo.service;
+
+import com.yuqiangdede.yolo.dto.output.VideoFrameDetectionResult;
+
+/**
+ * 实时流检测结果的订阅者。回调在发布线程中按结果顺序串行执行，不占用推理线程；回调太慢时积压的旧结果会被丢弃。
+ * 抛出异常时订阅会被移除。
+ */
+public interface StreamListener {
+
+    /**
+     * 一帧推理完成
+     */
+    void onResult(VideoFrameDetectionResult result);
+
+    /**
+     * 流被停止，不会再有结果
+     */
+    default void onClose() {
+    }
+}
@@ -0,0 +1,239 @@
+package com.yuqiangdede.yolo.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 多路流共享固定推理线程的调度器。
+ * <p>
+ * 每路流按目标帧率有一个截止时间（nextDue），推理线程空闲时在"有新帧、没有推理任务、已到期"的流中挑截止时间最早的一路，
+ * 即按目标帧率加权的最早截止优先；帧率低的流不会被帧率高的流饿死，单路流也无法超过自己的目标帧率。
+ * <p>
+ * 监控线程按固定周期统计每路流的实际帧率、丢帧率；当推理线程基本满载、且已到期的帧来不及推理就被新帧覆盖的比例超过阈值时，
+ * 把所有流的有效帧率按同一比例下调（降级），推理线程利用率回落后再逐步恢复。线程有空闲时的零星丢帧只是唤醒抖动，不触发降级。
+ */
+@Slf4j
+final class StreamScheduler implements AutoCloseable {
+
+    private static final double DEGRADE_STEP = 0.8;
+    private static final double RECOVER_STEP = 1.1;
+    private static final double SATURATED_UTILIZATION = 0.9;
+    private static final double RECOVER_UTILIZATION = 0.8;
+
+    private final int workerCount;
+    private final double minScale;
+    private final double dropThreshold;
+    private final Consumer<VideoStream> inference;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition frameReady = lock.newCondition();
+    private final List<VideoStream> streams = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final ScheduledExecutorService monitor;
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    private volatile boolean running = true;
+    private volatile double scale = 1.0;
+    private long lastSampleNanos = System.nanoTime();
+
+    /**
+     * @param workerCount       推理线程数
+     * @param monitorIntervalMs 统计与降级判断的周期
+     * @param minScale          降级时有效帧率相对目标帧率的下限
+     * @param dropThreshold     到期帧被覆盖的比例超过该值视为推理饱和
+     * @param inference         推理一帧，调用时已持有该流的推理权
+     */
+    StreamScheduler(int workerCount, long monitorIntervalMs, double minScale, double dropThreshold,
+                    Consumer<VideoStream> inference) {
+        this.workerCount = Math.max(1, workerCount);
+        this.minScale = Math.min(1.0, Math.max(0.01, minScale));
+        this.dropThreshold = dropThreshold;
+        this.inference = inference;
+        for (int i = 0; i < this.workerCount; i++) {
+            Thread worker = new Thread(this::workLoop, "stream-infer-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        this.monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stream-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        monitor.scheduleAtFixedRate(this::sample, monitorIntervalMs, monitorIntervalMs, TimeUnit.MILLISECONDS);
+        Gauge.builder("vision.stream.degrade.scale", this, StreamScheduler::scale)
+                .description("Effective FPS / target FPS applied to every stream")
+                .register(Metrics.globalRegistry);
+    }
+
+    void register(VideoStream stream) {
+        lock.lock();
+        try {
+            streams.add(stream);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void unregister(VideoStream stream) {
+        lock.lock();
+        try {
+            streams.remove(stream);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 某路流从"无帧"变为"有帧"时由拉流线程调用，唤醒空闲的推理线程
+     */
+    void onFrameReady() {
+        lock.lock();
+        try {
+            frameReady.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前有效帧率 / 目标帧率
+     */
+    double scale() {
+        return scale;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        monitor.shutdownNow();
+        lock.lock();
+        try {
+            frameReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void workLoop() {
+        while (running) {
+            VideoStream stream;
+            try {
+                stream = next();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (stream == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                inference.accept(stream);
+            } catch (RuntimeException e) {
+                log.warn("Stream {} inference task failed", stream.id(), e);
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - start);
+                stream.finishInference();
+            }
+        }
+    }
+
+    /**
+     * 阻塞直到有一路流可以推理，返回时已占用该流的推理权；调度器关闭时返回 null
+     */
+    private VideoStream next() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                VideoStream best = null;
+                long bestDue = Long.MAX_VALUE;
+                long waitNanos = Long.MAX_VALUE;
+                for (VideoStream stream : streams) {
+                    if (!stream.hasPendingFrame()) {
+                        continue;
+                    }
+                    long due = stream.nextDue();
+                    if (due - now > 0) {
+                        waitNanos = Math.min(waitNanos, due - now);
+                    } else if (best == null || due - bestDue < 0) {
+                        best = stream;
+                        bestDue = due;
+                    }
+                }
+                if (best != null && best.tryStartInference()) {
+                    best.advanceDue(now, periodNanos(best));
+                    // 可能还有其他到期的流，让下一个空闲线程接着挑
+                    frameReady.signal();
+                    return best;
+                }
+                if (best != null) {
+                    continue;
+                }
+                if (waitNanos == Long.MAX_VALUE) {
+                    frameReady.await();
+                } else {
+                    frameReady.awaitNanos(waitNanos);
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long periodNanos(VideoStream stream) {
+        return (long) (1_000_000_000L / (stream.targetFps() * scale));
+    }
+
+    /**
+     * 统计窗口内的帧率与丢帧率，并据此调整降级比例
+     */
+    private void sample() {
+        try {
+            long now = System.nanoTime();
+            double seconds = (now - lastSampleNanos) / 1e9;
+            lastSampleNanos = now;
+            List<VideoStream> snapshot;
+            lock.lock();
+            try {
+                snapshot = List.copyOf(streams);
+            } finally {
+                lock.unlock();
+            }
+            long analyzed = 0;
+            long dropped = 0;
+            for (VideoStream stream : snapshot) {
+                long[] delta = stream.sample(seconds, scale);
+                analyzed += delta[0];
+                dropped += delta[1];
+            }
+            double utilization = busyNanos.getAndSet(0) / (seconds * 1e9 * workerCount);
+            double dropRate = analyzed + dropped == 0 ? 0 : (double) dropped / (analyzed + dropped);
+            double current = scale;
+            if (dropRate > dropThreshold && utilization >= SATURATED_UTILIZATION && current > minScale) {
+                scale = Math.max(minScale, current * DEGRADE_STEP);
+                log.warn("Stream inference saturated (dropRate={}, utilization={}), fps scale {} -> {}",
+                        String.format("%.2f", dropRate), String.format("%.2f", utilization),
+                        String.format("%.2f", current), String.format("%.2f", scale));
+            } else if (current < 1.0 && utilization < RECOVER_UTILIZATION) {
+                scale = Math.min(1.0, current * RECOVER_STEP);
+                log.info("Stream inference recovered (utilization={}), fps scale {} -> {}",
+                        String.format("%.2f", utilization), String.format("%.2f", current), String.format("%.2f", scale));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Stream monitor failed", e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.yuqiangdede.yolo.service;
+
+import com.yuqiangdede.yolo.dto.output.VideoFrameDetectionResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个订阅者的发布队列。
+ * <p>
+ * 推理线程只调用 {@link #offer} 入队，不会被订阅者阻塞；队列有界，满了丢弃最旧的结果。
+ * 有结果待发送时向发布线程池提交一个发送任务，任务把队列发空后退出，同一订阅者同时最多一个发送任务，
+ * 回调按结果顺序串行执行。某个订阅者发送卡住只占住它自己的发送任务，不影响推理和其他订阅者。
+ */
+@Slf4j
+final class StreamSubscription {
+
+    private final String streamId;
+    private final StreamListener listener;
+    private final int capacity;
+    private final Executor executor;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * 以下字段由 this 锁保护
+     */
+    private final ArrayDeque<VideoFrameDetectionResult> queue;
+    private boolean sending;
+    private boolean closing;
+    private boolean closed;
+
+    private Runnable onRemoved = () -> {
+    };
+
+    /**
+     * @param streamId 流 ID，仅用于日志
+     * @param listener 订阅者
+     * @param capacity 待发送结果的上限
+     * @param executor 执行发送任务的线程池
+     */
+    StreamSubscription(String streamId, StreamListener listener, int capacity, Executor executor) {
+        this.streamId = streamId;
+        this.listener = listener;
+        this.capacity = Math.max(1, capacity);
+        this.executor = executor;
+        this.queue = new ArrayDeque<>(this.capacity);
+    }
+
+    /**
+     * 订阅因发送失败被移除时回调，只在创建后、发布前设置一次
+     */
+    void onRemoved(Runnable onRemoved) {
+        this.onRemoved = onRemoved;
+    }
+
+    /**
+     * 入队一个结果，队列满时丢弃最旧的一个
+     */
+    void offer(VideoFrameDetectionResult result) {
+        synchronized (this) {
+            if (closing || closed) {
+                return;
+            }
+            if (queue.size() >= capacity) {
+                queue.pollFirst();
+                dropped.incrementAndGet();
+            }
+            queue.addLast(result);
+            if (sending) {
+                return;
+            }
+            sending = true;
+        }
+        schedule();
+    }
+
+    /**
+     * 流停止：已入队的结果发完后通知订阅者 onClose
+     */
+    void close() {
+        synchronized (this) {
+            if (closing || closed) {
+                return;
+            }
+            closing = true;
+            if (sending) {
+                return;
+            }
+            sending = true;
+        }
+        schedule();
+    }
+
+    long droppedResults() {
+        return dropped.get();
+    }
+
+    synchronized int pending() {
+        return queue.size();
+    }
+
+    private void schedule() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // 发布线程池已关闭，服务正在退出
+            synchronized (this) {
+                sending = false;
+                closed = true;
+                queue.clear();
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            VideoFrameDetectionResult result;
+            boolean notifyClose = false;
+            synchronized (this) {
+                result = queue.pollFirst();
+                if (result == null) {
+                    if (closing && !closed) {
+                        closed = true;
+                        notifyClose = true;
+                    }
+                    sending = false;
+                }
+            }
+            if (result == null) {
+                if (notifyClose) {
+                    notifyClose();
+                }
+                return;
+            }
+            try {
+                listener.onResult(result);
+            } catch (RuntimeException e) {
+                log.info("Stream {} listener removed: {}", streamId, e.getMessage());
+                synchronized (this) {
+                    closed = true;
+                    sending = false;
+                    queue.clear();
+                }
+                onRemoved.run();
+                return;
+            }
+        }
+    }
+
+    private void notifyClose() {
+        try {
+            listener.onClose();
+        } catch (RuntimeException e) {
+            log.debug("Stream {} listener close failed", streamId, e);
+        }
+    }
+}
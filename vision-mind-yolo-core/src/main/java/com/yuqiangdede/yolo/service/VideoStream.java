@@ -0,0 +1,343 @@
+package com.yuqiangdede.yolo.service;
+
+import com.yuqiangdede.yolo.dto.input.StreamInput;
+import com.yuqiangdede.yolo.dto.output.StreamInfo;
+import com.yuqiangdede.yolo.dto.output.VideoFrameDetectionResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import org.opencv.core.Mat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 单路实时流的运行状态。
+ * <p>
+ * 三块帧缓冲轮换使用：拉流线程写 grabbing，写完与 latest 交换；推理线程取帧时把 latest 与 working 交换。
+ * latest 始终是最新一帧，整个过程不复制像素。被覆盖的旧帧分两类：还没到目标帧率的下一个时间点的计入 throttledFrames
+ * （正常限速）；已经到期却等不到推理线程的计入 droppedFrames（推理饱和）。
+ * 同一路流同时最多只有一个推理任务，由 {@link StreamScheduler} 按截止时间挑选。
+ * <p>
+ * 加锁顺序：调度器锁 → 本对象锁，本对象的同步方法内不能回调调度器。
+ */
+final class VideoStream {
+
+    enum Status {STARTING, RUNNING, RECONNECTING, STOPPED}
+
+    private final String id;
+    private final StreamInput input;
+    private final int frameInterval;
+    private final double targetFps;
+    private final long startTime = System.currentTimeMillis();
+    private final List<StreamSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final List<Meter> meters = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong grabbed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong analyzed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running = true;
+    private volatile Status status = Status.STARTING;
+    private volatile String lastError;
+    private Thread grabber;
+
+    /**
+     * 下一帧最早可以推理的时间（System.nanoTime），由调度器在持锁时推进
+     */
+    private volatile long nextDue = System.nanoTime();
+
+    /**
+     * 监控线程每个统计周期更新
+     */
+    private volatile double achievedFps;
+    private volatile double dropRate;
+    private volatile double effectiveFps;
+    private long sampledAnalyzed;
+    private long sampledDropped;
+
+    /**
+     * 以下字段由 this 锁保护
+     */
+    private Mat grabbing;
+    private Mat latest;
+    private Mat working;
+    private boolean latestReady;
+    private int latestIndex;
+    private long latestTimestamp;
+    private int workingIndex;
+    private long workingTimestamp;
+    private boolean inferring;
+    private boolean closed;
+
+    VideoStream(String id, StreamInput input, int frameInterval, double targetFps, Supplier<Mat> frameFactory) {
+        this.id = id;
+        this.input = input;
+        this.frameInterval = frameInterval;
+        this.targetFps = targetFps;
+        this.effectiveFps = targetFps;
+        this.grabbing = frameFactory.get();
+        this.latest = frameFactory.get();
+        this.working = frameFactory.get();
+    }
+
+    String id() {
+        return id;
+    }
+
+    StreamInput input() {
+        return input;
+    }
+
+    int frameInterval() {
+        return frameInterval;
+    }
+
+    double targetFps() {
+        return targetFps;
+    }
+
+    double achievedFps() {
+        return achievedFps;
+    }
+
+    double dropRate() {
+        return dropRate;
+    }
+
+    double effectiveFps() {
+        return effectiveFps;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    void status(Status status) {
+        this.status = status;
+    }
+
+    void lastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    void grabber(Thread grabber) {
+        this.grabber = grabber;
+    }
+
+    Thread grabber() {
+        return grabber;
+    }
+
+    /**
+     * 拉流线程写入的缓冲区，只在拉流线程中访问
+     */
+    Mat grabBuffer() {
+        return grabbing;
+    }
+
+    /**
+     * 推理线程读取的缓冲区，只在持有推理权（{@link #tryStartInference()} 返回 true）期间访问
+     */
+    Mat workBuffer() {
+        return working;
+    }
+
+    int workingIndex() {
+        return workingIndex;
+    }
+
+    long workingTimestamp() {
+        return workingTimestamp;
+    }
+
+    /**
+     * 读到一帧
+     *
+     * @return 帧号，从 1 开始
+     */
+    long onGrabbed() {
+        return grabbed.incrementAndGet();
+    }
+
+    void onSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    void onAnalyzed() {
+        analyzed.incrementAndGet();
+    }
+
+    /**
+     * 把 grabBuffer 中刚读到的帧发布为最新帧，上一帧还没被推理取走时直接覆盖
+     *
+     * @return 是否从"无待推理帧"变为"有待推理帧"，此时需要通知调度器
+     */
+    synchronized boolean publishLatest(int frameIndex, long timestampMs) {
+        if (closed) {
+            return false;
+        }
+        boolean overwritten = latestReady;
+        if (overwritten) {
+            if (System.nanoTime() - nextDue >= 0) {
+                dropped.incrementAndGet();
+            } else {
+                throttled.incrementAndGet();
+            }
+        }
+        Mat tmp = latest;
+        latest = grabbing;
+        grabbing = tmp;
+        latestIndex = frameIndex;
+        latestTimestamp = timestampMs;
+        latestReady = true;
+        return !overwritten && !inferring;
+    }
+
+    /**
+     * 有待推理的新帧且当前没有推理任务
+     */
+    synchronized boolean hasPendingFrame() {
+        return !closed && !inferring && latestReady;
+    }
+
+    long nextDue() {
+        return nextDue;
+    }
+
+    /**
+     * 开始推理一帧后推进截止时间；落后太多时最多补偿一个周期，避免长期落后的流一直排在最前面
+     */
+    void advanceDue(long now, long periodNanos) {
+        long base = nextDue;
+        if (now - periodNanos - base > 0) {
+            base = now - periodNanos;
+        }
+        nextDue = base + periodNanos;
+    }
+
+    /**
+     * 有待推理的新帧且当前没有推理任务时占用推理权
+     */
+    synchronized boolean tryStartInference() {
+        if (closed || inferring || !latestReady) {
+            return false;
+        }
+        inferring = true;
+        return true;
+    }
+
+    /**
+     * 推理任务开始执行时取走最新帧到 workBuffer
+     *
+     * @return 是否取到帧
+     */
+    synchronized boolean takeLatest() {
+        if (closed || !latestReady) {
+            return false;
+        }
+        Mat tmp = working;
+        working = latest;
+        latest = tmp;
+        workingIndex = latestIndex;
+        workingTimestamp = latestTimestamp;
+        latestReady = false;
+        return true;
+    }
+
+    /**
+     * 释放推理权
+     */
+    synchronized void finishInference() {
+        inferring = false;
+        if (closed) {
+            working.release();
+        }
+    }
+
+    /**
+     * 统计上一个周期的实际帧率和丢帧率，只由监控线程调用
+     *
+     * @return {本周期推理帧数, 本周期丢帧数}
+     */
+    long[] sample(double seconds, double scale) {
+        long analyzedNow = analyzed.get();
+        long droppedNow = dropped.get();
+        long analyzedDelta = analyzedNow - sampledAnalyzed;
+        long droppedDelta = droppedNow - sampledDropped;
+        sampledAnalyzed = analyzedNow;
+        sampledDropped = droppedNow;
+        achievedFps = seconds <= 0 ? 0 : analyzedDelta / seconds;
+        dropRate = analyzedDelta + droppedDelta == 0 ? 0 : (double) droppedDelta / (analyzedDelta + droppedDelta);
+        effectiveFps = targetFps * scale;
+        return new long[]{analyzedDelta, droppedDelta};
+    }
+
+    void registerMeters() {
+        meters.add(Gauge.builder("vision.stream.fps", this, VideoStream::achievedFps)
+                .description("Frames inferred per second over the last monitor interval")
+                .tag("stream", id)
+                .register(Metrics.globalRegistry));
+        meters.add(Gauge.builder("vision.stream.drop.rate", this, VideoStream::dropRate)
+                .description("Share of due frames overwritten before an inference worker was free")
+                .tag("stream", id)
+                .register(Metrics.globalRegistry));
+        meters.add(Gauge.builder("vision.stream.effective.fps", this, VideoStream::effectiveFps)
+                .description("Target FPS after degradation")
+                .tag("stream", id)
+                .register(Metrics.globalRegistry));
+    }
+
+    /**
+     * 把结果放入每个订阅者的发布队列，只入队、不发送，推理线程不会被慢的订阅者阻塞
+     */
+    void publish(VideoFrameDetectionResult result) {
+        for (StreamSubscription subscription : subscriptions) {
+            subscription.offer(result);
+        }
+    }
+
+    Runnable subscribe(StreamSubscription subscription) {
+        subscription.onRemoved(() -> subscriptions.remove(subscription));
+        subscriptions.add(subscription);
+        return () -> subscriptions.remove(subscription);
+    }
+
+    /**
+     * 标记停止并通知订阅者，拉流线程读完当前帧后退出
+     */
+    void stop() {
+        running = false;
+        for (Meter meter : meters) {
+            Metrics.globalRegistry.remove(meter);
+        }
+        meters.clear();
+        for (StreamSubscription subscription : subscriptions) {
+            subscription.close();
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * 拉流线程退出时调用，正在推理的缓冲区由推理线程结束时释放
+     */
+    synchronized void releaseBuffers() {
+        closed = true;
+        status = Status.STOPPED;
+        grabbing.release();
+        latest.release();
+        if (!inferring) {
+            working.release();
+        }
+    }
+
+    StreamInfo info() {
+        return new StreamInfo(id, input.getRtspUrl(), status.name(), frameInterval, targetFps, effectiveFps,
+                startTime, grabbed.get(), skipped.get(), throttled.get(), analyzed.get(), dropped.get(),
+                achievedFps, dropRate, subscriptions.size(), lastError);
+    }
+}
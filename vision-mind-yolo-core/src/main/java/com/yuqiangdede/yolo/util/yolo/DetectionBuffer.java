@@ -0,0 +1,248 @@
+package com.yuqiangdede.yolo.util.yolo;
+
+import java.util.Arrays;
+
+/**
+ * 检测框的原始类型缓冲区，按列存储（x1/y1/x2/y2/score/cls 各一个数组），避免每个框装箱成 {@code List<Float>}。
+ * <p>
+ * 坐标为原图上的左上、右下角；{@code ref} 记录候选框在模型输出中的行号，供分割等需要回查原始输出的场景使用。
+ * 非线程安全，每次推理单独创建。
+ */
+public final class DetectionBuffer {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private float[] x1;
+    private float[] y1;
+    private float[] x2;
+    private float[] y2;
+    private float[] score;
+    private int[] cls;
+    private int[] ref;
+    private int size;
+
+    public DetectionBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DetectionBuffer(int capacity) {
+        int initial = Math.max(1, capacity);
+        x1 = new float[initial];
+        y1 = new float[initial];
+        x2 = new float[initial];
+        y2 = new float[initial];
+        score = new float[initial];
+        cls = new int[initial];
+        ref = new int[initial];
+    }
+
+    /**
+     * 追加一个框，ref 取追加时的序号
+     */
+    public void add(float x1, float y1, float x2, float y2, float score, int cls) {
+        add(x1, y1, x2, y2, score, cls, size);
+    }
+
+    /**
+     * 追加一个框
+     *
+     * @param ref 候选框在模型输出中的行号
+     */
+    public void add(float x1, float y1, float x2, float y2, float score, int cls, int ref) {
+        if (size == this.x1.length) {
+            grow();
+        }
+        this.x1[size] = x1;
+        this.y1[size] = y1;
+        this.x2[size] = x2;
+        this.y2[size] = y2;
+        this.score[size] = score;
+        this.cls[size] = cls;
+        this.ref[size] = ref;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public float x1(int i) {
+        return x1[i];
+    }
+
+    public float y1(int i) {
+        return y1[i];
+    }
+
+    public float x2(int i) {
+        return x2[i];
+    }
+
+    public float y2(int i) {
+        return y2[i];
+    }
+
+    public float score(int i) {
+        return score[i];
+    }
+
+    public int cls(int i) {
+        return cls[i];
+    }
+
+    public int ref(int i) {
+        return ref[i];
+    }
+
+    /**
+     * 按置信度从高到低排序，同分时保持原顺序
+     */
+    public void sortByScore() {
+        compact(scoreOrder(), size);
+    }
+
+    /**
+     * 按类别做非极大值抑制：按置信度从高到低遍历，同类且 IoU 大于阈值的低分框被删除。
+     * 执行后缓冲区只保留留下的框，并按置信度从高到低排列。
+     *
+     * @param iouThreshold IoU 阈值
+     */
+    public void nms(float iouThreshold) {
+        int n = size;
+        if (n < 2) {
+            return;
+        }
+        int[] order = scoreOrder();
+        // 按 (类别, 分数名次) 排序，同类框连续排列，内层循环只扫同类的框
+        long[] keys = new long[n];
+        for (int rank = 0; rank < n; rank++) {
+            keys[rank] = ((long) cls[order[rank]] << 32) | rank;
+        }
+        Arrays.sort(keys);
+        float[] sx1 = new float[n];
+        float[] sy1 = new float[n];
+        float[] sx2 = new float[n];
+        float[] sy2 = new float[n];
+        float[] area = new float[n];
+        for (int p = 0; p < n; p++) {
+            int i = order[(int) keys[p]];
+            sx1[p] = x1[i];
+            sy1[p] = y1[i];
+            sx2[p] = x2[i];
+            sy2[p] = y2[i];
+            area[p] = Math.max(0f, x2[i] - x1[i]) * Math.max(0f, y2[i] - y1[i]);
+        }
+
+        boolean[] removed = new boolean[n];
+        int[] keptRanks = new int[n];
+        int kept = 0;
+        int segmentStart = 0;
+        while (segmentStart < n) {
+            long segmentClass = keys[segmentStart] >> 32;
+            int segmentEnd = segmentStart + 1;
+            while (segmentEnd < n && keys[segmentEnd] >> 32 == segmentClass) {
+                segmentEnd++;
+            }
+            for (int a = segmentStart; a < segmentEnd; a++) {
+                if (removed[a]) {
+                    continue;
+                }
+                keptRanks[kept++] = (int) keys[a];
+                float ax1 = sx1[a];
+                float ay1 = sy1[a];
+                float ax2 = sx2[a];
+                float ay2 = sy2[a];
+                float aArea = area[a];
+                for (int b = a + 1; b < segmentEnd; b++) {
+                    if (removed[b]) {
+                        continue;
+                    }
+                    float w = Math.min(ax2, sx2[b]) - Math.max(ax1, sx1[b]);
+                    if (w <= 0f) {
+                        continue;
+                    }
+                    float h = Math.min(ay2, sy2[b]) - Math.max(ay1, sy1[b]);
+                    if (h <= 0f) {
+                        continue;
+                    }
+                    float inter = w * h;
+                    if (inter > iouThreshold * (aArea + area[b] - inter)) {
+                        removed[b] = true;
+                    }
+                }
+            }
+            segmentStart = segmentEnd;
+        }
+        // 名次越小分数越高，排序后即恢复按置信度从高到低
+        Arrays.sort(keptRanks, 0, kept);
+        for (int k = 0; k < kept; k++) {
+            keptRanks[k] = order[keptRanks[k]];
+        }
+        compact(keptRanks, kept);
+    }
+
+    /**
+     * @return 按置信度从高到低排列的下标
+     */
+    private int[] scoreOrder() {
+        int n = size;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int bits = Float.floatToIntBits(score[i]);
+            // 转成可按有符号整数比较的形式，负分也能正确排序
+            int sortable = bits ^ ((bits >> 31) & 0x7fffffff);
+            // 低 32 位存取反后的下标，倒序读取时同分的框保持原顺序
+            keys[i] = ((long) sortable << 32) | (~i & 0xffffffffL);
+        }
+        Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int k = 0; k < n; k++) {
+            order[k] = ~(int) keys[n - 1 - k];
+        }
+        return order;
+    }
+
+    private void compact(int[] order, int count) {
+        int capacity = Math.max(1, count);
+        float[] nx1 = new float[capacity];
+        float[] ny1 = new float[capacity];
+        float[] nx2 = new float[capacity];
+        float[] ny2 = new float[capacity];
+        float[] nScore = new float[capacity];
+        int[] nCls = new int[capacity];
+        int[] nRef = new int[capacity];
+        for (int k = 0; k < count; k++) {
+            int i = order[k];
+            nx1[k] = x1[i];
+            ny1[k] = y1[i];
+            nx2[k] = x2[i];
+            ny2[k] = y2[i];
+            nScore[k] = score[i];
+            nCls[k] = cls[i];
+            nRef[k] = ref[i];
+        }
+        x1 = nx1;
+        y1 = ny1;
+        x2 = nx2;
+        y2 = ny2;
+        score = nScore;
+        cls = nCls;
+        ref = nRef;
+        size = count;
+    }
+
+    private void grow() {
+        int capacity = x1.length * 2;
+        x1 = Arrays.copyOf(x1, capacity);
+        y1 = Arrays.copyOf(y1, capacity);
+        x2 = Arrays.copyOf(x2, capacity);
+        y2 = Arrays.copyOf(y2, capacity);
+        score = Arrays.copyOf(score, capacity);
+        cls = Arrays.copyOf(cls, capacity);
+        ref = Arrays.copyOf(ref, capacity);
+    }
+}
@@ -3,11 +3,7 @@ package com.yuqiangdede.yolo.util.yolo;
 import ai.onnxruntime.*;
 import com.yuqiangdede.yolo.config.Constant;
 import lombok.extern.slf4j.Slf4j;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.Rect;
-import org.opencv.core.Size;
-import org.opencv.imgproc.Imgproc;
 
 import java.nio.FloatBuffer;
 import java.util.*;
@@ -54,40 +50,45 @@ public class YoloBaseUtil {
     /**
      * 加载模型,可以指定其他的模型，默认不使用，直接用默认带的模型就可以
      *
-     * @param path 模型路径
+     * @param path      模型路径
+     * @param poolName  会话池名称，对应配置项 {@code yolo.<poolName>.session.*}
      * @return 模型实体
      */
-    static Model load(String path, boolean nmsEnabled) throws OrtException {
-        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
-            OrtSession session = environment.createSession(path, options);
-            OnnxModelMetadata metadata = session.getMetadata();
-            Map<String, NodeInfo> infoMap = session.getInputInfo();
-            TensorInfo nodeInfo = (TensorInfo) infoMap.get("images").getInfo();
-            String nameClass = metadata.getCustomMetadata().get("names");
-
-            Map<Integer, String> names = stringToMap(nameClass);
-            long count = 1;
-            long channels = nodeInfo.getShape()[1];
-            long netHeight = nodeInfo.getShape()[2];
-            long netWidth = nodeInfo.getShape()[3];
-            if (netHeight <= 0 || netWidth <= 0) {
-                log.warn("Invalid model input size detected. Falling back to 640x640. netHeight={}, netWidth={}", netHeight, netWidth);
-                netHeight = 640;
-                netWidth = 640;
-            }
-            float confThreshold = Constant.CONF_THRESHOLD;
-            float nmsThreshold = Constant.NMS_THRESHOLD;
-
-            log.info("load yolo model: path={}, nmsEnabled={}", path, nmsEnabled);
-            return new Model(environment, session, names, count, channels, netHeight, netWidth, confThreshold, nmsThreshold, nmsEnabled);
+    static Model load(String path, boolean nmsEnabled, String poolName) throws OrtException {
+        YoloSessionPool pool = YoloSessionPool.create(poolName, path, Constant.sessionPoolConfig(poolName));
+        OrtSession session = pool.metadataSession();
+        OnnxModelMetadata metadata = session.getMetadata();
+        Map<String, NodeInfo> infoMap = session.getInputInfo();
+        TensorInfo nodeInfo = (TensorInfo) infoMap.get("images").getInfo();
+        String nameClass = metadata.getCustomMetadata().get("names");
+
+        Map<Integer, String> names = stringToMap(nameClass);
+        long count = 1;
+        // 导出时带动态 batch 维的模型输入形如 [-1, 3, H, W]，可以把多个请求拼成一个 batch 推理
+        boolean dynamicBatch = nodeInfo.getShape()[0] <= 0;
+        long channels = nodeInfo.getShape()[1];
+        long netHeight = nodeInfo.getShape()[2];
+        long netWidth = nodeInfo.getShape()[3];
+        if (netHeight <= 0 || netWidth <= 0) {
+            log.warn("Invalid model input size detected. Falling back to 640x640. netHeight={}, netWidth={}", netHeight, netWidth);
+            netHeight = 640;
+            netWidth = 640;
         }
+        float confThreshold = Constant.CONF_THRESHOLD;
+        float nmsThreshold = Constant.NMS_THRESHOLD;
+
+        log.info("load yolo model: path={}, nmsEnabled={}, dynamicBatch={}", path, nmsEnabled, dynamicBatch);
+        return new Model(environment, pool, names, count, channels, netHeight, netWidth, confThreshold, nmsThreshold, nmsEnabled, dynamicBatch);
     }
 
 
 
     static class Model {
         public OrtEnvironment env;
-        public OrtSession session;
+        /**
+         * 会话池，推理前 borrow，用完归还
+         */
+        public YoloSessionPool sessions;
         public Map<Integer, String> names;
         public long count;
         public long channels;
@@ -102,10 +103,14 @@ public class YoloBaseUtil {
          */
         public float nmsThreshold;
         public boolean nmsEnabled;
+        /**
+         * 输入的 batch 维是否为动态，只有动态 batch 的模型才能走批量推理
+         */
+        public boolean dynamicBatch;
 
-        public Model(OrtEnvironment env, OrtSession session, Map<Integer, String> names, long count, long channels, long netHeight, long netWidth, float confThreshold, float nmsThreshold, boolean nmsEnabled) {
+        public Model(OrtEnvironment env, YoloSessionPool sessions, Map<Integer, String> names, long count, long channels, long netHeight, long netWidth, float confThreshold, float nmsThreshold, boolean nmsEnabled, boolean dynamicBatch) {
             this.env = env;
-            this.session = session;
+            this.sessions = sessions;
             this.names = names;
             this.count = count;
             this.channels = channels;
@@ -114,6 +119,7 @@ public class YoloBaseUtil {
             this.confThreshold = confThreshold;
             this.nmsThreshold = nmsThreshold;
             this.nmsEnabled = nmsEnabled;
+            this.dynamicBatch = dynamicBatch;
         }
 
 
@@ -121,60 +127,67 @@ public class YoloBaseUtil {
     }
 
     /**
-     * 转换成Tensor数据格式
+     * 解码 end2end 导出的检测输出，每行为 [x1, y1, x2, y2, score, cls]，坐标按长边还原到原图
      *
-     * @param mat   原始图片
+     * @param data  模型输出，去掉 batch 维
+     * @param src   原图
      * @param model 模型
-     * @return OnnxTensor
+     * @param conf  置信度阈值，为空时取模型默认值
+     * @return 超过阈值的候选框
      */
-    static OnnxTensor transferTensor(Mat mat, Model model) throws OrtException {
-
-        // 计算最大边长并创建空白图像,这里是先按照长边造一个正方形出来，然后把图片放到左上角，后面再做缩放，防止图像宽高形变
-        int maxImageLength = Math.max(mat.cols(), mat.rows());
-        Mat maxImage = Mat.zeros(new Size(maxImageLength, maxImageLength), CvType.CV_8UC3);
-        Rect roi = new Rect(0, 0, mat.cols(), mat.rows());
-        mat.copyTo(new Mat(maxImage, roi));
-
-        Mat dst = new Mat();
-        // 转换成模型的大小
-        Imgproc.resize(maxImage, dst, new Size(model.netWidth, model.netHeight));
-        // 将图片颜色空间从BGR转换为RGB，因为模型训练时使用的图片颜色空间是RGB
-        Imgproc.cvtColor(dst, dst, Imgproc.COLOR_BGR2RGB);
-        // 将图片数据类型转换为32位浮点数，并将每个像素值归一化到0-1之间
-        dst.convertTo(dst, CvType.CV_32FC3, 1. / 255);
-        // 创建一个数组用于存储调整后的图片数据，大小为通道数*图片宽度*图片高度
-        float[] whc = new float[Long.valueOf(model.channels).intValue() * Long.valueOf(model.netWidth).intValue() * Long.valueOf(model.netHeight).intValue()];
-        // 从Mat对象中获取图片数据并存储到数组中
-        dst.get(0, 0, whc);
-        // 将宽高通道（WHC）格式的数据转换为通道宽高（CHW）格式，因为模型输入需要这种格式
-        float[] chw = whc2cwh(whc);
-        // 使用调整后的图片数据创建一个OnnxTensor对象，这将作为模型的输入
-        return OnnxTensor.createTensor(model.env, FloatBuffer.wrap(chw), new long[]{model.count, model.channels, model.netWidth, model.netHeight});
+    static DetectionBuffer decodeEnd2End(float[][] data, Mat src, Model model, Float conf) {
+        float scaleW = (float) Math.max(src.width(), src.height()) / model.netWidth;
+        float scaleH = (float) Math.max(src.width(), src.height()) / model.netHeight;
+        float threshold = conf == null ? model.confThreshold : conf;
+        DetectionBuffer boxes = new DetectionBuffer();
+        for (int i = 0; i < data.length; i++) {
+            float[] row = data[i];
+            float score = row[4];
+            if (score <= threshold) {
+                continue;
+            }
+            boxes.add(row[0] * scaleW, row[1] * scaleH, row[2] * scaleW, row[3] * scaleH, score, (int) row[5], i);
+        }
+        return boxes;
     }
 
     /**
-     * 将宽高类型转换为类型宽高
+     * 为动态 batch 的模型创建微批调度器，工作线程数与会话池大小一致
      *
-     * @param src 宽高类型的图片数据
-     * @return 类型宽高的图片数据
+     * @param poolName  会话池名称
+     * @param model     模型
+     * @param maxBatch  单次推理最多合并的请求数
+     * @param maxWaitMs 最多等待多久收集后续请求
+     * @return 调度器；模型输入 batch 维固定时返回 null，由调用方逐个推理
      */
-    private static float[] whc2cwh(float[] src) {
-        // 创建一个与src相同长度的数组chw，用于存储转换后的类型宽高数据
-        float[] chw = new float[src.length];
-        // 初始化计数器j为0
-        int j = 0;
-        // 遍历每个通道
-        for (int ch = 0; ch < 3; ++ch) {
-            // 在每个通道内，从当前通道开始，每隔3个元素取一个元素
-            for (int i = ch; i < src.length; i += 3) {
-                // 将取出的元素赋值给chw数组的当前位置
-                chw[j] = src[i];
-                // 计数器j自增
-                j++;
-            }
+    static YoloBatchScheduler batchScheduler(String poolName, Model model, int maxBatch, long maxWaitMs) {
+        if (!model.dynamicBatch) {
+            log.info("yolo model {} has a fixed batch axis, batching disabled", poolName);
+            return null;
         }
-        // 返回转换后的类型宽高数据
-        return chw;
+        int imageSize = (int) (model.channels * model.netHeight * model.netWidth);
+        return new YoloBatchScheduler(poolName, imageSize, maxBatch, maxWaitMs, Constant.YOLO_BATCH_TIMEOUT_MS,
+                model.sessions.stats().maxSize(),
+                (input, batchSize) -> {
+                    long[] shape = {batchSize, model.channels, model.netHeight, model.netWidth};
+                    try (OnnxTensor tensor = OnnxTensor.createTensor(model.env, input, shape);
+                         YoloSessionPool.Lease lease = model.sessions.borrow();
+                         OrtSession.Result result = lease.session().run(Collections.singletonMap("images", tensor))) {
+                        return (float[][][]) result.get(0).getValue();
+                    }
+                });
+    }
+
+    /**
+     * 转换成Tensor数据格式
+     *
+     * @param mat   原始图片
+     * @param model 模型
+     * @return OnnxTensor，直接引用当前线程的预处理 buffer，需在本线程内用完关闭
+     */
+    static OnnxTensor transferTensor(Mat mat, Model model) throws OrtException {
+        FloatBuffer chw = YoloLetterbox.toChwBuffer(mat, (int) model.netWidth, (int) model.netHeight);
+        return OnnxTensor.createTensor(model.env, chw, new long[]{model.count, model.channels, model.netHeight, model.netWidth});
     }
 
 }
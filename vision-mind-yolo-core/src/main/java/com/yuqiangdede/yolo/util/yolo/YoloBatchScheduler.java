@@ -0,0 +1,248 @@
+package com.yuqiangdede.yolo.util.yolo;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 动态微批调度器：把并发到达的单图推理请求攒成一个 N×C×H×W 的 batch，只调用一次模型，再把结果分发回各请求。
+ * <p>
+ * 工作线程取到第一个请求后，最多再等 {@code maxWait} 收集后续请求，攒够 {@code maxBatch} 个立即执行。
+ * 空闲时单个请求最多多等 {@code maxWait}，并发高时每次推理都能吃满 batch。
+ * 只适用于导出时带动态 batch 维的模型，固定 batch=1 的模型由调用方直接逐个推理。
+ * <p>
+ * 每个工作线程持有一块 {@code maxBatch} 张图大小的 direct buffer，各请求的预处理结果（调用方线程复用的
+ * direct buffer）直接拷进对应区段，ONNX Runtime 用这块 buffer 建 tensor 时不再复制。
+ * 调用方在结果返回前一直阻塞，它的 buffer 在被拷走之前不会被覆盖。
+ */
+@Slf4j
+public final class YoloBatchScheduler implements AutoCloseable {
+
+    /**
+     * 执行一个 batch 的推理
+     */
+    @FunctionalInterface
+    public interface BatchRunner {
+        /**
+         * @param input     按请求顺序拼接好的 CHW 数据（native 字节序的 direct buffer），position 为 0，
+         *                  remaining 为 batchSize * imageSize；只在本次调用内有效
+         * @param batchSize 本次 batch 的请求数
+         * @return 模型第一个输出，第一维与请求一一对应
+         */
+        float[][][] run(FloatBuffer input, int batchSize) throws Exception;
+    }
+
+    private final String name;
+    private final int imageSize;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final long timeoutMs;
+    private final BatchRunner runner;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final DistributionSummary batchSizes;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    /**
+     * 入队与关闭互斥：close 之后不会再有请求进入队列，排干队列时不会漏掉请求
+     */
+    private final Object lifecycle = new Object();
+    private volatile boolean running = true;
+
+    /**
+     * @param name        模型简称，用于线程名和指标
+     * @param imageSize   单张图片 CHW 数据的长度
+     * @param maxBatch    单次推理最多合并的请求数
+     * @param maxWaitMs   收到第一个请求后最多等待多久收集后续请求
+     * @param timeoutMs   调用方最多等待结果的时间，超时抛出异常
+     * @param workerCount 并行执行 batch 的线程数，一般与会话池大小一致
+     * @param runner      batch 推理实现
+     */
+    public YoloBatchScheduler(String name, int imageSize, int maxBatch, long maxWaitMs, long timeoutMs,
+                              int workerCount, BatchRunner runner) {
+        this.name = name;
+        this.imageSize = imageSize;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMs));
+        this.timeoutMs = Math.max(1, timeoutMs);
+        this.runner = runner;
+        this.batchSizes = DistributionSummary.builder("vision.yolo.batch.size")
+                .description("Requests merged into one YOLO inference call")
+                .tag("model", name)
+                .register(Metrics.globalRegistry);
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::loop, "yolo-batch-" + name + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("yolo batch scheduler started: model={}, maxBatch={}, maxWaitMs={}, workers={}",
+                name, this.maxBatch, maxWaitMs, workers.size());
+    }
+
+    /**
+     * 提交单张图片并阻塞等待结果
+     *
+     * @param chw 单张图片的 CHW 数据，从 position 起取 imageSize 个；返回前不得修改
+     * @return 该图片对应的模型输出
+     */
+    public float[][] infer(FloatBuffer chw) {
+        if (chw.remaining() != imageSize) {
+            throw new IllegalArgumentException("Expected " + imageSize + " input values but got " + chw.remaining());
+        }
+        Pending pending = new Pending(chw);
+        synchronized (lifecycle) {
+            if (!running) {
+                throw new IllegalStateException("Batch scheduler " + name + " is closed");
+            }
+            queue.add(pending);
+        }
+        try {
+            return pending.result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            pending.abandon();
+            throw new IllegalStateException("No " + name + " batch result within " + timeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            // 调用方返回后会复用它的 buffer，正在拷贝时等拷完，还没拷时让工作线程跳过
+            pending.abandon();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + name + " batch", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    private void loop() {
+        FloatBuffer input = ByteBuffer.allocateDirect(maxBatch * imageSize * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatch) {
+                    Pending next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                execute(batch, input);
+            } catch (InterruptedException e) {
+                fail(batch, e);
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<Pending> batch, FloatBuffer input) {
+        // 拷贝、计数、推理任何一步出错都要让本批调用方失败，不能带着未完成的请求退出工作线程
+        int size = 0;
+        try {
+            input.clear();
+            for (Iterator<Pending> it = batch.iterator(); it.hasNext(); ) {
+                if (it.next().copyTo(input, size * imageSize)) {
+                    size++;
+                } else {
+                    it.remove();
+                }
+            }
+            if (size == 0) {
+                return;
+            }
+            input.limit(size * imageSize);
+            // 先计数再唤醒调用方，调用方拿到结果时统计已包含本批
+            batches.incrementAndGet();
+            requests.addAndGet(size);
+            batchSizes.record(size);
+            float[][][] output = runner.run(input, size);
+            if (output.length != size) {
+                throw new IllegalStateException("Model returned " + output.length + " results for a batch of " + size);
+            }
+            for (int i = 0; i < size; i++) {
+                batch.get(i).result.complete(output[i]);
+            }
+        } catch (Throwable e) {
+            log.error("yolo batch inference failed: model={}, batchSize={}", name, size, e);
+            fail(batch, e);
+        }
+    }
+
+    private static void fail(List<Pending> batch, Throwable error) {
+        for (Pending pending : batch) {
+            pending.result.completeExceptionally(error);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(batches.get(), requests.get(), queue.size());
+    }
+
+    @Override
+    public void close() {
+        synchronized (lifecycle) {
+            running = false;
+        }
+        workers.forEach(Thread::interrupt);
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        fail(left, new IllegalStateException("Batch scheduler " + name + " is closed"));
+    }
+
+    /**
+     * @param batches  累计执行的推理次数
+     * @param requests 累计处理的请求数
+     * @param queued   当前排队中的请求数
+     */
+    public record Stats(long batches, long requests, int queued) {
+    }
+
+    private static final class Pending {
+        private final FloatBuffer chw;
+        private final CompletableFuture<float[][]> result = new CompletableFuture<>();
+        private boolean abandoned;
+
+        private Pending(FloatBuffer chw) {
+            this.chw = chw;
+        }
+
+        /**
+         * 拷到 batch buffer 的 offset 处
+         *
+         * @return 调用方已放弃时返回 false
+         */
+        private synchronized boolean copyTo(FloatBuffer batch, int offset) {
+            if (abandoned) {
+                return false;
+            }
+            batch.put(offset, chw, chw.position(), chw.remaining());
+            return true;
+        }
+
+        private synchronized void abandon() {
+            abandoned = true;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.yuqiangdede.yolo.util.yolo;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * YOLO 输入预处理：先缩放再补边，直接把 RGB 三个通道写进每线程复用的 direct FloatBuffer（NCHW，batch=1）。
+ * <p>
+ * 与原先"先补成长边正方形 → 缩放 → cvtColor → convertTo → float[] → whc2cwh"相比，
+ * 不再分配长边大小的正方形、float 图以及两份 Java 数组。图片仍贴在左上角，只在右侧和下方补 0，
+ * 所以后处理里按 {@code max(w, h) / netSize} 还原坐标的逻辑保持不变。
+ * <p>
+ * 返回的 buffer 属于当前线程，下一次同尺寸的调用会被覆盖；用它创建的 OnnxTensor 必须在同一线程内用完并关闭，
+ * 交给 {@link YoloBatchScheduler} 时当前线程阻塞到拷贝完成为止。
+ * <p>
+ * 每个线程按输入尺寸各保留一份工作区（检测 640、FastSAM 1024 在同一个 Tomcat 线程上交替时不会反复重建），
+ * 最多 {@value #MAX_SIZES_PER_THREAD} 种尺寸，超出时释放最久未用的一份。
+ */
+public final class YoloLetterbox {
+
+    private static final int MAX_SIZES_PER_THREAD = 4;
+
+    /**
+     * 按 (宽, 高) 索引，访问顺序排列，最久未用的在最前
+     */
+    private static final ThreadLocal<LinkedHashMap<Long, Workspace>> WORKSPACES =
+            ThreadLocal.withInitial(() -> new LinkedHashMap<>(MAX_SIZES_PER_THREAD * 2, 0.75f, true));
+
+    private YoloLetterbox() {
+    }
+
+    /**
+     * @param src       BGR 原图
+     * @param netWidth  模型输入宽
+     * @param netHeight 模型输入高
+     * @return 当前线程复用的 CHW 数据，position 为 0，limit 为 3 * netWidth * netHeight
+     */
+    public static FloatBuffer toChwBuffer(Mat src, int netWidth, int netHeight) {
+        int maxSide = Math.max(src.cols(), src.rows());
+        int newWidth = Math.min(netWidth, Math.max(1, Math.round((float) src.cols() * netWidth / maxSide)));
+        int newHeight = Math.min(netHeight, Math.max(1, Math.round((float) src.rows() * netHeight / maxSide)));
+        return toChwBuffer(src, netWidth, netHeight, newWidth, newHeight, 0, 0, 0);
+    }
+
+    /**
+     * 按调用方给定的缩放尺寸和补边位置预处理，用于居中补边的模型（如 FastSAM）
+     *
+     * @param src       BGR 原图
+     * @param netWidth  模型输入宽
+     * @param netHeight 模型输入高
+     * @param newWidth  缩放后的图片宽
+     * @param newHeight 缩放后的图片高
+     * @param left      左侧补边宽度
+     * @param top       上方补边高度
+     * @param padValue  补边像素值
+     * @return 当前线程复用的 CHW 数据，position 为 0，limit 为 3 * netWidth * netHeight
+     */
+    public static FloatBuffer toChwBuffer(Mat src, int netWidth, int netHeight, int newWidth, int newHeight,
+                                          int left, int top, double padValue) {
+        Workspace ws = workspace(netWidth, netHeight);
+        Mat resized = src;
+        if (newWidth != src.cols() || newHeight != src.rows()) {
+            Imgproc.resize(src, ws.resized, new Size(newWidth, newHeight));
+            resized = ws.resized;
+        }
+        Core.copyMakeBorder(resized, ws.padded, top, netHeight - newHeight - top, left, netWidth - newWidth - left,
+                Core.BORDER_CONSTANT, Scalar.all(padValue));
+        // BGR -> RGB 通过按 2、1、0 的顺序取通道完成，归一化在 8 位转 float 时一起做，直接写入 buffer
+        for (int c = 0; c < 3; c++) {
+            Core.extractChannel(ws.padded, ws.channel, 2 - c);
+            ws.channel.convertTo(ws.planes[c], CvType.CV_32F, 1. / 255);
+        }
+        ws.floats.clear();
+        return ws.floats;
+    }
+
+    private static Workspace workspace(int netWidth, int netHeight) {
+        LinkedHashMap<Long, Workspace> workspaces = WORKSPACES.get();
+        long key = ((long) netWidth << 32) | (netHeight & 0xFFFFFFFFL);
+        Workspace ws = workspaces.get(key);
+        if (ws == null) {
+            if (workspaces.size() >= MAX_SIZES_PER_THREAD) {
+                Iterator<Workspace> eldest = workspaces.values().iterator();
+                eldest.next().release();
+                eldest.remove();
+            }
+            ws = new Workspace(netWidth, netHeight);
+            workspaces.put(key, ws);
+        }
+        return ws;
+    }
+
+    /**
+     * 每个线程一份的中间 Mat 和输出 buffer，三个通道平面直接映射在 buffer 的对应区段上
+     */
+    private static final class Workspace {
+        private final Mat resized = new Mat();
+        private final Mat padded = new Mat();
+        private final Mat channel = new Mat();
+        private final Mat[] planes = new Mat[3];
+        private final FloatBuffer floats;
+
+        private Workspace(int width, int height) {
+            int planeBytes = width * height * Float.BYTES;
+            ByteBuffer bytes = ByteBuffer.allocateDirect(3 * planeBytes).order(ByteOrder.nativeOrder());
+            for (int c = 0; c < 3; c++) {
+                ByteBuffer plane = bytes.slice(c * planeBytes, planeBytes).order(ByteOrder.nativeOrder());
+                planes[c] = new Mat(height, width, CvType.CV_32FC1, plane);
+            }
+            this.floats = bytes.asFloatBuffer();
+        }
+
+        /**
+         * 释放 Mat 的本地内存；direct buffer 随对象回收
+         */
+        private void release() {
+            resized.release();
+            padded.release();
+            channel.release();
+            for (Mat plane : planes) {
+                plane.release();
+            }
+        }
+    }
+}
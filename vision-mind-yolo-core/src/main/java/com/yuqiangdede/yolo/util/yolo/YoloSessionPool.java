@@ -0,0 +1,270 @@
+package com.yuqiangdede.yolo.util.yolo;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.yuqiangdede.platform.common.runtime.OnnxSessionFactory;
+import com.yuqiangdede.yolo.config.SessionPoolConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个模型的 ONNX 会话池。
+ * <p>
+ * 会话按需创建，最多 {@link SessionPoolConfig#poolSize()} 个；请求通过 {@link #borrow()} 独占一个会话，
+ * 用完在 try-with-resources 中归还。全部会话都被占用时请求排队等待，等待时间记录到
+ * Micrometer 计时器 {@code vision.yolo.session.wait}（tag: model、pool），同时可通过 {@link #stats()} 查看。
+ * <p>
+ * 每个会话池有唯一的 {@link #id()}（模型名 + 模型文件 + 序号），同一模型重复创建时互不影响，
+ * 各自只关闭自己的会话；close 时从全局列表和 Micrometer 中移除自己的指标。
+ * 新会话在锁外加载，加载期间 {@link #stats()}、归还和借用空闲会话都不会被阻塞。
+ */
+@Slf4j
+public final class YoloSessionPool implements AutoCloseable {
+
+    private static final OnnxSessionFactory SESSION_FACTORY = new OnnxSessionFactory();
+    private static final Map<String, YoloSessionPool> POOLS = new ConcurrentHashMap<>();
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final String id;
+    private final String name;
+    private final String modelPath;
+    private final SessionPoolConfig config;
+    private final LinkedBlockingDeque<OrtSession> idle = new LinkedBlockingDeque<>();
+    private final List<OrtSession> all = new ArrayList<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final Timer waitTimer;
+    private final List<Meter> meters = new ArrayList<>();
+    private volatile boolean closed;
+
+    private YoloSessionPool(String name, String modelPath, SessionPoolConfig config) throws OrtException {
+        this.id = name + "@" + modelPath + "#" + SEQUENCE.incrementAndGet();
+        this.name = name;
+        this.modelPath = modelPath;
+        this.config = config;
+        // pool tag 保证重新创建的会话池注册的是新指标，而不是拿回旧池已注册的同名指标
+        this.waitTimer = Timer.builder("vision.yolo.session.wait")
+                .description("Time spent waiting for a pooled ONNX session")
+                .tag("model", name)
+                .tag("pool", id)
+                .register(Metrics.globalRegistry);
+        meters.add(waitTimer);
+        meters.add(Gauge.builder("vision.yolo.session.in-use", inUse, AtomicInteger::get)
+                .tag("model", name)
+                .tag("pool", id)
+                .register(Metrics.globalRegistry));
+        meters.add(Gauge.builder("vision.yolo.session.created", created, AtomicInteger::get)
+                .tag("model", name)
+                .tag("pool", id)
+                .register(Metrics.globalRegistry));
+        try {
+            // 先建一个会话，调用方需要用它读取输入尺寸、类别名等元数据
+            created.incrementAndGet();
+            idle.add(createSession());
+        } catch (OrtException | RuntimeException e) {
+            removeMeters();
+            throw e;
+        }
+    }
+
+    /**
+     * 创建会话池并登记到全局列表，便于统一查看各模型的等待情况。同一模型可以有多个会话池，由创建者各自关闭。
+     *
+     * @param name      模型简称，用于日志和指标
+     * @param modelPath 模型文件路径
+     * @param config    会话池配置
+     */
+    public static YoloSessionPool create(String name, String modelPath, SessionPoolConfig config) throws OrtException {
+        YoloSessionPool pool = new YoloSessionPool(name, modelPath, config);
+        POOLS.put(pool.id, pool);
+        return pool;
+    }
+
+    /**
+     * @return 会话池的唯一标识，{@link #allStats()} 的 key
+     */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * @return 所有未关闭会话池的统计信息，按 {@link #id()} 索引
+     */
+    public static Map<String, Stats> allStats() {
+        Map<String, Stats> result = new ConcurrentHashMap<>();
+        POOLS.forEach((key, pool) -> result.put(key, pool.stats()));
+        return result;
+    }
+
+    /**
+     * @return 池中任意一个会话，仅用于读取元数据，不要用它执行推理
+     */
+    OrtSession metadataSession() {
+        synchronized (all) {
+            return all.get(0);
+        }
+    }
+
+    /**
+     * 借出一个会话，池满时阻塞等待其他请求归还。
+     *
+     * @return 会话租约，close 时归还
+     * @throws OrtException 新建会话失败时抛出
+     */
+    public Lease borrow() throws OrtException {
+        borrows.incrementAndGet();
+        OrtSession session = idle.pollFirst();
+        if (session == null) {
+            session = createIfBelowLimit();
+        }
+        if (session == null) {
+            long start = System.nanoTime();
+            try {
+                session = idle.takeFirst();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + name + " session", e);
+            }
+            recordWait(System.nanoTime() - start);
+        } else {
+            waitTimer.record(0, TimeUnit.NANOSECONDS);
+        }
+        inUse.incrementAndGet();
+        return new Lease(session);
+    }
+
+    private OrtSession createIfBelowLimit() throws OrtException {
+        // 先占一个名额再加载，并发借用时不会超过池上限
+        int current;
+        do {
+            current = created.get();
+            if (current >= config.poolSize()) {
+                return null;
+            }
+        } while (!created.compareAndSet(current, current + 1));
+        return createSession();
+    }
+
+    /**
+     * 加载一个新会话，调用前必须已在 {@link #created} 中占好名额。模型加载可能耗时数秒，不能持有会话列表的锁。
+     */
+    private OrtSession createSession() throws OrtException {
+        long start = System.currentTimeMillis();
+        OrtSession session;
+        try {
+            session = SESSION_FACTORY.createSession(modelPath, "cpu",
+                    config.effectiveIntraOpThreads(), config.interOpThreads(), config.optLevel(), config.memoryArena());
+        } catch (OrtException | RuntimeException e) {
+            created.updateAndGet(n -> Math.max(0, n - 1));
+            throw e;
+        }
+        int index;
+        synchronized (all) {
+            if (closed) {
+                session.close();
+                throw new IllegalStateException("Session pool " + id + " is closed");
+            }
+            all.add(session);
+            index = all.size();
+        }
+        log.info("yolo session created: model={}, index={}/{}, intraOp={}, interOp={}, opt={}, arena={}, cost={} ms",
+                name, index, config.poolSize(), config.effectiveIntraOpThreads(), config.interOpThreads(),
+                config.optLevel(), config.memoryArena(), System.currentTimeMillis() - start);
+        return session;
+    }
+
+    private void recordWait(long nanos) {
+        waits.incrementAndGet();
+        waitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        waitTimer.record(nanos, TimeUnit.NANOSECONDS);
+        if (log.isDebugEnabled()) {
+            log.debug("yolo session wait: model={}, waited={} ms", name, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(config.poolSize(), created.get(), inUse.get(), borrows.get(), waits.get(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+    }
+
+    @Override
+    public void close() {
+        POOLS.remove(id, this);
+        removeMeters();
+        synchronized (all) {
+            closed = true;
+            for (OrtSession session : all) {
+                try {
+                    session.close();
+                } catch (OrtException e) {
+                    log.warn("Failed to close {} session", name, e);
+                }
+            }
+            all.clear();
+            idle.clear();
+            created.set(0);
+        }
+    }
+
+    private void removeMeters() {
+        for (Meter meter : meters) {
+            Metrics.globalRegistry.remove(meter);
+        }
+        meters.clear();
+    }
+
+    /**
+     * @param maxSize     池上限
+     * @param created     已创建的会话数，包括正在加载的
+     * @param inUse       当前被借出的会话数
+     * @param borrows     累计借出次数
+     * @param waits       累计需要排队等待的次数
+     * @param totalWaitMs 累计等待时间
+     * @param maxWaitMs   单次最长等待时间
+     */
+    public record Stats(int maxSize, int created, int inUse, long borrows, long waits, long totalWaitMs, long maxWaitMs) {
+    }
+
+    /**
+     * 会话租约，close 时把会话放回池中。
+     */
+    public final class Lease implements AutoCloseable {
+        private final OrtSession session;
+        private boolean released;
+
+        private Lease(OrtSession session) {
+            this.session = session;
+        }
+
+        public OrtSession session() {
+            return session;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            inUse.decrementAndGet();
+            idle.offerFirst(session);
+        }
+    }
+}
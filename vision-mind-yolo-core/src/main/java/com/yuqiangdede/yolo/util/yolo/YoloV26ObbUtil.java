@@ -29,7 +29,7 @@ public class YoloV26ObbUtil extends YoloBaseUtil {
 
     static {
         try {
-            yoloObbModel = load(Constant.YOLO_OBB_ONNX_PATH, Constant.YOLO_OBB_NMS_ENABLED);
+            yoloObbModel = load(Constant.YOLO_OBB_ONNX_PATH, Constant.YOLO_OBB_NMS_ENABLED, "obb");
         } catch (OrtException e) {
             throw new RuntimeException(e);
         }
@@ -37,47 +37,55 @@ public class YoloV26ObbUtil extends YoloBaseUtil {
 
     public static List<ObbDetection> predictor(Mat src, Float conf) {
         try (OnnxTensor tensor = transferTensor(src, yoloObbModel);
-             OrtSession.Result result = yoloObbModel.session.run(Collections.singletonMap("images", tensor))) {
-            try (OnnxTensor res = (OnnxTensor) result.get(0)) {
-                float[][] data = ((float[][][]) res.getValue())[0];
-                float scaleW = (float) Math.max(src.width(), src.height()) / yoloObbModel.netWidth;
-                float scaleH = (float) Math.max(src.width(), src.height()) / yoloObbModel.netHeight;
-                float threshold = conf == null ? yoloObbModel.confThreshold : conf;
-
-                List<ObbCandidate> candidates = new ArrayList<>();
-                for (float[] pred : data) {
-                    // output0 format (Ultralytics end2end OBB): [x, y, w, h, conf, cls, angle]
-                    float score = pred[4];
-                    if (score < threshold) {
-                        continue;
-                    }
-
-                    float centerX = pred[0] * scaleW;
-                    float centerY = pred[1] * scaleH;
-                    float width = pred[2] * scaleW;
-                    float height = pred[3] * scaleH;
-                    float angle = pred[6];
-                    int classId = Math.round(pred[5]);
-
-                    String className = Optional.ofNullable(yoloObbModel.names.get(classId))
-                            .map(name -> name.replace("'", ""))
-                            .orElse(null);
-                    List<Point> points = buildPoints(centerX, centerY, width, height, angle);
-
-                    ObbDetection detection = new ObbDetection(centerX, centerY, width, height, angle, score, classId, className, points);
-                    RotatedRect rect = new RotatedRect(new org.opencv.core.Point(centerX, centerY), new Size(width, height),
-                            (float) Math.toDegrees(angle));
-                    candidates.add(new ObbCandidate(detection, rect, score, classId));
+             YoloSessionPool.Lease lease = yoloObbModel.sessions.borrow();
+             OrtSession.Result result = lease.session().run(Collections.singletonMap("images", tensor))) {
+            float[][] data = ((float[][][]) result.get(0).getValue())[0];
+            float scaleW = (float) Math.max(src.width(), src.height()) / yoloObbModel.netWidth;
+            float scaleH = (float) Math.max(src.width(), src.height()) / yoloObbModel.netHeight;
+            float threshold = conf == null ? yoloObbModel.confThreshold : conf;
+
+            // 候选框先以未旋转的矩形记录在缓冲区里，ref 指回输出行，NMS 之后才为保留的框构造角点和结果对象
+            DetectionBuffer candidates = new DetectionBuffer();
+            for (int i = 0; i < data.length; i++) {
+                // output0 format (Ultralytics end2end OBB): [x, y, w, h, conf, cls, angle]
+                float[] pred = data[i];
+                float score = pred[4];
+                if (score < threshold) {
+                    continue;
                 }
+                float centerX = pred[0] * scaleW;
+                float centerY = pred[1] * scaleH;
+                float halfW = pred[2] * scaleW / 2;
+                float halfH = pred[3] * scaleH / 2;
+                candidates.add(centerX - halfW, centerY - halfH, centerX + halfW, centerY + halfH,
+                        score, Math.round(pred[5]), i);
+            }
 
-                return applyNms(candidates, !Constant.YOLO_OBB_NMS_ENABLED);
+            int[] keep = Constant.YOLO_OBB_NMS_ENABLED ? applyNms(candidates, data) : allIndices(candidates.size());
+            List<ObbDetection> results = new ArrayList<>(keep.length);
+            for (int i : keep) {
+                results.add(toDetection(candidates, i, data[candidates.ref(i)][6]));
             }
+            return results;
         } catch (OrtException e) {
             log.error("obb detect error", e);
             throw new RuntimeException(e);
         }
     }
 
+    private static ObbDetection toDetection(DetectionBuffer candidates, int i, float angle) {
+        float centerX = (candidates.x1(i) + candidates.x2(i)) / 2;
+        float centerY = (candidates.y1(i) + candidates.y2(i)) / 2;
+        float width = candidates.x2(i) - candidates.x1(i);
+        float height = candidates.y2(i) - candidates.y1(i);
+        int classId = candidates.cls(i);
+        String className = Optional.ofNullable(yoloObbModel.names.get(classId))
+                .map(name -> name.replace("'", ""))
+                .orElse(null);
+        List<Point> points = buildPoints(centerX, centerY, width, height, angle);
+        return new ObbDetection(centerX, centerY, width, height, angle, candidates.score(i), classId, className, points);
+    }
+
     private static List<Point> buildPoints(float centerX, float centerY, float width, float height, float angle) {
         float halfW = width / 2f;
         float halfH = height / 2f;
@@ -102,56 +110,46 @@ public class YoloV26ObbUtil extends YoloBaseUtil {
         return points;
     }
 
-    private static List<ObbDetection> applyNms(List<ObbCandidate> candidates, boolean skipNms) {
-        if (skipNms) {
-            List<ObbDetection> results = new ArrayList<>();
-            for (ObbCandidate candidate : candidates) {
-                results.add(candidate.detection);
-            }
-            return results;
+    private static int[] allIndices(int size) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
         }
+        return indices;
+    }
 
+    /**
+     * 旋转框按类别做 NMS，IoU 需要按旋转后的多边形计算，交给 OpenCV 的 NMSBoxesRotated
+     *
+     * @return 保留下来的候选框下标
+     */
+    private static int[] applyNms(DetectionBuffer candidates, float[][] data) {
         Map<Integer, List<Integer>> classGroups = new HashMap<>();
         for (int i = 0; i < candidates.size(); i++) {
-            classGroups.computeIfAbsent(candidates.get(i).classId, key -> new ArrayList<>()).add(i);
+            classGroups.computeIfAbsent(candidates.cls(i), key -> new ArrayList<>()).add(i);
         }
 
-        List<ObbDetection> results = new ArrayList<>();
-        for (Map.Entry<Integer, List<Integer>> entry : classGroups.entrySet()) {
-            List<Integer> indices = entry.getValue();
+        List<Integer> kept = new ArrayList<>();
+        for (List<Integer> indices : classGroups.values()) {
             RotatedRect[] rects = new RotatedRect[indices.size()];
             float[] scores = new float[indices.size()];
-
-            for (int i = 0; i < indices.size(); i++) {
-                ObbCandidate candidate = candidates.get(indices.get(i));
-                rects[i] = candidate.rect;
-                scores[i] = candidate.score;
+            for (int k = 0; k < indices.size(); k++) {
+                int i = indices.get(k);
+                float width = candidates.x2(i) - candidates.x1(i);
+                float height = candidates.y2(i) - candidates.y1(i);
+                rects[k] = new RotatedRect(new org.opencv.core.Point(candidates.x1(i) + width / 2, candidates.y1(i) + height / 2),
+                        new Size(width, height), (float) Math.toDegrees(data[candidates.ref(i)][6]));
+                scores[k] = candidates.score(i);
             }
 
             MatOfRotatedRect rectMat = new MatOfRotatedRect(rects);
             MatOfFloat scoreMat = new MatOfFloat(scores);
             MatOfInt keep = new MatOfInt();
             Dnn.NMSBoxesRotated(rectMat, scoreMat, 0.0f, Constant.NMS_THRESHOLD, keep);
-
             for (int keptIndex : keep.toArray()) {
-                results.add(candidates.get(indices.get(keptIndex)).detection);
+                kept.add(indices.get(keptIndex));
             }
         }
-
-        return results;
-    }
-
-    private static class ObbCandidate {
-        private final ObbDetection detection;
-        private final RotatedRect rect;
-        private final float score;
-        private final int classId;
-
-        private ObbCandidate(ObbDetection detection, RotatedRect rect, float score, int classId) {
-            this.detection = detection;
-            this.rect = rect;
-            this.score = score;
-            this.classId = classId;
-        }
+        return kept.stream().mapToInt(Integer::intValue).toArray();
     }
 }
@@ -17,7 +17,7 @@ public class YoloV26PoseUtil extends YoloBaseUtil {
 
     static {
         try {
-            yoloposemodel = load(Constant.YOLO_POSE_ONNX_PATH, Constant.YOLO_POSE_NMS_ENABLED);
+            yoloposemodel = load(Constant.YOLO_POSE_ONNX_PATH, Constant.YOLO_POSE_NMS_ENABLED, "pose");
         } catch (OrtException e) {
             throw new RuntimeException(e);
         }
@@ -29,7 +29,8 @@ public class YoloV26PoseUtil extends YoloBaseUtil {
 
     private static YoloPoseDetectionResult predictor(Mat src, Model model, Float conf) {
         try (OnnxTensor tensor = transferTensor(src, model)) {
-            try (OrtSession.Result result = model.session.run(Collections.singletonMap("images", tensor))) {
+            try (YoloSessionPool.Lease lease = model.sessions.borrow();
+                 OrtSession.Result result = lease.session().run(Collections.singletonMap("images", tensor))) {
                 try (OnnxTensor res = (OnnxTensor) result.get(0)) {
                     float[][] data = ((float[][][]) res.getValue())[0];
                     float scaleW = (float) Math.max(src.width(), src.height()) / model.netWidth;
@@ -39,21 +39,22 @@ public class YoloV26SegUtil {
     static {
         try {
             environment = OrtEnvironment.getEnvironment();
-            yoloSegModel = load(Constant.YOLO_SEG_ONNX_PATH);
+            yoloSegModel = load(Constant.YOLO_SEG_ONNX_PATH, "seg");
         } catch (OrtException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private static Model load(String modelPath) throws OrtException {
-        OrtSession session = environment.createSession(modelPath, new OrtSession.SessionOptions());
+    private static Model load(String modelPath, String poolName) throws OrtException {
+        YoloSessionPool pool = YoloSessionPool.create(poolName, modelPath, Constant.sessionPoolConfig(poolName));
+        OrtSession session = pool.metadataSession();
         Map<String, NodeInfo> infoMap = session.getInputInfo();
         TensorInfo nodeInfo = (TensorInfo) infoMap.get("images").getInfo();
         long netHeight = nodeInfo.getShape()[2];
         long netWidth = nodeInfo.getShape()[3];
         String nameClass = session.getMetadata().getCustomMetadata().get("names");
         Map<Integer, String> names = parseNames(nameClass);
-        return new Model(environment, session, netHeight, netWidth, names);
+        return new Model(environment, pool, netHeight, netWidth, names);
     }
 
     public static List<SegDetection> predictor(Mat src, float threshold) throws OrtException {
@@ -66,7 +67,8 @@ public class YoloV26SegUtil {
 
     private static List<SegDetection> predictor(Mat src, float threshold, Model model) throws OrtException {
         try (OnnxTensor tensor = transferTensor(src, model)) {
-            try (OrtSession.Result result = model.session.run(Collections.singletonMap("images", tensor))) {
+            try (YoloSessionPool.Lease lease = model.sessions.borrow();
+                 OrtSession.Result result = lease.session().run(Collections.singletonMap("images", tensor))) {
                 OnnxValue output0 = result.get("output0")
                         .orElseThrow(() -> new RuntimeException("Missing 'output0' in model outputs."));
                 OnnxValue output1 = result.get("output1")
@@ -96,80 +98,35 @@ public class YoloV26SegUtil {
         }
         protosMat.put(0, 0, protosData);
 
-        List<Rect> boxes = new ArrayList<>();
-        List<Float> scores = new ArrayList<>();
-        List<Integer> classIds = new ArrayList<>();
-        List<Mat> maskCoeffsList = new ArrayList<>();
-
         float scaleX = (float) image.cols() / model.netWidth;
         float scaleY = (float) image.rows() / model.netHeight;
 
-        for (float[] row : detections) {
+        DetectionBuffer boxes = new DetectionBuffer();
+        for (int i = 0; i < detections.length; i++) {
+            float[] row = detections[i];
             float score = row[4];
             if (score <= threshold) {
                 continue;
             }
-            float x1 = row[0] * scaleX;
-            float y1 = row[1] * scaleY;
-            float x2 = row[2] * scaleX;
-            float y2 = row[3] * scaleY;
-            int left = Math.max(0, Math.round(x1));
-            int top = Math.max(0, Math.round(y1));
-            int width = Math.max(0, Math.round(x2 - x1));
-            int height = Math.max(0, Math.round(y2 - y1));
-            boxes.add(new Rect(left, top, width, height));
-            scores.add(score);
-            classIds.add(Math.round(row[5]));
-
-            float[] coeffs = Arrays.copyOfRange(row, 6, 6 + numMaskCoeffs);
-            Mat coeffsMat = new Mat(1, numMaskCoeffs, CvType.CV_32F);
-            coeffsMat.put(0, 0, coeffs);
-            maskCoeffsList.add(coeffsMat);
-        }
-
-        List<Integer> keepIndices = new ArrayList<>();
-        if (!boxes.isEmpty()) {
-            if (!Constant.YOLO_SEG_NMS_ENABLED) {
-                for (int i = 0; i < boxes.size(); i++) {
-                    keepIndices.add(i);
-                }
-            } else {
-                List<Integer> sortedIndices = new ArrayList<>();
-                for (int i = 0; i < scores.size(); i++) {
-                    sortedIndices.add(i);
-                }
-                sortedIndices.sort((a, b) -> Float.compare(scores.get(b), scores.get(a)));
-
-                boolean[] suppressed = new boolean[boxes.size()];
-                for (int i = 0; i < sortedIndices.size(); i++) {
-                    int idx = sortedIndices.get(i);
-                    if (suppressed[idx]) {
-                        continue;
-                    }
-                    keepIndices.add(idx);
-                    for (int j = i + 1; j < sortedIndices.size(); j++) {
-                        int nextIdx = sortedIndices.get(j);
-                        if (suppressed[nextIdx]) {
-                            continue;
-                        }
-                        if (classIds.get(idx).equals(classIds.get(nextIdx))) {
-                            float iou = calculateIoU(boxes.get(idx), boxes.get(nextIdx));
-                            if (iou > NMS_THRESHOLD) {
-                                suppressed[nextIdx] = true;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        List<SegDetection> finalDetections = new ArrayList<>();
-        for (int idx : keepIndices) {
-            Rect box = boxes.get(idx);
-            Mat maskCoeffs = maskCoeffsList.get(idx);
+            boxes.add(row[0] * scaleX, row[1] * scaleY, row[2] * scaleX, row[3] * scaleY, score, Math.round(row[5]), i);
+        }
+        if (Constant.YOLO_SEG_NMS_ENABLED) {
+            boxes.nms(NMS_THRESHOLD);
+        }
+
+        // 只为保留下来的框生成掩码
+        List<SegDetection> finalDetections = new ArrayList<>(boxes.size());
+        for (int i = 0; i < boxes.size(); i++) {
+            float x1 = boxes.x1(i);
+            float y1 = boxes.y1(i);
+            Rect box = new Rect(Math.max(0, Math.round(x1)), Math.max(0, Math.round(y1)),
+                    Math.max(0, Math.round(boxes.x2(i) - x1)), Math.max(0, Math.round(boxes.y2(i) - y1)));
+            float[] row = detections[boxes.ref(i)];
+            Mat maskCoeffs = new Mat(1, numMaskCoeffs, CvType.CV_32F);
+            maskCoeffs.put(0, 0, Arrays.copyOfRange(row, 6, 6 + numMaskCoeffs));
             Mat finalMask = generateMask(maskCoeffs, protosMat, box, image.size(), maskProtoHeight, maskProtoWidth);
-            int classId = classIds.get(idx);
-            SegDetection detection = new SegDetection(box, scores.get(idx), classId, finalMask);
+            int classId = boxes.cls(i);
+            SegDetection detection = new SegDetection(box, boxes.score(i), classId, finalMask);
             detection.setClassName(model.names.get(classId));
             finalDetections.add(detection);
         }
@@ -218,24 +175,6 @@ public class YoloV26SegUtil {
         return fullMask;
     }
 
-    private static float calculateIoU(Rect box1, Rect box2) {
-        int x1 = Math.max(box1.x, box2.x);
-        int y1 = Math.max(box1.y, box2.y);
-        int x2 = Math.min(box1.x + box1.width, box2.x + box2.width);
-        int y2 = Math.min(box1.y + box1.height, box2.y + box2.height);
-
-        int intersectionArea = Math.max(0, x2 - x1) * Math.max(0, y2 - y1);
-        int box1Area = box1.width * box1.height;
-        int box2Area = box2.width * box2.height;
-        float unionArea = box1Area + box2Area - intersectionArea;
-
-        if (unionArea == 0) {
-            return 0f;
-        }
-
-        return intersectionArea / unionArea;
-    }
-
     private static OnnxTensor transferTensor(Mat src, Model model) throws OrtException {
         Mat dst = new Mat();
         Imgproc.resize(src, dst, new Size(model.netWidth, model.netHeight));
@@ -264,14 +203,14 @@ public class YoloV26SegUtil {
 
     static class Model {
         public OrtEnvironment env;
-        public OrtSession session;
+        public YoloSessionPool sessions;
         public long netHeight;
         public long netWidth;
         public Map<Integer, String> names;
 
-        public Model(OrtEnvironment env, OrtSession session, long netHeight, long netWidth, Map<Integer, String> names) {
+        public Model(OrtEnvironment env, YoloSessionPool sessions, long netHeight, long netWidth, Map<Integer, String> names) {
             this.env = env;
-            this.session = session;
+            this.sessions = sessions;
             this.netHeight = netHeight;
             this.netWidth = netWidth;
             this.names = names;
@@ -289,7 +228,7 @@ public class YoloV26SegUtil {
         synchronized (YoloV26SegUtil.class) {
             if (yoloTextSegModel == null) {
                 try {
-                    yoloTextSegModel = load(Constant.YOLO_TEXT_FREE_ONNX_PATH);
+                    yoloTextSegModel = load(Constant.YOLO_TEXT_FREE_ONNX_PATH, "free");
                 } catch (OrtException e) {
                     throw new RuntimeException(e);
                 }
@@ -0,0 +1,139 @@
+package com.yuqiangdede.yolo.benchmark;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.yuqiangdede.common.dto.output.Box;
+import com.yuqiangdede.yolo.config.Constant;
+
+/**
+ * FastSAM 单次请求延迟：每次新建会话（旧实现）与常驻会话（现实现）对比，
+ * 以及结果收集阶段 {@code indexOf} 查下标与按下标遍历的对比。
+ * <p>
+ * 会话相关的两项需要 FastSAM 模型，默认取 {@link Constant#FAST_SAM_ONNX}，也可用 {@code -Dyolo.sam.onnx.path} 指定；
+ * 没有模型时可以只跑收集阶段：{@code org.openjdk.jmh.Main FastSamSessionBenchmark.gather}。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FastSamSessionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SessionState {
+        OrtEnvironment env;
+        String modelPath;
+        OrtSession cached;
+        float[] input;
+
+        @Setup(Level.Trial)
+        public void setUp() throws OrtException {
+            env = OrtEnvironment.getEnvironment();
+            modelPath = System.getProperty("yolo.sam.onnx.path", Constant.FAST_SAM_ONNX);
+            cached = env.createSession(modelPath, new OrtSession.SessionOptions());
+            input = new float[3 * Constant.SAM_SIZE * Constant.SAM_SIZE];
+            Arrays.fill(input, 0.5f);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws OrtException {
+            cached.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class GatherState {
+        @Param({"300", "3000"})
+        public int candidates;
+
+        List<float[]> boxes;
+        List<Float> scores;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            boxes = new ArrayList<>(candidates);
+            scores = new ArrayList<>(candidates);
+            for (int i = 0; i < candidates; i++) {
+                float x = random.nextFloat() * 600;
+                float y = random.nextFloat() * 600;
+                boxes.add(new float[]{x, y, x + 40, y + 40});
+                scores.add(random.nextFloat());
+            }
+        }
+    }
+
+    @Benchmark
+    public float sessionPerRequest(SessionState state) throws OrtException {
+        try (OrtSession session = state.env.createSession(state.modelPath, new OrtSession.SessionOptions())) {
+            return run(state, session, Arrays.copyOf(state.input, state.input.length));
+        }
+    }
+
+    @Benchmark
+    public float cachedSession(SessionState state) throws OrtException {
+        return run(state, state.cached, state.input);
+    }
+
+    @Benchmark
+    public List<Box> gatherIndexOf(GatherState state) {
+        List<Box> result = new ArrayList<>();
+        for (float[] b : state.boxes) {
+            int index = state.boxes.indexOf(b);
+            result.add(new Box(b[0], b[1], b[2], b[3], state.scores.get(index)));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Box> gatherIndexed(GatherState state) {
+        List<Box> result = new ArrayList<>(state.boxes.size());
+        for (int i = 0; i < state.boxes.size(); i++) {
+            float[] b = state.boxes.get(i);
+            result.add(new Box(b[0], b[1], b[2], b[3], state.scores.get(i)));
+        }
+        return result;
+    }
+
+    private static float run(SessionState state, OrtSession session, float[] input) throws OrtException {
+        long[] shape = {1, 3, Constant.SAM_SIZE, Constant.SAM_SIZE};
+        try (OnnxTensor tensor = OnnxTensor.createTensor(state.env, FloatBuffer.wrap(input), shape);
+             OrtSession.Result out = session.run(Collections.singletonMap(session.getInputNames().iterator().next(), tensor))) {
+            float[][][] pred = (float[][][]) out.get(0).getValue();
+            return pred[0][4][0];
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FastSamSessionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package com.yuqiangdede.yolo.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yuqiangdede.yolo.util.yolo.YoloLetterbox;
+
+/**
+ * YOLO 输入预处理：原先"补成长边正方形 → 缩放 → cvtColor → convertTo → float[] → whc2cwh"
+ * 与现在"缩放 → copyMakeBorder → 按通道直接写入复用 direct buffer"的对比，模型输入 640 与 1280 两档。
+ * <p>
+ * 需要能加载 OpenCV 本地库，默认按 native-defaults.properties 中的 opencv.so.path，也可用 {@code -Dopencv.so.path} 指定。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LetterboxBenchmark {
+
+    @Param({"640", "1280"})
+    public int netSize;
+
+    @Param({"1920x1080"})
+    public String resolution;
+
+    private Mat src;
+
+    @Setup
+    public void setUp() throws IOException {
+        loadOpenCv();
+        String[] wh = resolution.split("x");
+        src = new Mat(Integer.parseInt(wh[1]), Integer.parseInt(wh[0]), CvType.CV_8UC3);
+        Core.randu(src, 0, 256);
+    }
+
+    @TearDown
+    public void tearDown() {
+        src.release();
+    }
+
+    @Benchmark
+    public float[] squarePadThenResize() {
+        int maxImageLength = Math.max(src.cols(), src.rows());
+        Mat maxImage = Mat.zeros(new Size(maxImageLength, maxImageLength), CvType.CV_8UC3);
+        src.copyTo(new Mat(maxImage, new Rect(0, 0, src.cols(), src.rows())));
+        Mat dst = new Mat();
+        Imgproc.resize(maxImage, dst, new Size(netSize, netSize));
+        Imgproc.cvtColor(dst, dst, Imgproc.COLOR_BGR2RGB);
+        dst.convertTo(dst, CvType.CV_32FC3, 1. / 255);
+        float[] whc = new float[3 * netSize * netSize];
+        dst.get(0, 0, whc);
+        float[] chw = new float[whc.length];
+        int j = 0;
+        for (int ch = 0; ch < 3; ++ch) {
+            for (int i = ch; i < whc.length; i += 3) {
+                chw[j++] = whc[i];
+            }
+        }
+        maxImage.release();
+        dst.release();
+        return chw;
+    }
+
+    @Benchmark
+    public FloatBuffer resizeThenBorder() {
+        return YoloLetterbox.toChwBuffer(src, netSize, netSize);
+    }
+
+    static void loadOpenCv() throws IOException {
+        String path = System.getProperty("opencv.so.path");
+        if (path == null) {
+            Properties properties = new Properties();
+            try (InputStream in = LetterboxBenchmark.class.getClassLoader()
+                    .getResourceAsStream("native-defaults.properties")) {
+                properties.load(in);
+            }
+            String root = System.getenv("VISION_MIND_PATH");
+            path = (root == null ? "" : root) + properties.getProperty("opencv.so.path");
+        }
+        System.load(path);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LetterboxBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
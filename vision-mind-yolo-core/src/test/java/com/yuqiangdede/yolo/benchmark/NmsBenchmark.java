@@ -0,0 +1,152 @@
+package com.yuqiangdede.yolo.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yuqiangdede.yolo.util.yolo.DetectionBuffer;
+
+/**
+ * 密集场景下检测输出解码 + NMS：原先每框一个 {@code ArrayList<Float>}、两次 {@code List::copyOf}、
+ * 按 {@code get()} 拆箱的 O(n²) NMS，与现在 {@link DetectionBuffer} 按列存储、按分数排序的按类别 NMS 对比。
+ * <p>
+ * 候选框集中在若干人群热点附近，模拟 300 个以上原始候选的拥挤画面；不依赖模型和本地库。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NmsBenchmark {
+
+    private static final float NMS_THRESHOLD = 0.3f;
+
+    @Param({"300", "1000", "3000"})
+    public int candidates;
+
+    /**
+     * 模型输出行：[x1, y1, x2, y2, score, cls]
+     */
+    private float[][] rows;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rows = new float[candidates][];
+        float[][] hotspots = new float[20][];
+        for (int h = 0; h < hotspots.length; h++) {
+            hotspots[h] = new float[]{random.nextFloat() * 1800, random.nextFloat() * 1000};
+        }
+        for (int i = 0; i < candidates; i++) {
+            float[] spot = hotspots[random.nextInt(hotspots.length)];
+            float x = spot[0] + (float) random.nextGaussian() * 40;
+            float y = spot[1] + (float) random.nextGaussian() * 40;
+            float w = 30 + random.nextFloat() * 60;
+            float h = 60 + random.nextFloat() * 120;
+            rows[i] = new float[]{x, y, x + w, y + h, random.nextFloat(), random.nextInt(3)};
+        }
+    }
+
+    @Benchmark
+    public List<List<Float>> boxedLists() {
+        List<ArrayList<Float>> boxes = new ArrayList<>();
+        for (float[] row : rows) {
+            boxes.add(new ArrayList<>(Arrays.asList(row[0], row[1], row[2], row[3], row[4], row[5])));
+        }
+        List<List<Float>> result = boxes.stream()
+                .map(List::copyOf)
+                .toList();
+        result = boxedNms(boxes).stream()
+                .map(List::copyOf)
+                .toList();
+        return result;
+    }
+
+    @Benchmark
+    public DetectionBuffer primitiveBuffer() {
+        DetectionBuffer buffer = new DetectionBuffer();
+        for (int i = 0; i < rows.length; i++) {
+            float[] row = rows[i];
+            buffer.add(row[0], row[1], row[2], row[3], row[4], (int) row[5], i);
+        }
+        buffer.nms(NMS_THRESHOLD);
+        return buffer;
+    }
+
+    /**
+     * 原 YoloV26DetUtil.NMS 的实现
+     */
+    private static List<ArrayList<Float>> boxedNms(List<ArrayList<Float>> boxes) {
+        int[] indexs = new int[boxes.size()];
+        Arrays.fill(indexs, 1);
+        for (int cur = 0; cur < boxes.size(); cur++) {
+            if (indexs[cur] == 0) {
+                continue;
+            }
+            ArrayList<Float> curMaxConf = boxes.get(cur);
+            for (int i = cur + 1; i < boxes.size(); i++) {
+                if (indexs[i] == 0) {
+                    continue;
+                }
+                float classIndex = boxes.get(i).get(5);
+                if (classIndex == curMaxConf.get(5)) {
+                    float x1 = curMaxConf.get(0);
+                    float y1 = curMaxConf.get(1);
+                    float x2 = curMaxConf.get(2);
+                    float y2 = curMaxConf.get(3);
+                    float x3 = boxes.get(i).get(0);
+                    float y3 = boxes.get(i).get(1);
+                    float x4 = boxes.get(i).get(2);
+                    float y4 = boxes.get(i).get(3);
+                    if (x1 > x4 || x2 < x3 || y1 > y4 || y2 < y3) {
+                        continue;
+                    }
+                    float intersectionWidth = Math.max(x1, x3) - Math.min(x2, x4);
+                    float intersectionHeight = Math.max(y1, y3) - Math.min(y2, y4);
+                    float intersectionArea = Math.max(0, intersectionWidth * intersectionHeight);
+                    float unionArea = (x2 - x1) * (y2 - y1) + (x4 - x3) * (y4 - y3) - intersectionArea;
+                    float iou = intersectionArea / unionArea;
+                    if (iou > NMS_THRESHOLD) {
+                        if (boxes.get(i).get(4) <= curMaxConf.get(4)) {
+                            indexs[i] = 0;
+                        } else {
+                            indexs[cur] = 0;
+                        }
+                    }
+                }
+            }
+        }
+        List<ArrayList<Float>> resBoxes = new LinkedList<>();
+        for (int index = 0; index < indexs.length; index++) {
+            if (indexs[index] == 1) {
+                resBoxes.add(boxes.get(index));
+            }
+        }
+        return resBoxes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NmsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
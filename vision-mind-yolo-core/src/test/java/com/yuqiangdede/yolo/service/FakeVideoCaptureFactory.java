@@ -0,0 +1,49 @@
+package com.yuqiangdede.yolo.service;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 按固定帧率"出帧"的假摄像头，read 只按帧间隔阻塞，帧内容由调用方的 Mat（测试中为 mock）承载。
+ */
+class FakeVideoCaptureFactory implements VideoCaptureFactory {
+
+    private final long frameIntervalMs;
+    private final AtomicInteger created = new AtomicInteger();
+
+    FakeVideoCaptureFactory(int fps) {
+        this.frameIntervalMs = Math.max(1, 1000 / fps);
+    }
+
+    @Override
+    public VideoCapture create() {
+        created.incrementAndGet();
+        VideoCapture capture = mock(VideoCapture.class);
+        when(capture.open(anyString())).thenReturn(true);
+        when(capture.read(any(Mat.class))).thenAnswer(invocation -> {
+            Thread.sleep(frameIntervalMs);
+            return true;
+        });
+        return capture;
+    }
+
+    int created() {
+        return created.get();
+    }
+
+    /**
+     * 合成帧缓冲，不依赖 OpenCV 本地库
+     */
+    static Mat syntheticFrame() {
+        Mat frame = mock(Mat.class);
+        when(frame.empty()).thenReturn(false);
+        return frame;
+    }
+}
@@ -0,0 +1,238 @@
+package com.yuqiangdede.yolo.service;
+
+import com.yuqiangdede.common.dto.output.Box;
+import com.yuqiangdede.yolo.dto.input.StreamInput;
+import com.yuqiangdede.yolo.dto.output.StreamInfo;
+import com.yuqiangdede.yolo.dto.output.VideoFrameDetectionResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StreamAnalysisServiceTest {
+
+    private final ImgAnalysisService imgAnalysisService = mock(ImgAnalysisService.class);
+    private final VideoCaptureFactory videoCaptureFactory = mock(VideoCaptureFactory.class);
+    private final StreamAnalysisService service = new TestableStreamAnalysisService(imgAnalysisService, videoCaptureFactory);
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void start_publishesSampledFramesToSubscribersAndReleasesOnStop() throws Exception {
+        VideoCapture capture = liveCapture();
+        when(videoCaptureFactory.create()).thenReturn(capture);
+        List<Box> boxes = List.of(new Box(1, 2, 3, 4));
+        when(imgAnalysisService.detectMat(any(Mat.class), any(), any(), any(), any())).thenReturn(boxes);
+
+        StreamInfo started = service.start(input("cam-1", 2));
+        BlockingQueue<VideoFrameDetectionResult> results = new LinkedBlockingQueue<>();
+        CountDownLatch closed = new CountDownLatch(1);
+        service.subscribe("cam-1", new StreamListener() {
+            @Override
+            public void onResult(VideoFrameDetectionResult result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onClose() {
+                closed.countDown();
+            }
+        });
+
+        for (int i = 0; i < 3; i++) {
+            VideoFrameDetectionResult result = results.poll(5, TimeUnit.SECONDS);
+            assertNotNull(result);
+            assertEquals(0, result.getFrameIndex() % 2);
+            assertEquals(boxes, result.getBoxes());
+        }
+        assertEquals("cam-1", started.getStreamId());
+        assertEquals(1, service.list().size());
+
+        service.stop("cam-1");
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        verify(capture, timeout(5000)).release();
+        assertTrue(service.list().isEmpty());
+    }
+
+    @Test
+    void slowInference_dropsStaleFramesInsteadOfQueueing() throws Exception {
+        VideoCapture capture = liveCapture();
+        when(videoCaptureFactory.create()).thenReturn(capture);
+        when(imgAnalysisService.detectMat(any(Mat.class), any(), any(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(40);
+            return List.of();
+        });
+        BlockingQueue<VideoFrameDetectionResult> results = new LinkedBlockingQueue<>();
+        StreamInput input = input("cam-1", 1);
+        // 目标帧率远高于推理能力，每一帧都已到期
+        input.setTargetFps(1000D);
+
+        service.start(input);
+        service.subscribe("cam-1", results::add);
+
+        VideoFrameDetectionResult previous = results.poll(5, TimeUnit.SECONDS);
+        VideoFrameDetectionResult next = results.poll(5, TimeUnit.SECONDS);
+        assertNotNull(previous);
+        assertNotNull(next);
+        // 推理期间读到的多帧只保留最新一帧
+        assertTrue(next.getFrameIndex() > previous.getFrameIndex() + 1);
+
+        StreamInfo info = service.list().get(0);
+        assertTrue(info.getDroppedFrames() > 0);
+        assertTrue(info.getAnalyzedFrames() < info.getGrabbedFrames());
+    }
+
+    @Test
+    void stalledSubscriber_doesNotBlockInferenceOrOtherSubscribers() throws Exception {
+        VideoCapture capture = liveCapture();
+        when(videoCaptureFactory.create()).thenReturn(capture);
+        when(imgAnalysisService.detectMat(any(Mat.class), any(), any(), any(), any())).thenReturn(List.of());
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<VideoFrameDetectionResult> results = new LinkedBlockingQueue<>();
+
+        service.start(input("cam-1", 1));
+        service.subscribe("cam-1", result -> {
+            try {
+                // 模拟卡住的 SSE 连接
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        service.subscribe("cam-1", results::add);
+
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(results.poll(5, TimeUnit.SECONDS));
+            }
+            assertTrue(service.list().get(0).getAnalyzedFrames() >= 10);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void manyStreams_shareInferenceWorkersAtTargetFps() throws Exception {
+        FakeVideoCaptureFactory cameras = new FakeVideoCaptureFactory(25);
+        StreamAnalysisService shared = new TestableStreamAnalysisService(imgAnalysisService, cameras);
+        when(imgAnalysisService.detectMat(any(Mat.class), any(), any(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(2);
+            return List.of();
+        });
+        try {
+            for (int i = 0; i < 20; i++) {
+                StreamInput input = input("cam-" + i, 1);
+                input.setTargetFps(5D);
+                shared.start(input);
+            }
+            Thread.sleep(1500);
+
+            List<StreamInfo> infos = shared.list();
+            assertEquals(20, infos.size());
+            assertEquals(20, cameras.created());
+            for (StreamInfo info : infos) {
+                // 1.5 秒、5fps，每路都能分到推理线程，且不超过目标帧率
+                assertTrue(info.getAnalyzedFrames() >= 4, info.toString());
+                assertTrue(info.getAnalyzedFrames() <= 10, info.toString());
+                assertTrue(info.getThrottledFrames() > 0, info.toString());
+            }
+        } finally {
+            shared.shutdown();
+        }
+    }
+
+    @Test
+    void readFailure_reconnectsWithNewCapture() throws Exception {
+        VideoCapture broken = mock(VideoCapture.class);
+        when(broken.open(anyString())).thenReturn(true);
+        when(broken.read(any(Mat.class))).thenReturn(false);
+        VideoCapture healthy = liveCapture();
+        when(videoCaptureFactory.create()).thenReturn(broken, healthy);
+        when(imgAnalysisService.detectMat(any(Mat.class), any(), any(), any(), any())).thenReturn(List.of());
+        BlockingQueue<VideoFrameDetectionResult> results = new LinkedBlockingQueue<>();
+
+        service.start(input("cam-1", 1));
+        service.subscribe("cam-1", results::add);
+
+        assertNotNull(results.poll(5, TimeUnit.SECONDS));
+        verify(broken).release();
+        assertEquals("RUNNING", service.list().get(0).getStatus());
+    }
+
+    @Test
+    void start_rejectsMissingUrlAndDuplicateId() {
+        VideoCapture capture = liveCapture();
+        when(videoCaptureFactory.create()).thenReturn(capture);
+
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class,
+                () -> service.start(new StreamInput()));
+        assertEquals("rtspUrl is null or empty", missing.getMessage());
+
+        service.start(input("cam-1", 1));
+        IllegalStateException duplicate = assertThrows(IllegalStateException.class,
+                () -> service.start(input("cam-1", 1)));
+        assertEquals("Stream already exists: cam-1", duplicate.getMessage());
+    }
+
+    @Test
+    void stop_unknownStream_throws() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> service.stop("missing"));
+
+        assertEquals("Stream not found: missing", exception.getMessage());
+    }
+
+    private static StreamInput input(String id, int frameInterval) {
+        StreamInput input = new StreamInput();
+        input.setStreamId(id);
+        input.setRtspUrl("rtsp://example.com/" + id);
+        input.setFrameInterval(frameInterval);
+        input.setTargetFps(50D);
+        return input;
+    }
+
+    /**
+     * 模拟约 500fps 的实时流
+     */
+    private static VideoCapture liveCapture() {
+        return new FakeVideoCaptureFactory(500).create();
+    }
+
+    private static final class TestableStreamAnalysisService extends StreamAnalysisService {
+
+        private TestableStreamAnalysisService(ImgAnalysisService imgAnalysisService,
+                                              VideoCaptureFactory videoCaptureFactory) {
+            super(imgAnalysisService, videoCaptureFactory);
+        }
+
+        @Override
+        Mat createFrameBuffer() {
+            return FakeVideoCaptureFactory.syntheticFrame();
+        }
+
+        @Override
+        long reconnectDelayMs() {
+            return 10L;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.yuqiangdede.yolo.service;
+
+import com.yuqiangdede.yolo.dto.input.StreamInput;
+import com.yuqiangdede.yolo.dto.output.StreamInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamSchedulerTest {
+
+    private final List<Thread> cameras = new ArrayList<>();
+    private volatile boolean feeding = true;
+    private volatile long inferenceMs = 5;
+    private StreamScheduler scheduler;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        feeding = false;
+        for (Thread camera : cameras) {
+            camera.join(1000);
+        }
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    void equalTargets_shareOneWorkerFairly() throws Exception {
+        // 单线程每帧 5ms，最多约 200fps；4 路各要 100fps
+        scheduler = new StreamScheduler(1, 60_000, 1.0, 1.0, this::infer);
+        List<VideoStream> streams = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            streams.add(startStream("cam-" + i, 100, 200));
+        }
+
+        Thread.sleep(1000);
+
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (VideoStream stream : streams) {
+            long analyzed = stream.info().getAnalyzedFrames();
+            min = Math.min(min, analyzed);
+            max = Math.max(max, analyzed);
+        }
+        assertTrue(min > 0);
+        assertTrue(min >= max * 0.7, "min=" + min + ", max=" + max);
+    }
+
+    @Test
+    void targetFps_capsEachStream() throws Exception {
+        inferenceMs = 1;
+        scheduler = new StreamScheduler(2, 60_000, 1.0, 1.0, this::infer);
+        VideoStream slow = startStream("slow", 10, 200);
+        VideoStream fast = startStream("fast", 40, 200);
+
+        Thread.sleep(1000);
+
+        long slowAnalyzed = slow.info().getAnalyzedFrames();
+        long fastAnalyzed = fast.info().getAnalyzedFrames();
+        assertTrue(slowAnalyzed >= 6 && slowAnalyzed <= 13, "slow=" + slowAnalyzed);
+        assertTrue(fastAnalyzed >= 28 && fastAnalyzed <= 45, "fast=" + fastAnalyzed);
+        // 未到期的帧都计入限速，线程空闲时最多只有唤醒抖动造成的零星丢帧
+        StreamInfo info = slow.info();
+        assertTrue(info.getThrottledFrames() > 100, info.toString());
+        assertTrue(info.getDroppedFrames() * 20 < info.getThrottledFrames(), info.toString());
+    }
+
+    @Test
+    void saturation_lowersFpsThenRecovers() throws Exception {
+        // 单线程每帧 20ms，最多约 50fps；3 路各要 50fps
+        inferenceMs = 20;
+        scheduler = new StreamScheduler(1, 100, 0.2, 0.1, this::infer);
+        List<VideoStream> streams = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            streams.add(startStream("cam-" + i, 50, 100));
+        }
+
+        Thread.sleep(1000);
+
+        assertTrue(scheduler.scale() < 1.0, "scale=" + scheduler.scale());
+        StreamInfo info = streams.get(0).info();
+        assertTrue(info.getEffectiveFps() < info.getTargetFps(), info.toString());
+        assertTrue(info.getAchievedFps() > 0, info.toString());
+        assertTrue(info.getDroppedFrames() > 0, info.toString());
+
+        inferenceMs = 1;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.scale() < 1.0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1.0, scheduler.scale());
+    }
+
+    private VideoStream startStream(String id, double targetFps, int cameraFps) {
+        StreamInput input = new StreamInput();
+        input.setStreamId(id);
+        input.setRtspUrl("rtsp://example.com/" + id);
+        VideoStream stream = new VideoStream(id, input, 1, targetFps, FakeVideoCaptureFactory::syntheticFrame);
+        scheduler.register(stream);
+        Thread camera = new Thread(() -> {
+            int frameIndex = 0;
+            long intervalNanos = 1_000_000_000L / cameraFps;
+            long next = System.nanoTime();
+            while (feeding) {
+                next += intervalNanos;
+                long sleep = next - System.nanoTime();
+                if (sleep > 0) {
+                    try {
+                        Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                stream.onGrabbed();
+                if (stream.publishLatest(++frameIndex, 0L)) {
+                    scheduler.onFrameReady();
+                }
+            }
+        }, "fake-camera-" + id);
+        camera.setDaemon(true);
+        cameras.add(camera);
+        camera.start();
+        return stream;
+    }
+
+    private void infer(VideoStream stream) {
+        if (!stream.takeLatest()) {
+            return;
+        }
+        try {
+            Thread.sleep(inferenceMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        stream.onAnalyzed();
+    }
+}
@@ -0,0 +1,71 @@
+package com.yuqiangdede.yolo.service;
+
+import com.yuqiangdede.yolo.dto.output.VideoFrameDetectionResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamSubscriptionTest {
+
+    @Test
+    void offer_dropsOldestWhenSenderIsBehindAndClosesAfterDraining() {
+        List<Runnable> tasks = new ArrayList<>();
+        List<Integer> received = new ArrayList<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        StreamSubscription subscription = new StreamSubscription("cam-1", new StreamListener() {
+            @Override
+            public void onResult(VideoFrameDetectionResult result) {
+                received.add(result.getFrameIndex());
+            }
+
+            @Override
+            public void onClose() {
+                closed.set(true);
+            }
+        }, 2, tasks::add);
+
+        for (int i = 1; i <= 5; i++) {
+            subscription.offer(result(i));
+        }
+        subscription.close();
+        subscription.offer(result(6));
+
+        // 发送任务还没执行，只提交过一次
+        assertEquals(1, tasks.size());
+        assertEquals(2, subscription.pending());
+        assertEquals(3, subscription.droppedResults());
+
+        tasks.get(0).run();
+
+        assertEquals(List.of(4, 5), received);
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void failingListener_isRemovedAndStopsReceiving() {
+        List<Runnable> tasks = new ArrayList<>();
+        AtomicBoolean removed = new AtomicBoolean();
+        StreamSubscription subscription = new StreamSubscription("cam-1", result -> {
+            throw new IllegalStateException("client gone");
+        }, 4, tasks::add);
+        subscription.onRemoved(() -> removed.set(true));
+
+        subscription.offer(result(1));
+        subscription.offer(result(2));
+        tasks.remove(0).run();
+        subscription.offer(result(3));
+
+        assertTrue(removed.get());
+        assertTrue(tasks.isEmpty());
+        assertEquals(0, subscription.pending());
+    }
+
+    private static VideoFrameDetectionResult result(int frameIndex) {
+        return new VideoFrameDetectionResult(frameIndex, 0L, 0L, List.of());
+    }
+}
@@ -0,0 +1,57 @@
+package com.yuqiangdede.yolo.util.yolo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DetectionBufferTest {
+
+    @Test
+    void nms_suppressesOverlapsWithinClassOnlyAndSortsByScore() {
+        DetectionBuffer buffer = new DetectionBuffer(2);
+        buffer.add(0, 0, 10, 10, 0.6f, 0, 0);
+        buffer.add(1, 1, 11, 11, 0.9f, 0, 1);
+        // 与上面两个框重叠，但类别不同，不能被抑制
+        buffer.add(0, 0, 10, 10, 0.7f, 1, 2);
+        // 同类但不相交
+        buffer.add(50, 50, 60, 60, 0.3f, 0, 3);
+
+        buffer.nms(0.5f);
+
+        assertEquals(3, buffer.size());
+        assertEquals(1, buffer.ref(0));
+        assertEquals(0.9f, buffer.score(0));
+        assertEquals(2, buffer.ref(1));
+        assertEquals(1, buffer.cls(1));
+        assertEquals(3, buffer.ref(2));
+        assertEquals(50f, buffer.x1(2));
+    }
+
+    @Test
+    void nms_keepsBoxesBelowIouThreshold() {
+        DetectionBuffer buffer = new DetectionBuffer();
+        buffer.add(0, 0, 10, 10, 0.9f, 0);
+        // IoU = 50 / 150，低于阈值
+        buffer.add(5, 0, 15, 10, 0.8f, 0);
+
+        buffer.nms(0.5f);
+
+        assertEquals(2, buffer.size());
+    }
+
+    @Test
+    void sortByScore_isStableForEqualScores() {
+        DetectionBuffer buffer = new DetectionBuffer();
+        buffer.add(0, 0, 1, 1, 0.5f, 0);
+        buffer.add(0, 0, 1, 1, 0.8f, 0);
+        buffer.add(0, 0, 1, 1, 0.5f, 0);
+        buffer.add(0, 0, 1, 1, -0.1f, 0);
+
+        buffer.sortByScore();
+
+        assertEquals(1, buffer.ref(0));
+        assertEquals(0, buffer.ref(1));
+        assertEquals(2, buffer.ref(2));
+        assertEquals(3, buffer.ref(3));
+    }
+}
@@ -0,0 +1,137 @@
+package com.yuqiangdede.yolo.util.yolo;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YoloBatchSchedulerTest {
+
+    /**
+     * 输出第 i 行为输入第 i 张图的第一个像素，便于核对结果是否回到了对应的请求
+     */
+    private static float[][][] echo(FloatBuffer input, int batchSize, int imageSize) {
+        assertEquals(batchSize * imageSize, input.remaining());
+        float[][][] output = new float[batchSize][1][1];
+        for (int i = 0; i < batchSize; i++) {
+            output[i][0][0] = input.get(i * imageSize);
+        }
+        return output;
+    }
+
+    private static FloatBuffer chw(float... values) {
+        return FloatBuffer.wrap(values);
+    }
+
+    @Test
+    void infer_mergesConcurrentRequestsAndFansResultsBack() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        List<Boolean> direct = new CopyOnWriteArrayList<>();
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        YoloBatchScheduler.BatchRunner runner = (input, batchSize) -> {
+            batchSizes.add(batchSize);
+            direct.add(input.isDirect());
+            firstBatchStarted.countDown();
+            releaseFirstBatch.await(5, TimeUnit.SECONDS);
+            return echo(input, batchSize, 2);
+        };
+        ExecutorService callers = Executors.newFixedThreadPool(5);
+        try (YoloBatchScheduler scheduler = new YoloBatchScheduler("test", 2, 4, 50, 5_000, 1, runner)) {
+            // 第一个请求占住唯一的工作线程，其余四个请求在此期间排队，应合并为一个 batch
+            Future<float[][]> first = callers.submit(() -> scheduler.infer(chw(0, 0)));
+            assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+            List<Future<float[][]>> rest = new ArrayList<>();
+            for (int i = 1; i <= 4; i++) {
+                float value = i;
+                rest.add(callers.submit(() -> scheduler.infer(chw(value, value))));
+            }
+            while (scheduler.stats().queued() < 4) {
+                Thread.sleep(5);
+            }
+            releaseFirstBatch.countDown();
+
+            assertEquals(0f, first.get(5, TimeUnit.SECONDS)[0][0]);
+            for (int i = 0; i < rest.size(); i++) {
+                assertEquals(i + 1f, rest.get(i).get(5, TimeUnit.SECONDS)[0][0]);
+            }
+            assertEquals(List.of(1, 4), batchSizes);
+            // batch 直接拼在工作线程的 direct buffer 里，交给 ONNX Runtime 时不再复制
+            assertEquals(List.of(true, true), direct);
+            assertEquals(2, scheduler.stats().batches());
+            assertEquals(5, scheduler.stats().requests());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void infer_propagatesRunnerFailureToEveryCaller() {
+        YoloBatchScheduler.BatchRunner runner = (input, batchSize) -> {
+            throw new IllegalStateException("boom");
+        };
+        try (YoloBatchScheduler scheduler = new YoloBatchScheduler("test", 2, 4, 0, 5_000, 1, runner)) {
+            IllegalStateException error = assertThrows(IllegalStateException.class,
+                    () -> scheduler.infer(chw(1, 1)));
+            assertEquals("boom", error.getMessage());
+        }
+    }
+
+    @Test
+    void infer_failsCallersWhenBatchFailsOutsideTheRunnerCatch() {
+        YoloBatchScheduler.BatchRunner runner = (input, batchSize) -> {
+            throw new StackOverflowError("deep");
+        };
+        try (YoloBatchScheduler scheduler = new YoloBatchScheduler("test", 2, 4, 0, 5_000, 1, runner)) {
+            // Error 不能带走工作线程，本批与之后的请求都应失败返回而不是挂起
+            CompletionException first = assertThrows(CompletionException.class, () -> scheduler.infer(chw(1, 1)));
+            assertTrue(first.getCause() instanceof StackOverflowError);
+            assertThrows(CompletionException.class, () -> scheduler.infer(chw(2, 2)));
+        }
+    }
+
+    @Test
+    void infer_timesOutInsteadOfWaitingForever() {
+        CountDownLatch release = new CountDownLatch(1);
+        YoloBatchScheduler.BatchRunner runner = (input, batchSize) -> {
+            release.await();
+            return echo(input, batchSize, 2);
+        };
+        try (YoloBatchScheduler scheduler = new YoloBatchScheduler("test", 2, 4, 0, 100, 1, runner)) {
+            IllegalStateException error = assertThrows(IllegalStateException.class, () -> scheduler.infer(chw(1, 1)));
+            assertTrue(error.getMessage().contains("100 ms"), error.getMessage());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void infer_afterCloseIsRejected() {
+        YoloBatchScheduler scheduler = new YoloBatchScheduler("test", 2, 4, 0, 5_000, 1,
+                (input, batchSize) -> echo(input, batchSize, 2));
+        scheduler.close();
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> scheduler.infer(chw(1, 1)));
+        assertEquals("Batch scheduler test is closed", error.getMessage());
+    }
+
+    @Test
+    void infer_rejectsInputOfWrongSize() {
+        try (YoloBatchScheduler scheduler = new YoloBatchScheduler("test", 2, 4, 0, 5_000, 1,
+                (input, batchSize) -> echo(input, batchSize, 2))) {
+            assertThrows(IllegalArgumentException.class, () -> scheduler.infer(chw(1, 2, 3)));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.yuqiangdede.yolo.util.yolo;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.opencv_java;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 对照原先的预处理流程（补成长边正方形 → resize → cvtColor BGR2RGB → convertTo /255 → whc2cwh）校验 {@link YoloLetterbox}。
+ * 需要 OpenCV 本地库：优先加载系统属性 {@code opencv.so.path} 指定的 libopencv_java，否则从 classpath 上的
+ * opencv 平台 jar 加载，都不可用时跳过。
+ */
+class YoloLetterboxTest {
+
+    private static boolean openCvLoaded;
+
+    @BeforeAll
+    static void loadOpenCv() {
+        try {
+            String path = System.getProperty("opencv.so.path");
+            if (path != null && !path.isBlank()) {
+                System.load(path);
+            } else {
+                Loader.load(opencv_java.class);
+            }
+            openCvLoaded = true;
+        } catch (Throwable e) {
+            openCvLoaded = false;
+        }
+    }
+
+    @Test
+    void detect_matchesOldSquarePadPath_whenImageFitsNetSize() {
+        assumeTrue(openCvLoaded, "OpenCV native library not available");
+        Mat src = gradient(16, 12);
+
+        float[] actual = toArray(YoloLetterbox.toChwBuffer(src, 16, 16));
+
+        assertArrayEquals(oldDetectPath(src, 16, 16), actual);
+        // 图片贴在左上角，右侧和下方补 0
+        assertEquals(0f, actual[plane(0, 16, 16) + 15 * 16 + 3]);
+        assertEquals(0f, actual[plane(2, 16, 16) + 13 * 16 + 15]);
+    }
+
+    @Test
+    void detect_matchesOldSquarePadPath_withIntegerDownscale() {
+        assumeTrue(openCvLoaded, "OpenCV native library not available");
+        Mat src = gradient(32, 20);
+
+        float[] actual = toArray(YoloLetterbox.toChwBuffer(src, 16, 16));
+
+        assertArrayEquals(oldDetectPath(src, 16, 16), actual, 1e-6f);
+        assertEquals(0f, actual[plane(1, 16, 16) + 10 * 16]);
+    }
+
+    @Test
+    void detect_writesChannelsInRgbOrder() {
+        assumeTrue(openCvLoaded, "OpenCV native library not available");
+        // BGR = (10, 20, 30)
+        Mat src = new Mat(4, 4, CvType.CV_8UC3, new Scalar(10, 20, 30));
+
+        float[] actual = toArray(YoloLetterbox.toChwBuffer(src, 4, 4));
+
+        assertEquals(30 / 255f, actual[plane(0, 4, 4)], 1e-6f);
+        assertEquals(20 / 255f, actual[plane(1, 4, 4)], 1e-6f);
+        assertEquals(10 / 255f, actual[plane(2, 4, 4)], 1e-6f);
+    }
+
+    @Test
+    void fastSam_matchesOldCentredPadPath() {
+        assumeTrue(openCvLoaded, "OpenCV native library not available");
+        int size = 16;
+        Mat src = gradient(20, 10);
+        float r = (float) size / Math.max(src.rows(), src.cols());
+        int newW = Math.round(src.cols() * r);
+        int newH = Math.round(src.rows() * r);
+        int dw = (size - newW) / 2;
+        int dh = (size - newH) / 2;
+
+        float[] actual = toArray(YoloLetterbox.toChwBuffer(src, size, size, newW, newH, dw, dh, 114));
+
+        assertArrayEquals(oldFastSamPath(src, size, newW, newH, dw, dh), actual, 1e-6f);
+        // 上下各补 dh 行灰色(114)
+        assertEquals(4, dh);
+        for (int c = 0; c < 3; c++) {
+            assertEquals(114 / 255f, actual[plane(c, size, size)], 1e-6f);
+            assertEquals(114 / 255f, actual[plane(c, size, size) + (size - 1) * size + size - 1], 1e-6f);
+        }
+    }
+
+    @Test
+    void workspacesForDifferentSizesDoNotOverwriteEachOther() {
+        assumeTrue(openCvLoaded, "OpenCV native library not available");
+        Mat src = gradient(16, 12);
+
+        FloatBuffer detect = YoloLetterbox.toChwBuffer(src, 16, 16);
+        float[] expected = toArray(detect);
+        YoloLetterbox.toChwBuffer(src, 32, 32);
+
+        assertArrayEquals(expected, toArray(detect));
+    }
+
+    /**
+     * 原先 YoloBaseUtil 的预处理：按长边补成正方形，图片放在左上角，再缩放到模型输入尺寸
+     */
+    private static float[] oldDetectPath(Mat mat, int netWidth, int netHeight) {
+        int maxImageLength = Math.max(mat.cols(), mat.rows());
+        Mat maxImage = Mat.zeros(new Size(maxImageLength, maxImageLength), CvType.CV_8UC3);
+        mat.copyTo(new Mat(maxImage, new Rect(0, 0, mat.cols(), mat.rows())));
+        Mat dst = new Mat();
+        Imgproc.resize(maxImage, dst, new Size(netWidth, netHeight));
+        Imgproc.cvtColor(dst, dst, Imgproc.COLOR_BGR2RGB);
+        dst.convertTo(dst, CvType.CV_32FC3, 1. / 255);
+        float[] whc = new float[3 * netWidth * netHeight];
+        dst.get(0, 0, whc);
+        return whc2cwh(whc);
+    }
+
+    /**
+     * 原先 YoloFastSAMUtil 的预处理：缩放后居中放进灰色(114)画布
+     */
+    private static float[] oldFastSamPath(Mat imgBGR, int size, int newW, int newH, int dw, int dh) {
+        Mat resized = new Mat();
+        Imgproc.resize(imgBGR, resized, new Size(newW, newH), 0, 0, Imgproc.INTER_LINEAR);
+        Mat padded = new Mat(size, size, CvType.CV_8UC3, new Scalar(114, 114, 114));
+        resized.copyTo(padded.submat(new Rect(dw, dh, newW, newH)));
+        Imgproc.cvtColor(padded, padded, Imgproc.COLOR_BGR2RGB);
+        float[] nchw = new float[3 * size * size];
+        int idx = 0;
+        for (int c = 0; c < 3; c++) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    nchw[idx++] = (float) (padded.get(y, x)[c] / 255.0);
+                }
+            }
+        }
+        return nchw;
+    }
+
+    private static float[] whc2cwh(float[] src) {
+        float[] chw = new float[src.length];
+        int j = 0;
+        for (int ch = 0; ch < 3; ++ch) {
+            for (int i = ch; i < src.length; i += 3) {
+                chw[j++] = src[i];
+            }
+        }
+        return chw;
+    }
+
+    /**
+     * 三个通道取值各不相同的渐变图，通道顺序或位置错了都能看出来
+     */
+    private static Mat gradient(int width, int height) {
+        Mat mat = new Mat(height, width, CvType.CV_8UC3);
+        byte[] data = new byte[width * height * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = (y * width + x) * 3;
+                data[i] = (byte) (10 + x * 7);
+                data[i + 1] = (byte) (60 + y * 9);
+                data[i + 2] = (byte) (200 - x * 3 - y * 2);
+            }
+        }
+        mat.put(0, 0, data);
+        return mat;
+    }
+
+    private static float[] toArray(FloatBuffer buffer) {
+        float[] values = new float[buffer.remaining()];
+        buffer.duplicate().get(values);
+        return values;
+    }
+
+    private static int plane(int channel, int width, int height) {
+        return channel * width * height;
+    }
+}
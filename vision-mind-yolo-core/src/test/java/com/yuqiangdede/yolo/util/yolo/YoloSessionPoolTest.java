@@ -0,0 +1,154 @@
+package com.yuqiangdede.yolo.util.yolo;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.yuqiangdede.yolo.config.SessionPoolConfig;
+import io.micrometer.core.instrument.Metrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YoloSessionPoolTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void borrow_createsSessionsOnDemandAndQueuesWhenPoolIsFull() throws Exception {
+        Path model = writeReluModel(dir.resolve("relu.onnx"));
+        try (YoloSessionPool pool = YoloSessionPool.create("yolo-pool-test", model.toString(), config(2))) {
+            assertEquals(1, pool.stats().created());
+
+            YoloSessionPool.Lease first = pool.borrow();
+            YoloSessionPool.Lease second = pool.borrow();
+            assertEquals(2, pool.stats().created());
+            assertEquals(2, pool.stats().inUse());
+
+            CompletableFuture<OrtSession> third = CompletableFuture.supplyAsync(() -> {
+                try (YoloSessionPool.Lease lease = pool.borrow()) {
+                    return lease.session();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(third.isDone());
+            // 池满排队时 stats() 不能被阻塞
+            assertEquals(2, pool.stats().created());
+            first.close();
+            first.close();
+            assertEquals(first.session(), third.get(5, TimeUnit.SECONDS));
+            second.close();
+
+            YoloSessionPool.Stats stats = pool.stats();
+            assertEquals(2, stats.created());
+            assertEquals(0, stats.inUse());
+            assertEquals(3, stats.borrows());
+            assertEquals(1, stats.waits());
+            assertTrue(YoloSessionPool.allStats().containsKey(pool.id()));
+        }
+    }
+
+    @Test
+    void create_sameNameTwice_keepsBothPoolsAndOwnMeters() throws Exception {
+        Path model = writeReluModel(dir.resolve("relu.onnx"));
+        YoloSessionPool first = YoloSessionPool.create("yolo-reload-test", model.toString(), config(1));
+        YoloSessionPool second = YoloSessionPool.create("yolo-reload-test", model.toString(), config(1));
+        try {
+            assertNotEquals(first.id(), second.id());
+            // 第二个会话池不能关闭第一个仍在使用的会话池
+            try (YoloSessionPool.Lease lease = first.borrow()) {
+                assertEquals("x", lease.session().getInputNames().iterator().next());
+            }
+            assertEquals(2, Metrics.globalRegistry.find("vision.yolo.session.created").tag("model", "yolo-reload-test").gauges().size());
+        } finally {
+            first.close();
+        }
+        assertFalse(YoloSessionPool.allStats().containsKey(first.id()));
+        assertTrue(YoloSessionPool.allStats().containsKey(second.id()));
+        assertNull(Metrics.globalRegistry.find("vision.yolo.session.created").tag("pool", first.id()).gauge());
+        assertNotNull(Metrics.globalRegistry.find("vision.yolo.session.created").tag("pool", second.id()).gauge());
+        assertEquals(1, second.stats().created());
+        second.close();
+        assertEquals(0, second.stats().created());
+        assertNull(Metrics.globalRegistry.find("vision.yolo.session.in-use").tag("model", "yolo-reload-test").gauge());
+    }
+
+    @Test
+    void create_missingModel_leavesNoMetersBehind() {
+        String missing = dir.resolve("missing.onnx").toString();
+        assertThrows(OrtException.class, () -> YoloSessionPool.create("yolo-missing-test", missing, config(1)));
+        assertNull(Metrics.globalRegistry.find("vision.yolo.session.wait").tag("model", "yolo-missing-test").timer());
+        assertNull(Metrics.globalRegistry.find("vision.yolo.session.created").tag("model", "yolo-missing-test").gauge());
+    }
+
+    private static SessionPoolConfig config(int poolSize) {
+        return new SessionPoolConfig(poolSize, 1, 0, OrtSession.SessionOptions.OptLevel.ALL_OPT, true);
+    }
+
+    /**
+     * 手写一个最小的 ONNX 模型：y = Relu(x)，x、y 的形状为 [N, 3]，N 为动态 batch 维
+     */
+    private static Path writeReluModel(Path path) throws Exception {
+        byte[] node = concat(string(1, "x"), string(2, "y"), string(3, "relu"), string(4, "Relu"));
+        byte[] graph = concat(bytes(1, node), string(2, "g"), bytes(11, valueInfo("x")), bytes(12, valueInfo("y")));
+        byte[] opset = concat(string(1, ""), varint(2, 13));
+        byte[] model = concat(varint(1, 8), bytes(7, graph), bytes(8, opset));
+        return Files.write(path, model);
+    }
+
+    private static byte[] valueInfo(String name) {
+        byte[] shape = concat(bytes(1, string(2, "N")), bytes(1, varint(1, 3)));
+        byte[] tensorType = concat(varint(1, 1), bytes(2, shape));
+        return concat(string(1, name), bytes(2, bytes(1, tensorType)));
+    }
+
+    private static byte[] varint(int field, long value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, (long) field << 3);
+        writeVarint(out, value);
+        return out.toByteArray();
+    }
+
+    private static byte[] string(int field, String value) {
+        return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(int field, byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, ((long) field << 3) | 2);
+        writeVarint(out, value.length);
+        out.writeBytes(value);
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}